@@ -0,0 +1,156 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+/**
+ * Benchmarks de la búsqueda sobre el corpus de {@link GeneradorCorpus}.
+ * <p>
+ * Además de ops/s, cada benchmark reporta {@code megabytes} (MB/s leídos de disco, comprimidos
+ * en .gz/.zip) y {@code documentos} (archivos/s, contando cada entrada de zip como un archivo).
+ * La tasa de asignación sale con el profiler de GC de JMH ({@code gc.alloc.rate}):
+ * <pre>
+ *   mvn -P benchmark package
+ *   java -jar target/benchmarks.jar -prof gc
+ *   java -jar target/benchmarks.jar -prof gc -p corpus=C:\corpus BusquedaBenchmark.carpetaCompleta
+ * </pre>
+ * Sin {@code -p corpus=...} se genera (una sola vez) un corpus chico en target/corpus-bench.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class BusquedaBenchmark {
+
+    @Param({""})
+    public String corpus;
+
+    @Param({GeneradorCorpus.CADENA_RARA})
+    public String cadena;
+
+    // 0 = un hilo por núcleo
+    @Param({"0"})
+    public int hilos;
+
+    private final Charset charset = StandardCharsets.UTF_8;
+
+    private Path raiz;
+    private Path archivoGrande;
+    private Buscador buscador;
+    private Medida grande;
+    private Medida gz;
+    private Medida zip;
+    private Medida todo;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        if (corpus.isEmpty()) {
+            raiz = Paths.get("target", "corpus-bench");
+            GeneradorCorpus.generarSiFalta(raiz, GeneradorCorpus.Tamanos.chico());
+        } else {
+            raiz = Paths.get(corpus);
+        }
+
+        archivoGrande = raiz.resolve("grandes").resolve("grande-0.log");
+        buscador = ModoBusqueda.EXACTA.crearBuscador(cadena, charset);
+        grande = new Medida(Files.size(archivoGrande), 1);
+        gz = Medida.de(raiz.resolve("gz"));
+        zip = Medida.de(raiz.resolve("zip"));
+        todo = Medida.de(raiz);
+    }
+
+    /**
+     * Contadores que JMH reporta como tasa por segundo, igual que ops/s.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Volumen {
+        public double megabytes;
+        public long documentos;
+
+        @Setup(Level.Iteration)
+        public void limpiar() {
+            megabytes = 0;
+            documentos = 0;
+        }
+
+        void sumar(Medida m) {
+            megabytes += m.bytes / 1e6;
+            documentos += m.documentos;
+        }
+    }
+
+    // Un solo archivo grande, en un hilo: el costo puro de la búsqueda por bytes
+    @Benchmark
+    public int archivoGrande(Volumen v) throws IOException {
+        try (InputStream is = Files.newInputStream(archivoGrande)) {
+            int ocurrencias = buscador.buscar(is, true, 20).ocurrencias;
+            v.sumar(grande);
+            return ocurrencias;
+        }
+    }
+
+    @Benchmark
+    public void gz(Volumen v, Blackhole bh) throws IOException {
+        bh.consume(BuscarCadenaEnCarpetaZip.buscarEnCarpeta(raiz.resolve("gz"), cadena, charset, OpcionesBusqueda.DEFAULT.conHilos(hilos)));
+        v.sumar(gz);
+    }
+
+    @Benchmark
+    public void zip(Volumen v, Blackhole bh) throws IOException {
+        bh.consume(BuscarCadenaEnCarpetaZip.buscarEnCarpeta(raiz.resolve("zip"), cadena, charset, OpcionesBusqueda.DEFAULT.conHilos(hilos)));
+        v.sumar(zip);
+    }
+
+    // Recorrido completo: logs, .gz, .zip y binarios que hay que descartar
+    @Benchmark
+    public void carpetaCompleta(Volumen v, Blackhole bh) throws IOException {
+        bh.consume(BuscarCadenaEnCarpetaZip.buscarEnCarpeta(raiz, cadena, charset, OpcionesBusqueda.DEFAULT.conHilos(hilos)));
+        v.sumar(todo);
+    }
+
+    // Bytes en disco y documentos de una carpeta, calculados una vez antes de medir
+    static final class Medida {
+        final long bytes;
+        final long documentos;
+
+        Medida(long bytes, long documentos) {
+            this.bytes = bytes;
+            this.documentos = documentos;
+        }
+
+        static Medida de(Path carpeta) throws IOException {
+            long bytes = 0;
+            long documentos = 0;
+            List<Path> archivos;
+            try (var stream = Files.walk(carpeta)) {
+                archivos = stream.filter(Files::isRegularFile).toList();
+            }
+            for (Path p : archivos) {
+                bytes += Files.size(p);
+                if (p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
+                    try (ZipFile zf = new ZipFile(p.toFile())) {
+                        documentos += zf.size();
+                    }
+                } else {
+                    documentos++;
+                }
+            }
+            return new Medida(bytes, documentos);
+        }
+    }
+}
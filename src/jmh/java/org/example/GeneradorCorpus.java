@@ -0,0 +1,194 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Genera un árbol de prueba parecido a los reales: muchos logs chicos, unos pocos logs enormes,
+ * .gz, zips con miles de entradas y ruido binario como el de la carpeta EJEMPLO (.dll, .exe, .tbl).
+ * <p>
+ * Todo sale de una semilla fija: dos corridas con los mismos tamaños dan los mismos bytes,
+ * así los resultados de los benchmarks se pueden comparar entre cambios.
+ * <p>
+ * La cadena {@link #CADENA_RARA} aparece más o menos una vez cada {@link #CADA_CUANTAS_LINEAS}
+ * líneas; "prueba" aparece en casi todos los archivos.
+ * <pre>
+ *   java -cp target/benchmarks.jar org.example.GeneradorCorpus C:\corpus          (chico, ~300 MB)
+ *   java -cp target/benchmarks.jar org.example.GeneradorCorpus C:\corpus completo (varios GB)
+ * </pre>
+ */
+public final class GeneradorCorpus {
+
+    public static final String CADENA_RARA = "ERROR-7781";
+    public static final int CADA_CUANTAS_LINEAS = 1000;
+
+    // Se escribe al terminar: si existe, el corpus está completo
+    static final String MARCA = ".corpus-completo";
+
+    private static final String[] NIVELES = {"INFO ", "INFO ", "INFO ", "DEBUG", "WARN ", "ERROR"};
+    private static final String[] MENSAJES = {
+            "request id=%d path=/api/v1/items status=200 took %d ms",
+            "conexion abierta con host 10.0.%d.%d puerto 1414",
+            "mensaje recibido en cola QM1.ENTRADA longitud=%d prioridad=%d",
+            "reintento %d de %d al enviar a la cola de prueba",
+            "usuario %d consulto saldo, respuesta en %d ms",
+            "cache miss clave=%d tam=%d"
+    };
+
+    private final Random random = new Random(20240501L);
+
+    /**
+     * Cuánto generar de cada cosa.
+     */
+    public static final class Tamanos {
+        final int logsChicos;
+        final int bytesLogChico;
+        final int logsGrandes;
+        final long bytesLogGrande;
+        final int archivosGz;
+        final long bytesGz;           // sin comprimir, por archivo
+        final int zips;
+        final int entradasPorZip;
+        final int binarios;
+
+        public Tamanos(int logsChicos, int bytesLogChico, int logsGrandes, long bytesLogGrande,
+                       int archivosGz, long bytesGz, int zips, int entradasPorZip, int binarios) {
+            this.logsChicos = logsChicos;
+            this.bytesLogChico = bytesLogChico;
+            this.logsGrandes = logsGrandes;
+            this.bytesLogGrande = bytesLogGrande;
+            this.archivosGz = archivosGz;
+            this.bytesGz = bytesGz;
+            this.zips = zips;
+            this.entradasPorZip = entradasPorZip;
+            this.binarios = binarios;
+        }
+
+        // Unos cientos de MB: alcanza para medir sin esperar horas
+        public static Tamanos chico() {
+            return new Tamanos(2000, 32 * 1024, 1, 128L << 20, 8, 8L << 20, 2, 2000, 300);
+        }
+
+        // Varios GB, con un .gz que pasa el umbral de descompresión en paralelo
+        public static Tamanos completo() {
+            return new Tamanos(20000, 64 * 1024, 2, 2L << 30, 20, 300L << 20, 4, 5000, 2500);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: GeneradorCorpus <carpetaDestino> [chico|completo]");
+            System.exit(1);
+        }
+        Path destino = Paths.get(args[0]);
+        Tamanos tamanos = args.length > 1 && args[1].equalsIgnoreCase("completo") ? Tamanos.completo() : Tamanos.chico();
+
+        long inicio = System.nanoTime();
+        generar(destino, tamanos);
+        System.out.printf("Corpus en %s (%.1f s)%n", destino.toAbsolutePath(), (System.nanoTime() - inicio) / 1e9);
+    }
+
+    /**
+     * Genera el corpus si no existe ya uno completo en {@code destino}.
+     */
+    public static void generarSiFalta(Path destino, Tamanos tamanos) throws IOException {
+        if (!Files.exists(destino.resolve(MARCA))) {
+            generar(destino, tamanos);
+        }
+    }
+
+    public static void generar(Path destino, Tamanos tamanos) throws IOException {
+        new GeneradorCorpus().generarTodo(destino, tamanos);
+    }
+
+    private void generarTodo(Path destino, Tamanos t) throws IOException {
+        Files.createDirectories(destino);
+        Files.deleteIfExists(destino.resolve(MARCA));
+
+        // 1) Muchos logs chicos, 100 por carpeta
+        for (int i = 0; i < t.logsChicos; i++) {
+            Path carpeta = destino.resolve("chicos").resolve(String.format("app%03d", i / 100));
+            Files.createDirectories(carpeta);
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(carpeta.resolve("app-" + i + ".log")), 1 << 16)) {
+                escribirLog(os, t.bytesLogChico);
+            }
+        }
+
+        // 2) Pocos logs enormes
+        Files.createDirectories(destino.resolve("grandes"));
+        for (int i = 0; i < t.logsGrandes; i++) {
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(destino.resolve("grandes").resolve("grande-" + i + ".log")), 1 << 20)) {
+                escribirLog(os, t.bytesLogGrande);
+            }
+        }
+
+        // 3) Rotaciones comprimidas
+        Files.createDirectories(destino.resolve("gz"));
+        for (int i = 0; i < t.archivosGz; i++) {
+            try (OutputStream os = new GZIPOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(destino.resolve("gz").resolve("server.log." + i + ".gz")), 1 << 16), 1 << 16)) {
+                escribirLog(os, t.bytesGz);
+            }
+        }
+
+        // 4) Zips con miles de entradas chicas
+        Files.createDirectories(destino.resolve("zip"));
+        for (int z = 0; z < t.zips; z++) {
+            try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(destino.resolve("zip").resolve("respaldo-" + z + ".zip")), 1 << 16))) {
+                for (int e = 0; e < t.entradasPorZip; e++) {
+                    zos.putNextEntry(new ZipEntry("logs/dia" + (e % 30) + "/app-" + e + ".log"));
+                    escribirLog(zos, 4 * 1024 + random.nextInt(8 * 1024));
+                    zos.closeEntry();
+                }
+            }
+        }
+
+        // 5) Ruido binario como en EJEMPLO: muchos .tbl chicos, algunos .dll/.exe más grandes
+        String[] extensiones = {".tbl", ".tbl", ".tbl", ".tbl", ".dll", ".exe"};
+        for (int i = 0; i < t.binarios; i++) {
+            Path carpeta = destino.resolve("binarios").resolve(String.format("lib%02d", i / 250));
+            Files.createDirectories(carpeta);
+            String ext = extensiones[i % extensiones.length];
+            int tam = ext.equals(".tbl") ? 2 * 1024 + random.nextInt(16 * 1024) : 64 * 1024 + random.nextInt(512 * 1024);
+            byte[] ruido = new byte[tam];
+            random.nextBytes(ruido);
+            Files.write(carpeta.resolve("modulo" + i + ext), ruido);
+        }
+
+        Files.createFile(destino.resolve(MARCA));
+    }
+
+    private void escribirLog(OutputStream os, long bytes) throws IOException {
+        StringBuilder linea = new StringBuilder(200);
+        long escritos = 0;
+        long numero = 0;
+        while (escritos < bytes) {
+            linea.setLength(0);
+            numero++;
+            linea.append("2024-05-").append(1 + random.nextInt(28))
+                    .append(' ').append(10 + random.nextInt(14)).append(':').append(10 + random.nextInt(50))
+                    .append(':').append(10 + random.nextInt(50)).append(' ')
+                    .append(NIVELES[random.nextInt(NIVELES.length)])
+                    .append(" [hilo-").append(random.nextInt(32)).append("] ")
+                    .append(String.format(MENSAJES[random.nextInt(MENSAJES.length)], random.nextInt(100000), random.nextInt(1000)));
+            if (random.nextInt(CADA_CUANTAS_LINEAS) == 0) {
+                linea.append(" codigo=").append(CADENA_RARA);
+            }
+            linea.append('\n');
+
+            byte[] b = linea.toString().getBytes(StandardCharsets.UTF_8);
+            os.write(b);
+            escritos += b.length;
+        }
+    }
+}
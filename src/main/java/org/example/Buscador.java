@@ -0,0 +1,27 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Una pasada de búsqueda sobre un stream (archivo, .gz o entrada de zip), con el mismo
+ * conteo y el mismo formato de líneas ("L<n>: ...") sin importar el modo.
+ * Las implementaciones son inmutables y se comparten entre hilos.
+ */
+interface Buscador {
+
+    /**
+     * Recorre todo el stream. No lo cierra.
+     *
+     * @param detalle cuántas líneas guardar y con cuánto contexto; con
+     *                {@link OpcionesDetalle#SIN_LINEAS} solo cuenta
+     */
+    BuscadorBytes.Coincidencias buscar(InputStream is, OpcionesDetalle detalle) throws IOException;
+
+    /**
+     * @param maxLineas máximo de líneas a guardar en el detalle
+     */
+    default BuscadorBytes.Coincidencias buscar(InputStream is, boolean incluirDetalleLineas, int maxLineas) throws IOException {
+        return buscar(is, incluirDetalleLineas ? OpcionesDetalle.lineas(maxLineas) : OpcionesDetalle.SIN_LINEAS);
+    }
+}
@@ -0,0 +1,576 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Busca una cadena directamente sobre los bytes del archivo (Boyer-Moore-Horspool),
+ * sin crear un String por línea.
+ * <p>
+ * La cadena se codifica una sola vez. Los saltos de línea solo se cuentan (para el "L<n>:");
+ * de las líneas del detalle se copian los bytes y se decodifican recién cuando se piden
+ * (ver {@link DetalleLineas}). Contando sin detalle no se crea nada por coincidencia.
+ * <p>
+ * Solo vale para charsets donde los bytes de la cadena no pueden aparecer a la mitad de otro
+ * carácter: UTF-8, US-ASCII e ISO-8859-1, y también UTF-16LE/BE, donde se recorre de a dos bytes:
+ * una coincidencia solo cuenta si empieza en un límite de carácter y los saltos de línea son
+ * unidades de 16 bits. Para los demás, {@link #paraCadena} regresa null y el llamador sigue con
+ * el BufferedReader de siempre.
+ * <p>
+ * Sin distinguir mayúsculas ({@link #paraCadenaSinMayusculas}) solo se pliegan las letras ASCII,
+ * así que la cadena tiene que ser ASCII; si no, hay que buscar con {@link BuscadorRegex}.
+ * <p>
+ * Es inmutable: una misma instancia se puede usar desde varios hilos.
+ */
+final class BuscadorBytes implements Buscador {
+
+    static final int TAM_BUFFER = 64 * 1024;
+
+    private final byte[] patron;
+    private final int[] salto = new int[256];
+    private final Charset charset;
+    private final boolean ignorarMayusculas;   // patron ya viene en minúsculas
+    private final int ancho;                   // bytes por unidad: 2 en UTF-16
+    private final boolean granEndian;          // UTF-16BE
+
+    // 'A'..'Z' -> 'a'..'z'; los demás bytes quedan igual
+    private static final byte[] MINUSCULA = new byte[256];
+
+    static {
+        for (int c = 0; c < 256; c++) {
+            MINUSCULA[c] = (byte) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+        }
+    }
+
+    // Lectura de 8 bytes a la vez para contar líneas (sin alinear: solo get simple)
+    static final VarHandle OCHO_BYTES = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * true si algún byte de la palabra es menor a 0x0E (ahí están \n y \r). Los bytes >= 0x80
+     * (UTF-8 fuera de ASCII) no cuentan. Truco clásico "hasless" de bits.
+     */
+    static boolean hayControl(long palabra) {
+        return ((palabra - 0x0E0E0E0E0E0E0E0EL) & ~palabra & 0x8080808080808080L) != 0;
+    }
+
+    // Lo mismo para UTF-16: cuatro unidades de 16 bits, leídas en el orden del charset
+    private static final VarHandle OCHO_BYTES_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static boolean hayControlUtf16(long palabra) {
+        return ((palabra - 0x000E000E000E000EL) & ~palabra & 0x8000800080008000L) != 0;
+    }
+
+    private BuscadorBytes(byte[] patron, Charset charset, boolean ignorarMayusculas) {
+        this.patron = patron;
+        this.charset = charset;
+        this.ignorarMayusculas = ignorarMayusculas;
+        this.ancho = esUtf16(charset) ? 2 : 1;
+        this.granEndian = charset.equals(StandardCharsets.UTF_16BE);
+
+        // Tabla de Horspool: cuánto avanzar según el último byte de la ventana
+        Arrays.fill(salto, patron.length);
+        for (int k = 0; k < patron.length - 1; k++) {
+            salto[patron[k] & 0xFF] = patron.length - 1 - k;
+            if (ignorarMayusculas && patron[k] >= 'a' && patron[k] <= 'z') {
+                salto[patron[k] - ('a' - 'A')] = patron.length - 1 - k;
+            }
+        }
+    }
+
+    /**
+     * @return el buscador, o null si la cadena/charset no se pueden buscar por bytes
+     */
+    static BuscadorBytes paraCadena(String needle, Charset charset) {
+        if (needle == null || needle.isEmpty()) return null;
+
+        // Una cadena con salto de línea nunca coincide con readLine(); no la soportamos aquí
+        if (needle.indexOf('\n') >= 0 || needle.indexOf('\r') >= 0) return null;
+
+        if (!charsetCompatible(charset) || !charset.newEncoder().canEncode(needle)) return null;
+
+        return new BuscadorBytes(needle.getBytes(charset), charset, false);
+    }
+
+    /**
+     * Igual que {@link #paraCadena}, sin distinguir mayúsculas de las letras ASCII.
+     *
+     * @return el buscador, o null si la cadena tiene caracteres no ASCII (o el charset no sirve)
+     */
+    static BuscadorBytes paraCadenaSinMayusculas(String needle, Charset charset) {
+        if (needle == null || needle.isEmpty()) return null;
+        if (needle.indexOf('\n') >= 0 || needle.indexOf('\r') >= 0) return null;
+        if (!charsetCompatible(charset)) return null;
+
+        char[] plegada = new char[needle.length()];
+        for (int k = 0; k < needle.length(); k++) {
+            char ch = needle.charAt(k);
+            if (ch >= 0x80) return null;
+            plegada[k] = (char) MINUSCULA[ch];
+        }
+        // En UTF-16 el byte alto de una letra ASCII es 0, que no se pliega: sigue siendo exacto
+        return new BuscadorBytes(new String(plegada).getBytes(charset), charset, true);
+    }
+
+    private static boolean charsetCompatible(Charset charset) {
+        return unByteParaSaltos(charset) || esUtf16(charset);
+    }
+
+    /**
+     * true si en el charset los saltos de línea son un byte que no aparece dentro de otro
+     * carácter (UTF-8, US-ASCII, ISO-8859-1): se pueden contar y buscar byte a byte.
+     */
+    static boolean unByteParaSaltos(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean esUtf16(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_16LE) || charset.equals(StandardCharsets.UTF_16BE);
+    }
+
+    /**
+     * Recorre todo el stream. No lo cierra (en zip se reutiliza para la siguiente entrada).
+     */
+    @Override
+    public Coincidencias buscar(InputStream is, OpcionesDetalle detalle) throws IOException {
+        return recorrer(is, new Escaneo(detalle, null, MemoriaAcotada.activa()));
+    }
+
+    /**
+     * Entrega a {@code destino} el número, el offset y el texto (sin recortar) de cada línea que
+     * tiene la cadena, una vez por línea. Sirve de prefiltro: solo esas líneas se decodifican.
+     * No cierra el stream.
+     */
+    void lineasConCoincidencia(InputStream is, DestinoLinea destino) throws IOException {
+        recorrer(is, new Escaneo(OpcionesDetalle.SIN_LINEAS, destino, MemoriaAcotada.activa()));
+    }
+
+    private Coincidencias recorrer(InputStream is, Escaneo e) throws IOException {
+        try {
+            return recorrerConBuffer(is, e);
+        } finally {
+            e.soltarBuffer();
+        }
+    }
+
+    private Coincidencias recorrerConBuffer(InputStream is, Escaneo e) throws IOException {
+        int m = patron.length;
+        boolean eof = false;
+
+        while (true) {
+            int idx;
+            while ((idx = indiceDe(e.buf, e.pos, e.fin)) >= 0) {
+                // En UTF-16, los bytes de la cadena a mitad de un carácter no son coincidencia
+                if (ancho == 2 && ((e.descartados + idx) & 1) != 0) {
+                    e.pos = idx + 1;
+                    continue;
+                }
+                e.registrarCoincidencia(idx);
+                e.pos = idx + m;
+            }
+            if (eof) break;
+
+            // Una coincidencia todavía puede empezar en los últimos m-1 bytes
+            e.pos = Math.max(e.pos, e.fin - m + 1);
+            e.avanzarHasta(e.pos);
+            e.hacerEspacio();
+
+            int n = is.read(e.buf, e.fin, e.buf.length - e.fin);
+            if (n < 0) {
+                eof = true;
+            } else {
+                e.fin += n;
+            }
+        }
+
+        e.avanzarHasta(e.fin);
+        e.cerrarUltimaLinea();
+
+        return new Coincidencias(e.ocurrencias, e.detalle, e.numeroLinea - 1);
+    }
+
+    // Horspool: índice de la primera coincidencia completa dentro de [desde, hasta), o -1
+    int indiceDe(byte[] texto, int desde, int hasta) {
+        if (ignorarMayusculas) {
+            return indiceDeSinMayusculas(texto, desde, hasta);
+        }
+        int m = patron.length;
+        int ultimo = m - 1;
+        byte b = patron[ultimo];
+        int limite = hasta - m;
+        int i = desde;
+
+        while (i <= limite) {
+            byte c = texto[i + ultimo];
+            if (c == b && coincideEn(texto, i)) {
+                return i;
+            }
+            i += salto[c & 0xFF];
+        }
+        return -1;
+    }
+
+    private boolean coincideEn(byte[] texto, int i) {
+        for (int k = 0; k < patron.length - 1; k++) {
+            if (texto[i + k] != patron[k]) return false;
+        }
+        return true;
+    }
+
+    // Mismo recorrido, plegando cada byte del texto antes de comparar (aparte para no frenar la exacta)
+    private int indiceDeSinMayusculas(byte[] texto, int desde, int hasta) {
+        int m = patron.length;
+        int ultimo = m - 1;
+        byte b = patron[ultimo];
+        int limite = hasta - m;
+        int i = desde;
+
+        while (i <= limite) {
+            byte c = texto[i + ultimo];
+            if (MINUSCULA[c & 0xFF] == b && coincideSinMayusculasEn(texto, i)) {
+                return i;
+            }
+            i += salto[c & 0xFF];
+        }
+        return -1;
+    }
+
+    private boolean coincideSinMayusculasEn(byte[] texto, int i) {
+        for (int k = 0; k < patron.length - 1; k++) {
+            if (MINUSCULA[texto[i + k] & 0xFF] != patron[k]) return false;
+        }
+        return true;
+    }
+
+    // Estado de una pasada sobre un stream (uno por llamada, por eso el buscador es thread-safe)
+    private final class Escaneo {
+        byte[] buf;
+        int fin;            // bytes válidos en buf
+        int pos;            // desde dónde sigue la búsqueda del patrón
+        int contados;       // hasta dónde ya se contaron saltos de línea
+        int inicioLinea;    // dónde empieza la línea actual dentro de buf
+        long descartados;   // bytes del stream que ya salieron de buf (para los offsets)
+        int numeroLinea = 1;
+        boolean ultimoFueCR;
+
+        int ocurrencias;
+        int lineaUltimaCoincidencia;   // 0 = todavía ninguna
+        boolean lineaPendiente;        // la línea actual tuvo coincidencia y falta guardar su texto
+        int columnaPendiente;
+        final DetalleLineas detalle;
+        final DestinoLinea destino;    // null: las líneas se juntan en "detalle"
+        int entregadas;
+
+        // Contexto "antes": inicio y fin (offsets del stream) de las últimas líneas, por número % antes
+        final int antes;
+        final long[] inicios;
+        final long[] fines;
+
+        // Memoria acotada: buf sale del pool, no crece, y de una línea más larga que maxLinea
+        // solo se conservan sus primeros maxLinea bytes
+        final MemoriaAcotada memoria;  // null: buffer propio, que crece si una línea no cabe
+        private final byte[] prestado;
+        boolean lineaCortada;          // el principio de la línea actual ya salió de buf
+        long inicioCortada;            // offset en el stream donde empezaba
+        byte[] prefijo;                // sus primeros bytes, si pueden hacer falta en el detalle
+        int columnaBase;               // caracteres de la línea que ya salieron de buf
+
+        Escaneo(OpcionesDetalle opciones, DestinoLinea destino, MemoriaAcotada memoria) throws IOException {
+            this.memoria = memoria;
+            this.prestado = memoria != null ? memoria.tomar() : null;
+            this.buf = memoria != null ? prestado : new byte[TAM_BUFFER];
+            this.detalle = new DetalleLineas(opciones);
+            this.destino = destino;
+            this.antes = opciones.tieneContexto() ? opciones.antes : 0;
+            this.inicios = antes > 0 ? new long[antes] : null;
+            this.fines = antes > 0 ? new long[antes] : null;
+        }
+
+        void registrarCoincidencia(int idx) {
+            avanzarHasta(idx);
+            ocurrencias++;
+            if (numeroLinea != lineaUltimaCoincidencia) {
+                lineaUltimaCoincidencia = numeroLinea;
+                if (destino != null || detalle.aceptaCoincidencia()) {
+                    for (int n = antes > 0 ? detalle.primeraAntes(numeroLinea) : numeroLinea; n < numeroLinea; n++) {
+                        int k = n % antes;
+                        // Con memoria acotada, una línea larga de contexto puede haber salido de buf
+                        if (inicios[k] < descartados) continue;
+                        agregarContexto(n, (int) (inicios[k] - descartados), (int) (fines[k] - descartados));
+                    }
+                    lineaPendiente = true;
+                    columnaPendiente = destino != null ? 0 : columna(idx);
+                }
+            }
+        }
+
+        // Mismo criterio que readLine(): \n, \r y \r\n terminan línea
+        void avanzarHasta(int hasta) {
+            if (ancho == 2) {
+                avanzarHastaUtf16(hasta);
+                return;
+            }
+            // En locales: es el ciclo que toca todos los bytes
+            byte[] b = buf;
+            boolean cr = ultimoFueCR;
+            int i = contados;
+            while (i < hasta) {
+                // De 8 en 8 mientras no haya ningún byte de control (< 0x0E) en la palabra
+                if (i + 8 <= hasta && !hayControl((long) OCHO_BYTES.get(b, i))) {
+                    cr = false;
+                    i += 8;
+                    continue;
+                }
+                byte c = b[i];
+                if (c > '\r') {
+                    cr = false;
+                } else if (c == '\n') {
+                    if (cr) {
+                        inicioLinea = i + 1;
+                    } else {
+                        terminarLinea(i);
+                    }
+                    cr = false;
+                } else if (c == '\r') {
+                    terminarLinea(i);
+                    cr = true;
+                } else {
+                    cr = false;
+                }
+                i++;
+            }
+            ultimoFueCR = cr;
+            contados = hasta;
+        }
+
+        // De a una unidad de 16 bits; un byte suelto al final espera a la siguiente lectura
+        private void avanzarHastaUtf16(int hasta) {
+            byte[] b = buf;
+            boolean cr = ultimoFueCR;
+            int i = contados;
+            while (i + 2 <= hasta) {
+                if (i + 8 <= hasta && !hayControlUtf16(granEndian
+                        ? (long) OCHO_BYTES_BE.get(b, i) : (long) OCHO_BYTES.get(b, i))) {
+                    cr = false;
+                    i += 8;
+                    continue;
+                }
+                int c = granEndian
+                        ? (b[i] & 0xFF) << 8 | (b[i + 1] & 0xFF)
+                        : (b[i + 1] & 0xFF) << 8 | (b[i] & 0xFF);
+                if (c == '\n') {
+                    if (cr) {
+                        inicioLinea = i + 2;
+                    } else {
+                        terminarLinea(i);
+                    }
+                    cr = false;
+                } else if (c == '\r') {
+                    terminarLinea(i);
+                    cr = true;
+                } else {
+                    cr = false;
+                }
+                i += 2;
+            }
+            ultimoFueCR = cr;
+            contados = i;
+        }
+
+        void terminarLinea(int finLinea) {
+            if (lineaPendiente) {
+                guardarLinea(finLinea);
+            } else if (detalle.esContextoDespues(numeroLinea)) {
+                agregarContextoActual(finLinea);
+            }
+            if (antes > 0) {
+                int k = numeroLinea % antes;
+                inicios[k] = lineaCortada ? -1 : descartados + inicioLinea;
+                fines[k] = descartados + finLinea;
+            }
+            numeroLinea++;
+            inicioLinea = finLinea + ancho;
+            if (lineaCortada) {
+                lineaCortada = false;
+                prefijo = null;
+                columnaBase = 0;
+            }
+        }
+
+        void cerrarUltimaLinea() {
+            // En UTF-16 un byte suelto al final no es carácter
+            int finUltima = fin - (fin - inicioLinea) % ancho;
+            if (inicioLinea >= finUltima && !lineaCortada) return;
+            if (lineaPendiente) {
+                guardarLinea(finUltima);
+            } else if (detalle.esContextoDespues(numeroLinea)) {
+                agregarContextoActual(finUltima);
+            }
+        }
+
+        private void guardarLinea(int finLinea) {
+            long offset = lineaCortada ? inicioCortada : descartados + inicioLinea;
+            if (destino != null) {
+                String texto;
+                if (lineaCortada || memoria != null) {
+                    byte[] bytes = bytesLineaActual(finLinea);
+                    texto = new String(bytes, charset);
+                    MetricasBusqueda.decodificados(bytes.length);
+                } else {
+                    texto = new String(buf, inicioLinea, finLinea - inicioLinea, charset);
+                    MetricasBusqueda.decodificados(finLinea - inicioLinea);
+                }
+                destino.linea(texto, numeroLinea, offset);
+                entregadas++;
+            } else {
+                // Solo se copian los bytes: el texto se arma si alguien lo pide
+                detalle.agregar(DetalleLineas.Linea.deBytes(numeroLinea, offset, columnaPendiente,
+                        bytesLineaActual(finLinea), charset));
+            }
+            lineaPendiente = false;
+        }
+
+        private void agregarContexto(int numero, int desde, int hasta) {
+            detalle.agregar(DetalleLineas.Linea.deBytes(numero, descartados + desde, 0,
+                    Arrays.copyOfRange(buf, desde, finPrefijo(desde, hasta)), charset));
+        }
+
+        private void agregarContextoActual(int finLinea) {
+            long offset = lineaCortada ? inicioCortada : descartados + inicioLinea;
+            detalle.agregar(DetalleLineas.Linea.deBytes(numeroLinea, offset, 0, bytesLineaActual(finLinea), charset));
+        }
+
+        private byte[] bytesLineaActual(int finLinea) {
+            if (lineaCortada) {
+                return prefijo != null ? prefijo : new byte[0];
+            }
+            return Arrays.copyOfRange(buf, inicioLinea, finPrefijo(inicioLinea, finLinea));
+        }
+
+        // Con memoria acotada, hasta dónde se guarda una línea: maxLinea bytes, sin partir un carácter
+        private int finPrefijo(int desde, int hasta) {
+            if (memoria == null || hasta - desde <= memoria.maxLinea) return hasta;
+            int corte = desde + memoria.maxLinea;
+            if (ancho == 2) {
+                corte -= (corte - desde) % 2;
+            } else if (charset.equals(StandardCharsets.UTF_8)) {
+                while (corte > desde && (buf[corte] & 0xC0) == 0x80) corte--;
+            }
+            return corte;
+        }
+
+        // En caracteres, desde 1: en UTF-8 no cuentan los bytes de continuación (10xxxxxx)
+        private int columna(int idx) {
+            return columnaBase + caracteres(inicioLinea, idx) + 1;
+        }
+
+        private int caracteres(int desde, int hasta) {
+            if (ancho == 2) return (hasta - desde) / 2;
+            if (!charset.equals(StandardCharsets.UTF_8)) return hasta - desde;
+            int n = 0;
+            for (int i = desde; i < hasta; i++) {
+                if ((buf[i] & 0xC0) != 0x80) n++;
+            }
+            return n;
+        }
+
+        // Descarta lo ya procesado; si una sola línea no cabe, el buffer crece (igual que readLine).
+        // Con memoria acotada no crece: se conservan a lo sumo maxLinea bytes de lo ya recorrido
+        void hacerEspacio() {
+            if (buf.length - fin >= buf.length / 2) return;
+
+            boolean necesitaLinea = lineaPendiente || destino != null || detalle.quiereLineas();
+            // Sin línea que guardar se descarta hasta lo ya contado (en UTF-16 puede quedar un byte suelto antes de pos)
+            int conservar = necesitaLinea ? inicioLinea : contados;
+            // Las líneas que pueden ir de contexto antes de la próxima coincidencia
+            if (antes > 0 && detalle.aceptaCoincidencia() && numeroLinea > antes) {
+                conservar = Math.min(conservar, (int) (inicios[numeroLinea % antes] - descartados));
+            }
+            if (memoria != null && conservar < fin - memoria.maxLinea) {
+                conservar = recortar(conservar);
+            }
+
+            if (conservar > 0) {
+                System.arraycopy(buf, conservar, buf, 0, fin - conservar);
+                fin -= conservar;
+                pos -= conservar;
+                contados -= conservar;
+                inicioLinea -= conservar;
+                descartados += conservar;
+            }
+            if (fin == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+
+        // Lo conservado pasa de maxLinea: sale el contexto de antes y, si hace falta, el
+        // principio de la línea actual (guardando su prefijo para el detalle)
+        private int recortar(int conservar) {
+            int hasta = Math.min(fin - memoria.maxLinea, contados);
+            if (ancho == 2 && ((descartados + hasta) & 1) != 0) hasta--;
+            // inicioLinea < 0: la línea ya se estaba descartando porque no hace falta su texto
+            if (hasta <= inicioLinea || inicioLinea < 0) {
+                return Math.max(conservar, hasta);
+            }
+            if (!lineaCortada) {
+                lineaCortada = true;
+                inicioCortada = descartados + inicioLinea;
+                if (destino != null || detalle.quiereLineas()) {
+                    prefijo = Arrays.copyOfRange(buf, inicioLinea, finPrefijo(inicioLinea, fin));
+                }
+            }
+            columnaBase += caracteres(inicioLinea, hasta);
+            inicioLinea = hasta;
+            return hasta;
+        }
+
+        void soltarBuffer() {
+            if (prestado != null) {
+                memoria.devolver(prestado);
+            }
+        }
+    }
+
+    /**
+     * Recibe cada línea con coincidencia en {@link #lineasConCoincidencia}.
+     */
+    interface DestinoLinea {
+        void linea(String texto, int numeroLinea, long offset);
+    }
+
+    // Lo mismo que antes se juntaba línea por línea
+    static final class Coincidencias {
+        final int ocurrencias;
+        final List<String> lineas;
+        // Dónde está cada línea de "lineas" (vacío si vienen de una lectura por líneas)
+        final List<DetalleLineas.Linea> detalle;
+        // Fines de línea que hubo en el stream; -1 si el buscador no los cuenta
+        final int saltos;
+
+        Coincidencias(int ocurrencias, List<String> lineas) {
+            this.ocurrencias = ocurrencias;
+            this.lineas = lineas;
+            this.detalle = List.of();
+            this.saltos = -1;
+        }
+
+        Coincidencias(int ocurrencias, DetalleLineas detalle) {
+            this(ocurrencias, detalle, -1);
+        }
+
+        Coincidencias(int ocurrencias, DetalleLineas detalle, int saltos) {
+            this.ocurrencias = ocurrencias;
+            this.lineas = detalle.comoTexto();
+            this.detalle = detalle.lineas();
+            this.saltos = saltos;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Busca varias cadenas a la vez en una sola pasada (autómata de Aho-Corasick sobre bytes).
+ * <p>
+ * El costo depende del tamaño del archivo, no de cuántas cadenas se buscan: cada byte
+ * es una sola transición en la tabla, sin importar si son 2 o 500 cadenas.
+ * <p>
+ * El conteo por cadena es igual al de {@code contarOcurrencias}: coincidencias sin traslape,
+ * de izquierda a derecha, dentro de cada línea. Mismas restricciones de charset que
+ * {@link BuscadorBytes}. Inmutable y thread-safe.
+ */
+final class BuscadorMultiple {
+
+    private final List<String> cadenas;
+    private final int[] largos;      // largo en bytes de cada cadena
+    private final int[] delta;       // transiciones: delta[estado * 256 + byte]
+    private final int[][] salida;    // cadenas que terminan en cada estado (null si ninguna)
+    private final Charset charset;
+
+    private BuscadorMultiple(List<String> cadenas, byte[][] patrones, Charset charset) {
+        this.cadenas = cadenas;
+        this.charset = charset;
+        this.largos = new int[patrones.length];
+
+        // 1) Trie
+        List<int[]> hijos = new ArrayList<>();
+        List<int[]> terminan = new ArrayList<>();
+        hijos.add(nuevoNodo());
+        terminan.add(null);
+
+        for (int k = 0; k < patrones.length; k++) {
+            largos[k] = patrones[k].length;
+            int estado = 0;
+            for (byte b : patrones[k]) {
+                int c = b & 0xFF;
+                if (hijos.get(estado)[c] < 0) {
+                    hijos.get(estado)[c] = hijos.size();
+                    hijos.add(nuevoNodo());
+                    terminan.add(null);
+                }
+                estado = hijos.get(estado)[c];
+            }
+            terminan.set(estado, agregar(terminan.get(estado), k));
+        }
+
+        // 2) Enlaces de falla por anchura; de paso se arma la tabla completa (un DFA)
+        int estados = hijos.size();
+        this.delta = new int[estados * 256];
+        this.salida = new int[estados][];
+        int[] falla = new int[estados];
+
+        ArrayDeque<Integer> cola = new ArrayDeque<>();
+        salida[0] = terminan.get(0);
+        for (int c = 0; c < 256; c++) {
+            int h = hijos.get(0)[c];
+            if (h > 0) {
+                falla[h] = 0;
+                delta[c] = h;
+                cola.add(h);
+            } else {
+                delta[c] = 0;
+            }
+        }
+
+        while (!cola.isEmpty()) {
+            int s = cola.poll();
+            salida[s] = unir(terminan.get(s), salida[falla[s]]);
+            for (int c = 0; c < 256; c++) {
+                int h = hijos.get(s)[c];
+                if (h > 0) {
+                    falla[h] = delta[falla[s] * 256 + c];
+                    delta[s * 256 + c] = h;
+                    cola.add(h);
+                } else {
+                    delta[s * 256 + c] = delta[falla[s] * 256 + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return el buscador, o null si alguna cadena/charset no se puede buscar por bytes
+     */
+    static BuscadorMultiple paraCadenas(List<String> cadenas, Charset charset) {
+        // Cuenta saltos de a un byte: UTF-16 sigue por líneas
+        if (!BuscadorBytes.unByteParaSaltos(charset)) return null;
+        byte[][] patrones = new byte[cadenas.size()][];
+        for (int k = 0; k < cadenas.size(); k++) {
+            // Reusa las mismas reglas que la búsqueda de una sola cadena
+            if (BuscadorBytes.paraCadena(cadenas.get(k), charset) == null) return null;
+            patrones[k] = cadenas.get(k).getBytes(charset);
+        }
+        return new BuscadorMultiple(List.copyOf(cadenas), patrones, charset);
+    }
+
+    List<String> cadenas() {
+        return cadenas;
+    }
+
+    /**
+     * Recorre todo el stream una sola vez. No lo cierra.
+     *
+     * @param maxLineas máximo de líneas a guardar por cadena (y en total)
+     */
+    CoincidenciasMultiples buscar(InputStream is, boolean incluirDetalleLineas, int maxLineas) throws IOException {
+        int n = largos.length;
+        int[] ocurrencias = new int[n];
+        long[] finUltima = new long[n];       // fin (absoluto) de la última coincidencia contada por cadena
+        int[] lineaUltima = new int[n];       // línea de la última coincidencia por cadena (0 = ninguna)
+        List<List<String>> lineasPorCadena = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) lineasPorCadena.add(new ArrayList<>());
+        List<String> lineas = new ArrayList<>();
+
+        int[] pendientes = new int[n];        // cadenas que esperan el texto de la línea actual
+        int nPendientes = 0;
+        boolean pendienteGeneral = false;
+        int lineaUltimaGeneral = 0;
+        int maxDetalle = incluirDetalleLineas ? maxLineas : 0;
+
+        // Con memoria acotada el buffer sale del pool y no crece: de una línea más larga que
+        // maxLinea se guarda su principio en "prefijo" y el resto se recorre sin conservarse
+        MemoriaAcotada memoria = MemoriaAcotada.activa();
+        byte[] prestado = memoria != null ? memoria.tomar() : null;
+        byte[] buf = prestado != null ? prestado : new byte[BuscadorBytes.TAM_BUFFER];
+        byte[] prefijo = null;
+        long base = 0;                        // offset absoluto de buf[0]
+        int fin = 0;
+        int i = 0;
+        int inicioLinea = 0;
+        int numeroLinea = 1;
+        boolean ultimoFueCR = false;
+        int estado = 0;
+
+        try {
+            while (true) {
+                for (; i < fin; i++) {
+                    byte b = buf[i];
+
+                    // Saltos de línea: mismo criterio que readLine()
+                    if (b == '\n' || b == '\r') {
+                        if (b == '\n' && ultimoFueCR) {
+                            ultimoFueCR = false;
+                            inicioLinea = i + 1;
+                            continue;
+                        }
+                        ultimoFueCR = (b == '\r');
+                        if (nPendientes > 0 || pendienteGeneral) {
+                            String texto = prefijo != null
+                                    ? textoLinea(prefijo, 0, prefijo.length, numeroLinea)
+                                    : textoLinea(buf, inicioLinea, finPrefijo(buf, inicioLinea, i, memoria), numeroLinea);
+                            for (int p = 0; p < nPendientes; p++) lineasPorCadena.get(pendientes[p]).add(texto);
+                            if (pendienteGeneral) lineas.add(texto);
+                            nPendientes = 0;
+                            pendienteGeneral = false;
+                        }
+                        prefijo = null;
+                        numeroLinea++;
+                        inicioLinea = i + 1;
+                        estado = 0;
+                        continue;
+                    }
+                    ultimoFueCR = false;
+
+                    estado = delta[(estado << 8) | (b & 0xFF)];
+                    int[] terminanAqui = salida[estado];
+                    if (terminanAqui == null) continue;
+
+                    long finAbs = base + i + 1;
+                    for (int k : terminanAqui) {
+                        // Sin traslape por cadena, igual que indexOf avanzando needle.length()
+                        if (finAbs - largos[k] < finUltima[k]) continue;
+                        finUltima[k] = finAbs;
+                        ocurrencias[k]++;
+
+                        if (lineaUltima[k] != numeroLinea) {
+                            lineaUltima[k] = numeroLinea;
+                            if (lineasPorCadena.get(k).size() < maxDetalle) pendientes[nPendientes++] = k;
+                        }
+                        if (lineaUltimaGeneral != numeroLinea) {
+                            lineaUltimaGeneral = numeroLinea;
+                            if (lineas.size() < maxDetalle) pendienteGeneral = true;
+                        }
+                    }
+                }
+
+                // Se acabó lo leído: se conserva la línea actual solo si todavía puede hacer falta su texto
+                boolean necesitaLinea = nPendientes > 0 || pendienteGeneral || lineas.size() < maxDetalle
+                        || hayEspacio(lineasPorCadena, maxDetalle);
+                int conservar = necesitaLinea ? inicioLinea : fin;
+                if (memoria != null) {
+                    // Una vez cortada la línea (su principio ya salió de buf, inicioLinea < 0) se
+                    // descarta todo lo leído hasta el próximo salto
+                    boolean cortada = prefijo != null || inicioLinea < 0;
+                    if (cortada || conservar < fin - memoria.maxLinea) {
+                        if (!cortada) {
+                            prefijo = Arrays.copyOfRange(buf, inicioLinea, finPrefijo(buf, inicioLinea, fin, memoria));
+                        }
+                        conservar = fin;
+                    }
+                }
+                if (conservar > 0) {
+                    System.arraycopy(buf, conservar, buf, 0, fin - conservar);
+                    base += conservar;
+                    fin -= conservar;
+                    i -= conservar;
+                    inicioLinea -= conservar;
+                }
+                // Con memoria acotada nunca se llega lleno: lo conservado no pasa de maxLinea
+                if (fin == buf.length && memoria == null) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+
+                int leidos = is.read(buf, fin, buf.length - fin);
+                if (leidos < 0) break;
+                fin += leidos;
+            }
+
+            // Última línea sin salto al final
+            if ((nPendientes > 0 || pendienteGeneral) && (inicioLinea < fin || prefijo != null)) {
+                String texto = prefijo != null
+                        ? textoLinea(prefijo, 0, prefijo.length, numeroLinea)
+                        : textoLinea(buf, inicioLinea, finPrefijo(buf, inicioLinea, fin, memoria), numeroLinea);
+                for (int p = 0; p < nPendientes; p++) lineasPorCadena.get(pendientes[p]).add(texto);
+                if (pendienteGeneral) lineas.add(texto);
+            }
+        } finally {
+            if (prestado != null) memoria.devolver(prestado);
+        }
+
+        return new CoincidenciasMultiples(cadenas, ocurrencias, lineasPorCadena, lineas);
+    }
+
+    private static boolean hayEspacio(List<List<String>> lineasPorCadena, int maxDetalle) {
+        for (List<String> l : lineasPorCadena) {
+            if (l.size() < maxDetalle) return true;
+        }
+        return false;
+    }
+
+    // Con memoria acotada se guardan a lo sumo maxLinea bytes de la línea, sin partir un carácter UTF-8
+    private int finPrefijo(byte[] buf, int desde, int hasta, MemoriaAcotada memoria) {
+        if (memoria == null || hasta - desde <= memoria.maxLinea) return hasta;
+        int corte = desde + memoria.maxLinea;
+        while (corte > desde && (buf[corte] & 0xC0) == 0x80) corte--;
+        return corte;
+    }
+
+    private String textoLinea(byte[] buf, int desde, int hasta, int numeroLinea) {
+        return "L" + numeroLinea + ": " + new String(buf, desde, hasta - desde, charset).trim();
+    }
+
+    private static int[] nuevoNodo() {
+        int[] h = new int[256];
+        Arrays.fill(h, -1);
+        return h;
+    }
+
+    private static int[] agregar(int[] arr, int k) {
+        if (arr == null) return new int[]{k};
+        int[] r = Arrays.copyOf(arr, arr.length + 1);
+        r[arr.length] = k;
+        return r;
+    }
+
+    private static int[] unir(int[] propias, int[] heredadas) {
+        if (propias == null) return heredadas;
+        if (heredadas == null) return propias;
+        int[] r = Arrays.copyOf(propias, propias.length + heredadas.length);
+        System.arraycopy(heredadas, 0, r, propias.length, heredadas.length);
+        return r;
+    }
+
+    // Resultado crudo de una pasada; el índice de cada arreglo/lista corresponde a cadenas.get(k)
+    static final class CoincidenciasMultiples {
+        final List<String> cadenas;
+        final int[] ocurrencias;
+        final List<List<String>> lineasPorCadena;
+        final List<String> lineas;
+
+        CoincidenciasMultiples(List<String> cadenas, int[] ocurrencias, List<List<String>> lineasPorCadena, List<String> lineas) {
+            this.cadenas = cadenas;
+            this.ocurrencias = ocurrencias;
+            this.lineasPorCadena = lineasPorCadena;
+            this.lineas = lineas;
+        }
+
+        int total() {
+            int t = 0;
+            for (int o : ocurrencias) t += o;
+            return t;
+        }
+    }
+}
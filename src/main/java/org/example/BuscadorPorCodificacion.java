@@ -0,0 +1,79 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * El buscador de {@link CharsetPorArchivo}: mira los primeros bytes de cada stream, decide la
+ * codificación y le pasa el stream (sin el BOM) al buscador de ese charset. La cadena se
+ * codifica una sola vez por charset, al crear el buscador.
+ * <p>
+ * Inmutable, como los demás buscadores.
+ */
+final class BuscadorPorCodificacion implements Buscador {
+
+    private static final Charset[] CHARSETS = {
+            StandardCharsets.UTF_8, StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE, StandardCharsets.ISO_8859_1
+    };
+
+    // Uno por charset de CHARSETS; null si la cadena no se puede escribir en ese charset
+    private final Buscador[] buscadores = new Buscador[CHARSETS.length];
+    private final String cadena;
+
+    private BuscadorPorCodificacion(ModoBusqueda modo, String cadena) {
+        this.cadena = cadena;
+        for (int k = 0; k < CHARSETS.length; k++) {
+            buscadores[k] = modo.crearBuscador(cadena, CHARSETS[k]);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException si en REGEX la expresión no es válida
+     */
+    static BuscadorPorCodificacion crear(ModoBusqueda modo, String cadena) {
+        return new BuscadorPorCodificacion(modo, cadena);
+    }
+
+    @Override
+    public BuscadorBytes.Coincidencias buscar(InputStream is, OpcionesDetalle detalle) throws IOException {
+        PushbackInputStream pis = new PushbackInputStream(is, ClasificadorArchivos.TAM_MUESTRA);
+        byte[] muestra = pis.readNBytes(ClasificadorArchivos.TAM_MUESTRA);
+        ClasificadorArchivos.Tipo tipo = ClasificadorArchivos.clasificar(muestra, muestra.length);
+        int bom = largoBom(muestra, tipo);
+        pis.unread(muestra, bom, muestra.length - bom);
+
+        Charset charset = CharsetPorArchivo.para(tipo);
+        Buscador buscador = buscadores[indice(charset)];
+        if (buscador == null) {
+            // EXACTA con caracteres que ese charset no tiene (p. ej. "€" en ISO-8859-1): no puede estar
+            return new BuscadorBytes.Coincidencias(0, new ArrayList<>());
+        }
+        return buscador.buscar(pis, detalle);
+    }
+
+    @Override
+    public String toString() {
+        return "BuscadorPorCodificacion[" + cadena + "]";
+    }
+
+    private static int indice(Charset charset) {
+        for (int k = 0; k < CHARSETS.length; k++) {
+            if (CHARSETS[k].equals(charset)) return k;
+        }
+        throw new IllegalStateException("Charset sin buscador: " + charset);
+    }
+
+    // El BOM no es texto: si se dejara, la primera línea empezaría con U+FEFF
+    private static int largoBom(byte[] b, ClasificadorArchivos.Tipo tipo) {
+        int n = b.length;
+        if (tipo == ClasificadorArchivos.Tipo.UTF8 && n >= 3
+                && (b[0] & 0xFF) == 0xEF && (b[1] & 0xFF) == 0xBB && (b[2] & 0xFF) == 0xBF) return 3;
+        if (tipo == ClasificadorArchivos.Tipo.UTF16LE && n >= 2 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xFE) return 2;
+        if (tipo == ClasificadorArchivos.Tipo.UTF16BE && n >= 2 && (b[0] & 0xFF) == 0xFE && (b[1] & 0xFF) == 0xFF) return 2;
+        return 0;
+    }
+}
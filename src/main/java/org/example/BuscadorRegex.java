@@ -0,0 +1,400 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Busca una expresión regular línea por línea.
+ * <p>
+ * Casi todas las líneas de un log no tienen la coincidencia, y decodificarlas para pasarlas
+ * por el Pattern es lo caro. Por eso, si la expresión trae un texto fijo obligatorio
+ * (p. ej. "timeout" en {@code "timeout after \\d+ ms"}), primero se buscan esos bytes con
+ * {@link BuscadorBytes} y solo las líneas que lo tienen se decodifican y se evalúan.
+ * Si no hay texto fijo seguro, se evalúan todas las líneas.
+ * <p>
+ * Con {@link MemoriaAcotada} activa las líneas se leen con {@link LectorLineas}: una línea más
+ * larga que el máximo se evalúa por segmentos solapados, y una coincidencia de más de
+ * {@link #SOLAPE_REGEX} caracteres que cruza el corte entre dos segmentos no se ve (en las
+ * cadenas literales el solape alcanza siempre). Por el prefiltro, de esas líneas solo se evalúa
+ * su principio.
+ * <p>
+ * Inmutable: el Pattern se compila una vez y cada pasada usa su propio Matcher.
+ */
+final class BuscadorRegex implements Buscador {
+
+    static final int SOLAPE_REGEX = 256;
+
+    private final Pattern patron;
+    private final BuscadorBytes prefiltro;   // null: se evalúa cada línea
+    private final Charset charset;
+    private final int solape;                // caracteres repetidos entre segmentos de una línea larga
+
+    private BuscadorRegex(Pattern patron, BuscadorBytes prefiltro, Charset charset, int solape) {
+        this.patron = patron;
+        this.prefiltro = prefiltro;
+        this.charset = charset;
+        this.solape = solape;
+    }
+
+    /**
+     * @throws IllegalArgumentException si la expresión no es válida
+     */
+    static BuscadorRegex compilar(String regex, Charset charset) {
+        Pattern patron;
+        try {
+            patron = Pattern.compile(regex);
+        } catch (PatternSyntaxException ex) {
+            throw new IllegalArgumentException("Expresión regular inválida: " + ex.getDescription(), ex);
+        }
+        String literal = literalObligatorio(regex);
+        BuscadorBytes prefiltro = literal.isEmpty() ? null : BuscadorBytes.paraCadena(literal, charset);
+        return new BuscadorRegex(patron, prefiltro, charset, SOLAPE_REGEX);
+    }
+
+    /**
+     * Cadena literal sin distinguir mayúsculas con reglas Unicode (cuando no se puede por bytes).
+     */
+    static BuscadorRegex sinMayusculas(String cadena, Charset charset) {
+        Pattern patron = Pattern.compile(Pattern.quote(cadena), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return new BuscadorRegex(patron, null, charset, cadena.length() - 1);
+    }
+
+    /**
+     * Cadena literal, distinguiendo mayúsculas, para los charsets que no se pueden buscar por
+     * bytes. Cuenta igual que {@code contarOcurrencias} sobre cada línea.
+     */
+    static BuscadorRegex literal(String cadena, Charset charset) {
+        return new BuscadorRegex(Pattern.compile(Pattern.quote(cadena)), null, charset, cadena.length() - 1);
+    }
+
+    @Override
+    public BuscadorBytes.Coincidencias buscar(InputStream is, OpcionesDetalle detalle) throws IOException {
+        Conteo conteo = new Conteo(patron.matcher(""), detalle);
+
+        // El contexto necesita también las líneas sin el texto fijo: ahí no sirve el prefiltro
+        MemoriaAcotada memoria = MemoriaAcotada.activa();
+        if (prefiltro != null && !detalle.tieneContexto()) {
+            prefiltro.lineasConCoincidencia(is, conteo::linea);
+        } else if (memoria != null) {
+            // El Reader y un segmento ocupan más o menos lo de un buffer del pool
+            memoria.reservar();
+            try {
+                LectorLineas lector = new LectorLineas(new InputStreamReader(is, charset), memoria.maxLinea, solape);
+                String segmento;
+                while ((segmento = lector.siguiente()) != null) {
+                    conteo.segmento(segmento, lector.numero(), -1, lector.caracteresAntes());
+                }
+            } finally {
+                memoria.liberar();
+            }
+        } else {
+            // No se cierra: el stream es del llamador
+            BufferedReader br = new BufferedReader(new InputStreamReader(is, charset));
+            String line;
+            int numeroLinea = 0;
+            while ((line = br.readLine()) != null) {
+                // Leyendo por líneas no se sabe el offset en bytes
+                conteo.linea(line, ++numeroLinea, -1);
+            }
+        }
+        conteo.terminar();
+        return new BuscadorBytes.Coincidencias(conteo.ocurrencias, conteo.detalle);
+    }
+
+    /**
+     * El tramo de texto fijo más largo que toda coincidencia tiene que contener, o "" si no se
+     * puede asegurar ninguno. Es conservador: ante cualquier construcción que no entiende
+     * (alternativas, grupos, clases, flags en línea) corta el tramo o se rinde.
+     */
+    static String literalObligatorio(String regex) {
+        // Alternativas y flags en línea ((?i), (?x)...) cambian qué es obligatorio: sin prefiltro
+        if (regex.contains("|") || regex.contains("(?") || regex.contains("\\Q")) {
+            return "";
+        }
+
+        String mejor = "";
+        StringBuilder actual = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char literal;
+            int siguiente;
+
+            if (c == '\\' && i + 1 < regex.length()) {
+                char escapado = regex.charAt(i + 1);
+                if (Character.isLetterOrDigit(escapado)) {
+                    // \d, \w, \b, \t, \x41... no son un carácter fijo simple: se salta entero,
+                    // con sus argumentos ({L}, 41, <nombre>...), y lo que lo repita
+                    mejor = masLargo(mejor, actual);
+                    i = finEscape(regex, i);
+                    if (i < 0) return "";
+                    i = saltarCuantificador(regex, i);
+                    continue;
+                }
+                literal = escapado;
+                siguiente = i + 2;
+            } else if (c == '[') {
+                mejor = masLargo(mejor, actual);
+                i = saltarClase(regex, i);
+                i = saltarCuantificador(regex, i);
+                continue;
+            } else if (c == '(') {
+                mejor = masLargo(mejor, actual);
+                i = saltarGrupo(regex, i);
+                i = saltarCuantificador(regex, i);
+                continue;
+            } else if (c == '{') {
+                // Un cuantificador suelto: el que sigue a un literal se trata más abajo
+                mejor = masLargo(mejor, actual);
+                i = saltarCuantificador(regex, i);
+                continue;
+            } else if (".^$)*+?".indexOf(c) >= 0) {
+                mejor = masLargo(mejor, actual);
+                i = saltarCuantificador(regex, i + 1);
+                continue;
+            } else {
+                literal = c;
+                siguiente = i + 1;
+            }
+
+            char q = siguiente < regex.length() ? regex.charAt(siguiente) : 0;
+            if (q == '*' || q == '?' || q == '{') {
+                // El carácter puede no estar
+                mejor = masLargo(mejor, actual);
+                i = saltarCuantificador(regex, siguiente);
+            } else if (q == '+') {
+                // Está al menos una vez, pero lo que sigue ya no va pegado
+                actual.append(literal);
+                mejor = masLargo(mejor, actual);
+                i = saltarCuantificador(regex, siguiente);
+            } else {
+                actual.append(literal);
+                i = siguiente;
+            }
+        }
+        return masLargo(mejor, actual);
+    }
+
+    // Cierra el tramo actual y se queda con el más largo
+    private static String masLargo(String mejor, StringBuilder actual) {
+        String tramo = actual.toString();
+        actual.setLength(0);
+        return tramo.length() > mejor.length() ? tramo : mejor;
+    }
+
+    // i apunta a la barra de un escape con letra o dígito: regresa la posición después de él y
+    // sus argumentos (\p{L}, \x41, \0101, \cA, \k<nombre>...), o -1 si no se sabe dónde termina
+    private static int finEscape(String regex, int i) {
+        int j = i + 2;
+        if (j > regex.length()) return -1;
+        char escapado = regex.charAt(i + 1);
+        switch (escapado) {
+            case 'p', 'P' -> {
+                // \p{Lu} o la forma corta \pL
+                if (j < regex.length() && regex.charAt(j) == '{') return finLlaves(regex, j);
+                return j < regex.length() ? j + 1 : -1;
+            }
+            case 'N' -> {
+                return j < regex.length() && regex.charAt(j) == '{' ? finLlaves(regex, j) : -1;
+            }
+            case 'b' -> {
+                // \b{g}
+                return j < regex.length() && regex.charAt(j) == '{' ? finLlaves(regex, j) : j;
+            }
+            case 'x' -> {
+                if (j < regex.length() && regex.charAt(j) == '{') return finLlaves(regex, j);
+                return saltarDigitos(regex, j, 2, 16);
+            }
+            case 'u' -> {
+                return saltarDigitos(regex, j, 4, 16);
+            }
+            case '0' -> {
+                return saltarDigitos(regex, j, 3, 8);
+            }
+            case 'c' -> {
+                return j < regex.length() ? j + 1 : -1;
+            }
+            case 'k' -> {
+                int cierre = j < regex.length() && regex.charAt(j) == '<' ? regex.indexOf('>', j) : -1;
+                return cierre < 0 ? -1 : cierre + 1;
+            }
+            default -> {
+                if (escapado >= '1' && escapado <= '9') {
+                    // Referencia a un grupo: puede tener más de un dígito
+                    return saltarDigitos(regex, i + 1, Integer.MAX_VALUE, 10);
+                }
+                // El resto (\d, \w, \s, \t, \R, \z...) es una sola letra
+                return Character.isLetter(escapado) ? j : -1;
+            }
+        }
+    }
+
+    // Dentro de una clase o un grupo: un \cX o un \x{..} no tienen que cortarlos antes de tiempo
+    private static int saltarEscape(String regex, int i) {
+        if (i + 1 >= regex.length() || !Character.isLetterOrDigit(regex.charAt(i + 1))) return i + 2;
+        int fin = finEscape(regex, i);
+        return fin < 0 ? regex.length() : fin;
+    }
+
+    // i apunta a '{': regresa la posición después de la '}', o -1 si no se cierra
+    private static int finLlaves(String regex, int i) {
+        int cierre = regex.indexOf('}', i);
+        return cierre < 0 ? -1 : cierre + 1;
+    }
+
+    // Salta hasta max dígitos en la base dada; -1 si no hay ninguno
+    private static int saltarDigitos(String regex, int i, int max, int base) {
+        int j = i;
+        while (j < regex.length() && j - i < max && Character.digit(regex.charAt(j), base) >= 0) j++;
+        return j > i ? j : -1;
+    }
+
+    // i apunta a '[': regresa la posición después del ']' que la cierra
+    private static int saltarClase(String regex, int i) {
+        int j = i + 1;
+        if (j < regex.length() && regex.charAt(j) == '^') j++;
+        if (j < regex.length() && regex.charAt(j) == ']') j++;
+        int anidadas = 0;
+        while (j < regex.length()) {
+            char c = regex.charAt(j);
+            if (c == '\\') {
+                j = saltarEscape(regex, j);
+                continue;
+            }
+            if (c == '[') anidadas++;
+            if (c == ']' && anidadas-- == 0) return j + 1;
+            j++;
+        }
+        return j;
+    }
+
+    // i apunta a '(': regresa la posición después del ')' que lo cierra
+    private static int saltarGrupo(String regex, int i) {
+        int nivel = 0;
+        int j = i;
+        while (j < regex.length()) {
+            char c = regex.charAt(j);
+            if (c == '\\') {
+                j = saltarEscape(regex, j);
+                continue;
+            }
+            if (c == '[') {
+                j = saltarClase(regex, j);
+                continue;
+            }
+            if (c == '(') nivel++;
+            if (c == ')' && --nivel == 0) return j + 1;
+            j++;
+        }
+        return j;
+    }
+
+    // Salta *, +, ?, {n,m} y su sufijo perezoso/posesivo, si los hay
+    private static int saltarCuantificador(String regex, int i) {
+        if (i >= regex.length()) return i;
+        char c = regex.charAt(i);
+        if (c == '{') {
+            int cierre = regex.indexOf('}', i);
+            i = cierre < 0 ? regex.length() : cierre + 1;
+        } else if (c == '*' || c == '+' || c == '?') {
+            i++;
+        } else {
+            return i;
+        }
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) i++;
+        return i;
+    }
+
+    // Estado de una pasada: un Matcher reutilizado para todas las líneas
+    private static final class Conteo {
+        final Matcher matcher;
+        final DetalleLineas detalle;
+        int ocurrencias;
+
+        // Contexto "antes": las últimas líneas leídas, por número % antes
+        final int antes;
+        final String[] anteriores;
+        final long[] offsets;
+
+        // La línea actual, que puede llegar en varios segmentos (ver LectorLineas): si va de
+        // contexto después se sabe recién cuando empieza la siguiente
+        int lineaActual;
+        String primerSegmento;
+        long offsetActual;
+        boolean conCoincidencia;
+        int finUltima;      // fin de la última coincidencia contada, en caracteres desde el inicio de la línea
+
+        Conteo(Matcher matcher, OpcionesDetalle opciones) {
+            this.matcher = matcher;
+            this.detalle = new DetalleLineas(opciones);
+            this.antes = opciones.tieneContexto() ? opciones.antes : 0;
+            this.anteriores = antes > 0 ? new String[antes] : null;
+            this.offsets = antes > 0 ? new long[antes] : null;
+        }
+
+        void linea(String texto, int numeroLinea, long offset) {
+            segmento(texto, numeroLinea, offset, 0);
+        }
+
+        /**
+         * Un segmento de la línea {@code numeroLinea} que empieza {@code caracteresAntes}
+         * caracteres después del inicio; la línea entera si es 0 y no vuelve a llegar.
+         */
+        void segmento(String texto, int numeroLinea, long offset, int caracteresAntes) {
+            boolean continuacion = numeroLinea == lineaActual;
+            if (!continuacion) {
+                terminar();
+                lineaActual = numeroLinea;
+                primerSegmento = texto;
+                offsetActual = offset;
+                conCoincidencia = false;
+                finUltima = 0;
+            }
+            matcher.reset(texto);
+            int enLinea = 0;
+            int columna = 0;
+            // Lo solapado con el segmento anterior que ya cayó en una coincidencia no se vuelve a contar
+            int desde = continuacion ? Math.max(0, finUltima - caracteresAntes) : 0;
+            boolean hay = desde == 0 ? matcher.find() : desde <= texto.length() && matcher.find(desde);
+            while (hay) {
+                if (enLinea++ == 0) columna = caracteresAntes + matcher.start() + 1;
+                finUltima = caracteresAntes + matcher.end();
+                hay = matcher.find();
+            }
+
+            if (enLinea > 0) {
+                ocurrencias += enLinea;
+                if (!conCoincidencia) {
+                    conCoincidencia = true;
+                    if (detalle.aceptaCoincidencia()) {
+                        for (int n = antes > 0 ? detalle.primeraAntes(numeroLinea) : numeroLinea; n < numeroLinea; n++) {
+                            detalle.agregar(DetalleLineas.Linea.deTexto(n, offsets[n % antes], 0, anteriores[n % antes]));
+                        }
+                        detalle.agregar(DetalleLineas.Linea.deTexto(numeroLinea, offset, columna, texto));
+                    } else if (detalle.esContextoDespues(numeroLinea)) {
+                        detalle.agregar(DetalleLineas.Linea.deTexto(numeroLinea, offsetActual, 0, primerSegmento));
+                    }
+                }
+            }
+
+            if (antes > 0 && !continuacion) {
+                anteriores[numeroLinea % antes] = texto;
+                offsets[numeroLinea % antes] = offset;
+            }
+        }
+
+        // Cierra la línea actual: sin coincidencia, puede ir de contexto después
+        void terminar() {
+            if (primerSegmento != null && !conCoincidencia && detalle.esContextoDespues(lineaActual)) {
+                detalle.agregar(DetalleLineas.Linea.deTexto(lineaActual, offsetActual, 0, primerSegmento));
+            }
+            primerSegmento = null;
+        }
+    }
+}
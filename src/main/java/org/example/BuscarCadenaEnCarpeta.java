@@ -1,12 +1,23 @@
 package org.example;
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 public class BuscarCadenaEnCarpeta {
 
@@ -27,21 +38,14 @@ public class BuscarCadenaEnCarpeta {
         try {
             List<Resultado> resultados = buscarEnCarpeta(carpetaRaiz, cadenaABuscar, charset, true);
 
-            if (resultados.isEmpty()) {
-                System.out.println("No se encontró la cadena: \"" + cadenaABuscar + "\"");
-            } else {
-                System.out.println("Encontrado en " + resultados.size() + " archivo(s):");
-                for (Resultado r : resultados) {
-                    System.out.println("--------------------------------------------------");
-                    System.out.println("Archivo: " + r.rutaCompleta);
-                    System.out.println("Carpeta: " + r.carpeta);
-                    System.out.println("Nombre : " + r.nombreArchivo);
-                    System.out.println("Ocurrencias: " + r.ocurrencias);
-                    if (!r.lineasCoinciden.isEmpty()) {
-                        System.out.println("Líneas:");
-                        for (String linea : r.lineasCoinciden) {
-                            System.out.println("  " + linea);
-                        }
+            // La impresión va en su propio hilo y con buffer (-Dbusqueda.salida=jsonl|binario para procesarla)
+            try (SalidaResultados salida = SalidaResultados.consola()) {
+                if (resultados.isEmpty()) {
+                    salida.mensaje("No se encontró la cadena: \"" + cadenaABuscar + "\"");
+                } else {
+                    salida.mensaje("Encontrado en " + resultados.size() + " archivo(s):");
+                    for (Resultado r : resultados) {
+                        salida.escribir(r);
                     }
                 }
             }
@@ -58,16 +62,44 @@ public class BuscarCadenaEnCarpeta {
                                                   String cadena,
                                                   Charset charset,
                                                   boolean incluirDetalleLineas) throws IOException {
+        return buscarEnCarpeta(carpetaRaiz, cadena, charset, OpcionesBusqueda.de(incluirDetalleLineas));
+    }
 
-        if (carpetaRaiz == null || !Files.exists(carpetaRaiz) || !Files.isDirectory(carpetaRaiz)) {
-            throw new IllegalArgumentException("La ruta no existe o no es carpeta: " + carpetaRaiz);
-        }
-        if (cadena == null || cadena.isBlank()) {
-            throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
-        }
+    /**
+     * La búsqueda con todas sus opciones (ver {@link OpcionesBusqueda}):
+     * <ul>
+     *   <li>con más de un hilo los archivos se leen en paralelo y los resultados salen en el
+     *   mismo orden que en la búsqueda secuencial;</li>
+     *   <li>con cache, los archivos que no cambiaron desde una búsqueda igual se toman del cache
+     *   sin leerlos;</li>
+     *   <li>con ventana, de cada archivo se lee únicamente el tramo del rango de horas, ubicado
+     *   con búsqueda binaria (ver {@link VentanaTiempo}).</li>
+     * </ul>
+     */
+    public static List<Resultado> buscarEnCarpeta(Path carpetaRaiz,
+                                                  String cadena,
+                                                  Charset charset,
+                                                  OpcionesBusqueda opciones) throws IOException {
+
+        validarParametros(carpetaRaiz, cadena);
+        if (opciones.ventana != null) VentanaTiempo.validarCharset(charset);
+
+        return opciones.secuencial()
+                ? buscarEnSecuencia(carpetaRaiz, cadena, charset, opciones.detalle, opciones.modo, opciones.ventana)
+                : buscarEnParalelo(carpetaRaiz, cadena, charset, opciones.detalle, opciones.hilos, opciones.cache,
+                        opciones.modo, opciones.ventana);
+    }
+
+    private static List<Resultado> buscarEnSecuencia(Path carpetaRaiz,
+                                                     String cadena,
+                                                     Charset charset,
+                                                     OpcionesDetalle detalle,
+                                                     ModoBusqueda modo,
+                                                     VentanaTiempo ventana) throws IOException {
 
         final List<Resultado> encontrados = new ArrayList<>();
-        final String needle = cadena; // si quieres case-insensitive, cambia aquí
+        final String needle = cadena;
+        final Buscador buscador = modo.crearBuscador(needle, charset);
 
         // Recorre todo recursivo
         try (var stream = Files.walk(carpetaRaiz)) {
@@ -75,14 +107,9 @@ public class BuscarCadenaEnCarpeta {
                     .filter(Files::isRegularFile)
                     .filter(path -> esArchivoTexto(path))
                     .forEach(path -> {
-                        try {
-                            Resultado r = buscarEnArchivo(path, needle, charset, incluirDetalleLineas);
-                            if (r != null) {
-                                encontrados.add(r);
-                            }
-                        } catch (Exception ex) {
-                            // Si hay archivos binarios o con encoding raro, no revienta todo.
-                            System.err.println("No se pudo leer: " + path + " -> " + ex.getMessage());
+                        Resultado r = buscarSinFallar(path, needle, buscador, charset, detalle, ventana, null);
+                        if (r != null) {
+                            encontrados.add(r);
                         }
                     });
         }
@@ -90,29 +117,361 @@ public class BuscarCadenaEnCarpeta {
         return encontrados;
     }
 
+    private static List<Resultado> buscarEnParalelo(Path carpetaRaiz,
+                                                    String cadena,
+                                                    Charset charset,
+                                                    OpcionesDetalle detalle,
+                                                    int hilos,
+                                                    CacheResultados cache,
+                                                    ModoBusqueda modo,
+                                                    VentanaTiempo ventana) throws IOException {
+
+        final String needle = cadena;
+        final Buscador buscador = modo.crearBuscador(needle, charset);
+
+        // Primero listamos (barato), luego repartimos la lectura (caro) entre los hilos
+        List<Path> archivos;
+        long inicioRecorrido = System.nanoTime();
+        try (var stream = Files.walk(carpetaRaiz)) {
+            archivos = stream
+                    .filter(Files::isRegularFile)
+                    .filter(path -> esArchivoTexto(path))
+                    .toList();
+        }
+        MetricasBusqueda.recorrido(carpetaRaiz, System.nanoTime() - inicioRecorrido, archivos.size());
+
+        // La exacta conserva las claves de antes (caches ya guardados siguen sirviendo)
+        final String claveModo = "texto:" + detalle.clave()
+                + (modo == ModoBusqueda.EXACTA ? "" : ":" + modo)
+                + (ventana == null ? "" : ":" + ventana.clave());
+
+        return EjecutorParalelo.procesar(archivos, hilos, path -> {
+            if (cache != null) {
+                return buscarConCache(path, needle, buscador, charset, detalle, ventana, claveModo, cache);
+            }
+            Resultado r = buscarSinFallar(path, needle, buscador, charset, detalle, ventana, null);
+            return r != null ? List.of(r) : List.of();
+        });
+    }
+
+    /**
+     * Busca en un solo archivo repartiéndolo entre varios hilos: el archivo se parte en tramos
+     * que terminan en un '\n', cada tramo se lee mapeado en memoria y se busca por su cuenta, y
+     * al final se suman las ocurrencias y se renumeran las líneas. El resultado es el mismo que
+     * el de la lectura secuencial (mismos números de línea, mismas primeras líneas del detalle).
+     * <p>
+     * Las búsquedas paralelas de carpetas hacen lo mismo solas con los archivos desde
+     * {@link #UMBRAL_ARCHIVO_GRANDE}: los tramos se reparten entre los mismos workers que
+     * leen los demás archivos.
+     * <p>
+     * Solo para charsets de un byte por salto de línea (UTF-8, US-ASCII, ISO-8859-1) y sin
+     * líneas de contexto; si no, se lee en secuencia.
+     *
+     * @param hilos cantidad de workers; si es <= 0 usa uno por núcleo
+     * @return el resultado, o null si el archivo no tiene la cadena
+     */
+    public static Resultado buscarEnArchivoGrande(Path archivo,
+                                                  String cadena,
+                                                  Charset charset,
+                                                  OpcionesDetalle detalle,
+                                                  ModoBusqueda modo,
+                                                  int hilos) throws IOException {
+        if (archivo == null || !Files.isRegularFile(archivo)) {
+            throw new IllegalArgumentException("La ruta no existe o no es archivo: " + archivo);
+        }
+        if (cadena == null || cadena.isBlank()) {
+            throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
+        }
+
+        final Buscador buscador = modo.crearBuscador(cadena, charset);
+        if (buscador == null || !admiteTramos(charset, detalle)) {
+            return buscarEnArchivo(archivo, cadena, buscador, charset, detalle, null, null);
+        }
+
+        MedicionArchivo m = MetricasBusqueda.iniciar(archivo);
+        Tramo t;
+        try {
+            // Un solo elemento: corre dentro de un worker y los tramos se reparten en ese pool
+            List<Tramo> r = EjecutorParalelo.procesar(List.of(archivo), hilos, path -> {
+                try {
+                    return List.of(leerPorTramos(path, buscador, detalle, null, m, TAM_TRAMO));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            t = r.get(0);
+        } catch (UncheckedIOException ex) {
+            m.fallo(ex.getCause());
+            throw ex.getCause();
+        } catch (RuntimeException ex) {
+            m.fallo(ex);
+            throw ex;
+        }
+        m.terminar(t.ocurrencias);
+
+        if (t.ocurrencias > 0) {
+            Path carpeta = archivo.getParent();
+            return new Resultado(
+                    archivo.toAbsolutePath().toString(),
+                    carpeta != null ? carpeta.toAbsolutePath().toString() : "",
+                    archivo.getFileName().toString(),
+                    t.ocurrencias,
+                    t.lineas
+            );
+        }
+        return null;
+    }
+
+    /**
+     * Para logs que solo crecen: de cada archivo se lee únicamente lo que se agregó desde la
+     * búsqueda anterior con la misma consulta (ver {@link PuntosDeControl}). El resultado es el
+     * mismo que leyendo todo: las ocurrencias se acumulan y las líneas conservan su número.
+     * <p>
+     * Un archivo rotado o truncado se vuelve a leer completo. La última línea, si todavía no
+     * tiene salto, se lee en cada búsqueda hasta que se complete.
+     * <p>
+     * Con un charset que no sea de un byte por salto de línea (p. ej. UTF-16) se lee todo, como siempre.
+     *
+     * @param puntos dónde quedó cada archivo; se actualiza (guardarlo es cosa del llamador)
+     * @param hilos  cantidad de workers; si es <= 0 usa uno por núcleo
+     */
+    public static List<Resultado> buscarEnCarpetaIncremental(Path carpetaRaiz,
+                                                             String cadena,
+                                                             Charset charset,
+                                                             boolean incluirDetalleLineas,
+                                                             ModoBusqueda modo,
+                                                             int hilos,
+                                                             PuntosDeControl puntos) throws IOException {
+
+        validarParametros(carpetaRaiz, cadena);
+
+        final String needle = cadena;
+        final Buscador buscador = modo.crearBuscador(needle, charset);
+        final String consulta = modo + "|" + incluirDetalleLineas + "|" + charset.name() + "|" + cadena;
+
+        List<Path> archivos;
+        long inicioRecorrido = System.nanoTime();
+        try (var stream = Files.walk(carpetaRaiz)) {
+            archivos = stream
+                    .filter(Files::isRegularFile)
+                    .filter(path -> esArchivoTexto(path))
+                    .toList();
+        }
+        MetricasBusqueda.recorrido(carpetaRaiz, System.nanoTime() - inicioRecorrido, archivos.size());
+
+        // Los offsets y saltos se cuentan de a un byte: UTF-16 (o detectar por archivo) lee todo
+        final boolean porPuntos = buscador != null && BuscadorBytes.unByteParaSaltos(charset);
+
+        List<Resultado> resultados = EjecutorParalelo.procesar(archivos, hilos, path -> {
+            Resultado r;
+            if (!porPuntos) {
+                r = buscarSinFallar(path, needle, buscador, charset, OpcionesDetalle.de(incluirDetalleLineas), null, null);
+            } else {
+                try {
+                    r = buscarDesdePunto(path, buscador, incluirDetalleLineas, consulta, puntos);
+                } catch (Exception ex) {
+                    // El punto queda como estaba: la próxima vez se intenta desde ahí
+                    System.err.println("No se pudo leer: " + path + " -> " + ex.getMessage());
+                    r = null;
+                }
+            }
+            return r != null ? List.of(r) : List.of();
+        });
+
+        puntos.retener(carpetaRaiz, archivos);
+        return resultados;
+    }
+
+    /**
+     * Búsqueda "al vuelo": cada Resultado se entrega a {@code alEncontrar} en cuanto se encuentra,
+     * sin esperar a recorrer todo ni guardar la lista. El orden depende de qué archivo termina primero.
+     * <p>
+     * Con {@link ControlBusqueda#detenerTras} o {@link ControlBusqueda#cancelar} se deja de
+     * recorrer y leer de inmediato.
+     *
+     * @param hilos cantidad de workers; si es <= 0 usa uno por núcleo
+     */
+    public static void buscarEnCarpetaAlVuelo(Path carpetaRaiz,
+                                              String cadena,
+                                              Charset charset,
+                                              boolean incluirDetalleLineas,
+                                              int hilos,
+                                              ControlBusqueda control,
+                                              Consumer<Resultado> alEncontrar) throws IOException {
+
+        validarParametros(carpetaRaiz, cadena);
+
+        final String needle = cadena;
+        final Buscador buscador = ModoBusqueda.EXACTA.crearBuscador(needle, charset);
+
+        try (var stream = Files.walk(carpetaRaiz)) {
+            EjecutorParalelo.procesarAlVuelo(
+                    stream.filter(Files::isRegularFile).filter(path -> esArchivoTexto(path)),
+                    hilos,
+                    control,
+                    path -> {
+                        Resultado r = buscarSinFallar(path, needle, buscador, charset, OpcionesDetalle.de(incluirDetalleLineas), null, control);
+                        return r != null ? List.of(r) : List.of();
+                    },
+                    r -> r.ocurrencias,
+                    alEncontrar);
+        }
+    }
+
+    /**
+     * Modo solo conteo: no arma Resultados ni guarda líneas.
+     *
+     * @return total de ocurrencias (también quedan en {@code control.resultados()}/{@code ocurrencias()})
+     */
+    public static long contarEnCarpeta(Path carpetaRaiz,
+                                       String cadena,
+                                       Charset charset,
+                                       int hilos,
+                                       ControlBusqueda control) throws IOException {
+        buscarEnCarpetaAlVuelo(carpetaRaiz, cadena, charset, false, hilos, control, null);
+        return control.ocurrencias();
+    }
+
+    private static void validarParametros(Path carpetaRaiz, String cadena) {
+        if (carpetaRaiz == null || !Files.exists(carpetaRaiz) || !Files.isDirectory(carpetaRaiz)) {
+            throw new IllegalArgumentException("La ruta no existe o no es carpeta: " + carpetaRaiz);
+        }
+        if (cadena == null || cadena.isBlank()) {
+            throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
+        }
+    }
+
+    private static Resultado buscarSinFallar(Path path,
+                                             String needle,
+                                             Buscador buscador,
+                                             Charset charset,
+                                             OpcionesDetalle detalle,
+                                             VentanaTiempo ventana,
+                                             ControlBusqueda control) {
+        try {
+            return buscarEnArchivo(path, needle, buscador, charset, detalle, ventana, control);
+        } catch (Exception ex) {
+            // Si hay archivos binarios o con encoding raro, no revienta todo.
+            System.err.println("No se pudo leer: " + path + " -> " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // Si el archivo no cambió desde una búsqueda igual, no se vuelve a leer
+    private static List<Resultado> buscarConCache(Path path,
+                                                  String needle,
+                                                  Buscador buscador,
+                                                  Charset charset,
+                                                  OpcionesDetalle detalle,
+                                                  VentanaTiempo ventana,
+                                                  String claveModo,
+                                                  CacheResultados cache) {
+        // Tamaño/fecha antes de leer: si el archivo cambia mientras tanto, la próxima vez no coincide
+        CacheResultados.Clave clave = CacheResultados.clave(path, needle, charset, claveModo);
+        if (clave != null) {
+            List<CacheResultados.Hallazgo> guardados = cache.obtener(clave);
+            if (guardados != null) {
+                List<Resultado> rs = new ArrayList<>();
+                for (CacheResultados.Hallazgo h : guardados) {
+                    rs.add(new Resultado(h.rutaCompleta, h.carpeta, h.nombreArchivo, h.ocurrencias, new ArrayList<>(h.lineas)));
+                }
+                return rs;
+            }
+        }
+
+        Resultado r;
+        try {
+            r = buscarEnArchivo(path, needle, buscador, charset, detalle, ventana, null);
+        } catch (Exception ex) {
+            // Los errores no se guardan: la próxima vez se vuelve a intentar
+            System.err.println("No se pudo leer: " + path + " -> " + ex.getMessage());
+            return List.of();
+        }
+
+        if (clave != null) {
+            cache.poner(clave, r == null ? List.of() : List.of(new CacheResultados.Hallazgo(
+                    r.rutaCompleta, r.carpeta, r.nombreArchivo, r.ocurrencias, r.lineasCoinciden)));
+        }
+        return r != null ? List.of(r) : List.of();
+    }
+
+    /**
+     * @param buscador búsqueda por bytes ya preparada; null si el charset no la permite
+     * @param ventana  rango de horas a leer; null para todo el archivo
+     * @param control  para dejar de leer si la búsqueda se cancela; puede ser null
+     */
     private static Resultado buscarEnArchivo(Path archivo,
                                              String needle,
+                                             Buscador buscador,
                                              Charset charset,
-                                             boolean incluirDetalleLineas) throws IOException {
+                                             OpcionesDetalle detalle,
+                                             VentanaTiempo ventana,
+                                             ControlBusqueda control) throws IOException {
+        // Cada archivo leído queda medido (ver MetricasBusqueda), también si falla
+        MedicionArchivo m = MetricasBusqueda.iniciar(archivo);
+        Resultado r;
+        try {
+            r = leerArchivo(archivo, needle, buscador, charset, detalle, ventana, control, m);
+        } catch (IOException | RuntimeException ex) {
+            m.fallo(ex);
+            throw ex;
+        }
+        m.terminar(r != null ? r.ocurrencias : 0);
+        return r;
+    }
+
+    private static Resultado leerArchivo(Path archivo,
+                                         String needle,
+                                         Buscador buscador,
+                                         Charset charset,
+                                         OpcionesDetalle detalle,
+                                         VentanaTiempo ventana,
+                                         ControlBusqueda control,
+                                         MedicionArchivo m) throws IOException {
 
         int ocurrencias = 0;
         int numeroLinea = 0;
 
-        // Para no imprimir líneas infinitas, guardamos máximo 20
+        // Para no imprimir líneas infinitas, se guardan como máximo detalle.maxLineas
         List<String> lineas = new ArrayList<>();
 
-        try (BufferedReader br = Files.newBufferedReader(archivo, charset)) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                numeroLinea++;
+        // Con ventana solo se lee su tramo; si el archivo no tiene nada del rango, ni eso
+        InputStream tramo = null;
+        if (ventana != null) {
+            tramo = ventana.abrir(archivo);
+            if (tramo == null) return null;
+        }
+
+        if (tramo == null && buscador != null && porTramos(archivo, charset, detalle)) {
+            // Archivo grande dentro de una búsqueda paralela: los tramos se reparten entre los workers
+            Tramo t = leerPorTramos(archivo, buscador, detalle, control, m, TAM_TRAMO);
+            ocurrencias = t.ocurrencias;
+            lineas = t.lineas;
+        } else if (buscador != null) {
+            // Camino rápido: se busca sobre los bytes y solo se decodifican las líneas con coincidencia
+            try (InputStream is = m.lectura(tramo != null ? tramo : Files.newInputStream(archivo))) {
+                m.abierto();
+                BuscadorBytes.Coincidencias c = buscador.buscar(control != null ? control.envolver(is) : is, detalle);
+                ocurrencias = c.ocurrencias;
+                lineas = c.lineas;
+            }
+        } else {
+            try (BufferedReader br = tramo != null
+                    ? new BufferedReader(new InputStreamReader(tramo, charset))
+                    : Files.newBufferedReader(archivo, charset)) {
+                m.abierto();
+                String line;
+                while ((line = br.readLine()) != null && (control == null || !control.cancelada())) {
+                    numeroLinea++;
 
-                // Búsqueda "case-sensitive"
-                int count = contarOcurrencias(line, needle);
-                if (count > 0) {
-                    ocurrencias += count;
+                    // Búsqueda "case-sensitive"
+                    int count = contarOcurrencias(line, needle);
+                    if (count > 0) {
+                        ocurrencias += count;
 
-                    if (incluirDetalleLineas && lineas.size() < 20) {
-                        lineas.add("L" + numeroLinea + ": " + line.trim());
+                        if (lineas.size() < detalle.maxLineas) {
+                            lineas.add("L" + numeroLinea + ": " + line.trim());
+                        }
                     }
                 }
             }
@@ -125,12 +484,350 @@ public class BuscarCadenaEnCarpeta {
                     carpeta != null ? carpeta.toAbsolutePath().toString() : "",
                     archivo.getFileName().toString(),
                     ocurrencias,
-                    lineas
+                    // Con ventana cuentan desde el tramo leído: no pueden parecer del archivo
+                    ventana != null ? VentanaTiempo.numerosRelativos(lineas) : lineas
             );
         }
         return null;
     }
 
+    private static Resultado buscarDesdePunto(Path archivo,
+                                              Buscador buscador,
+                                              boolean incluirDetalleLineas,
+                                              String consulta,
+                                              PuntosDeControl puntos) throws IOException {
+        MedicionArchivo m = MetricasBusqueda.iniciar(archivo);
+        Resultado r;
+        try {
+            r = leerDesdePunto(archivo, buscador, incluirDetalleLineas, consulta, puntos, m);
+        } catch (IOException | RuntimeException ex) {
+            m.fallo(ex);
+            throw ex;
+        }
+        m.terminar(r != null ? r.ocurrencias : 0);
+        return r;
+    }
+
+    private static Resultado leerDesdePunto(Path archivo,
+                                            Buscador buscador,
+                                            boolean incluirDetalleLineas,
+                                            String consulta,
+                                            PuntosDeControl puntos,
+                                            MedicionArchivo m) throws IOException {
+
+        try (FileChannel ch = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            m.abierto();
+            String identidad = PuntosDeControl.identidad(Files.readAttributes(archivo, BasicFileAttributes.class));
+            long tamano = ch.size();
+
+            PuntosDeControl.Punto p = puntos.obtener(archivo, consulta);
+            if (p == null || !p.identidad.equals(identidad) || tamano < p.offset
+                    || PuntosDeControl.huella(ch, p.offset) != p.huella) {
+                // Nuevo, rotado o truncado: desde el principio
+                p = PuntosDeControl.Punto.inicial(identidad);
+            }
+
+            // Solo se avanza el punto hasta la última línea completa
+            long finCompleto = despuesDelUltimoSalto(ch, p.offset, tamano);
+            if (finCompleto > p.offset) {
+                Tramo t = leerTramo(ch, p.offset, finCompleto, buscador, incluirDetalleLineas, p, m);
+                List<String> detalle = new ArrayList<>(p.detalle);
+                detalle.addAll(t.lineas);
+                p = new PuntosDeControl.Punto(identidad, finCompleto, PuntosDeControl.huella(ch, finCompleto),
+                        p.lineas + t.saltos, p.ocurrencias + t.ocurrencias, detalle);
+                puntos.poner(archivo, consulta, p);
+            } else if (p.offset == 0) {
+                puntos.poner(archivo, consulta, p);
+            }
+
+            int ocurrencias = p.ocurrencias;
+            List<String> lineas = new ArrayList<>(p.detalle);
+            if (finCompleto < tamano) {
+                Tramo t = leerTramo(ch, finCompleto, tamano, buscador, incluirDetalleLineas, p, m);
+                ocurrencias += t.ocurrencias;
+                lineas.addAll(t.lineas);
+            }
+
+            if (ocurrencias > 0) {
+                Path carpeta = archivo.getParent();
+                return new Resultado(
+                        archivo.toAbsolutePath().toString(),
+                        carpeta != null ? carpeta.toAbsolutePath().toString() : "",
+                        archivo.getFileName().toString(),
+                        ocurrencias,
+                        lineas
+                );
+            }
+            return null;
+        }
+    }
+
+    // Lo encontrado entre dos offsets; las líneas ya numeradas desde el principio del archivo
+    private static final class Tramo {
+        int ocurrencias;
+        long saltos;
+        List<String> lineas = List.of();
+    }
+
+    private static Tramo leerTramo(FileChannel ch,
+                                   long desde,
+                                   long hasta,
+                                   Buscador buscador,
+                                   boolean incluirDetalleLineas,
+                                   PuntosDeControl.Punto anterior,
+                                   MedicionArchivo m) throws IOException {
+        int faltan = incluirDetalleLineas ? OpcionesDetalle.MAX_LINEAS_DEFAULT - anterior.detalle.size() : 0;
+        ch.position(desde);
+        // No se cierra: cerraría el canal
+        ContadorSaltos is = new ContadorSaltos(m.lectura(Channels.newInputStream(ch)), hasta - desde);
+        BuscadorBytes.Coincidencias c = buscador.buscar(is, OpcionesDetalle.lineas(Math.max(faltan, 0)));
+
+        Tramo t = new Tramo();
+        t.ocurrencias = c.ocurrencias;
+        t.saltos = is.saltos;
+        if (!c.lineas.isEmpty()) {
+            t.lineas = new ArrayList<>(c.lineas.size());
+            for (String linea : c.lineas) {
+                t.lineas.add(renumerar(linea, anterior.lineas));
+            }
+        }
+        return t;
+    }
+
+    // "L3: texto" leído desde la línea 1000 es "L1003: texto"
+    private static String renumerar(String linea, long base) {
+        int dosPuntos = linea.indexOf(':');
+        return "L" + (Long.parseLong(linea, 1, dosPuntos, 10) + base) + linea.substring(dosPuntos);
+    }
+
+    // Lee hacia atrás desde el final; si no hay ningún '\n' después de "desde", devuelve "desde"
+    private static long despuesDelUltimoSalto(FileChannel ch, long desde, long hasta) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(8192);
+        long fin = hasta;
+        while (fin > desde) {
+            long inicio = Math.max(desde, fin - bb.capacity());
+            bb.clear().limit((int) (fin - inicio));
+            while (bb.hasRemaining()) {
+                if (ch.read(bb, inicio + bb.position()) < 0) break;
+            }
+            for (int i = bb.position() - 1; i >= 0; i--) {
+                if (bb.get(i) == '\n') return inicio + i + 1;
+            }
+            fin = inicio;
+        }
+        return desde;
+    }
+
+    /**
+     * Deja leer solo {@code restantes} bytes y cuenta los fines de línea con el mismo criterio
+     * que readLine() (\n, \r y \r\n). El tramo empieza después de un '\n', así que no hay un \r
+     * pendiente del tramo anterior.
+     */
+    private static final class ContadorSaltos extends FilterInputStream {
+        long restantes;
+        long saltos;
+        boolean ultimoFueCR;
+
+        ContadorSaltos(InputStream in, long restantes) {
+            super(in);
+            this.restantes = restantes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] uno = new byte[1];
+            return read(uno, 0, 1) < 0 ? -1 : uno[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (restantes <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, restantes));
+            if (n <= 0) return n;
+            restantes -= n;
+
+            boolean cr = ultimoFueCR;
+            int fin = off + n;
+            for (int i = off; i < fin; i++) {
+                // De 8 en 8 mientras no haya bytes de control, como BuscadorBytes
+                while (i + 8 <= fin && !BuscadorBytes.hayControl((long) BuscadorBytes.OCHO_BYTES.get(b, i))) {
+                    cr = false;
+                    i += 8;
+                }
+                if (i == fin) break;
+                byte c = b[i];
+                if (c == '\n') {
+                    if (!cr) saltos++;
+                    cr = false;
+                } else if (c == '\r') {
+                    saltos++;
+                    cr = true;
+                } else {
+                    cr = false;
+                }
+            }
+            ultimoFueCR = cr;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Archivos desde este tamaño se buscan por tramos en paralelo cuando la búsqueda corre en
+     * varios hilos (ver {@link #buscarEnArchivoGrande}).
+     */
+    public static final long UMBRAL_ARCHIVO_GRANDE = 256L * 1024 * 1024;
+
+    // Cada tramo: bastantes para repartir bien entre los hilos, grandes para que el costo fijo no pese
+    private static final long TAM_TRAMO = 64L * 1024 * 1024;
+
+    private static boolean porTramos(Path archivo, Charset charset, OpcionesDetalle detalle) {
+        // Fuera de un pool los tramos se leerían uno tras otro: no se gana nada
+        if (!ForkJoinTask.inForkJoinPool() || !admiteTramos(charset, detalle)) return false;
+        try {
+            return Files.size(archivo) >= UMBRAL_ARCHIVO_GRANDE;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    // El contexto cruzaría tramos; en otros charsets un '\n' puede ser medio carácter
+    private static boolean admiteTramos(Charset charset, OpcionesDetalle detalle) {
+        return !detalle.tieneContexto() && BuscadorBytes.unByteParaSaltos(charset);
+    }
+
+    /**
+     * Parte el archivo en tramos de unos {@code tamTramo} bytes que terminan después de un '\n',
+     * los busca en el pool actual y junta todo como si se hubiera leído de corrido.
+     */
+    private static Tramo leerPorTramos(Path archivo,
+                                       Buscador buscador,
+                                       OpcionesDetalle detalle,
+                                       ControlBusqueda control,
+                                       MedicionArchivo m,
+                                       long tamTramo) throws IOException {
+        try (FileChannel ch = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            m.abierto();
+            List<long[]> limites = limitesDeTramos(ch, ch.size(), tamTramo);
+
+            List<Tramo> tramos;
+            try {
+                tramos = EjecutorParalelo.procesarEnPoolActual(limites, l -> {
+                    if (control != null && control.cancelada()) return List.of();
+                    try {
+                        return List.of(leerTramoMapeado(ch, l[0], l[1], buscador, detalle, control, m));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+
+            // Las líneas de cada tramo vienen numeradas desde 1: se corren con los saltos de los anteriores
+            Tramo total = new Tramo();
+            List<String> lineas = new ArrayList<>();
+            long base = 0;
+            for (Tramo t : tramos) {
+                total.ocurrencias += t.ocurrencias;
+                for (int i = 0; i < t.lineas.size() && lineas.size() < detalle.maxLineas; i++) {
+                    lineas.add(renumerar(t.lineas.get(i), base));
+                }
+                base += t.saltos;
+            }
+            total.saltos = base;
+            total.lineas = lineas;
+            return total;
+        }
+    }
+
+    // [desde, hasta) de cada tramo; todos menos el último terminan justo después de un '\n'
+    private static List<long[]> limitesDeTramos(FileChannel ch, long tamano, long tamTramo) throws IOException {
+        List<long[]> limites = new ArrayList<>();
+        ByteBuffer bb = ByteBuffer.allocate(8192);
+        long desde = 0;
+        while (desde < tamano) {
+            long hasta = Math.min(tamano, desde + tamTramo);
+            // Una línea más larga que el tramo lo estira hasta su fin
+            while (hasta < tamano) {
+                bb.clear();
+                int n = ch.read(bb, hasta);
+                if (n <= 0) {
+                    hasta = tamano;
+                    break;
+                }
+                int i = 0;
+                while (i < n && bb.get(i) != '\n') i++;
+                hasta += i < n ? i + 1 : n;
+                if (i < n) break;
+            }
+            limites.add(new long[]{desde, hasta});
+            desde = hasta;
+        }
+        return limites;
+    }
+
+    // Las líneas quedan numeradas desde el principio del tramo; "lineas" es la vista perezosa del buscador
+    private static Tramo leerTramoMapeado(FileChannel ch,
+                                          long desde,
+                                          long hasta,
+                                          Buscador buscador,
+                                          OpcionesDetalle detalle,
+                                          ControlBusqueda control,
+                                          MedicionArchivo m) throws IOException {
+        InputStream is = m.lectura(new LecturaMapeada(ch, desde, hasta));
+        // BuscadorBytes ya cuenta los saltos al buscar; para los demás se cuentan al pasar
+        ContadorSaltos contador = buscador instanceof BuscadorBytes ? null : new ContadorSaltos(is, hasta - desde);
+        if (contador != null) is = contador;
+        BuscadorBytes.Coincidencias c = buscador.buscar(control != null ? control.envolver(is) : is, detalle);
+
+        Tramo t = new Tramo();
+        t.ocurrencias = c.ocurrencias;
+        t.saltos = contador != null ? contador.saltos : c.saltos;
+        t.lineas = c.lineas;
+        return t;
+    }
+
+    /**
+     * Lee [desde, hasta) de un canal mapeando ventanas de a lo sumo {@link #TAM_TRAMO}; cada
+     * hilo tiene la suya, así que no comparte la posición del canal.
+     */
+    private static final class LecturaMapeada extends InputStream {
+        private final FileChannel ch;
+        private long pos;
+        private final long fin;
+        private MappedByteBuffer ventana;
+
+        LecturaMapeada(FileChannel ch, long desde, long hasta) {
+            this.ch = ch;
+            this.pos = desde;
+            this.fin = hasta;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] uno = new byte[1];
+            return read(uno, 0, 1) < 0 ? -1 : uno[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (ventana == null || !ventana.hasRemaining()) {
+                if (pos >= fin) return -1;
+                long largo = Math.min(fin - pos, TAM_TRAMO);
+                ventana = ch.map(FileChannel.MapMode.READ_ONLY, pos, largo);
+                pos += largo;
+            }
+            int n = Math.min(len, ventana.remaining());
+            ventana.get(b, off, n);
+            return n;
+        }
+    }
+
     private static int contarOcurrencias(String texto, String needle) {
         int count = 0;
         int idx = 0;
@@ -146,7 +843,8 @@ public class BuscarCadenaEnCarpeta {
         for (String ext : EXTENSIONES_TEXTO) {
             if (name.endsWith(ext)) return true;
         }
-        return false;
+        // Sin extensión de texto conocida (server.log.1, app.out...): se decide por el contenido
+        return ClasificadorArchivos.esTexto(path);
     }
 
     // DTO simple de resultados
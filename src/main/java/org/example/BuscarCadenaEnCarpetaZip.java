@@ -4,9 +4,15 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 public class BuscarCadenaEnCarpetaZip{
@@ -20,6 +26,9 @@ public class BuscarCadenaEnCarpetaZip{
     // Extensiones comprimidas que vamos a leer descomprimiendo
     private static final String[] EXTENSIONES_COMPRIMIDAS = { ".gz", ".zip" };
 
+    // Desde este tamaño (comprimido), un .gz se descomprime en otro hilo, en paralelo con la búsqueda
+    private static final long UMBRAL_GZ_PIPELINE = 32L * 1024 * 1024;
+
     public static void main(String[] args) {
 
         Path carpetaRaiz = Paths.get("C:\\Users\\lomas\\Desktop\\demo_busqueda_unica_prueba");
@@ -30,21 +39,14 @@ public class BuscarCadenaEnCarpetaZip{
         try {
             List<Resultado> resultados = buscarEnCarpeta(carpetaRaiz, cadenaABuscar, charset, true);
 
-            if (resultados.isEmpty()) {
-                System.out.println("No se encontró la cadena: \"" + cadenaABuscar + "\"");
-            } else {
-                System.out.println("Encontrado en " + resultados.size() + " archivo(s):");
-                for (Resultado r : resultados) {
-                    System.out.println("--------------------------------------------------");
-                    System.out.println("Archivo: " + r.rutaCompleta);
-                    System.out.println("Carpeta: " + r.carpeta);
-                    System.out.println("Nombre : " + r.nombreArchivo);
-                    System.out.println("Ocurrencias: " + r.ocurrencias);
-                    if (!r.lineasCoinciden.isEmpty()) {
-                        System.out.println("Líneas:");
-                        for (String linea : r.lineasCoinciden) {
-                            System.out.println("  " + linea);
-                        }
+            // La impresión va en su propio hilo y con buffer (-Dbusqueda.salida=jsonl|binario para procesarla)
+            try (SalidaResultados salida = SalidaResultados.consola()) {
+                if (resultados.isEmpty()) {
+                    salida.mensaje("No se encontró la cadena: \"" + cadenaABuscar + "\"");
+                } else {
+                    salida.mensaje("Encontrado en " + resultados.size() + " archivo(s):");
+                    for (Resultado r : resultados) {
+                        salida.escribir(r);
                     }
                 }
             }
@@ -61,95 +63,612 @@ public class BuscarCadenaEnCarpetaZip{
                                                   String cadena,
                                                   Charset charset,
                                                   boolean incluirDetalleLineas) throws IOException {
+        return buscarEnCarpeta(carpetaRaiz, cadena, charset, OpcionesBusqueda.de(incluirDetalleLineas));
+    }
 
-        if (carpetaRaiz == null || !Files.exists(carpetaRaiz) || !Files.isDirectory(carpetaRaiz)) {
-            throw new IllegalArgumentException("La ruta no existe o no es carpeta: " + carpetaRaiz);
+    /**
+     * La búsqueda con todas sus opciones (ver {@link OpcionesBusqueda}):
+     * <ul>
+     *   <li>con más de un hilo cada archivo (texto, .gz o .zip) es una tarea y los resultados
+     *   salen en el mismo orden que en la búsqueda secuencial;</li>
+     *   <li>con cache, los archivos (texto, .gz o .zip completo) que no cambiaron desde una
+     *   búsqueda igual se toman del cache sin abrirlos ni descomprimirlos;</li>
+     *   <li>con ventana, de los archivos de texto se lee el tramo del rango de horas y los .gz y
+     *   entradas de zip se dejan de leer al pasarlo (ver {@link VentanaTiempo}).</li>
+     * </ul>
+     */
+    public static List<Resultado> buscarEnCarpeta(Path carpetaRaiz,
+                                                  String cadena,
+                                                  Charset charset,
+                                                  OpcionesBusqueda opciones) throws IOException {
+
+        validarParametros(carpetaRaiz, cadena);
+        if (opciones.ventana != null) VentanaTiempo.validarCharset(charset);
+
+        return opciones.secuencial()
+                ? buscarEnSecuencia(carpetaRaiz, cadena, charset, opciones.detalle, opciones.modo, opciones.ventana)
+                : buscarEnParalelo(carpetaRaiz, cadena, charset, opciones.detalle, opciones.hilos, opciones.cache,
+                        opciones.modo, opciones.ventana);
+    }
+
+    private static List<Resultado> buscarEnSecuencia(Path carpetaRaiz,
+                                                     String cadena,
+                                                     Charset charset,
+                                                     OpcionesDetalle detalle,
+                                                     ModoBusqueda modo,
+                                                     VentanaTiempo ventana) throws IOException {
+
+        final List<Resultado> encontrados = new ArrayList<>();
+        final String needle = cadena;
+        final Buscador buscador = modo.crearBuscador(needle, charset);
+        final BusquedaEnStream busqueda = (is, archivo, nombre) ->
+                buscarEnInputStream(is, archivo, nombre, needle, buscador, charset, detalle);
+
+        try (var stream = Files.walk(carpetaRaiz)) {
+            stream
+                    .filter(Files::isRegularFile)
+                    .filter(BuscarCadenaEnCarpetaZip::esCandidato)
+                    .forEach(path -> encontrados.addAll(procesarArchivo(path, busqueda, ventana)));
         }
+
+        return encontrados;
+    }
+
+    private static List<Resultado> buscarEnParalelo(Path carpetaRaiz,
+                                                    String cadena,
+                                                    Charset charset,
+                                                    OpcionesDetalle detalle,
+                                                    int hilos,
+                                                    CacheResultados cache,
+                                                    ModoBusqueda modo,
+                                                    VentanaTiempo ventana) throws IOException {
+
+        final String needle = cadena;
+        final Buscador buscador = modo.crearBuscador(needle, charset);
+        final BusquedaEnStream busqueda = (is, archivo, nombre) ->
+                buscarEnInputStream(is, archivo, nombre, needle, buscador, charset, detalle);
+
+        List<Path> archivos;
+        long inicioRecorrido = System.nanoTime();
+        try (var stream = Files.walk(carpetaRaiz)) {
+            archivos = stream
+                    .filter(Files::isRegularFile)
+                    .filter(BuscarCadenaEnCarpetaZip::esCandidato)
+                    .toList();
+        }
+        MetricasBusqueda.recorrido(carpetaRaiz, System.nanoTime() - inicioRecorrido, archivos.size());
+
+        if (cache == null) {
+            return EjecutorParalelo.procesar(archivos, hilos, path -> procesarArchivo(path, busqueda, ventana));
+        }
+        // La exacta conserva las claves de antes (caches ya guardados siguen sirviendo)
+        final String claveModo = "zip:" + detalle.clave()
+                + (modo == ModoBusqueda.EXACTA ? "" : ":" + modo)
+                + (ventana == null ? "" : ":" + ventana.clave());
+        return EjecutorParalelo.procesar(archivos, hilos,
+                path -> procesarConCache(path, needle, charset, claveModo, busqueda, ventana, cache));
+    }
+
+    /**
+     * Lo mismo que {@link #buscarEnCarpeta(Path, String, Charset, OpcionesBusqueda)} en paralelo
+     * pero sobre una lista de archivos ya conocida (sin recorrer la carpeta), para el servicio:
+     * solo vuelve a leer los que cambiaron.
+     *
+     * @return una lista por archivo, en el mismo orden que {@code archivos} (vacía si no hubo nada)
+     */
+    static List<List<Resultado>> buscarPorArchivo(List<Path> archivos,
+                                                  String cadena,
+                                                  Charset charset,
+                                                  OpcionesDetalle detalle,
+                                                  int hilos,
+                                                  ModoBusqueda modo) {
         if (cadena == null || cadena.isBlank()) {
             throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
         }
 
-        final List<Resultado> encontrados = new ArrayList<>();
+        final Buscador buscador = modo.crearBuscador(cadena, charset);
+        final BusquedaEnStream busqueda = (is, archivo, nombre) ->
+                buscarEnInputStream(is, archivo, nombre, cadena, buscador, charset, detalle);
+
+        return EjecutorParalelo.procesar(archivos, hilos, path -> List.of(procesarArchivo(path, busqueda)));
+    }
+
+    /**
+     * La búsqueda de un archivo suelto (texto, .gz o .zip) con el buscador ya armado, para quien
+     * reparte los archivos por su cuenta, como {@link TrabajadorBusqueda}. Un archivo que no se
+     * puede leer da una lista vacía (y el aviso en System.err), igual que en el recorrido.
+     */
+    static Function<Path, List<Resultado>> busquedaPorArchivo(String cadena,
+                                                              Charset charset,
+                                                              OpcionesDetalle detalle,
+                                                              ModoBusqueda modo) {
+        if (cadena == null || cadena.isBlank()) {
+            throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
+        }
+
+        final Buscador buscador = modo.crearBuscador(cadena, charset);
+        final BusquedaEnStream busqueda = (is, archivo, nombre) ->
+                buscarEnInputStream(is, archivo, nombre, cadena, buscador, charset, detalle);
+
+        return path -> procesarArchivo(path, busqueda);
+    }
+
+    /**
+     * Búsqueda "al vuelo": cada Resultado se entrega a {@code alEncontrar} en cuanto se encuentra,
+     * sin esperar a recorrer todo ni guardar la lista (texto, .gz y entradas de zip). El orden depende de qué archivo termina primero.
+     * <p>
+     * Con {@link ControlBusqueda#detenerTras} o {@link ControlBusqueda#cancelar} se deja de
+     * recorrer y leer de inmediato.
+     *
+     * @param hilos cantidad de workers; si es <= 0 usa uno por núcleo
+     */
+    public static void buscarEnCarpetaAlVuelo(Path carpetaRaiz,
+                                              String cadena,
+                                              Charset charset,
+                                              boolean incluirDetalleLineas,
+                                              int hilos,
+                                              ControlBusqueda control,
+                                              Consumer<Resultado> alEncontrar) throws IOException {
+
+        validarParametros(carpetaRaiz, cadena);
+
         final String needle = cadena;
+        final Buscador buscador = ModoBusqueda.EXACTA.crearBuscador(needle, charset);
+        // Cada stream (archivo, gz o entrada) deja de dar bytes en cuanto se cancela
+        final BusquedaEnStream busqueda = (is, archivo, nombre) -> control.cancelada() ? null
+                : buscarEnInputStream(control.envolver(is), archivo, nombre, needle, buscador, charset, OpcionesDetalle.de(incluirDetalleLineas));
 
         try (var stream = Files.walk(carpetaRaiz)) {
-            stream
+            EjecutorParalelo.procesarAlVuelo(
+                    stream.filter(Files::isRegularFile).filter(BuscarCadenaEnCarpetaZip::esCandidato),
+                    hilos,
+                    control,
+                    path -> procesarArchivo(path, busqueda),
+                    r -> r.ocurrencias,
+                    alEncontrar);
+        }
+    }
+
+    /**
+     * Modo solo conteo: no arma Resultados ni guarda líneas.
+     *
+     * @return total de ocurrencias (también quedan en {@code control.resultados()}/{@code ocurrencias()})
+     */
+    public static long contarEnCarpeta(Path carpetaRaiz,
+                                       String cadena,
+                                       Charset charset,
+                                       int hilos,
+                                       ControlBusqueda control) throws IOException {
+        buscarEnCarpetaAlVuelo(carpetaRaiz, cadena, charset, false, hilos, control, null);
+        return control.ocurrencias();
+    }
+
+    /**
+     * Busca varias cadenas en una sola pasada: cada archivo, .gz y entrada de zip se lee
+     * (y se descomprime) una sola vez, sin importar cuántas cadenas sean.
+     * <p>
+     * En cada Resultado, {@code ocurrencias} es el total y {@code ocurrenciasPorCadena} /
+     * {@code lineasPorCadena} traen el detalle de cada cadena encontrada.
+     */
+    public static List<Resultado> buscarVariasEnCarpeta(Path carpetaRaiz,
+                                                        Collection<String> cadenas,
+                                                        Charset charset,
+                                                        boolean incluirDetalleLineas) throws IOException {
+        return buscarVariasEnCarpetaParalelo(carpetaRaiz, cadenas, charset, incluirDetalleLineas, 1);
+    }
+
+    /**
+     * Versión paralela de {@link #buscarVariasEnCarpeta}.
+     *
+     * @param hilos cantidad de workers; si es <= 0 usa uno por núcleo
+     */
+    public static List<Resultado> buscarVariasEnCarpetaParalelo(Path carpetaRaiz,
+                                                                Collection<String> cadenas,
+                                                                Charset charset,
+                                                                boolean incluirDetalleLineas,
+                                                                int hilos) throws IOException {
+
+        if (cadenas == null || cadenas.isEmpty()) {
+            throw new IllegalArgumentException("Hay que indicar al menos una cadena a buscar.");
+        }
+        for (String cadena : cadenas) {
+            validarParametros(carpetaRaiz, cadena);
+        }
+
+        // Sin repetidas, conservando el orden en que llegaron
+        final List<String> needles = new ArrayList<>(new LinkedHashSet<>(cadenas));
+        final BuscadorMultiple buscador = BuscadorMultiple.paraCadenas(needles, charset);
+        final BusquedaEnStream busqueda = (is, archivo, nombre) ->
+                buscarVariasEnInputStream(is, archivo, nombre, needles, buscador, charset, incluirDetalleLineas);
+
+        List<Path> archivos;
+        long inicioRecorrido = System.nanoTime();
+        try (var stream = Files.walk(carpetaRaiz)) {
+            archivos = stream
                     .filter(Files::isRegularFile)
-                    .forEach(path -> {
-                        try {
-                            String lower = path.getFileName().toString().toLowerCase(Locale.ROOT);
-
-                            // 1) Archivo de texto normal
-                            if (esArchivoTexto(path)) {
-                                Resultado r = buscarEnArchivoTexto(path, needle, charset, incluirDetalleLineas);
-                                if (r != null) encontrados.add(r);
-                                return;
-                            }
-
-                            // 2) .gz (leer descomprimiendo)
-                            if (lower.endsWith(".gz")) {
-                                Resultado r = buscarEnGz(path, needle, charset, incluirDetalleLineas);
-                                if (r != null) encontrados.add(r);
-                                return;
-                            }
-
-                            // 3) .zip (leer entradas)
-                            if (lower.endsWith(".zip")) {
-                                List<Resultado> rz = buscarEnZip(path, needle, charset, incluirDetalleLineas);
-                                encontrados.addAll(rz);
-                            }
-
-                        } catch (Exception ex) {
-                            System.err.println("No se pudo procesar: " + path + " -> " + ex.getMessage());
-                        }
-                    });
+                    .filter(BuscarCadenaEnCarpetaZip::esCandidato)
+                    .toList();
         }
+        MetricasBusqueda.recorrido(carpetaRaiz, System.nanoTime() - inicioRecorrido, archivos.size());
 
-        return encontrados;
+        return EjecutorParalelo.procesar(archivos, hilos, path -> procesarArchivo(path, busqueda));
+    }
+
+    /**
+     * Búsqueda apoyada en un índice de trigramas guardado en {@code archivoIndice}.
+     * <p>
+     * Primero pone el índice al día (solo reindexa archivos nuevos o con otro tamaño/fecha y
+     * olvida los borrados); luego solo lee los archivos, .gz y entradas de zip que pueden tener
+     * la cadena. Los resultados son los mismos que los de {@link #buscarEnCarpeta} con las mismas
+     * opciones. Si la cadena no se busca por bytes en ese charset (p. ej. {@code UTF-16} con BOM)
+     * o el modo no es {@link ModoBusqueda#EXACTA}, el índice se pone al día pero no descarta nada.
+     * <p>
+     * Los hilos de {@code opciones} sirven para indexar y para buscar.
+     *
+     * @throws IllegalArgumentException con {@link CharsetPorArchivo} (los trigramas son de una sola
+     *                                  codificación) o con cache (el índice ya evita leer)
+     */
+    public static List<Resultado> buscarConIndice(Path carpetaRaiz,
+                                                  String cadena,
+                                                  Charset charset,
+                                                  Path archivoIndice,
+                                                  OpcionesBusqueda opciones) throws IOException {
+
+        validarParametros(carpetaRaiz, cadena);
+        if (charset instanceof CharsetPorArchivo) {
+            throw new IllegalArgumentException("La búsqueda con índice necesita un charset fijo, no " + charset.name() + ".");
+        }
+        if (opciones.cache != null) {
+            throw new IllegalArgumentException("La búsqueda con índice no usa cache de resultados.");
+        }
+        if (opciones.ventana != null) VentanaTiempo.validarCharset(charset);
+        final int hilos = opciones.hilos;
+        final OpcionesDetalle detalle = opciones.detalle;
+        final VentanaTiempo ventana = opciones.ventana;
+
+        List<Path> archivos;
+        long inicioRecorrido = System.nanoTime();
+        try (var stream = Files.walk(carpetaRaiz)) {
+            archivos = stream
+                    .filter(Files::isRegularFile)
+                    .filter(BuscarCadenaEnCarpetaZip::esCandidato)
+                    .toList();
+        }
+        MetricasBusqueda.recorrido(carpetaRaiz, System.nanoTime() - inicioRecorrido, archivos.size());
+
+        IndiceTrigramas indice = IndiceTrigramas.cargar(archivoIndice);
+        final Set<String> sinIndice = actualizarIndice(indice, archivos, hilos);
+        indice.guardar(archivoIndice);
+
+        final String needle = cadena;
+        final Buscador buscador = opciones.modo.crearBuscador(needle, charset);
+        // El índice guarda los bytes tal cual están en disco: solo sirve si la búsqueda también
+        // compara esos bytes con needle.getBytes(charset). Sin distinguir mayúsculas, con regex,
+        // con UTF-16 (BOM delante, orden según cada archivo) o un charset que se decodifica, se
+        // leen todos los archivos
+        final Map<String, Set<String>> candidatos = opciones.modo == ModoBusqueda.EXACTA
+                && BuscadorBytes.paraCadena(needle, charset) != null
+                ? indice.candidatos(needle.getBytes(charset))
+                : null;
+
+        // Los documentos que el índice descarta ni se leen; los que no se pudieron indexar se leen enteros
+        final BusquedaEnStream busqueda = (is, archivo, nombre) -> {
+            String ruta = archivo.toAbsolutePath().toString();
+            if (candidatos != null && !sinIndice.contains(ruta)) {
+                Set<String> docs = candidatos.get(ruta);
+                if (docs == null || !docs.contains(rutaMostrable(archivo, nombre))) {
+                    return null;
+                }
+            }
+            return buscarEnInputStream(is, archivo, nombre, needle, buscador, charset, detalle);
+        };
+
+        List<Path> aLeer = archivos.stream()
+                .filter(path -> candidatos == null
+                        || candidatos.containsKey(path.toAbsolutePath().toString())
+                        || sinIndice.contains(path.toAbsolutePath().toString()))
+                .toList();
+
+        return EjecutorParalelo.procesar(aLeer, hilos, path -> procesarArchivo(path, busqueda, ventana));
+    }
+
+    /**
+     * Reindexa en paralelo solo lo que cambió desde la última vez. Un archivo que no se pudo leer
+     * entero (un .gz truncado, una entrada de zip rota, sin permisos) no se guarda en el índice:
+     * con documentos a medias quedaría vigente y sin buscarse para siempre. Se vuelve a intentar
+     * la próxima vez.
+     *
+     * @return las rutas que quedaron sin indexar
+     */
+    private static Set<String> actualizarIndice(IndiceTrigramas indice, List<Path> archivos, int hilos) {
+        Set<String> vivos = new HashSet<>();
+        List<Path> cambiados = new ArrayList<>();
+
+        for (Path path : archivos) {
+            String ruta = path.toAbsolutePath().toString();
+            vivos.add(ruta);
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!indice.vigente(ruta, attrs.size(), attrs.lastModifiedTime().toMillis())) {
+                    cambiados.add(path);
+                }
+            } catch (IOException ex) {
+                cambiados.add(path);
+            }
+        }
+        indice.conservarSolo(vivos);
+
+        Set<String> fallidos = ConcurrentHashMap.newKeySet();
+        List<ArchivoReindexado> nuevos = EjecutorParalelo.procesar(cambiados, hilos, path -> {
+            try {
+                // Tamaño/fecha antes de leer: si el archivo crece mientras tanto, se reindexa la próxima vez
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                // Sincronizada: las entradas de un zip se pueden indexar en paralelo
+                List<IndiceTrigramas.Documento> docs = Collections.synchronizedList(new ArrayList<>());
+                leerArchivo(path, new BusquedaEnStream() {
+                    @Override
+                    public Resultado buscar(InputStream is, Path archivo, String nombre) throws IOException {
+                        docs.add(IndiceTrigramas.indexar(rutaMostrable(archivo, nombre), is));
+                        return null;
+                    }
+
+                    // Con una entrada menos el archivo quedaría indexado a medias
+                    @Override
+                    public void entradaFallida(Path zipFile, String entrada, IOException ex) {
+                        throw new UncheckedIOException(zipFile + " :: " + entrada + " -> " + ex.getMessage(), ex);
+                    }
+                });
+                return List.of(new ArchivoReindexado(path.toAbsolutePath().toString(),
+                        attrs.size(), attrs.lastModifiedTime().toMillis(), docs));
+            } catch (IOException | RuntimeException ex) {
+                System.err.println("No se pudo indexar: " + path + " -> " + ex.getMessage());
+                fallidos.add(path.toAbsolutePath().toString());
+                return List.of();
+            }
+        });
+
+        for (ArchivoReindexado a : nuevos) {
+            indice.reemplazar(a.ruta, a.tamano, a.modificado, a.documentos);
+        }
+        return fallidos;
+    }
+
+    private static void validarParametros(Path carpetaRaiz, String cadena) {
+        if (carpetaRaiz == null || !Files.exists(carpetaRaiz) || !Files.isDirectory(carpetaRaiz)) {
+            throw new IllegalArgumentException("La ruta no existe o no es carpeta: " + carpetaRaiz);
+        }
+        if (cadena == null || cadena.isBlank()) {
+            throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
+        }
+    }
+
+    // .gz, .zip o texto (por extensión o por contenido): lo demás ni se abre
+    static boolean esCandidato(Path path) {
+        String lower = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return lower.endsWith(".gz") || lower.endsWith(".zip") || esArchivoTexto(path);
+    }
+
+    /**
+     * Procesa un archivo del recorrido. Nunca lanza: los errores se reportan y se regresa lista vacía.
+     */
+    private static List<Resultado> procesarArchivo(Path path, BusquedaEnStream busqueda) {
+        return procesarArchivo(path, busqueda, null);
+    }
+
+    private static List<Resultado> procesarArchivo(Path path, BusquedaEnStream busqueda, VentanaTiempo ventana) {
+        try {
+            return leerArchivo(path, busqueda, ventana);
+        } catch (Exception ex) {
+            System.err.println("No se pudo procesar: " + path + " -> " + ex.getMessage());
+        }
+        return List.of();
+    }
+
+    /**
+     * Le pasa a {@code lector} el contenido de un archivo del recorrido con los mismos lectores
+     * de la búsqueda: el texto tal cual, el .gz descomprimido o cada entrada de texto de un .zip
+     * (en paralelo si se llama desde un worker de {@link EjecutorParalelo}).
+     * Para procesos que no buscan una cadena, como {@link LogIPPorPuerto}.
+     */
+    static void leerContenido(Path path, LectorContenido lector) throws IOException {
+        leerArchivo(path, (is, archivo, nombre) -> {
+            lector.leer(is, archivo, nombre);
+            return null;
+        });
+    }
+
+    // Cada archivo leído queda medido (ver MetricasBusqueda), también si falla
+    private static List<Resultado> leerArchivo(Path path, BusquedaEnStream busqueda) throws IOException {
+        return leerArchivo(path, busqueda, null);
+    }
+
+    private static List<Resultado> leerArchivo(Path path, BusquedaEnStream busqueda, VentanaTiempo ventana) throws IOException {
+        MedicionArchivo m = MetricasBusqueda.iniciar(path);
+        List<Resultado> rs;
+        try {
+            rs = leerArchivo(path, busqueda, ventana, m);
+        } catch (IOException | RuntimeException ex) {
+            m.fallo(ex);
+            throw ex;
+        }
+        long ocurrencias = 0;
+        for (Resultado r : rs) ocurrencias += r.ocurrencias;
+        m.terminar(ocurrencias);
+        return rs;
+    }
+
+    private static List<Resultado> leerArchivo(Path path, BusquedaEnStream busqueda, VentanaTiempo ventana,
+                                               MedicionArchivo m) throws IOException {
+        String lower = path.getFileName().toString().toLowerCase(Locale.ROOT);
+
+        // Con ventana, los números de línea cuentan desde el tramo leído: no pueden parecer del archivo
+        final BusquedaEnStream enTramo = ventana == null ? busqueda
+                : (is, archivo, nombre) -> conNumerosRelativos(busqueda.buscar(is, archivo, nombre));
+
+        // Con ventana, lo comprimido se filtra por líneas y se corta al pasar el rango
+        final BusquedaEnStream comprimido = ventana == null ? busqueda
+                : (is, archivo, nombre) -> enTramo.buscar(ventana.recortar(is), archivo, nombre);
+
+        // 1) .gz (leer descomprimiendo)
+        if (lower.endsWith(".gz")) {
+            Resultado r = buscarEnGz(path, comprimido, m);
+            return r != null ? List.of(r) : List.of();
+        }
+
+        // 2) .zip (leer entradas)
+        if (lower.endsWith(".zip")) {
+            return buscarEnZip(path, comprimido, m);
+        }
+
+        // 3) Archivo de texto normal (por extensión o por contenido)
+        if (esArchivoTexto(path)) {
+            Resultado r = buscarEnArchivoTexto(path, enTramo, ventana, m);
+            return r != null ? List.of(r) : List.of();
+        }
+
+        return List.of();
+    }
+
+    private static Resultado conNumerosRelativos(Resultado r) {
+        if (r == null || r.lineasCoinciden.isEmpty()) return r;
+        return new Resultado(r.rutaCompleta, r.carpeta, r.nombreArchivo, r.ocurrencias,
+                VentanaTiempo.numerosRelativos(r.lineasCoinciden), r.ocurrenciasPorCadena, r.lineasPorCadena);
+    }
+
+    // Si el archivo no cambió desde una búsqueda igual, no se vuelve a leer (en un zip: ninguna entrada)
+    private static List<Resultado> procesarConCache(Path path,
+                                                    String needle,
+                                                    Charset charset,
+                                                    String claveModo,
+                                                    BusquedaEnStream busqueda,
+                                                    VentanaTiempo ventana,
+                                                    CacheResultados cache) {
+        // Tamaño/fecha antes de leer: si el archivo cambia mientras tanto, la próxima vez no coincide
+        CacheResultados.Clave clave = CacheResultados.clave(path, needle, charset, claveModo);
+        if (clave != null) {
+            List<CacheResultados.Hallazgo> guardados = cache.obtener(clave);
+            if (guardados != null) {
+                List<Resultado> rs = new ArrayList<>();
+                for (CacheResultados.Hallazgo h : guardados) {
+                    rs.add(new Resultado(h.rutaCompleta, h.carpeta, h.nombreArchivo, h.ocurrencias, new ArrayList<>(h.lineas)));
+                }
+                return rs;
+            }
+        }
+
+        List<Resultado> rs;
+        try {
+            rs = leerArchivo(path, busqueda, ventana);
+        } catch (Exception ex) {
+            // Los errores no se guardan: la próxima vez se vuelve a intentar
+            System.err.println("No se pudo procesar: " + path + " -> " + ex.getMessage());
+            return List.of();
+        }
+
+        if (clave != null) {
+            List<CacheResultados.Hallazgo> hallazgos = new ArrayList<>();
+            for (Resultado r : rs) {
+                hallazgos.add(new CacheResultados.Hallazgo(r.rutaCompleta, r.carpeta, r.nombreArchivo, r.ocurrencias, r.lineasCoinciden));
+            }
+            cache.poner(clave, hallazgos);
+        }
+        return rs;
     }
 
     // ===========================
     // Texto normal
     // ===========================
-    private static Resultado buscarEnArchivoTexto(Path archivo,
-                                                  String needle,
-                                                  Charset charset,
-                                                  boolean incluirDetalleLineas) throws IOException {
-        try (InputStream is = Files.newInputStream(archivo)) {
-            return buscarEnInputStream(is, archivo, null, needle, charset, incluirDetalleLineas);
+    private static Resultado buscarEnArchivoTexto(Path archivo, BusquedaEnStream busqueda, VentanaTiempo ventana,
+                                                  MedicionArchivo m) throws IOException {
+        // Con ventana solo se lee su tramo (búsqueda binaria); si no tiene nada del rango, ni se lee
+        InputStream tramo = ventana != null ? ventana.abrir(archivo) : null;
+        if (ventana != null && tramo == null) return null;
+        try (InputStream is = tramo != null ? tramo : Files.newInputStream(archivo)) {
+            m.abierto();
+            return busqueda.buscar(m.lectura(is), archivo, null);
         }
     }
 
     // ===========================
     // .gz (GZIP)
     // ===========================
-    private static Resultado buscarEnGz(Path gzFile,
-                                        String needle,
-                                        Charset charset,
-                                        boolean incluirDetalleLineas) throws IOException {
+    private static Resultado buscarEnGz(Path gzFile, BusquedaEnStream busqueda, MedicionArchivo m) throws IOException {
+
+        // .gz grandes: se infla en otro(s) hilo(s) mientras este busca
+        long tamano = Files.size(gzFile);
+        if (tamano >= UMBRAL_GZ_PIPELINE) {
+            try (InputStream gis = GzPipeline.abrir(gzFile, 0)) {
+                m.abierto();
+                // La lectura del disco pasa en los hilos del pipeline: aquí solo se ve la espera por bloques inflados
+                m.leidosSinMedir(tamano);
+                String originalName = quitarExtension(gzFile.getFileName().toString(), ".gz");
+                return busqueda.buscar(m.inflado(gis), gzFile, originalName);
+            }
+        }
 
-        try (InputStream fis = Files.newInputStream(gzFile);
+        try (InputStream fis = m.lectura(Files.newInputStream(gzFile));
              GZIPInputStream gis = new GZIPInputStream(fis)) {
+            m.abierto();
 
             // nombre “real” sugerido: quitamos .gz
             String originalName = quitarExtension(gzFile.getFileName().toString(), ".gz");
 
-            return buscarEnInputStream(gis, gzFile, originalName, needle, charset, incluirDetalleLineas);
+            return busqueda.buscar(m.inflado(gis), gzFile, originalName);
         }
     }
 
     // ===========================
     // .zip (ZIP)
     // ===========================
-    private static List<Resultado> buscarEnZip(Path zipFile,
-                                               String needle,
-                                               Charset charset,
-                                               boolean incluirDetalleLineas) throws IOException {
+    /**
+     * Lee el zip por su directorio central (ZipFile): las entradas que no son texto ni se tocan,
+     * y las de texto se abren cada una por su cuenta. Si la búsqueda corre en paralelo,
+     * las entradas se reparten entre los mismos workers; el orden de resultados se conserva.
+     */
+    private static List<Resultado> buscarEnZip(Path zipFile, BusquedaEnStream busqueda, MedicionArchivo m) throws IOException {
+
+        ZipFile zf;
+        try {
+            zf = new ZipFile(zipFile.toFile());
+        } catch (ZipException ex) {
+            // Zip truncado o sin directorio central: se intenta leer en secuencia
+            return buscarEnZipSecuencial(zipFile, busqueda, m);
+        }
+
+        try (zf) {
+            m.abierto();
+            // binarios conocidos por extensión ni se abren; ignorar directorios
+            List<ZipEntry> entradas = zf.stream()
+                    .filter(entry -> !entry.isDirectory())
+                    .filter(entry -> !omitidaPorExtension(entry.getName().toLowerCase(Locale.ROOT)))
+                    .map(entry -> (ZipEntry) entry)
+                    .toList();
+
+            return EjecutorParalelo.procesarEnPoolActual(entradas, entry -> {
+                // ZipFile lee del disco por dentro: todo el tiempo de la entrada cuenta como inflado
+                m.leidosSinMedir(entry.getCompressedSize());
+                try (InputStream is = m.inflado(zf.getInputStream(entry))) {
+                    InputStream texto = abrirSiEsTexto(is, entry.getName().toLowerCase(Locale.ROOT));
+                    if (texto == null) return List.of();
+                    Resultado r = busqueda.buscar(texto, zipFile, zipFile.getFileName() + "::" + entry.getName());
+                    return r != null ? List.of(r) : List.of();
+                } catch (IOException ex) {
+                    busqueda.entradaFallida(zipFile, entry.getName(), ex);
+                    return List.of();
+                }
+            });
+        }
+    }
+
+    // Lectura en orden con ZipInputStream: solo para zips que ZipFile no puede abrir
+    private static List<Resultado> buscarEnZipSecuencial(Path zipFile, BusquedaEnStream busqueda, MedicionArchivo m) throws IOException {
 
         List<Resultado> resultados = new ArrayList<>();
 
-        try (InputStream fis = Files.newInputStream(zipFile);
+        try (InputStream fis = m.lectura(Files.newInputStream(zipFile));
              ZipInputStream zis = new ZipInputStream(fis)) {
+            m.abierto();
+            InputStream inflado = m.inflado(zis);
 
             ZipEntry entry;
             while ((entry = zis.getNextEntry()) != null) {
@@ -160,20 +679,14 @@ public class BuscarCadenaEnCarpetaZip{
                 String entryName = entry.getName();
                 String entryLower = entryName.toLowerCase(Locale.ROOT);
 
-                // solo leemos entradas que parezcan texto por extensión
-                if (!tieneExtensionTexto(entryLower)) {
+                // solo leemos entradas que parezcan texto (por extensión o por contenido)
+                InputStream texto = abrirSiEsTexto(inflado, entryLower);
+                if (texto == null) {
                     continue;
                 }
 
                 // IMPORTANTE: No cerramos zis aquí (se reutiliza).
-                Resultado r = buscarEnInputStream(
-                        zis,
-                        zipFile,
-                        zipFile.getFileName() + "::" + entryName,
-                        needle,
-                        charset,
-                        incluirDetalleLineas
-                );
+                Resultado r = busqueda.buscar(texto, zipFile, zipFile.getFileName() + "::" + entryName);
 
                 if (r != null) resultados.add(r);
 
@@ -191,14 +704,22 @@ public class BuscarCadenaEnCarpetaZip{
                                                  Path archivoRealEnDisco,
                                                  String nombreMostrableOverride,
                                                  String needle,
+                                                 Buscador buscador,
                                                  Charset charset,
-                                                 boolean incluirDetalleLineas) throws IOException {
+                                                 OpcionesDetalle detalle) throws IOException {
 
         int ocurrencias = 0;
         int numeroLinea = 0;
         List<String> lineas = new ArrayList<>();
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(is, charset))) {
+        if (buscador != null) {
+            // Búsqueda sobre bytes: solo se decodifican las líneas con coincidencia
+            BuscadorBytes.Coincidencias c = buscador.buscar(is, detalle);
+            ocurrencias = c.ocurrencias;
+            lineas = c.lineas;
+        } else {
+            // Sin try-with-resources: el stream es del llamador (en zip se reutiliza para la siguiente entrada)
+            BufferedReader br = new BufferedReader(new InputStreamReader(is, charset));
             String line;
             while ((line = br.readLine()) != null) {
                 numeroLinea++;
@@ -207,7 +728,7 @@ public class BuscarCadenaEnCarpetaZip{
                 if (count > 0) {
                     ocurrencias += count;
 
-                    if (incluirDetalleLineas && lineas.size() < 20) {
+                    if (lineas.size() < detalle.maxLineas) {
                         lineas.add("L" + numeroLinea + ": " + line.trim());
                     }
                 }
@@ -215,32 +736,176 @@ public class BuscarCadenaEnCarpetaZip{
         }
 
         if (ocurrencias > 0) {
-            Path carpeta = archivoRealEnDisco.getParent();
+            return crearResultado(archivoRealEnDisco, nombreMostrableOverride, ocurrencias, lineas,
+                    Collections.emptyMap(), Collections.emptyMap());
+        }
+        return null;
+    }
 
-            String nombreFinal = (nombreMostrableOverride != null && !nombreMostrableOverride.isBlank())
-                    ? nombreMostrableOverride
-                    : archivoRealEnDisco.getFileName().toString();
+    // ===========================
+    // Core multi-cadena: una sola pasada para todas las cadenas
+    // ===========================
+    private static Resultado buscarVariasEnInputStream(InputStream is,
+                                                       Path archivoRealEnDisco,
+                                                       String nombreMostrableOverride,
+                                                       List<String> needles,
+                                                       BuscadorMultiple buscador,
+                                                       Charset charset,
+                                                       boolean incluirDetalleLineas) throws IOException {
+
+        BuscadorMultiple.CoincidenciasMultiples c;
+        if (buscador != null) {
+            c = buscador.buscar(is, incluirDetalleLineas, OpcionesDetalle.MAX_LINEAS_DEFAULT);
+        } else if (MemoriaAcotada.activa() != null) {
+            c = buscarVariasPorSegmentos(is, needles, charset, incluirDetalleLineas, MemoriaAcotada.activa());
+        } else {
+            c = buscarVariasPorLineas(is, needles, charset, incluirDetalleLineas);
+        }
+
+        if (c.total() == 0) {
+            return null;
+        }
 
-            // rutaCompleta: mostramos el archivo real (zip/gz) y si aplica la “entrada”
-            String rutaCompleta = archivoRealEnDisco.toAbsolutePath().toString();
-            if (nombreMostrableOverride != null && nombreMostrableOverride.contains("::")) {
-                rutaCompleta = archivoRealEnDisco.toAbsolutePath() + " :: " + nombreMostrableOverride;
+        // Solo las cadenas que sí aparecieron, en el orden en que se pidieron
+        Map<String, Integer> porCadena = new LinkedHashMap<>();
+        Map<String, List<String>> lineasPorCadena = new LinkedHashMap<>();
+        for (int k = 0; k < c.cadenas.size(); k++) {
+            if (c.ocurrencias[k] > 0) {
+                porCadena.put(c.cadenas.get(k), c.ocurrencias[k]);
+                lineasPorCadena.put(c.cadenas.get(k), c.lineasPorCadena.get(k));
             }
+        }
 
-            return new Resultado(
-                    rutaCompleta,
-                    carpeta != null ? carpeta.toAbsolutePath().toString() : "",
-                    nombreFinal,
-                    ocurrencias,
-                    lineas
-            );
+        return crearResultado(archivoRealEnDisco, nombreMostrableOverride, c.total(), c.lineas,
+                porCadena, lineasPorCadena);
+    }
+
+    // Para charsets que no se pueden buscar por bytes: una lectura, todas las cadenas por línea
+    private static BuscadorMultiple.CoincidenciasMultiples buscarVariasPorLineas(InputStream is,
+                                                                               List<String> needles,
+                                                                               Charset charset,
+                                                                               boolean incluirDetalleLineas) throws IOException {
+        int[] ocurrencias = new int[needles.size()];
+        List<List<String>> lineasPorCadena = new ArrayList<>();
+        for (int k = 0; k < needles.size(); k++) lineasPorCadena.add(new ArrayList<>());
+        List<String> lineas = new ArrayList<>();
+
+        // No se cierra: el stream es del llamador
+        BufferedReader br = new BufferedReader(new InputStreamReader(is, charset));
+        String line;
+        int numeroLinea = 0;
+        while ((line = br.readLine()) != null) {
+            numeroLinea++;
+            String texto = null;
+            for (int k = 0; k < needles.size(); k++) {
+                int count = contarOcurrencias(line, needles.get(k));
+                if (count == 0) continue;
+                ocurrencias[k] += count;
+                if (!incluirDetalleLineas) continue;
+
+                if (texto == null) {
+                    texto = "L" + numeroLinea + ": " + line.trim();
+                    if (lineas.size() < OpcionesDetalle.MAX_LINEAS_DEFAULT) lineas.add(texto);
+                }
+                if (lineasPorCadena.get(k).size() < OpcionesDetalle.MAX_LINEAS_DEFAULT) lineasPorCadena.get(k).add(texto);
+            }
         }
-        return null;
+        return new BuscadorMultiple.CoincidenciasMultiples(needles, ocurrencias, lineasPorCadena, lineas);
+    }
+
+    // Lo mismo con memoria acotada: las líneas largas llegan en segmentos solapados (ver LectorLineas)
+    private static BuscadorMultiple.CoincidenciasMultiples buscarVariasPorSegmentos(InputStream is,
+                                                                                  List<String> needles,
+                                                                                  Charset charset,
+                                                                                  boolean incluirDetalleLineas,
+                                                                                  MemoriaAcotada memoria) throws IOException {
+        int n = needles.size();
+        int[] ocurrencias = new int[n];
+        int[] finUltima = new int[n];       // fin de la última coincidencia por cadena, desde el inicio de la línea
+        int[] lineaUltima = new int[n];     // última línea con texto en el detalle, por cadena
+        List<List<String>> lineasPorCadena = new ArrayList<>();
+        for (int k = 0; k < n; k++) lineasPorCadena.add(new ArrayList<>());
+        List<String> lineas = new ArrayList<>();
+        int lineaUltimaGeneral = 0;
+
+        int solape = 0;
+        for (String needle : needles) solape = Math.max(solape, needle.length() - 1);
+
+        memoria.reservar();
+        try {
+            LectorLineas lector = new LectorLineas(new InputStreamReader(is, charset), memoria.maxLinea(), solape);
+            String segmento;
+            while ((segmento = lector.siguiente()) != null) {
+                int numeroLinea = lector.numero();
+                int antes = lector.caracteresAntes();
+                if (antes == 0) Arrays.fill(finUltima, 0);
+                String texto = null;
+                for (int k = 0; k < n; k++) {
+                    String needle = needles.get(k);
+                    int count = 0;
+                    // Lo solapado que ya cayó en una coincidencia del segmento anterior no se vuelve a contar
+                    int idx = Math.max(0, finUltima[k] - antes);
+                    while ((idx = segmento.indexOf(needle, idx)) != -1) {
+                        count++;
+                        idx += needle.length();
+                        finUltima[k] = antes + idx;
+                    }
+                    if (count == 0) continue;
+                    ocurrencias[k] += count;
+                    if (!incluirDetalleLineas) continue;
+
+                    if (texto == null) texto = "L" + numeroLinea + ": " + segmento.trim();
+                    if (lineaUltimaGeneral != numeroLinea) {
+                        lineaUltimaGeneral = numeroLinea;
+                        if (lineas.size() < OpcionesDetalle.MAX_LINEAS_DEFAULT) lineas.add(texto);
+                    }
+                    if (lineaUltima[k] != numeroLinea) {
+                        lineaUltima[k] = numeroLinea;
+                        if (lineasPorCadena.get(k).size() < OpcionesDetalle.MAX_LINEAS_DEFAULT) lineasPorCadena.get(k).add(texto);
+                    }
+                }
+            }
+        } finally {
+            memoria.liberar();
+        }
+        return new BuscadorMultiple.CoincidenciasMultiples(needles, ocurrencias, lineasPorCadena, lineas);
+    }
+
+    private static Resultado crearResultado(Path archivoRealEnDisco,
+                                            String nombreMostrableOverride,
+                                            int ocurrencias,
+                                            List<String> lineas,
+                                            Map<String, Integer> ocurrenciasPorCadena,
+                                            Map<String, List<String>> lineasPorCadena) {
+        Path carpeta = archivoRealEnDisco.getParent();
+
+        String nombreFinal = (nombreMostrableOverride != null && !nombreMostrableOverride.isBlank())
+                ? nombreMostrableOverride
+                : archivoRealEnDisco.getFileName().toString();
+
+        return new Resultado(
+                rutaMostrable(archivoRealEnDisco, nombreMostrableOverride),
+                carpeta != null ? carpeta.toAbsolutePath().toString() : "",
+                nombreFinal,
+                ocurrencias,
+                lineas,
+                ocurrenciasPorCadena,
+                lineasPorCadena
+        );
     }
 
     // ===========================
     // Helpers
     // ===========================
+    // rutaCompleta: mostramos el archivo real (zip/gz) y si aplica la “entrada”
+    private static String rutaMostrable(Path archivoRealEnDisco, String nombreMostrableOverride) {
+        String rutaCompleta = archivoRealEnDisco.toAbsolutePath().toString();
+        if (nombreMostrableOverride != null && nombreMostrableOverride.contains("::")) {
+            rutaCompleta = archivoRealEnDisco.toAbsolutePath() + " :: " + nombreMostrableOverride;
+        }
+        return rutaCompleta;
+    }
+
     private static int contarOcurrencias(String texto, String needle) {
         int count = 0;
         int idx = 0;
@@ -253,7 +918,34 @@ public class BuscarCadenaEnCarpetaZip{
 
     private static boolean esArchivoTexto(Path path) {
         String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
-        return tieneExtensionTexto(name);
+        // Sin extensión de texto conocida (server.log.1, app.out...): se decide por el contenido
+        return tieneExtensionTexto(name) || ClasificadorArchivos.esTexto(path);
+    }
+
+    /**
+     * Para entradas de comprimidos: si la extensión no dice que es texto, se mira el inicio del contenido.
+     *
+     * @return el stream listo para leer desde el principio, o null si parece binario
+     */
+    private static InputStream abrirSiEsTexto(InputStream is, String nombreLower) throws IOException {
+        if (tieneExtensionTexto(nombreLower)) return is;
+        if (omitidaPorExtension(nombreLower)) return null;
+
+        BufferedInputStream bis = new BufferedInputStream(is, BuscadorBytes.TAM_BUFFER);
+        ClasificadorArchivos.Tipo tipo = ClasificadorArchivos.clasificarInicio(bis);
+        if (!tipo.esTexto()) {
+            MetricasBusqueda.omitido(tipo == ClasificadorArchivos.Tipo.VACIO ? "vacio" : "contenido binario");
+            return null;
+        }
+        return bis;
+    }
+
+    private static boolean omitidaPorExtension(String nombreLower) {
+        if (ClasificadorArchivos.descartadoPorExtension(nombreLower)) {
+            MetricasBusqueda.omitido("extension binaria");
+            return true;
+        }
+        return false;
     }
 
     private static boolean tieneExtensionTexto(String filenameLower) {
@@ -277,14 +969,54 @@ public class BuscarCadenaEnCarpetaZip{
         public final String nombreArchivo;
         public final int ocurrencias;
         public final List<String> lineasCoinciden;
+        // Solo en búsquedas de varias cadenas (vacíos en la búsqueda de una sola)
+        public final Map<String, Integer> ocurrenciasPorCadena;
+        public final Map<String, List<String>> lineasPorCadena;
 
         public Resultado(String rutaCompleta, String carpeta, String nombreArchivo, int ocurrencias, List<String> lineasCoinciden) {
+            this(rutaCompleta, carpeta, nombreArchivo, ocurrencias, lineasCoinciden,
+                    Collections.emptyMap(), Collections.emptyMap());
+        }
+
+        public Resultado(String rutaCompleta, String carpeta, String nombreArchivo, int ocurrencias, List<String> lineasCoinciden,
+                         Map<String, Integer> ocurrenciasPorCadena, Map<String, List<String>> lineasPorCadena) {
             this.rutaCompleta = rutaCompleta;
             this.carpeta = carpeta;
             this.nombreArchivo = nombreArchivo;
             this.ocurrencias = ocurrencias;
             this.lineasCoinciden = lineasCoinciden;
+            this.ocurrenciasPorCadena = ocurrenciasPorCadena;
+            this.lineasPorCadena = lineasPorCadena;
+        }
+    }
+
+    private static final class ArchivoReindexado {
+        final String ruta;
+        final long tamano;
+        final long modificado;
+        final List<IndiceTrigramas.Documento> documentos;
+
+        ArchivoReindexado(String ruta, long tamano, long modificado, List<IndiceTrigramas.Documento> documentos) {
+            this.ruta = ruta;
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.documentos = documentos;
         }
     }
+
+    // Lo que se hace con cada stream (texto, gz o entrada de zip); así el recorrido se comparte
+    @FunctionalInterface
+    private interface BusquedaEnStream {
+        Resultado buscar(InputStream is, Path archivoRealEnDisco, String nombreMostrableOverride) throws IOException;
+
+        // Una entrada de zip que no se pudo leer: se avisa y se sigue con las demás
+        default void entradaFallida(Path zipFile, String entrada, IOException ex) {
+            System.err.println("No se pudo procesar: " + zipFile + " :: " + entrada + " -> " + ex.getMessage());
+        }
+    }
+
+    interface LectorContenido {
+        void leer(InputStream is, Path archivoRealEnDisco, String nombreMostrableOverride) throws IOException;
+    }
 }
 
@@ -4,9 +4,14 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 public class BuscarCadenaEnCarpetaZipDos{
@@ -40,21 +45,14 @@ public class BuscarCadenaEnCarpetaZipDos{
             todos.addAll(resultadosOriginal);
             todos.addAll(resultadosExtraidos);
 
-            if (todos.isEmpty()) {
-                System.out.println("No se encontró la cadena: \"" + cadenaABuscar + "\"");
-            } else {
-                System.out.println("Encontrado en " + todos.size() + " archivo(s) (original + extraídos):");
-                for (Resultado r : todos) {
-                    System.out.println("--------------------------------------------------");
-                    System.out.println("Archivo: " + r.rutaCompleta);
-                    System.out.println("Carpeta: " + r.carpeta);
-                    System.out.println("Nombre : " + r.nombreArchivo);
-                    System.out.println("Ocurrencias: " + r.ocurrencias);
-                    if (!r.lineasCoinciden.isEmpty()) {
-                        System.out.println("Líneas:");
-                        for (String linea : r.lineasCoinciden) {
-                            System.out.println("  " + linea);
-                        }
+            // La impresión va en su propio hilo y con buffer (-Dbusqueda.salida=jsonl|binario para procesarla)
+            try (SalidaResultados salida = SalidaResultados.consola()) {
+                if (todos.isEmpty()) {
+                    salida.mensaje("No se encontró la cadena: \"" + cadenaABuscar + "\"");
+                } else {
+                    salida.mensaje("Encontrado en " + todos.size() + " archivo(s) (original + extraídos):");
+                    for (Resultado r : todos) {
+                        salida.escribir(r);
                     }
                 }
             }
@@ -69,64 +67,212 @@ public class BuscarCadenaEnCarpetaZipDos{
     // 1) EXTRAER COMPRIMIDOS (ZIP + GZ) EN UNA CARPETA OUTPUT
     // ==========================================================
     public static void extraerComprimidosRecursivo(Path carpetaRaiz, Path outputExtracted) throws IOException {
+        extraerComprimidosRecursivo(carpetaRaiz, outputExtracted, 0);
+    }
+
+    /**
+     * Extrae cada .zip a {@code outputExtracted/zip/<nombre>} y cada .gz a {@code outputExtracted/gz}.
+     * <p>
+     * Incremental: en {@code outputExtracted} queda un manifiesto ({@link ManifiestoExtraccion})
+     * y los comprimidos que no cambiaron desde la última vez no se vuelven a extraer. Lo que
+     * salió de comprimidos que ya no existen (o de entradas que ya no están en un zip) se borra.
+     * Los comprimidos se extraen en paralelo, y las entradas de cada zip también.
+     *
+     * @param hilos cantidad de workers; si es <= 0 usa uno por núcleo
+     */
+    public static void extraerComprimidosRecursivo(Path carpetaRaiz, Path outputExtracted, int hilos) throws IOException {
         if (!Files.exists(carpetaRaiz) || !Files.isDirectory(carpetaRaiz)) {
             throw new IllegalArgumentException("No es carpeta válida: " + carpetaRaiz);
         }
 
         Files.createDirectories(outputExtracted);
+        final Path salida = outputExtracted.toAbsolutePath().normalize();
+        Path archivoManifiesto = salida.resolve(ManifiestoExtraccion.NOMBRE);
+        final ManifiestoExtraccion anterior = ManifiestoExtraccion.cargar(archivoManifiesto);
 
+        // Los que van al mismo destino (p. ej. dos app.log.gz en distintas carpetas) se extraen
+        // juntos y en el orden del recorrido: el último gana, como cuando todo era secuencial
+        Map<Path, List<Path>> porDestino = new LinkedHashMap<>();
         try (var stream = Files.walk(carpetaRaiz)) {
-            stream.filter(Files::isRegularFile).forEach(path -> {
-                String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
-                try {
-                    if (name.endsWith(".zip")) {
-                        Path outZipDir = outputExtracted
-                                .resolve("zip")
-                                .resolve(nombreBaseSeguro(path.getFileName().toString())); // carpeta por zip
-                        unzipSeguro(path, outZipDir);
-                        System.out.println("ZIP extraído: " + path + " -> " + outZipDir);
-                    } else if (name.endsWith(".gz")) {
-                        Path outGzDir = outputExtracted.resolve("gz");
-                        Files.createDirectories(outGzDir);
-
-                        String outFileName = quitarExtension(path.getFileName().toString(), ".gz");
-                        Path outFile = outGzDir.resolve(outFileName);
-
-                        gunzip(path, outFile);
-                        System.out.println("GZ extraído:  " + path + " -> " + outFile);
-                    }
-                } catch (Exception ex) {
-                    System.err.println("No se pudo extraer: " + path + " -> " + ex.getMessage());
+            stream.filter(Files::isRegularFile)
+                    // Si la salida está dentro de la raíz, lo ya extraído no se vuelve a extraer
+                    .filter(path -> !path.toAbsolutePath().normalize().startsWith(salida))
+                    .forEach(path -> {
+                        Path destino = destinoExtraccion(path, salida);
+                        if (destino != null) {
+                            porDestino.computeIfAbsent(destino, d -> new ArrayList<>()).add(path);
+                        }
+                    });
+        }
+
+        AtomicInteger extraidos = new AtomicInteger();
+        AtomicInteger sinCambios = new AtomicInteger();
+        List<ManifiestoExtraccion.Fuente> vigentes = EjecutorParalelo.procesar(
+                new ArrayList<>(porDestino.entrySet()),
+                hilos,
+                grupo -> extraerGrupo(grupo.getValue(), grupo.getKey(), salida, anterior, extraidos, sinCambios));
+
+        ManifiestoExtraccion nuevo = new ManifiestoExtraccion();
+        vigentes.forEach(nuevo::poner);
+
+        // Solo se borra lo que ya no sale de ningún comprimido
+        Set<String> reclamadas = nuevo.salidas();
+        int borradas = 0;
+        for (String ruta : anterior.salidas()) {
+            Path p = salida.resolve(ruta).normalize();
+            if (reclamadas.contains(ruta) || !p.startsWith(salida)) continue;
+            try {
+                if (Files.deleteIfExists(p)) {
+                    borradas++;
+                    borrarCarpetasVacias(p.getParent(), salida);
                 }
-            });
+            } catch (IOException ex) {
+                System.err.println("No se pudo borrar: " + p + " -> " + ex.getMessage());
+            }
+        }
+
+        nuevo.guardar(archivoManifiesto);
+        System.out.println("Extracción: " + extraidos.get() + " extraído(s), " + sinCambios.get()
+                + " sin cambios, " + borradas + " archivo(s) obsoleto(s) borrado(s)");
+    }
+
+    // outputExtracted/zip/<nombre seguro> para .zip, outputExtracted/gz/<nombre sin .gz> para .gz
+    private static Path destinoExtraccion(Path path, Path salida) {
+        String name = path.getFileName().toString();
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".zip")) {
+            return salida.resolve("zip").resolve(nombreBaseSeguro(name));
+        }
+        if (lower.endsWith(".gz")) {
+            return salida.resolve("gz").resolve(quitarExtension(name, ".gz"));
+        }
+        return null;
+    }
+
+    /**
+     * Los comprimidos de un mismo destino: si ninguno cambió (y el grupo es el mismo) no se toca
+     * nada; si no, se extraen todos de nuevo en orden (uno sin cambios podría quedar tapado por otro).
+     */
+    private static List<ManifiestoExtraccion.Fuente> extraerGrupo(List<Path> fuentes,
+                                                                 Path destino,
+                                                                 Path salida,
+                                                                 ManifiestoExtraccion anterior,
+                                                                 AtomicInteger extraidos,
+                                                                 AtomicInteger sinCambios) {
+        List<ManifiestoExtraccion.Fuente> vigentes = new ArrayList<>();
+        try {
+            for (Path fuente : fuentes) {
+                ManifiestoExtraccion.Fuente f = anterior.sinCambios(fuente, salida);
+                if (f == null || f.grupo != fuentes.size()) break;
+                vigentes.add(f);
+            }
+        } catch (IOException ex) {
+            // Se extrae: si tampoco se puede leer, ahí se informa
+        }
+        if (vigentes.size() == fuentes.size()) {
+            sinCambios.addAndGet(fuentes.size());
+            return vigentes;
+        }
+
+        vigentes.clear();
+        for (Path fuente : fuentes) {
+            ManifiestoExtraccion.Fuente f = extraerFuente(fuente, destino, salida, anterior.obtener(fuente));
+            if (f.tamano >= 0) extraidos.incrementAndGet();
+            vigentes.add(f);
+        }
+        // Lo que un comprimido posterior sobrescribió ya no es de los anteriores
+        Set<String> posteriores = new HashSet<>();
+        for (int i = vigentes.size() - 1; i >= 0; i--) {
+            ManifiestoExtraccion.Fuente f = vigentes.get(i);
+            vigentes.set(i, f.enGrupo(fuentes.size(), posteriores));
+            f.salidas.forEach(sal -> posteriores.add(sal.ruta));
+        }
+        return vigentes;
+    }
+
+    private static ManifiestoExtraccion.Fuente extraerFuente(Path fuente,
+                                                            Path destino,
+                                                            Path salida,
+                                                            ManifiestoExtraccion.Fuente anterior) {
+        // Las entradas de un zip se escriben desde varios hilos
+        List<ManifiestoExtraccion.Salida> escritas = Collections.synchronizedList(new ArrayList<>());
+        try {
+            // Tamaño y fecha antes de extraer: si cambia mientras tanto, la próxima vez se extrae otra vez
+            BasicFileAttributes attrs = Files.readAttributes(fuente, BasicFileAttributes.class);
+            long huella = ManifiestoExtraccion.huella(fuente);
+
+            if (fuente.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
+                unzipSeguro(fuente, destino, salida, escritas);
+                System.out.println("ZIP extraído: " + fuente + " -> " + destino);
+            } else {
+                gunzip(fuente, destino, salida, escritas);
+                System.out.println("GZ extraído:  " + fuente + " -> " + destino);
+            }
+            return new ManifiestoExtraccion.Fuente(ManifiestoExtraccion.clave(fuente), attrs.size(),
+                    attrs.lastModifiedTime().toMillis(), huella, 1, escritas);
+        } catch (IOException | RuntimeException ex) {
+            // Incluye los errores de las entradas que se escribieron en otros hilos (UncheckedIOException)
+            String mensaje = ex instanceof UncheckedIOException u ? u.getCause().getMessage() : ex.getMessage();
+            System.err.println("No se pudo extraer: " + fuente + " -> " + mensaje);
+            return ManifiestoExtraccion.Fuente.fallida(fuente, anterior, escritas);
         }
     }
 
     /**
-     * Descomprime ZIP evitando Zip Slip.
+     * Descomprime ZIP evitando Zip Slip. Lee por el directorio central (ZipFile) y reparte las
+     * entradas entre los workers; si el zip no tiene directorio central, lo lee en secuencia.
      */
-    private static void unzipSeguro(Path zipFile, Path outputDir) throws IOException {
+    private static void unzipSeguro(Path zipFile, Path outputDir, Path salida,
+                                    List<ManifiestoExtraccion.Salida> escritas) throws IOException {
         Files.createDirectories(outputDir);
 
+        ZipFile zf;
+        try {
+            zf = new ZipFile(zipFile.toFile());
+        } catch (ZipException ex) {
+            unzipSecuencial(zipFile, outputDir, salida, escritas);
+            return;
+        }
+
+        try (zf) {
+            // Si un nombre se repite gana la última entrada, como al extraer en orden
+            Map<Path, ZipEntry> porDestino = new LinkedHashMap<>();
+            Enumeration<? extends ZipEntry> entradas = zf.entries();
+            while (entradas.hasMoreElements()) {
+                ZipEntry entry = entradas.nextElement();
+                Path outPath = resolverEntradaSegura(outputDir, entry.getName());
+                if (entry.isDirectory()) {
+                    Files.createDirectories(outPath);
+                } else {
+                    porDestino.put(outPath, entry);
+                }
+            }
+
+            EjecutorParalelo.procesarEnPoolActual(new ArrayList<>(porDestino.entrySet()), e -> {
+                try (InputStream is = zf.getInputStream(e.getValue())) {
+                    escritas.add(escribir(is, e.getKey(), salida));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return List.of();
+            });
+        }
+    }
+
+    // Para zips truncados o sin directorio central
+    private static void unzipSecuencial(Path zipFile, Path outputDir, Path salida,
+                                        List<ManifiestoExtraccion.Salida> escritas) throws IOException {
         try (InputStream fis = Files.newInputStream(zipFile);
-             ZipInputStream zis = new ZipInputStream(fis)) {
+             ZipInputStream zis = new ZipInputStream(new BufferedInputStream(fis, 1 << 16))) {
 
             ZipEntry entry;
             while ((entry = zis.getNextEntry()) != null) {
-                Path outPath = outputDir.resolve(entry.getName()).normalize();
-
-                // Protección Zip Slip: el archivo extraído debe quedar dentro de outputDir
-                if (!outPath.startsWith(outputDir)) {
-                    throw new IOException("Zip Slip detectado: " + entry.getName());
-                }
+                Path outPath = resolverEntradaSegura(outputDir, entry.getName());
 
                 if (entry.isDirectory()) {
                     Files.createDirectories(outPath);
                 } else {
-                    Files.createDirectories(outPath.getParent());
-                    try (OutputStream os = Files.newOutputStream(outPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                        copiar(zis, os);
-                    }
+                    escritas.add(escribir(zis, outPath, salida));
                 }
                 zis.closeEntry();
             }
@@ -134,23 +280,61 @@ public class BuscarCadenaEnCarpetaZipDos{
     }
 
     /**
-     * Descomprime GZ a un archivo destino.
+     * Protección Zip Slip: la entrada debe quedar dentro de baseDir (sin "../" ni rutas absolutas).
      */
-    private static void gunzip(Path gzFile, Path outputFile) throws IOException {
-        Files.createDirectories(outputFile.getParent());
+    private static Path resolverEntradaSegura(Path baseDir, String nombreEntrada) throws IOException {
+        Path outPath = baseDir.resolve(nombreEntrada).normalize();
+        if (!outPath.startsWith(baseDir)) {
+            throw new IOException("Zip Slip detectado: " + nombreEntrada);
+        }
+        return outPath;
+    }
 
+    /**
+     * Descomprime GZ a un archivo destino.
+     */
+    private static void gunzip(Path gzFile, Path outputFile, Path salida,
+                               List<ManifiestoExtraccion.Salida> escritas) throws IOException {
         try (InputStream fis = Files.newInputStream(gzFile);
-             GZIPInputStream gis = new GZIPInputStream(fis);
-             OutputStream os = Files.newOutputStream(outputFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-            copiar(gis, os);
+             GZIPInputStream gis = new GZIPInputStream(fis, 1 << 16)) {
+            escritas.add(escribir(gis, outputFile, salida));
         }
     }
 
-    private static void copiar(InputStream in, OutputStream out) throws IOException {
-        byte[] buffer = new byte[8192];
+    // Escribe (o reescribe) un archivo extraído y lo registra relativo a la carpeta de salida
+    private static ManifiestoExtraccion.Salida escribir(InputStream in, Path outPath, Path salida) throws IOException {
+        Files.createDirectories(outPath.getParent());
+        long tamano;
+        try (OutputStream os = Files.newOutputStream(outPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            tamano = copiar(in, os);
+        }
+        return new ManifiestoExtraccion.Salida(salida.relativize(outPath).toString(), tamano);
+    }
+
+    // Un buffer grande por hilo: se reutiliza entre archivos y entradas
+    private static final ThreadLocal<byte[]> BUFFER_COPIA = ThreadLocal.withInitial(() -> new byte[1 << 18]);
+
+    private static long copiar(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = BUFFER_COPIA.get();
+        long total = 0;
         int len;
         while ((len = in.read(buffer)) != -1) {
             out.write(buffer, 0, len);
+            total += len;
+        }
+        return total;
+    }
+
+    // Sube borrando carpetas que quedaron vacías, sin pasar de la carpeta de salida
+    private static void borrarCarpetasVacias(Path carpeta, Path salida) {
+        while (carpeta != null && !carpeta.equals(salida) && carpeta.startsWith(salida)) {
+            try {
+                Files.delete(carpeta);
+            } catch (IOException ex) {
+                // No vacía (o no se puede): ahí se para
+                return;
+            }
+            carpeta = carpeta.getParent();
         }
     }
 
@@ -176,53 +360,261 @@ public class BuscarCadenaEnCarpetaZipDos{
                                                   String cadena,
                                                   Charset charset,
                                                   boolean incluirDetalleLineas) throws IOException {
+        return buscarEnCarpeta(carpetaRaiz, cadena, charset, OpcionesBusqueda.de(incluirDetalleLineas));
+    }
 
-        if (carpetaRaiz == null || !Files.exists(carpetaRaiz) || !Files.isDirectory(carpetaRaiz)) {
-            throw new IllegalArgumentException("La ruta no existe o no es carpeta: " + carpetaRaiz);
+    /**
+     * La búsqueda con sus opciones (ver {@link OpcionesBusqueda}): con más de un hilo los
+     * archivos se leen en paralelo (mismo orden de resultados) y con cache los que no cambiaron
+     * desde una búsqueda igual se toman del cache sin leerlos.
+     *
+     * @throws IllegalArgumentException con otro detalle que {@link OpcionesDetalle#DEFAULT} o
+     *                                  {@link OpcionesDetalle#SIN_LINEAS}, o con ventana: aquí no se implementan
+     */
+    public static List<Resultado> buscarEnCarpeta(Path carpetaRaiz,
+                                                  String cadena,
+                                                  Charset charset,
+                                                  OpcionesBusqueda opciones) throws IOException {
+
+        validarParametros(carpetaRaiz, cadena);
+        if (!opciones.detalle.equals(OpcionesDetalle.DEFAULT) && !opciones.detalle.equals(OpcionesDetalle.SIN_LINEAS)) {
+            throw new IllegalArgumentException("Esta búsqueda solo guarda el detalle de siempre o ninguno, no " + opciones.detalle + ".");
         }
-        if (cadena == null || cadena.isBlank()) {
-            throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
+        if (opciones.ventana != null) {
+            throw new IllegalArgumentException("Esta búsqueda no admite ventana de tiempo.");
         }
+        boolean incluirDetalleLineas = opciones.detalle.incluyeLineas();
+
+        return opciones.secuencial()
+                ? buscarEnSecuencia(carpetaRaiz, cadena, charset, incluirDetalleLineas, opciones.modo)
+                : buscarEnParalelo(carpetaRaiz, cadena, charset, incluirDetalleLineas, opciones.hilos, opciones.cache, opciones.modo);
+    }
+
+    private static List<Resultado> buscarEnSecuencia(Path carpetaRaiz,
+                                                     String cadena,
+                                                     Charset charset,
+                                                     boolean incluirDetalleLineas,
+                                                     ModoBusqueda modo) throws IOException {
 
         final List<Resultado> encontrados = new ArrayList<>();
         final String needle = cadena;
+        final Buscador buscador = modo.crearBuscador(needle, charset);
 
         try (var stream = Files.walk(carpetaRaiz)) {
             stream
                     .filter(Files::isRegularFile)
                     .filter(BuscarCadenaEnCarpetaZipDos::esArchivoTexto)
                     .forEach(path -> {
-                        try {
-                            Resultado r = buscarEnArchivo(path, needle, charset, incluirDetalleLineas);
-                            if (r != null) encontrados.add(r);
-                        } catch (Exception ex) {
-                            System.err.println("No se pudo leer: " + path + " -> " + ex.getMessage());
-                        }
+                        Resultado r = buscarSinFallar(path, needle, buscador, charset, incluirDetalleLineas, null);
+                        if (r != null) encontrados.add(r);
                     });
         }
 
         return encontrados;
     }
 
+    private static List<Resultado> buscarEnParalelo(Path carpetaRaiz,
+                                                    String cadena,
+                                                    Charset charset,
+                                                    boolean incluirDetalleLineas,
+                                                    int hilos,
+                                                    CacheResultados cache,
+                                                    ModoBusqueda modo) throws IOException {
+
+        final String needle = cadena;
+        final Buscador buscador = modo.crearBuscador(needle, charset);
+
+        // Primero listamos (barato), luego repartimos la lectura (caro) entre los hilos
+        List<Path> archivos;
+        long inicioRecorrido = System.nanoTime();
+        try (var stream = Files.walk(carpetaRaiz)) {
+            archivos = stream
+                    .filter(Files::isRegularFile)
+                    .filter(BuscarCadenaEnCarpetaZipDos::esArchivoTexto)
+                    .toList();
+        }
+        MetricasBusqueda.recorrido(carpetaRaiz, System.nanoTime() - inicioRecorrido, archivos.size());
+
+        // La exacta conserva las claves de antes (caches ya guardados siguen sirviendo)
+        final String claveModo = (incluirDetalleLineas ? "texto:detalle" : "texto:conteo")
+                + (modo == ModoBusqueda.EXACTA ? "" : ":" + modo);
+
+        return EjecutorParalelo.procesar(archivos, hilos, path -> {
+            if (cache != null) {
+                return buscarConCache(path, needle, buscador, charset, incluirDetalleLineas, claveModo, cache);
+            }
+            Resultado r = buscarSinFallar(path, needle, buscador, charset, incluirDetalleLineas, null);
+            return r != null ? List.of(r) : List.of();
+        });
+    }
+
+    /**
+     * Búsqueda "al vuelo": cada Resultado se entrega a {@code alEncontrar} en cuanto se encuentra,
+     * sin esperar a recorrer todo ni guardar la lista. El orden depende de qué archivo termina primero.
+     * <p>
+     * Con {@link ControlBusqueda#detenerTras} o {@link ControlBusqueda#cancelar} se deja de
+     * recorrer y leer de inmediato.
+     *
+     * @param hilos cantidad de workers; si es <= 0 usa uno por núcleo
+     */
+    public static void buscarEnCarpetaAlVuelo(Path carpetaRaiz,
+                                              String cadena,
+                                              Charset charset,
+                                              boolean incluirDetalleLineas,
+                                              int hilos,
+                                              ControlBusqueda control,
+                                              Consumer<Resultado> alEncontrar) throws IOException {
+
+        validarParametros(carpetaRaiz, cadena);
+
+        final String needle = cadena;
+        final Buscador buscador = ModoBusqueda.EXACTA.crearBuscador(needle, charset);
+
+        try (var stream = Files.walk(carpetaRaiz)) {
+            EjecutorParalelo.procesarAlVuelo(
+                    stream.filter(Files::isRegularFile).filter(BuscarCadenaEnCarpetaZipDos::esArchivoTexto),
+                    hilos,
+                    control,
+                    path -> {
+                        Resultado r = buscarSinFallar(path, needle, buscador, charset, incluirDetalleLineas, control);
+                        return r != null ? List.of(r) : List.of();
+                    },
+                    r -> r.ocurrencias,
+                    alEncontrar);
+        }
+    }
+
+    /**
+     * Modo solo conteo: no arma Resultados ni guarda líneas.
+     *
+     * @return total de ocurrencias (también quedan en {@code control.resultados()}/{@code ocurrencias()})
+     */
+    public static long contarEnCarpeta(Path carpetaRaiz,
+                                       String cadena,
+                                       Charset charset,
+                                       int hilos,
+                                       ControlBusqueda control) throws IOException {
+        buscarEnCarpetaAlVuelo(carpetaRaiz, cadena, charset, false, hilos, control, null);
+        return control.ocurrencias();
+    }
+
+    private static void validarParametros(Path carpetaRaiz, String cadena) {
+        if (carpetaRaiz == null || !Files.exists(carpetaRaiz) || !Files.isDirectory(carpetaRaiz)) {
+            throw new IllegalArgumentException("La ruta no existe o no es carpeta: " + carpetaRaiz);
+        }
+        if (cadena == null || cadena.isBlank()) {
+            throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
+        }
+    }
+
+    private static Resultado buscarSinFallar(Path path,
+                                             String needle,
+                                             Buscador buscador,
+                                             Charset charset,
+                                             boolean incluirDetalleLineas,
+                                             ControlBusqueda control) {
+        try {
+            return buscarEnArchivo(path, needle, buscador, charset, incluirDetalleLineas, control);
+        } catch (Exception ex) {
+            System.err.println("No se pudo leer: " + path + " -> " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // Si el archivo no cambió desde una búsqueda igual, no se vuelve a leer
+    private static List<Resultado> buscarConCache(Path path,
+                                                  String needle,
+                                                  Buscador buscador,
+                                                  Charset charset,
+                                                  boolean incluirDetalleLineas,
+                                                  String claveModo,
+                                                  CacheResultados cache) {
+        // Tamaño/fecha antes de leer: si el archivo cambia mientras tanto, la próxima vez no coincide
+        CacheResultados.Clave clave = CacheResultados.clave(path, needle, charset, claveModo);
+        if (clave != null) {
+            List<CacheResultados.Hallazgo> guardados = cache.obtener(clave);
+            if (guardados != null) {
+                List<Resultado> rs = new ArrayList<>();
+                for (CacheResultados.Hallazgo h : guardados) {
+                    rs.add(new Resultado(h.rutaCompleta, h.carpeta, h.nombreArchivo, h.ocurrencias, new ArrayList<>(h.lineas)));
+                }
+                return rs;
+            }
+        }
+
+        Resultado r;
+        try {
+            r = buscarEnArchivo(path, needle, buscador, charset, incluirDetalleLineas, null);
+        } catch (Exception ex) {
+            // Los errores no se guardan: la próxima vez se vuelve a intentar
+            System.err.println("No se pudo leer: " + path + " -> " + ex.getMessage());
+            return List.of();
+        }
+
+        if (clave != null) {
+            cache.poner(clave, r == null ? List.of() : List.of(new CacheResultados.Hallazgo(
+                    r.rutaCompleta, r.carpeta, r.nombreArchivo, r.ocurrencias, r.lineasCoinciden)));
+        }
+        return r != null ? List.of(r) : List.of();
+    }
+
+    /**
+     * @param buscador búsqueda por bytes ya preparada; null si el charset no la permite
+     * @param control  para dejar de leer si la búsqueda se cancela; puede ser null
+     */
     private static Resultado buscarEnArchivo(Path archivo,
                                              String needle,
+                                             Buscador buscador,
                                              Charset charset,
-                                             boolean incluirDetalleLineas) throws IOException {
+                                             boolean incluirDetalleLineas,
+                                             ControlBusqueda control) throws IOException {
+        // Cada archivo leído queda medido (ver MetricasBusqueda), también si falla
+        MedicionArchivo m = MetricasBusqueda.iniciar(archivo);
+        Resultado r;
+        try {
+            r = leerArchivo(archivo, needle, buscador, charset, incluirDetalleLineas, control, m);
+        } catch (IOException | RuntimeException ex) {
+            m.fallo(ex);
+            throw ex;
+        }
+        m.terminar(r != null ? r.ocurrencias : 0);
+        return r;
+    }
+
+    private static Resultado leerArchivo(Path archivo,
+                                         String needle,
+                                         Buscador buscador,
+                                         Charset charset,
+                                         boolean incluirDetalleLineas,
+                                         ControlBusqueda control,
+                                         MedicionArchivo m) throws IOException {
 
         int ocurrencias = 0;
         int numeroLinea = 0;
         List<String> lineas = new ArrayList<>();
 
-        try (BufferedReader br = Files.newBufferedReader(archivo, charset)) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                numeroLinea++;
-
-                int count = contarOcurrencias(line, needle);
-                if (count > 0) {
-                    ocurrencias += count;
-                    if (incluirDetalleLineas && lineas.size() < 20) {
-                        lineas.add("L" + numeroLinea + ": " + line.trim());
+        if (buscador != null) {
+            // Búsqueda sobre bytes: solo se decodifican las líneas con coincidencia
+            try (InputStream is = m.lectura(Files.newInputStream(archivo))) {
+                m.abierto();
+                BuscadorBytes.Coincidencias c = buscador.buscar(control != null ? control.envolver(is) : is,
+                        incluirDetalleLineas, OpcionesDetalle.MAX_LINEAS_DEFAULT);
+                ocurrencias = c.ocurrencias;
+                lineas = c.lineas;
+            }
+        } else {
+            try (BufferedReader br = Files.newBufferedReader(archivo, charset)) {
+                m.abierto();
+                String line;
+                while ((line = br.readLine()) != null && (control == null || !control.cancelada())) {
+                    numeroLinea++;
+
+                    int count = contarOcurrencias(line, needle);
+                    if (count > 0) {
+                        ocurrencias += count;
+                        if (incluirDetalleLineas && lineas.size() < OpcionesDetalle.MAX_LINEAS_DEFAULT) {
+                            lineas.add("L" + numeroLinea + ": " + line.trim());
+                        }
                     }
                 }
             }
@@ -241,6 +633,284 @@ public class BuscarCadenaEnCarpetaZipDos{
         return null;
     }
 
+    // ==========================================================
+    // 3) BUSCAR SIN EXTRAER (archivos dentro de archivos, todo en memoria)
+    // ==========================================================
+
+    // Niveles de comprimido que se abren por defecto (zip -> zip -> gz)
+    public static final int PROFUNDIDAD_MAXIMA_DEFAULT = 3;
+
+    // Tope de bytes descomprimidos por archivo en disco (sumando todos sus niveles)
+    public static final long MAX_BYTES_DESCOMPRIMIDOS_DEFAULT = 8L * 1024 * 1024 * 1024;
+
+    // Arriba de esto, una proporción descomprimido/comprimido tan alta se trata como bomba
+    private static final long UMBRAL_PROPORCION_BYTES = 64L * 1024 * 1024;
+    private static final long MAX_PROPORCION = 1000;
+
+    /**
+     * Busca en texto, .gz y .zip sin escribir nada a disco, abriendo también los comprimidos
+     * que vienen dentro de otros (zip dentro de zip, .log.gz dentro de zip, etc.).
+     * <p>
+     * Las entradas se validan igual que en {@link #unzipSeguro} (Zip Slip) y cada archivo en disco
+     * tiene un tope de bytes descomprimidos (sumando todos sus niveles) y de proporción
+     * descomprimido/comprimido; si se pasa, ese archivo se descarta con un aviso.
+     * Las rutas quedan como "archivo.zip :: interno.zip :: entrada.log".
+     *
+     * @param profundidadMaxima      cuántos niveles de comprimido se abren (1 = solo los del disco)
+     * @param maxBytesDescomprimidos tope por archivo en disco, sumando todos los niveles
+     * @param hilos                  cantidad de workers; si es <= 0 usa uno por núcleo
+     */
+    public static List<Resultado> buscarEnCarpetaSinExtraer(Path carpetaRaiz,
+                                                            String cadena,
+                                                            Charset charset,
+                                                            boolean incluirDetalleLineas,
+                                                            int profundidadMaxima,
+                                                            long maxBytesDescomprimidos,
+                                                            int hilos) throws IOException {
+
+        validarParametros(carpetaRaiz, cadena);
+
+        final String needle = cadena;
+        final Buscador buscador = ModoBusqueda.EXACTA.crearBuscador(needle, charset);
+
+        List<Path> archivos;
+        long inicioRecorrido = System.nanoTime();
+        try (var stream = Files.walk(carpetaRaiz)) {
+            archivos = stream
+                    .filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                        return name.endsWith(".zip") || name.endsWith(".gz") || esArchivoTexto(path);
+                    })
+                    .toList();
+        }
+        MetricasBusqueda.recorrido(carpetaRaiz, System.nanoTime() - inicioRecorrido, archivos.size());
+
+        return EjecutorParalelo.procesar(archivos, hilos, path -> {
+            List<Resultado> encontrados = new ArrayList<>();
+            MedicionArchivo m = MetricasBusqueda.iniciar(path);
+            try (InputStream is = m.lectura(Files.newInputStream(path))) {
+                m.abierto();
+                Anidado ctx = new Anidado(path, needle, buscador, charset, incluirDetalleLineas,
+                        profundidadMaxima, maxBytesDescomprimidos, Files.size(path), m);
+                buscarEnAnidado(is, path.getFileName().toString(), 0, ctx, encontrados);
+            } catch (Exception ex) {
+                m.fallo(ex);
+                System.err.println("No se pudo procesar: " + path + " -> " + ex.getMessage());
+                return List.of();
+            }
+            long ocurrencias = 0;
+            for (Resultado r : encontrados) ocurrencias += r.ocurrencias;
+            m.terminar(ocurrencias);
+            return encontrados;
+        });
+    }
+
+    /**
+     * @param ruta        "archivo.zip :: interno.zip :: entrada.log" hasta este nivel (empieza con el nombre en disco)
+     * @param profundidad cuántos comprimidos se abrieron ya para llegar aquí
+     */
+    private static void buscarEnAnidado(InputStream is,
+                                        String ruta,
+                                        int profundidad,
+                                        Anidado ctx,
+                                        List<Resultado> encontrados) throws IOException {
+
+        String name = nombreFinal(ruta).toLowerCase(Locale.ROOT);
+
+        if (name.endsWith(".zip") || name.endsWith(".gz")) {
+            if (profundidad >= ctx.profundidadMaxima) {
+                MetricasBusqueda.omitido("profundidad");
+                System.err.println("Se omite por profundidad: " + ctx.archivo.toAbsolutePath()
+                        + ruta.substring(ctx.archivo.getFileName().toString().length()));
+                return;
+            }
+
+            if (name.endsWith(".gz")) {
+                // El nombre de adentro es el mismo sin .gz: "app.log.gz :: app.log"
+                GZIPInputStream gis = new GZIPInputStream(new SinCerrar(is));
+                String interno = quitarExtension(nombreFinal(ruta), ".gz");
+                buscarEnAnidado(ctx.inflado(gis, profundidad), ruta + " :: " + interno, profundidad + 1, ctx, encontrados);
+                return;
+            }
+
+            ZipInputStream zis = new ZipInputStream(new SinCerrar(is));
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (entry.isDirectory()) continue;
+
+                // Aunque no se escriba nada, una entrada con "../" se rechaza igual que al extraer
+                resolverEntradaSegura(RAIZ_VIRTUAL, entry.getName());
+
+                buscarEnAnidado(ctx.inflado(zis, profundidad), ruta + " :: " + entry.getName(), profundidad + 1, ctx, encontrados);
+                zis.closeEntry();
+            }
+            return;
+        }
+
+        // Sin extensión de texto conocida: se mira el inicio del contenido (sin perderlo)
+        InputStream texto = new SinCerrar(is);
+        if (!tieneExtensionTexto(name)) {
+            if (ClasificadorArchivos.descartadoPorExtension(name)) {
+                MetricasBusqueda.omitido("extension binaria");
+                return;
+            }
+            BufferedInputStream bis = new BufferedInputStream(texto, BuscadorBytes.TAM_BUFFER);
+            ClasificadorArchivos.Tipo tipo = ClasificadorArchivos.clasificarInicio(bis);
+            if (!tipo.esTexto()) {
+                MetricasBusqueda.omitido(tipo == ClasificadorArchivos.Tipo.VACIO ? "vacio" : "contenido binario");
+                return;
+            }
+            texto = bis;
+        }
+
+        BuscadorBytes.Coincidencias c = buscarEnStream(texto, ctx.needle, ctx.buscador, ctx.charset, ctx.incluirDetalleLineas);
+        if (c.ocurrencias > 0) {
+            Path carpeta = ctx.archivo.getParent();
+            // Ruta real en disco + lo que sigue dentro de los comprimidos
+            String rutaCompleta = ctx.archivo.toAbsolutePath()
+                    + ruta.substring(ctx.archivo.getFileName().toString().length());
+            encontrados.add(new Resultado(
+                    rutaCompleta,
+                    carpeta != null ? carpeta.toAbsolutePath().toString() : "",
+                    ruta,
+                    c.ocurrencias,
+                    c.lineas
+            ));
+        }
+    }
+
+    // Igual que buscarEnArchivo, pero sobre un stream que no es nuestro (no se cierra)
+    private static BuscadorBytes.Coincidencias buscarEnStream(InputStream is,
+                                                              String needle,
+                                                              Buscador buscador,
+                                                              Charset charset,
+                                                              boolean incluirDetalleLineas) throws IOException {
+        if (buscador != null) {
+            return buscador.buscar(is, incluirDetalleLineas, OpcionesDetalle.MAX_LINEAS_DEFAULT);
+        }
+
+        int ocurrencias = 0;
+        int numeroLinea = 0;
+        List<String> lineas = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(is, charset))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                numeroLinea++;
+
+                int count = contarOcurrencias(line, needle);
+                if (count > 0) {
+                    ocurrencias += count;
+                    if (incluirDetalleLineas && lineas.size() < OpcionesDetalle.MAX_LINEAS_DEFAULT) {
+                        lineas.add("L" + numeroLinea + ": " + line.trim());
+                    }
+                }
+            }
+        }
+        return new BuscadorBytes.Coincidencias(ocurrencias, lineas);
+    }
+
+    private static boolean tieneExtensionTexto(String filenameLower) {
+        for (String ext : EXTENSIONES_TEXTO) {
+            if (filenameLower.endsWith(ext)) return true;
+        }
+        return false;
+    }
+
+    // Último tramo de "a.zip :: b.zip :: dir/c.log", sin las carpetas internas del zip -> "c.log"
+    private static String nombreFinal(String ruta) {
+        int corte = ruta.lastIndexOf(" :: ");
+        String ultimo = corte >= 0 ? ruta.substring(corte + 4) : ruta;
+        int barra = Math.max(ultimo.lastIndexOf('/'), ultimo.lastIndexOf('\\'));
+        return barra >= 0 ? ultimo.substring(barra + 1) : ultimo;
+    }
+
+    // Base ficticia para validar nombres de entradas sin extraer nada
+    private static final Path RAIZ_VIRTUAL = Paths.get("raiz_virtual").toAbsolutePath();
+
+    // Datos de una búsqueda sin extraer, compartidos por todos los niveles de un archivo en disco
+    private static final class Anidado {
+        final Path archivo;
+        final String needle;
+        final Buscador buscador;
+        final Charset charset;
+        final boolean incluirDetalleLineas;
+        final int profundidadMaxima;
+        final long maxBytesDescomprimidos;
+        final long bytesEnDisco;
+        final MedicionArchivo medicion;
+        long bytesDescomprimidos;
+
+        Anidado(Path archivo, String needle, Buscador buscador, Charset charset, boolean incluirDetalleLineas,
+                int profundidadMaxima, long maxBytesDescomprimidos, long bytesEnDisco, MedicionArchivo medicion) {
+            this.archivo = archivo;
+            this.needle = needle;
+            this.buscador = buscador;
+            this.charset = charset;
+            this.incluirDetalleLineas = incluirDetalleLineas;
+            this.profundidadMaxima = profundidadMaxima;
+            this.maxBytesDescomprimidos = maxBytesDescomprimidos;
+            this.bytesEnDisco = Math.max(bytesEnDisco, 1);
+            this.medicion = medicion;
+        }
+
+        // Solo se mide el primer descompresor: el read de uno interno ya incluye el del de afuera
+        InputStream inflado(InputStream descompresor, int profundidad) {
+            InputStream limitado = new LimiteDescompresion(descompresor, this);
+            return profundidad == 0 ? medicion.inflado(limitado) : limitado;
+        }
+    }
+
+    /**
+     * Cuenta lo que sale de cada descompresor contra el tope del archivo en disco (protección contra bombas).
+     * Se suma lo de todos los niveles: un texto dentro de un zip dentro de otro zip cuenta dos veces.
+     */
+    private static final class LimiteDescompresion extends FilterInputStream {
+        private final Anidado ctx;
+
+        LimiteDescompresion(InputStream in, Anidado ctx) {
+            super(in);
+            this.ctx = ctx;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) sumar(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) sumar(n);
+            return n;
+        }
+
+        private void sumar(int n) throws IOException {
+            ctx.bytesDescomprimidos += n;
+            if (ctx.bytesDescomprimidos > ctx.maxBytesDescomprimidos) {
+                throw new IOException("Posible bomba de descompresión: más de " + ctx.maxBytesDescomprimidos + " bytes");
+            }
+            if (ctx.bytesDescomprimidos > UMBRAL_PROPORCION_BYTES
+                    && ctx.bytesDescomprimidos / ctx.bytesEnDisco > MAX_PROPORCION) {
+                throw new IOException("Posible bomba de descompresión: proporción mayor a " + MAX_PROPORCION + ":1");
+            }
+        }
+    }
+
+    // Para que cerrar un lector interno (zip/gz anidado) no cierre el stream de afuera
+    private static final class SinCerrar extends FilterInputStream {
+        SinCerrar(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // el dueño del stream de afuera lo cierra
+        }
+    }
+
     private static int contarOcurrencias(String texto, String needle) {
         int count = 0;
         int idx = 0;
@@ -253,10 +923,8 @@ public class BuscarCadenaEnCarpetaZipDos{
 
     private static boolean esArchivoTexto(Path path) {
         String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
-        for (String ext : EXTENSIONES_TEXTO) {
-            if (name.endsWith(ext)) return true;
-        }
-        return false;
+        // Sin extensión de texto conocida (server.log.1, app.out...): se decide por el contenido
+        return tieneExtensionTexto(name) || ClasificadorArchivos.esTexto(path);
     }
 
     // DTO simple de resultados
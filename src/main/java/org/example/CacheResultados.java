@@ -0,0 +1,272 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Cache de resultados por archivo, para consultas que se repiten sobre carpetas que casi no cambian.
+ * <p>
+ * La clave es la identidad del archivo (ruta, tamaño, fecha de modificación) más lo que se buscó
+ * (cadena, charset y modo). Si el archivo cambia, su tamaño o fecha ya no coinciden y se vuelve
+ * a leer; la entrada vieja ya no se usa y termina saliendo por LRU.
+ * <p>
+ * Se guardan también los archivos sin coincidencias (lista vacía): son la mayoría y son los que
+ * más se ahorran. Límite por cantidad de entradas y por memoria aproximada; sale la menos usada.
+ * Thread-safe.
+ */
+public final class CacheResultados {
+
+    private static final int MAGICO = 0x43524531; // "CRE1"
+
+    private final int maxEntradas;
+    private final long maxBytes;
+
+    // En orden de acceso: la primera es la menos usada
+    private final LinkedHashMap<Clave, Entrada> entradas = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private long aciertos;
+    private long fallos;
+
+    private CacheResultados(int maxEntradas, long maxBytes) {
+        if (maxEntradas <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Los límites del cache deben ser mayores a cero.");
+        }
+        this.maxEntradas = maxEntradas;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param maxEntradas archivos (por cadena/modo) que se recuerdan como máximo
+     * @param maxBytes    memoria aproximada máxima que ocupan los resultados guardados
+     */
+    public static CacheResultados enMemoria(int maxEntradas, long maxBytes) {
+        return new CacheResultados(maxEntradas, maxBytes);
+    }
+
+    /**
+     * Carga un cache guardado con {@link #guardar}; si no existe o no es válido, empieza vacío.
+     * Las entradas de archivos que cambiaron se cargan igual, pero ya no coinciden con nada.
+     */
+    public static CacheResultados cargar(Path archivoCache, int maxEntradas, long maxBytes) {
+        CacheResultados cache = new CacheResultados(maxEntradas, maxBytes);
+        if (archivoCache == null || !Files.isRegularFile(archivoCache)) {
+            return cache;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivoCache), 1 << 16))) {
+            if (in.readInt() != MAGICO) {
+                throw new IOException("formato desconocido");
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Clave clave = new Clave(in.readUTF(), in.readLong(), in.readLong(), in.readUTF(), in.readUTF(), in.readUTF());
+                int nHallazgos = in.readInt();
+                List<Hallazgo> hallazgos = new ArrayList<>(nHallazgos);
+                for (int h = 0; h < nHallazgos; h++) {
+                    String rutaCompleta = in.readUTF();
+                    String carpeta = in.readUTF();
+                    String nombreArchivo = in.readUTF();
+                    int ocurrencias = in.readInt();
+                    int nLineas = in.readInt();
+                    List<String> lineas = new ArrayList<>(nLineas);
+                    for (int l = 0; l < nLineas; l++) {
+                        lineas.add(in.readUTF());
+                    }
+                    hallazgos.add(new Hallazgo(rutaCompleta, carpeta, nombreArchivo, ocurrencias, lineas));
+                }
+                // Se escribieron de la menos a la más usada: así se conserva el orden LRU
+                cache.poner(clave, hallazgos);
+            }
+        } catch (IOException ex) {
+            System.err.println("Cache inválido, se empieza vacío: " + archivoCache + " -> " + ex.getMessage());
+            cache.limpiar();
+        }
+        return cache;
+    }
+
+    /**
+     * Escribe el cache en un temporal y luego lo mueve encima del anterior.
+     */
+    public synchronized void guardar(Path archivoCache) throws IOException {
+        Path carpeta = archivoCache.toAbsolutePath().getParent();
+        if (carpeta != null) {
+            Files.createDirectories(carpeta);
+        }
+        Path temporal = archivoCache.resolveSibling(archivoCache.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 16))) {
+            out.writeInt(MAGICO);
+            out.writeInt(entradas.size());
+            for (Map.Entry<Clave, Entrada> e : entradas.entrySet()) {
+                Clave c = e.getKey();
+                out.writeUTF(c.ruta);
+                out.writeLong(c.tamano);
+                out.writeLong(c.modificado);
+                out.writeUTF(c.cadena);
+                out.writeUTF(c.charset);
+                out.writeUTF(c.modo);
+                out.writeInt(e.getValue().hallazgos.size());
+                for (Hallazgo h : e.getValue().hallazgos) {
+                    out.writeUTF(h.rutaCompleta);
+                    out.writeUTF(h.carpeta);
+                    out.writeUTF(h.nombreArchivo);
+                    out.writeInt(h.ocurrencias);
+                    out.writeInt(h.lineas.size());
+                    for (String linea : h.lineas) {
+                        // writeUTF no acepta más de 64 KB codificados
+                        out.writeUTF(linea.length() > 16 * 1024 ? linea.substring(0, 16 * 1024) : linea);
+                    }
+                }
+            }
+        }
+        Files.move(temporal, archivoCache, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public synchronized long aciertos() {
+        return aciertos;
+    }
+
+    public synchronized long fallos() {
+        return fallos;
+    }
+
+    public synchronized int entradas() {
+        return entradas.size();
+    }
+
+    public synchronized long bytesAproximados() {
+        return bytes;
+    }
+
+    public synchronized void limpiar() {
+        entradas.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @param modo lo que cambia el resultado además de la cadena (p. ej. con o sin detalle de líneas)
+     * @return la clave con el tamaño y fecha actuales del archivo, o null si no se pueden leer
+     */
+    static Clave clave(Path archivo, String cadena, Charset charset, String modo) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(archivo, BasicFileAttributes.class);
+            return new Clave(archivo.toAbsolutePath().toString(), attrs.size(),
+                    attrs.lastModifiedTime().toMillis(), cadena, charset.name(), modo);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return los hallazgos guardados (vacío = el archivo no tenía la cadena), o null si no está
+     */
+    synchronized List<Hallazgo> obtener(Clave clave) {
+        Entrada e = entradas.get(clave);
+        if (e == null) {
+            fallos++;
+            return null;
+        }
+        aciertos++;
+        return e.hallazgos;
+    }
+
+    synchronized void poner(Clave clave, List<Hallazgo> hallazgos) {
+        Entrada nueva = new Entrada(List.copyOf(hallazgos), clave.peso() + pesoDe(hallazgos));
+        Entrada vieja = entradas.put(clave, nueva);
+        if (vieja != null) {
+            bytes -= vieja.peso;
+        }
+        bytes += nueva.peso;
+
+        Iterator<Entrada> it = entradas.values().iterator();
+        while ((entradas.size() > maxEntradas || bytes > maxBytes) && it.hasNext()) {
+            bytes -= it.next().peso;
+            it.remove();
+        }
+    }
+
+    // Aproximado: cabeceras de objetos más 2 bytes por char
+    private static long pesoDe(List<Hallazgo> hallazgos) {
+        long peso = 32;
+        for (Hallazgo h : hallazgos) {
+            peso += 64 + 2L * (h.rutaCompleta.length() + h.carpeta.length() + h.nombreArchivo.length());
+            for (String linea : h.lineas) {
+                peso += 48 + 2L * linea.length();
+            }
+        }
+        return peso;
+    }
+
+    /**
+     * Archivo + lo que se buscó. Dos búsquedas con la misma clave dan el mismo resultado.
+     */
+    static final class Clave {
+        final String ruta;
+        final long tamano;
+        final long modificado;
+        final String cadena;
+        final String charset;
+        final String modo;
+
+        Clave(String ruta, long tamano, long modificado, String cadena, String charset, String modo) {
+            this.ruta = ruta;
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.cadena = cadena;
+            this.charset = charset;
+            this.modo = modo;
+        }
+
+        long peso() {
+            return 96 + 2L * (ruta.length() + cadena.length() + charset.length() + modo.length());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Clave c)) return false;
+            return tamano == c.tamano && modificado == c.modificado
+                    && ruta.equals(c.ruta) && cadena.equals(c.cadena)
+                    && charset.equals(c.charset) && modo.equals(c.modo);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ruta, tamano, modificado, cadena, charset, modo);
+        }
+    }
+
+    /**
+     * Lo que se guarda de cada Resultado; cada clase de búsqueda lo convierte a su propio Resultado.
+     */
+    static final class Hallazgo {
+        final String rutaCompleta;
+        final String carpeta;
+        final String nombreArchivo;
+        final int ocurrencias;
+        final List<String> lineas;
+
+        Hallazgo(String rutaCompleta, String carpeta, String nombreArchivo, int ocurrencias, List<String> lineas) {
+            this.rutaCompleta = rutaCompleta;
+            this.carpeta = carpeta;
+            this.nombreArchivo = nombreArchivo;
+            this.ocurrencias = ocurrencias;
+            this.lineas = List.copyOf(lineas);
+        }
+    }
+
+    private static final class Entrada {
+        final List<Hallazgo> hallazgos;
+        final long peso;
+
+        Entrada(List<Hallazgo> hallazgos, long peso) {
+            this.hallazgos = hallazgos;
+            this.peso = peso;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.example;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * "Charset" que en realidad es la orden de detectar la codificación de cada archivo (y de cada
+ * .gz o entrada de zip): se pasa en lugar de UTF-8 a cualquier búsqueda y así una carpeta con
+ * logs en UTF-8, UTF-16LE/BE (servicios de Windows) e ISO-8859-1 (sistemas viejos) se busca
+ * en una sola pasada.
+ * <pre>
+ *   BuscarCadenaEnCarpetaZip.buscarEnCarpeta(carpeta, "ERROR", CharsetPorArchivo.INSTANCIA, true);
+ * </pre>
+ * Cada stream se clasifica por sus primeros bytes con {@link ClasificadorArchivos} (BOM, bytes
+ * NUL alternados, UTF-8 válido o no) y la cadena se busca sobre los bytes ya codificada en ese
+ * charset (ver {@link BuscadorPorCodificacion}). Solo se decodifican las líneas del detalle.
+ * <p>
+ * Donde algo tiene que decodificar sin detectar (p. ej. el índice de trigramas), se comporta
+ * como UTF-8.
+ */
+public final class CharsetPorArchivo extends Charset {
+
+    public static final CharsetPorArchivo INSTANCIA = new CharsetPorArchivo();
+
+    private CharsetPorArchivo() {
+        super("x-por-archivo", new String[]{"auto"});
+    }
+
+    /**
+     * @return la instancia si {@code nombre} es "auto" (o "x-por-archivo"); si no, el charset de ese nombre
+     */
+    public static Charset forName(String nombre) {
+        return "auto".equalsIgnoreCase(nombre) || INSTANCIA.name().equalsIgnoreCase(nombre)
+                ? INSTANCIA
+                : Charset.forName(nombre);
+    }
+
+    /**
+     * El charset con el que se busca un stream clasificado como {@code tipo}. Lo binario o
+     * vacío se busca como UTF-8, igual que antes.
+     */
+    static Charset para(ClasificadorArchivos.Tipo tipo) {
+        return switch (tipo) {
+            case UTF16LE -> StandardCharsets.UTF_16LE;
+            case UTF16BE -> StandardCharsets.UTF_16BE;
+            case OCHO_BITS -> StandardCharsets.ISO_8859_1;
+            default -> StandardCharsets.UTF_8;
+        };
+    }
+
+    @Override
+    public boolean contains(Charset cs) {
+        return cs == this || StandardCharsets.UTF_8.contains(cs);
+    }
+
+    @Override
+    public CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder();
+    }
+
+    @Override
+    public CharsetEncoder newEncoder() {
+        return StandardCharsets.UTF_8.newEncoder();
+    }
+}
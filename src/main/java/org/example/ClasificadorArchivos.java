@@ -0,0 +1,208 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decide si un archivo es texto mirando los primeros bytes, para no depender solo de la extensión
+ * ("server.log.1", "app.out" o rotaciones sin extensión también se buscan).
+ * <p>
+ * Primero la extensión: las binarias conocidas (.dll, .exe, .tbl...) se descartan sin abrirlas.
+ * Lo demás se decide con una sola lectura de {@link #TAM_MUESTRA} bytes:
+ * <ul>
+ *   <li>BOM de UTF-8 o UTF-16: texto.</li>
+ *   <li>Bytes NUL: binario, salvo que estén en posiciones alternas (UTF-16 sin BOM).</li>
+ *   <li>Muchos bytes de control: binario.</li>
+ *   <li>Lo demás es texto: ASCII, UTF-8 válido o de 8 bits (Latin-1/Windows-1252).</li>
+ * </ul>
+ * La decisión se recuerda por archivo (ruta, tamaño y fecha), así que la siguiente búsqueda
+ * ni siquiera abre los binarios.
+ */
+final class ClasificadorArchivos {
+
+    static final int TAM_MUESTRA = 8 * 1024;
+
+    // Tope del cache; al pasarlo se vacía (el costo es volver a leer una muestra por archivo)
+    private static final int MAX_RECORDADOS = 200_000;
+
+    private static final String[] EXTENSIONES_BINARIAS = {
+            ".dll", ".exe", ".tbl", ".so", ".dylib", ".o", ".obj", ".lib", ".pdb", ".msi",
+            ".class", ".jar", ".war", ".ear",
+            ".zip", ".gz", ".7z", ".rar", ".tar", ".tgz", ".bz2", ".xz",
+            ".png", ".jpg", ".jpeg", ".gif", ".bmp", ".ico", ".pdf",
+            ".mp3", ".mp4", ".avi", ".iso", ".db", ".sqlite", ".mdb"
+    };
+
+    private static final ConcurrentHashMap<String, Clasificado> RECORDADOS = new ConcurrentHashMap<>();
+
+    private ClasificadorArchivos() {
+    }
+
+    enum Tipo {
+        VACIO, BINARIO, ASCII, UTF8, UTF16LE, UTF16BE, OCHO_BITS;
+
+        boolean esTexto() {
+            return this != VACIO && this != BINARIO;
+        }
+    }
+
+    /**
+     * @param nombreLower nombre del archivo (o entrada) en minúsculas
+     */
+    static boolean descartadoPorExtension(String nombreLower) {
+        for (String ext : EXTENSIONES_BINARIAS) {
+            if (nombreLower.endsWith(ext)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Para archivos sin extensión de texto conocida. Un archivo vacío no cuenta como texto:
+     * no puede tener la cadena.
+     */
+    static boolean esTexto(Path archivo) {
+        String nombre = archivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (descartadoPorExtension(nombre)) {
+            MetricasBusqueda.omitido("extension binaria");
+            return false;
+        }
+        Tipo tipo = clasificar(archivo);
+        if (!tipo.esTexto()) {
+            MetricasBusqueda.omitido(tipo == Tipo.VACIO ? "vacio" : "contenido binario");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Clasifica por contenido, usando lo ya decidido si el archivo no cambió.
+     * Si no se puede leer, se trata como binario (la búsqueda lo habría reportado igual).
+     */
+    static Tipo clasificar(Path archivo) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(archivo, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            return Tipo.BINARIO;
+        }
+        if (attrs.size() == 0) {
+            return Tipo.VACIO;
+        }
+
+        String ruta = archivo.toAbsolutePath().toString();
+        long modificado = attrs.lastModifiedTime().toMillis();
+        Clasificado previo = RECORDADOS.get(ruta);
+        if (previo != null && previo.tamano == attrs.size() && previo.modificado == modificado) {
+            return previo.tipo;
+        }
+
+        Tipo tipo;
+        try (InputStream is = Files.newInputStream(archivo)) {
+            byte[] muestra = is.readNBytes(TAM_MUESTRA);
+            tipo = clasificar(muestra, muestra.length);
+        } catch (IOException ex) {
+            return Tipo.BINARIO;
+        }
+
+        if (RECORDADOS.size() >= MAX_RECORDADOS) {
+            RECORDADOS.clear();
+        }
+        RECORDADOS.put(ruta, new Clasificado(attrs.size(), modificado, tipo));
+        return tipo;
+    }
+
+    /**
+     * Clasifica el inicio de un stream sin consumirlo (mark/reset): después de la llamada,
+     * {@code bis} se lee desde el principio.
+     */
+    static Tipo clasificarInicio(BufferedInputStream bis) throws IOException {
+        bis.mark(TAM_MUESTRA);
+        byte[] muestra = bis.readNBytes(TAM_MUESTRA);
+        bis.reset();
+        return clasificar(muestra, muestra.length);
+    }
+
+    static Tipo clasificar(byte[] b, int n) {
+        if (n == 0) return Tipo.VACIO;
+
+        // 1) BOM
+        if (n >= 3 && (b[0] & 0xFF) == 0xEF && (b[1] & 0xFF) == 0xBB && (b[2] & 0xFF) == 0xBF) return Tipo.UTF8;
+        if (n >= 2 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xFE) return Tipo.UTF16LE;
+        if (n >= 2 && (b[0] & 0xFF) == 0xFE && (b[1] & 0xFF) == 0xFF) return Tipo.UTF16BE;
+
+        // 2) NUL: en UTF-16 de texto latino casi la mitad de los bytes son 0, siempre del mismo lado
+        int nulPares = 0;
+        int nulImpares = 0;
+        for (int i = 0; i < n; i++) {
+            if (b[i] == 0) {
+                if ((i & 1) == 0) nulPares++;
+                else nulImpares++;
+            }
+        }
+        if (nulPares + nulImpares > 0) {
+            int mitad = n / 2;
+            if (n >= 4 && nulImpares * 10 >= mitad * 4 && nulPares * 50 <= mitad) return Tipo.UTF16LE;
+            if (n >= 4 && nulPares * 10 >= mitad * 4 && nulImpares * 50 <= mitad) return Tipo.UTF16BE;
+            return Tipo.BINARIO;
+        }
+
+        // 3) Control y validez UTF-8 en una pasada
+        int controles = 0;
+        boolean soloAscii = true;
+        boolean utf8Valido = true;
+        int i = 0;
+        while (i < n) {
+            int c = b[i] & 0xFF;
+            if (c < 0x80) {
+                // \t \n \f \r, backspace y ESC (colores ANSI) son normales en logs
+                if ((c < 0x20 && c != '\t' && c != '\n' && c != '\f' && c != '\r' && c != 0x08 && c != 0x1B) || c == 0x7F) {
+                    controles++;
+                }
+                i++;
+                continue;
+            }
+
+            soloAscii = false;
+            if (!utf8Valido) {
+                i++;
+                continue;
+            }
+            int largo = c >= 0xF0 && c <= 0xF4 ? 4 : c >= 0xE0 ? 3 : c >= 0xC2 && c <= 0xDF ? 2 : 0;
+            if (largo == 0) {
+                utf8Valido = false;
+                i++;
+                continue;
+            }
+            // Una secuencia cortada por el final de la muestra no cuenta como inválida
+            for (int k = 1; k < largo && i + k < n; k++) {
+                if ((b[i + k] & 0xC0) != 0x80) {
+                    utf8Valido = false;
+                    break;
+                }
+            }
+            i += largo;
+        }
+
+        if (controles * 20 > n) return Tipo.BINARIO;
+        if (soloAscii) return Tipo.ASCII;
+        return utf8Valido ? Tipo.UTF8 : Tipo.OCHO_BITS;
+    }
+
+    private static final class Clasificado {
+        final long tamano;
+        final long modificado;
+        final Tipo tipo;
+
+        Clasificado(long tamano, long modificado, Tipo tipo) {
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.tipo = tipo;
+        }
+    }
+}
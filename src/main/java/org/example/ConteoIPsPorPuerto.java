@@ -0,0 +1,316 @@
+package org.example;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Cantidad aproximada de IPs distintas por puerto, con un HyperLogLog por puerto: la memoria
+ * no depende de cuántas IPs distintas haya, solo de cuántos puertos aparecen y del error pedido.
+ * <p>
+ * Mientras un puerto tiene pocas IPs se guardan tal cual (conteo exacto); cuando ocuparían más
+ * que los registros del HyperLogLog, se pasa a registros. Así los miles de puertos con un par de
+ * IPs no pagan el sketch completo.
+ * <p>
+ * Los conteos se pueden {@link #unir} (archivos, hilos, días) y {@link #guardar guardar}: un mes
+ * sale de juntar los de cada día sin volver a leer los logs. Solo se unen conteos con la misma
+ * precisión.
+ * <p>
+ * No es thread-safe: en paralelo, cada hilo llena el suyo y al final se juntan.
+ */
+public final class ConteoIPsPorPuerto implements DestinoIPPuerto {
+
+    private static final int MAGICO = 0x484C4C31; // "HLL1"
+
+    static final int PRECISION_MIN = 4;
+    static final int PRECISION_MAX = 16;
+
+    private final int precision;
+    private final int registros;
+    // Por puerto: null, lista exacta (int[] con direccionamiento abierto) o registros (byte[])
+    private final Object[] porPuerto = new Object[IPsPorPuerto.PUERTOS];
+    private final int[] exactas = new int[IPsPorPuerto.PUERTOS];
+    // En la tabla exacta el 0 marca lugar libre: 0.0.0.0 se anota aparte
+    private final long[] conCero = new long[IPsPorPuerto.PUERTOS / 64];
+
+    private ConteoIPsPorPuerto(int precision) {
+        if (precision < PRECISION_MIN || precision > PRECISION_MAX) {
+            throw new IllegalArgumentException("La precisión debe estar entre " + PRECISION_MIN + " y " + PRECISION_MAX + ": " + precision);
+        }
+        this.precision = precision;
+        this.registros = 1 << precision;
+    }
+
+    /**
+     * @param errorRelativo error estándar aceptado, p. ej. 0.01 para ±1 % (16 KB por puerto con
+     *                      muchas IPs); 0.02 para ±2 % (4 KB)
+     */
+    public static ConteoIPsPorPuerto conError(double errorRelativo) {
+        if (!(errorRelativo > 0 && errorRelativo < 1)) {
+            throw new IllegalArgumentException("El error debe estar entre 0 y 1: " + errorRelativo);
+        }
+        // Error estándar de HyperLogLog: 1.04 / sqrt(m)
+        double m = Math.pow(1.04 / errorRelativo, 2);
+        int p = (int) Math.ceil(Math.log(m) / Math.log(2));
+        return new ConteoIPsPorPuerto(Math.max(PRECISION_MIN, Math.min(PRECISION_MAX, p)));
+    }
+
+    public static ConteoIPsPorPuerto conPrecision(int precision) {
+        return new ConteoIPsPorPuerto(precision);
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    public double errorEstandar() {
+        return 1.04 / Math.sqrt(registros);
+    }
+
+    @Override
+    public boolean agregar(int puerto, int ip) {
+        Object actual = porPuerto[puerto];
+        if (actual instanceof byte[] r) {
+            return registrar(r, hash(ip));
+        }
+
+        int[] tabla = (int[]) actual;
+        if (tabla == null) {
+            tabla = new int[8];
+            porPuerto[puerto] = tabla;
+        }
+        if (ip == 0) {
+            long bit = 1L << puerto;
+            if ((conCero[puerto >>> 6] & bit) != 0) return false;
+            conCero[puerto >>> 6] |= bit;
+            exactas[puerto]++;
+            return true;
+        }
+        int mascara = tabla.length - 1;
+        int i = (int) hash(ip) & mascara;
+        while (tabla[i] != 0) {
+            if (tabla[i] == ip) return false;
+            i = (i + 1) & mascara;
+        }
+        tabla[i] = ip;
+        exactas[puerto]++;
+
+        if (exactas[puerto] * 2 > tabla.length) {
+            // Cuando la tabla exacta ocuparía más que los registros, se pasa a HyperLogLog
+            if (tabla.length * 2 * Integer.BYTES > registros) {
+                porPuerto[puerto] = aRegistros(puerto, tabla);
+            } else {
+                porPuerto[puerto] = crecer(tabla);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return IPs distintas del puerto: exacta si son pocas, si no la estimación
+     */
+    public long cantidad(int puerto) {
+        Object actual = porPuerto[puerto];
+        if (actual == null) return 0;
+        if (actual instanceof int[]) return exactas[puerto];
+        return estimar((byte[]) actual);
+    }
+
+    /**
+     * @return los puertos que tienen al menos una IP, de menor a mayor
+     */
+    public int[] puertos() {
+        int n = 0;
+        for (Object o : porPuerto) if (o != null) n++;
+        int[] r = new int[n];
+        int k = 0;
+        for (int p = 0; p < porPuerto.length; p++) {
+            if (porPuerto[p] != null) r[k++] = p;
+        }
+        return r;
+    }
+
+    /**
+     * Suma a este las IPs de {@code otro} (el resultado es el mismo que si se hubieran leído juntos).
+     */
+    public void unir(ConteoIPsPorPuerto otro) {
+        if (otro.precision != precision) {
+            throw new IllegalArgumentException("No se pueden unir conteos con distinta precisión: "
+                    + precision + " y " + otro.precision);
+        }
+        for (int p = 0; p < porPuerto.length; p++) {
+            Object suyo = otro.porPuerto[p];
+            if (suyo == null) continue;
+
+            if (suyo instanceof int[] tabla) {
+                if (otro.tieneCero(p)) agregar(p, 0);
+                for (int ip : tabla) {
+                    if (ip != 0) agregar(p, ip);
+                }
+                continue;
+            }
+
+            byte[] suyos = (byte[]) suyo;
+            Object mio = porPuerto[p];
+            byte[] mios;
+            if (mio instanceof byte[] r) {
+                mios = r;
+            } else {
+                mios = mio == null ? new byte[registros] : aRegistros(p, (int[]) mio);
+                porPuerto[p] = mios;
+            }
+            for (int i = 0; i < registros; i++) {
+                if (suyos[i] > mios[i]) mios[i] = suyos[i];
+            }
+        }
+    }
+
+    /**
+     * Escribe en un temporal y luego lo mueve encima del anterior.
+     */
+    public void guardar(Path archivo) throws IOException {
+        Path carpeta = archivo.toAbsolutePath().getParent();
+        if (carpeta != null) {
+            Files.createDirectories(carpeta);
+        }
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 16))) {
+            out.writeInt(MAGICO);
+            out.writeByte(precision);
+            int[] puertos = puertos();
+            out.writeInt(puertos.length);
+            for (int p : puertos) {
+                out.writeShort(p);
+                Object actual = porPuerto[p];
+                if (actual instanceof int[] tabla) {
+                    out.writeByte(0);
+                    out.writeInt(exactas[p]);
+                    if (tieneCero(p)) out.writeInt(0);
+                    for (int ip : tabla) {
+                        if (ip != 0) out.writeInt(ip);
+                    }
+                } else {
+                    out.writeByte(1);
+                    out.write((byte[]) actual);
+                }
+            }
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @throws IOException si no existe o no es un conteo guardado con {@link #guardar}
+     */
+    public static ConteoIPsPorPuerto cargar(Path archivo) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), 1 << 16))) {
+            if (in.readInt() != MAGICO) {
+                throw new IOException("formato desconocido: " + archivo);
+            }
+            ConteoIPsPorPuerto conteo;
+            try {
+                conteo = new ConteoIPsPorPuerto(in.readByte());
+            } catch (IllegalArgumentException ex) {
+                throw new IOException(ex.getMessage() + ": " + archivo);
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                int p = in.readUnsignedShort();
+                if (in.readByte() == 0) {
+                    int cantidad = in.readInt();
+                    for (int k = 0; k < cantidad; k++) {
+                        conteo.agregar(p, in.readInt());
+                    }
+                } else {
+                    byte[] r = new byte[conteo.registros];
+                    in.readFully(r);
+                    conteo.porPuerto[p] = r;
+                }
+            }
+            return conteo;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "ConteoIPsPorPuerto[precision=%d, error=%.2f%%, puertos=%d]",
+                precision, errorEstandar() * 100, puertos().length);
+    }
+
+    // ===========================
+    // HyperLogLog
+    // ===========================
+
+    // Los primeros "precision" bits eligen el registro; el resto, cuántos ceros hay al principio
+    private boolean registrar(byte[] r, long h) {
+        int indice = (int) (h >>> (64 - precision));
+        int ceros = Long.numberOfLeadingZeros((h << precision) | (1L << (precision - 1))) + 1;
+        if (ceros > r[indice]) {
+            r[indice] = (byte) ceros;
+            return true;
+        }
+        return false;
+    }
+
+    private byte[] aRegistros(int puerto, int[] tabla) {
+        byte[] r = new byte[registros];
+        if (tieneCero(puerto)) registrar(r, hash(0));
+        for (int ip : tabla) {
+            if (ip != 0) registrar(r, hash(ip));
+        }
+        exactas[puerto] = 0;
+        conCero[puerto >>> 6] &= ~(1L << puerto);
+        return r;
+    }
+
+    private boolean tieneCero(int puerto) {
+        return (conCero[puerto >>> 6] & (1L << puerto)) != 0;
+    }
+
+    private long estimar(byte[] r) {
+        double suma = 0;
+        int vacios = 0;
+        for (byte v : r) {
+            suma += 1.0 / (1L << v);
+            if (v == 0) vacios++;
+        }
+        double m = registros;
+        double alfa = switch (registros) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+        double estimado = alfa * m * m / suma;
+        // Rango chico: con registros vacíos, el conteo lineal es más exacto
+        if (estimado <= 2.5 * m && vacios > 0) {
+            estimado = m * Math.log(m / vacios);
+        }
+        return Math.round(estimado);
+    }
+
+    private static int[] crecer(int[] tabla) {
+        int[] nueva = new int[tabla.length * 2];
+        int mascara = nueva.length - 1;
+        for (int ip : tabla) {
+            if (ip == 0) continue;
+            int i = (int) hash(ip) & mascara;
+            while (nueva[i] != 0) i = (i + 1) & mascara;
+            nueva[i] = ip;
+        }
+        return nueva;
+    }
+
+    // fmix64 de MurmurHash3: las IPs de una misma red quedan repartidas en los 64 bits
+    private static long hash(int ip) {
+        long h = ip & 0xFFFFFFFFL;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53fe4cd1a53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
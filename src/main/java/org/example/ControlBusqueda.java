@@ -0,0 +1,107 @@
+package org.example;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Control de una búsqueda "al vuelo": permite cancelarla desde otro hilo, detenerla sola
+ * después de N resultados y consultar cuánto se lleva encontrado.
+ * <p>
+ * Al cancelar, los archivos pendientes ya no se abren y los que se están leyendo dejan de
+ * leerse en el siguiente bloque; sus resultados parciales se descartan.
+ */
+public final class ControlBusqueda {
+
+    private final long limiteResultados;
+    private volatile boolean cancelada;
+    private final AtomicLong resultados = new AtomicLong();
+    private final AtomicLong ocurrencias = new AtomicLong();
+
+    private ControlBusqueda(long limiteResultados) {
+        this.limiteResultados = limiteResultados;
+    }
+
+    /**
+     * Recorre todo, salvo que se cancele.
+     */
+    public static ControlBusqueda sinLimite() {
+        return new ControlBusqueda(0);
+    }
+
+    /**
+     * Se cancela sola al entregar {@code n} resultados (n = 1: "¿existe en algún lado?").
+     */
+    public static ControlBusqueda detenerTras(long n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("El límite de resultados debe ser mayor a cero.");
+        }
+        return new ControlBusqueda(n);
+    }
+
+    public void cancelar() {
+        cancelada = true;
+    }
+
+    public boolean cancelada() {
+        return cancelada;
+    }
+
+    /**
+     * @return archivos (o entradas) con coincidencias entregados hasta ahora
+     */
+    public long resultados() {
+        return resultados.get();
+    }
+
+    /**
+     * @return suma de ocurrencias de los resultados entregados hasta ahora
+     */
+    public long ocurrencias() {
+        return ocurrencias.get();
+    }
+
+    /**
+     * Entrega un resultado al consumidor, de a uno a la vez (el consumidor no necesita ser thread-safe).
+     *
+     * @param destino puede ser null (modo solo conteo)
+     */
+    synchronized <R> void entregar(R resultado, int ocurrenciasDelResultado, Consumer<R> destino) {
+        if (cancelada) return;
+
+        resultados.incrementAndGet();
+        ocurrencias.addAndGet(ocurrenciasDelResultado);
+        try {
+            if (destino != null) {
+                destino.accept(resultado);
+            }
+        } catch (RuntimeException ex) {
+            // Si el consumidor falla, no tiene caso seguir buscando
+            cancelada = true;
+            throw ex;
+        }
+
+        if (limiteResultados > 0 && resultados.get() >= limiteResultados) {
+            cancelada = true;
+        }
+    }
+
+    /**
+     * Envuelve el stream de un archivo para que deje de entregar bytes en cuanto se cancele.
+     */
+    InputStream envolver(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                return cancelada ? -1 : super.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return cancelada ? -1 : super.read(b, off, len);
+            }
+        };
+    }
+}
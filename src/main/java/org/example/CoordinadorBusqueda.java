@@ -0,0 +1,603 @@
+package org.example;
+
+import org.example.BuscarCadenaEnCarpetaZip.Resultado;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Búsqueda repartida entre varios procesos: para buscar en varias carpetas grandes a la vez sin
+ * que una sola JVM se quede sin heap ni sature su lectura.
+ * <p>
+ * El coordinador recorre las carpetas, ordena los archivos por ruta y los corta en shards de
+ * archivos contiguos (subárboles, en la práctica) de tamaño parecido en bytes, unos cuantos por
+ * trabajador. Lanza los trabajadores ({@link TrabajadorBusqueda}, cada uno en su JVM) y les va
+ * dando un shard a la vez por un socket local. Cada trabajador devuelve los resultados de cada
+ * archivo apenas lo termina; al final se juntan en el orden de las rutas.
+ * <ul>
+ *   <li>Robo de trabajo: si un trabajador queda libre y no hay shards en cola, se le da la
+ *       segunda mitad de lo que le falta al shard más atrasado, y al dueño se le avisa que corte
+ *       ahí. Un archivo que los dos alcanzaron a leer se toma una sola vez.</li>
+ *   <li>Fallas: si un trabajador se cae (o se corta la conexión), lo que le faltaba de su shard
+ *       vuelve a la cola para otro. Si no queda ninguno, lo pendiente se busca en este proceso.</li>
+ * </ul>
+ * Protocolo (DataOutputStream, todo big-endian; las cadenas como en {@link SalidaResultados}):
+ * <pre>
+ *   trabajador: "TRB1" pid
+ *   coordinador: 'Q' cadena charset modo maxLineas antes despues
+ *   coordinador: 'A' id n (índice ruta)*n     trabajador: 'R' id índice n resultado*n   (uno por archivo)
+ *   coordinador: 'C' id hasta                 trabajador: 'H' id                       (shard terminado)
+ *   coordinador: 'F'
+ * </pre>
+ * Se prueba con varios procesos en la misma máquina:
+ * <pre>
+ *   java -cp target/classes org.example.CoordinadorBusqueda ERROR 4 /var/log/app1 /var/log/app2
+ *   java -Dbusqueda.coordinador.puerto=7790 -cp target/classes org.example.CoordinadorBusqueda ERROR 0 /var/log/app1
+ *   java -cp target/classes org.example.TrabajadorBusqueda 7790      (en otras terminales)
+ * </pre>
+ * Las propiedades {@code busqueda.*} (p. ej. {@code busqueda.memoria}) pasan a los trabajadores
+ * que lanza; sus opciones de JVM van en {@code -Dbusqueda.trabajador.opciones="-Xmx512m"}.
+ * Solo escucha en la interfaz local (127.0.0.1).
+ */
+public final class CoordinadorBusqueda {
+
+    static final int MAGICO = 0x54524231; // "TRB1"
+
+    static final byte CONSULTA = 'Q';
+    static final byte ASIGNACION = 'A';
+    static final byte CORTE = 'C';
+    static final byte FIN = 'F';
+    static final byte RESULTADO = 'R';
+    static final byte HECHO = 'H';
+
+    // Más de un shard por trabajador, para que el que termina antes tenga qué pedir
+    private static final int SHARDS_POR_TRABAJADOR = 4;
+    // Sin trabajadores propios, cuánto se espera a que se conecte alguno antes de buscar aquí
+    private static final long ESPERA_SIN_TRABAJADORES_MS = 30_000;
+
+    private final String cadena;
+    private final Charset charset;
+    private final OpcionesDetalle detalle;
+    private final ModoBusqueda modo;
+
+    private final List<Path> archivos = new ArrayList<>();
+    private final List<Long> tamanos = new ArrayList<>();
+    private final BitSet primerosDeRaiz = new BitSet();
+
+    // Todo lo de abajo se lee y se cambia con el lock del coordinador
+    private List<List<Resultado>> porArchivo; // null: todavía no llegó
+    private int faltan;
+    private final ArrayDeque<Shard> cola = new ArrayDeque<>();
+    private final List<Conexion> conexiones = new ArrayList<>();
+    private final List<Process> procesos = new ArrayList<>();
+    private int siguienteId;
+    private long ultimaConexion;
+    private int robos;
+    private int reasignados;
+    private boolean terminado;
+
+    CoordinadorBusqueda(List<Path> raices, String cadena, Charset charset, OpcionesDetalle detalle,
+                        ModoBusqueda modo) throws IOException {
+        if (raices == null || raices.isEmpty()) {
+            throw new IllegalArgumentException("Hay que indicar al menos una carpeta.");
+        }
+        if (cadena == null || cadena.isBlank()) {
+            throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
+        }
+        for (Path raiz : raices) {
+            if (!Files.isDirectory(raiz)) {
+                throw new IllegalArgumentException("La ruta no es una carpeta válida: " + raiz);
+            }
+        }
+        this.cadena = cadena;
+        this.charset = charset;
+        this.detalle = detalle;
+        this.modo = modo;
+
+        for (Path raiz : raices) {
+            List<Path> deRaiz;
+            try (var stream = Files.walk(raiz)) {
+                deRaiz = stream
+                        .filter(Files::isRegularFile)
+                        .filter(BuscarCadenaEnCarpetaZip::esCandidato)
+                        .sorted()
+                        .toList();
+            }
+            primerosDeRaiz.set(archivos.size());
+            for (Path p : deRaiz) {
+                archivos.add(p);
+                tamanos.add(tamano(p));
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Uso: CoordinadorBusqueda <cadena> <trabajadores> <carpeta> [carpeta...]");
+            System.exit(1);
+        }
+        String cadena = args[0];
+        int trabajadores = Integer.parseInt(args[1]);
+        List<Path> raices = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) raices.add(Paths.get(args[i]));
+        int puerto = Integer.getInteger("busqueda.coordinador.puerto", 0);
+
+        try {
+            CoordinadorBusqueda coordinador = new CoordinadorBusqueda(raices, cadena, StandardCharsets.UTF_8,
+                    OpcionesDetalle.DEFAULT, ModoBusqueda.EXACTA);
+            List<Resultado> resultados = coordinador.ejecutar(puerto, trabajadores);
+
+            try (SalidaResultados salida = SalidaResultados.consola()) {
+                if (resultados.isEmpty()) {
+                    salida.mensaje("No se encontró la cadena: \"" + cadena + "\"");
+                } else {
+                    salida.mensaje("Encontrado en " + resultados.size() + " archivo(s):");
+                    for (Resultado r : resultados) {
+                        salida.escribir(r);
+                    }
+                }
+            }
+            System.err.printf("%d archivos, %d robos de trabajo, %d shards reasignados%n",
+                    coordinador.archivos.size(), coordinador.robos(), coordinador.reasignados());
+
+        } catch (IOException e) {
+            System.err.println("Error en la búsqueda repartida: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Busca en todas las carpetas con {@code trabajadores} procesos lanzados desde aquí.
+     * Los resultados son los de {@link BuscarCadenaEnCarpetaZip#buscarEnCarpeta}, ordenados por
+     * carpeta (en el orden dado) y ruta.
+     *
+     * @param trabajadores JVMs a lanzar; si es <= 0, una por núcleo
+     */
+    public static List<Resultado> buscar(List<Path> raices,
+                                         String cadena,
+                                         Charset charset,
+                                         OpcionesDetalle detalle,
+                                         ModoBusqueda modo,
+                                         int trabajadores) throws IOException {
+        return new CoordinadorBusqueda(raices, cadena, charset, detalle, modo)
+                .ejecutar(0, EjecutorParalelo.normalizarHilos(trabajadores));
+    }
+
+    /**
+     * @param puerto       0 para que el sistema elija uno libre
+     * @param trabajadores JVMs a lanzar; con 0 solo se atienden los que se conecten solos
+     */
+    List<Resultado> ejecutar(int puerto, int trabajadores) throws IOException {
+        if (archivos.isEmpty()) {
+            return List.of();
+        }
+        armarShards(Math.max(1, trabajadores));
+
+        try (ServerSocket servidor = new ServerSocket(puerto, 50, InetAddress.getLoopbackAddress())) {
+            Thread aceptar = new Thread(() -> aceptarConexiones(servidor), "coordinador-conexiones");
+            aceptar.setDaemon(true);
+            aceptar.start();
+            synchronized (this) {
+                ultimaConexion = System.currentTimeMillis();
+            }
+            if (trabajadores > 0) {
+                lanzarTrabajadores(servidor.getLocalPort(), trabajadores);
+            }
+            esperarResultados(trabajadores > 0);
+        } finally {
+            terminar();
+        }
+
+        List<Resultado> encontrados = new ArrayList<>();
+        for (List<Resultado> rs : porArchivo) {
+            encontrados.addAll(rs);
+        }
+        return encontrados;
+    }
+
+    // ===========================
+    // Shards
+    // ===========================
+    private void armarShards(int trabajadores) {
+        long total = 0;
+        for (long t : tamanos) total += t;
+        long objetivo = Math.max(1, total / ((long) trabajadores * SHARDS_POR_TRABAJADOR));
+
+        porArchivo = new ArrayList<>(Collections.nCopies(archivos.size(), null));
+        faltan = archivos.size();
+
+        // Corridas contiguas en el orden por ruta: cada shard queda en uno o pocos subárboles
+        int desde = 0;
+        long acumulado = 0;
+        for (int i = 0; i < archivos.size(); i++) {
+            acumulado += tamanos.get(i);
+            if (acumulado >= objetivo || primerosDeRaiz.get(i + 1) || i + 1 == archivos.size()) {
+                int[] indices = new int[i + 1 - desde];
+                for (int k = 0; k < indices.length; k++) indices[k] = desde + k;
+                cola.add(new Shard(siguienteId++, indices));
+                desde = i + 1;
+                acumulado = 0;
+            }
+        }
+    }
+
+    private static long tamano(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    // ===========================
+    // Trabajadores
+    // ===========================
+    private void lanzarTrabajadores(int puerto, int trabajadores) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        // Entre todos, un hilo por núcleo
+        int hilos = Math.max(1, Runtime.getRuntime().availableProcessors() / trabajadores);
+
+        List<String> comando = new ArrayList<>();
+        comando.add(java);
+        String opciones = System.getProperty("busqueda.trabajador.opciones", "").trim();
+        if (!opciones.isEmpty()) {
+            comando.addAll(Arrays.asList(opciones.split("\\s+")));
+        }
+        for (String nombre : System.getProperties().stringPropertyNames()) {
+            if (nombre.startsWith("busqueda.") && !nombre.startsWith("busqueda.coordinador.")
+                    && !nombre.startsWith("busqueda.trabajador.") && !nombre.startsWith("busqueda.salida")) {
+                comando.add("-D" + nombre + "=" + System.getProperty(nombre));
+            }
+        }
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(TrabajadorBusqueda.class.getName());
+        comando.add(Integer.toString(puerto));
+        comando.add(Integer.toString(hilos));
+
+        ProcessBuilder pb = new ProcessBuilder(comando)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT);
+        for (int i = 0; i < trabajadores; i++) {
+            Process p = pb.start();
+            synchronized (this) {
+                procesos.add(p);
+            }
+        }
+    }
+
+    private void aceptarConexiones(ServerSocket servidor) {
+        while (true) {
+            Socket socket;
+            try {
+                socket = servidor.accept();
+            } catch (IOException ex) {
+                return;    // se cerró al terminar
+            }
+            Thread t = new Thread(() -> atender(socket), "coordinador-trabajador");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void atender(Socket socket) {
+        Conexion c = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            socket.setSoTimeout(10_000);
+            if (in.readInt() != MAGICO) {
+                System.err.println("Conexión que no es de un trabajador, se ignora: " + socket.getRemoteSocketAddress());
+                return;
+            }
+            c = new Conexion(socket, out, in.readLong());
+            socket.setSoTimeout(0);
+
+            synchronized (this) {
+                if (terminado) return;
+                conexiones.add(c);
+                ultimaConexion = System.currentTimeMillis();
+                enviarConsulta(c);
+                asignar(c);
+            }
+
+            while (true) {
+                byte comando = in.readByte();
+                switch (comando) {
+                    case RESULTADO -> {
+                        in.readInt();    // id del shard: un archivo es el mismo venga de donde venga
+                        int indice = in.readInt();
+                        int n = in.readInt();
+                        List<Resultado> rs = new ArrayList<>(n);
+                        for (int k = 0; k < n; k++) {
+                            rs.add(SalidaResultados.leerResultado(in));
+                        }
+                        recibir(indice, rs);
+                    }
+                    case HECHO -> terminoShard(c, in.readInt());
+                    default -> throw new IOException("Mensaje desconocido del trabajador: " + comando);
+                }
+            }
+        } catch (EOFException | SocketException ex) {
+            // Se cayó el trabajador o se cerró al terminar: se trata abajo
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Error con el trabajador " + (c != null ? c.pid : socket.getRemoteSocketAddress())
+                    + ": " + ex.getMessage());
+        } finally {
+            if (c != null) perdida(c);
+        }
+    }
+
+    private synchronized void recibir(int indice, List<Resultado> rs) throws IOException {
+        if (indice < 0 || indice >= porArchivo.size()) {
+            throw new IOException("Índice de archivo inválido: " + indice);
+        }
+        // Si lo leyeron dos (robo o reasignación), vale el primero
+        if (porArchivo.get(indice) == null) {
+            porArchivo.set(indice, rs);
+            faltan--;
+            if (faltan == 0) notifyAll();
+        }
+    }
+
+    private synchronized void terminoShard(Conexion c, int id) {
+        Shard s = c.actual;
+        if (s == null || s.id != id) return;
+        c.actual = null;
+        // Normalmente no queda nada; si quedó algo (p. ej. un corte que llegó tarde) vuelve a la cola
+        int[] resto = s.pendientes();
+        if (resto.length > 0) {
+            cola.addFirst(new Shard(siguienteId++, resto));
+        }
+        asignar(c);
+        for (Conexion otra : List.copyOf(conexiones)) {
+            if (otra.actual == null) asignar(otra);
+        }
+    }
+
+    private synchronized void perdida(Conexion c) {
+        if (!conexiones.remove(c)) return;
+        Shard s = c.actual;
+        c.actual = null;
+        if (s != null && !terminado) {
+            int[] resto = s.pendientes();
+            if (resto.length > 0) {
+                System.err.println("Se perdió el trabajador " + c.pid + "; se reasignan " + resto.length + " archivo(s)");
+                cola.addFirst(new Shard(siguienteId++, resto));
+                reasignados++;
+            }
+            for (Conexion otra : List.copyOf(conexiones)) {
+                if (otra.actual == null) asignar(otra);
+            }
+        }
+        notifyAll();
+    }
+
+    // Con el lock: le da a {@code c} el siguiente shard de la cola, o la mitad del más atrasado
+    private void asignar(Conexion c) {
+        if (faltan == 0 || terminado || !conexiones.contains(c)) return;
+        Shard s = cola.poll();
+        if (s == null) {
+            s = robar(c);
+            if (s == null) return;
+        }
+        c.actual = s;
+        try {
+            c.out.writeByte(ASIGNACION);
+            c.out.writeInt(s.id);
+            c.out.writeInt(s.indices.length);
+            for (int indice : s.indices) {
+                c.out.writeInt(indice);
+                SalidaResultados.cadena(c.out, archivos.get(indice).toString());
+            }
+            c.out.flush();
+        } catch (IOException ex) {
+            // El hilo de la conexión ve el cierre y devuelve el shard a la cola
+            c.cerrar();
+        }
+    }
+
+    private Shard robar(Conexion ladron) {
+        Conexion victima = null;
+        int masPendientes = 1;    // uno solo probablemente ya se está leyendo: no vale la pena partirlo
+        for (Conexion otra : conexiones) {
+            if (otra == ladron || otra.actual == null) continue;
+            int n = otra.actual.pendientes().length;
+            if (n > masPendientes) {
+                masPendientes = n;
+                victima = otra;
+            }
+        }
+        if (victima == null) return null;
+
+        Shard original = victima.actual;
+        int[] pendientes = original.pendientes();
+        int corte = original.posicion(pendientes[pendientes.length / 2]);
+        int[] robados = original.cortar(corte);
+        try {
+            victima.out.writeByte(CORTE);
+            victima.out.writeInt(original.id);
+            victima.out.writeInt(corte);
+            victima.out.flush();
+        } catch (IOException ex) {
+            victima.cerrar();
+        }
+        robos++;
+        return new Shard(siguienteId++, robados);
+    }
+
+    private void enviarConsulta(Conexion c) throws IOException {
+        c.out.writeByte(CONSULTA);
+        SalidaResultados.cadena(c.out, cadena);
+        SalidaResultados.cadena(c.out, charset.name());
+        SalidaResultados.cadena(c.out, modo.name());
+        c.out.writeInt(detalle.maxLineas());
+        c.out.writeInt(detalle.antes());
+        c.out.writeInt(detalle.despues());
+        c.out.flush();
+    }
+
+    private void esperarResultados(boolean propios) throws IOException {
+        List<Integer> indices = new ArrayList<>();
+        synchronized (this) {
+            while (faltan > 0) {
+                boolean sinTrabajadores = conexiones.isEmpty()
+                        && (propios ? procesos.stream().noneMatch(Process::isAlive)
+                        : System.currentTimeMillis() - ultimaConexion > ESPERA_SIN_TRABAJADORES_MS);
+                if (sinTrabajadores) break;
+                try {
+                    wait(200);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Búsqueda repartida interrumpida");
+                }
+            }
+            if (faltan == 0) return;
+
+            // Lo que queda ya no se reparte: un trabajador que llegue tarde no recibe nada
+            for (int i = 0; i < porArchivo.size(); i++) {
+                if (porArchivo.get(i) == null) indices.add(i);
+            }
+            cola.clear();
+        }
+        buscarAqui(indices);
+    }
+
+    // Último recurso: lo que ningún trabajador devolvió se busca en este proceso, sin el lock
+    // (mientras tanto se siguen atendiendo conexiones y pérdidas)
+    private void buscarAqui(List<Integer> indices) {
+        System.err.println("No quedan trabajadores; se buscan aquí " + indices.size() + " archivo(s)");
+        List<Path> rutas = new ArrayList<>(indices.size());
+        for (int i : indices) rutas.add(archivos.get(i));
+        List<List<Resultado>> rs = BuscarCadenaEnCarpetaZip.buscarPorArchivo(rutas, cadena, charset, detalle, 0, modo);
+
+        synchronized (this) {
+            // Si algún trabajador alcanzó a devolver un archivo, vale el suyo, igual que en recibir
+            for (int k = 0; k < indices.size(); k++) {
+                if (porArchivo.get(indices.get(k)) == null) {
+                    porArchivo.set(indices.get(k), rs.get(k));
+                    faltan--;
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    private void terminar() {
+        List<Conexion> abiertas;
+        List<Process> lanzados;
+        synchronized (this) {
+            terminado = true;
+            abiertas = List.copyOf(conexiones);
+            lanzados = List.copyOf(procesos);
+        }
+        for (Conexion c : abiertas) {
+            synchronized (this) {
+                try {
+                    c.out.writeByte(FIN);
+                    c.out.flush();
+                } catch (IOException ignored) {
+                    // ya se fue
+                }
+            }
+            c.cerrar();
+        }
+        for (Process p : lanzados) {
+            try {
+                if (!p.waitFor(2, java.util.concurrent.TimeUnit.SECONDS)) {
+                    p.destroyForcibly();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                p.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Veces que un trabajador libre se llevó parte del shard de otro.
+     */
+    synchronized int robos() {
+        return robos;
+    }
+
+    /**
+     * Shards que volvieron a la cola porque su trabajador se cayó.
+     */
+    synchronized int reasignados() {
+        return reasignados;
+    }
+
+    /**
+     * Archivos de un shard, por su índice en la lista del coordinador.
+     */
+    private final class Shard {
+        final int id;
+        final int[] indices;
+        int hasta;    // los de [hasta, n) pasaron a otro shard
+
+        Shard(int id, int[] indices) {
+            this.id = id;
+            this.indices = indices;
+            this.hasta = indices.length;
+        }
+
+        // Con el lock del coordinador
+        int[] pendientes() {
+            int n = 0;
+            int[] r = new int[hasta];
+            for (int k = 0; k < hasta; k++) {
+                if (porArchivo.get(indices[k]) == null) r[n++] = indices[k];
+            }
+            return Arrays.copyOf(r, n);
+        }
+
+        int posicion(int indice) {
+            for (int k = 0; k < hasta; k++) {
+                if (indices[k] == indice) return k;
+            }
+            throw new IllegalStateException("El archivo " + indice + " no es del shard " + id);
+        }
+
+        // Deja el shard hasta {@code corte} y devuelve los pendientes desde ahí
+        int[] cortar(int corte) {
+            int n = 0;
+            int[] r = new int[hasta - corte];
+            for (int k = corte; k < hasta; k++) {
+                if (porArchivo.get(indices[k]) == null) r[n++] = indices[k];
+            }
+            hasta = corte;
+            return Arrays.copyOf(r, n);
+        }
+    }
+
+    private static final class Conexion {
+        final Socket socket;
+        final DataOutputStream out;    // se escribe con el lock del coordinador
+        final long pid;
+        Shard actual;
+
+        Conexion(Socket socket, DataOutputStream out, long pid) {
+            this.socket = socket;
+            this.out = out;
+            this.pid = pid;
+        }
+
+        void cerrar() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // ya está cerrado
+            }
+        }
+    }
+}
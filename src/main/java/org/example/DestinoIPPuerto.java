@@ -0,0 +1,14 @@
+package org.example;
+
+/**
+ * Dónde va cada IP:PUERTO que encuentra {@link LogIPPorPuerto}: el conjunto exacto
+ * ({@link IPsPorPuerto}) o el conteo aproximado ({@link ConteoIPsPorPuerto}).
+ */
+interface DestinoIPPuerto {
+
+    /**
+     * @param ip IPv4 como int, el primer octeto en el byte alto
+     * @return true si algo cambió
+     */
+    boolean agregar(int puerto, int ip);
+}
@@ -0,0 +1,157 @@
+package org.example;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Las líneas del detalle de un archivo, juntadas durante la pasada según {@link OpcionesDetalle}.
+ * <p>
+ * De cada línea se anota dónde está (número, offset, columna) y sus bytes; el texto
+ * ({@code "L<n>: ..."}) se decodifica y arma recién cuando alguien lo pide. Quien solo mira el
+ * conteo, o guarda el Resultado sin imprimirlo, no paga la decodificación.
+ * <p>
+ * Cada buscador decide qué línea es coincidencia y cuál contexto; aquí se lleva la cuenta del
+ * máximo, del contexto que falta después de la última coincidencia y de los separadores.
+ */
+final class DetalleLineas {
+
+    private final OpcionesDetalle opciones;
+    private final List<Linea> lineas = new ArrayList<>();
+    private int coincidencias;      // líneas con coincidencia guardadas (las que cuentan para el máximo)
+    private int ultima;             // número de la última línea agregada; 0 = ninguna
+    private int despuesPendientes;  // líneas de contexto que faltan tras la última coincidencia
+
+    DetalleLineas(OpcionesDetalle opciones) {
+        this.opciones = opciones;
+    }
+
+    boolean aceptaCoincidencia() {
+        return coincidencias < opciones.maxLineas;
+    }
+
+    /**
+     * @return true si la línea {@code numero}, sin ser coincidencia guardada, va como contexto
+     */
+    boolean esContextoDespues(int numero) {
+        return despuesPendientes > 0 && numero > ultima;
+    }
+
+    /**
+     * @return el primer número de línea que hay que agregar como contexto antes de una
+     * coincidencia en {@code numero} (si es igual a {@code numero}, ninguna)
+     */
+    int primeraAntes(int numero) {
+        return Math.max(Math.max(ultima + 1, numero - opciones.antes), 1);
+    }
+
+    /**
+     * @return true si todavía puede agregarse alguna línea (coincidencia o contexto)
+     */
+    boolean quiereLineas() {
+        return aceptaCoincidencia() || despuesPendientes > 0;
+    }
+
+    void agregar(Linea l) {
+        if (ultima > 0 && l.numero > ultima + 1 && opciones.tieneContexto()) {
+            lineas.add(Linea.SEPARADOR);
+        }
+        lineas.add(l);
+        ultima = l.numero;
+        if (l.esContexto()) {
+            despuesPendientes--;
+        } else {
+            coincidencias++;
+            despuesPendientes = opciones.despues;
+        }
+    }
+
+    int guardadas() {
+        return coincidencias;
+    }
+
+    /**
+     * Vista de solo lectura en el formato de siempre; cada texto se arma la primera vez que se pide.
+     */
+    List<String> comoTexto() {
+        if (lineas.isEmpty()) return new ArrayList<>();
+        List<Linea> ls = List.copyOf(lineas);
+        return new AbstractList<>() {
+            @Override
+            public String get(int i) {
+                return ls.get(i).toString();
+            }
+
+            @Override
+            public int size() {
+                return ls.size();
+            }
+        };
+    }
+
+    List<Linea> lineas() {
+        return lineas;
+    }
+
+    /**
+     * Una línea del detalle. El texto se decodifica la primera vez que se pide.
+     */
+    static final class Linea {
+
+        static final Linea SEPARADOR = new Linea(0, -1, 0, null, null, "--");
+
+        final int numero;
+        final long offset;     // byte donde empieza la línea dentro del stream; -1 si no se sabe
+        final int columna;     // carácter (desde 1) donde empieza la primera coincidencia; 0 en contexto
+        private final byte[] bytes;
+        private final Charset charset;
+        private String texto;
+        private String formateada;
+
+        private Linea(int numero, long offset, int columna, byte[] bytes, Charset charset, String texto) {
+            this.numero = numero;
+            this.offset = offset;
+            this.columna = columna;
+            this.bytes = bytes;
+            this.charset = charset;
+            this.texto = texto;
+        }
+
+        static Linea deBytes(int numero, long offset, int columna, byte[] bytes, Charset charset) {
+            return new Linea(numero, offset, columna, bytes, charset, null);
+        }
+
+        static Linea deTexto(int numero, long offset, int columna, String texto) {
+            return new Linea(numero, offset, columna, null, null, texto);
+        }
+
+        boolean esContexto() {
+            return columna == 0;
+        }
+
+        /**
+         * El texto completo de la línea, sin recortar.
+         */
+        String texto() {
+            // Sin sincronizar: dos hilos a lo sumo decodifican lo mismo dos veces
+            String t = texto;
+            if (t == null) {
+                t = new String(bytes, charset);
+                MetricasBusqueda.decodificados(bytes.length);
+                texto = t;
+            }
+            return t;
+        }
+
+        @Override
+        public String toString() {
+            String f = formateada;
+            if (f == null) {
+                f = this == SEPARADOR ? "--" : "L" + numero + (esContexto() ? "- " : ": ") + texto().trim();
+                formateada = f;
+            }
+            return f;
+        }
+    }
+}
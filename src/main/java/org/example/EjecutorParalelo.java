@@ -0,0 +1,177 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Reparte una lista de archivos (o entradas de zip) entre varios hilos usando un ForkJoinPool (robo de trabajo).
+ * Cada elemento escribe su resultado en su propia posición, así que la salida queda
+ * en el mismo orden que la lista de entrada, sin importar qué hilo terminó primero.
+ */
+final class EjecutorParalelo {
+
+    private EjecutorParalelo() {
+    }
+
+    /**
+     * Si hilos <= 0 se usa un hilo por núcleo.
+     */
+    static int normalizarHilos(int hilos) {
+        return hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @param archivos archivos en el orden en que deben salir los resultados
+     * @param hilos    cantidad de workers (<= 0: núcleos disponibles)
+     * @param tarea    procesa un archivo; debe atrapar sus propios errores y regresar lista vacía si no hay nada
+     */
+    static <T, R> List<R> procesar(List<T> archivos, int hilos, Function<T, List<R>> tarea) {
+        if (archivos.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<List<R>> porArchivo = sinResultados(archivos.size());
+
+        ForkJoinPool pool = new ForkJoinPool(normalizarHilos(hilos));
+        try {
+            pool.invoke(new Tramo<>(archivos, tarea, porArchivo, 0, archivos.size()));
+        } finally {
+            pool.shutdown();
+        }
+
+        return unir(porArchivo);
+    }
+
+    /**
+     * Para trabajo anidado (p. ej. las entradas de un zip): si ya estamos dentro de un worker
+     * del pool, las tareas se reparten en ese mismo pool; si no, se procesan en este hilo.
+     * Así no se crean pools dentro de pools.
+     */
+    static <T, R> List<R> procesarEnPoolActual(List<T> elementos, Function<T, List<R>> tarea) {
+        List<List<R>> porElemento = sinResultados(elementos.size());
+
+        if (ForkJoinTask.inForkJoinPool() && elementos.size() > 1) {
+            new Tramo<>(elementos, tarea, porElemento, 0, elementos.size()).invoke();
+        } else {
+            for (int i = 0; i < elementos.size(); i++) {
+                porElemento.set(i, tarea.apply(elementos.get(i)));
+            }
+        }
+
+        return unir(porElemento);
+    }
+
+    /**
+     * Procesa los archivos a medida que el recorrido los va dando y entrega cada resultado en
+     * cuanto existe (el orden depende de qué hilo termina primero). Si el control se cancela,
+     * se deja de recorrer y de abrir archivos; regresa cuando terminan los que ya estaban en curso.
+     *
+     * @param archivos stream perezoso (p. ej. de Files.walk); se consume en el hilo que llama
+     * @param conteo   ocurrencias de cada resultado, para los contadores del control
+     */
+    static <T, R> void procesarAlVuelo(Stream<T> archivos,
+                                       int hilos,
+                                       ControlBusqueda control,
+                                       Function<T, List<R>> tarea,
+                                       ToIntFunction<R> conteo,
+                                       Consumer<R> destino) {
+        int n = normalizarHilos(hilos);
+        ForkJoinPool pool = new ForkJoinPool(n);
+        // Pocos archivos en cola: el recorrido no se adelanta mucho a la lectura y se detiene rápido
+        Semaphore enCola = new Semaphore(n * 4);
+        AtomicReference<RuntimeException> errorDestino = new AtomicReference<>();
+
+        try {
+            Iterator<T> it = archivos.iterator();
+            while (it.hasNext() && !control.cancelada()) {
+                T archivo = it.next();
+                enCola.acquireUninterruptibly();
+                pool.execute(() -> {
+                    try {
+                        if (control.cancelada()) return;
+                        List<R> rs = tarea.apply(archivo);
+                        // Lo que terminó de leerse después de cancelar ya no se entrega
+                        for (R r : rs) {
+                            control.entregar(r, conteo.applyAsInt(r), destino);
+                        }
+                    } catch (RuntimeException ex) {
+                        errorDestino.compareAndSet(null, ex);
+                    } finally {
+                        enCola.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (errorDestino.get() != null) {
+            throw errorDestino.get();
+        }
+    }
+
+    // Un lugar por elemento: los workers escriben cada uno en el suyo, sin cambiar el tamaño
+    private static <R> List<List<R>> sinResultados(int n) {
+        return new ArrayList<>(Collections.nCopies(n, null));
+    }
+
+    // Unimos en orden de entrada (determinístico)
+    private static <R> List<R> unir(List<List<R>> porArchivo) {
+        List<R> resultados = new ArrayList<>();
+        for (List<R> parcial : porArchivo) {
+            if (parcial != null) {
+                resultados.addAll(parcial);
+            }
+        }
+        return resultados;
+    }
+
+    // Divide el rango a la mitad hasta llegar a un solo archivo; los hilos libres roban mitades pendientes
+    // RecursiveAction es Serializable, pero los tramos nunca se serializan
+    @SuppressWarnings("serial")
+    private static final class Tramo<T, R> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> archivos;
+        private final Function<T, List<R>> tarea;
+        private final List<List<R>> porArchivo;
+        private final int desde;
+        private final int hasta;
+
+        Tramo(List<T> archivos, Function<T, List<R>> tarea, List<List<R>> porArchivo, int desde, int hasta) {
+            this.archivos = archivos;
+            this.tarea = tarea;
+            this.porArchivo = porArchivo;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde == 1) {
+                porArchivo.set(desde, tarea.apply(archivos.get(desde)));
+                return;
+            }
+            int mitad = (desde + hasta) >>> 1;
+            invokeAll(new Tramo<>(archivos, tarea, porArchivo, desde, mitad),
+                    new Tramo<>(archivos, tarea, porArchivo, mitad, hasta));
+        }
+    }
+}
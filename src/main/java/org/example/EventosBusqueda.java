@@ -0,0 +1,67 @@
+package org.example;
+
+import jdk.jfr.*;
+
+/**
+ * Eventos JFR de la búsqueda. Solo cuestan algo si hay una grabación activa que los pida:
+ * <pre>
+ *   java -XX:StartFlightRecording=filename=busqueda.jfr,settings=profile ...
+ *   jfr print --events org.example.BusquedaArchivo busqueda.jfr
+ * </pre>
+ */
+final class EventosBusqueda {
+
+    private EventosBusqueda() {
+    }
+
+    @Name("org.example.BusquedaArchivo")
+    @Label("Búsqueda en archivo")
+    @Category("Búsqueda")
+    @Description("Un archivo en disco (texto, .gz o .zip completo) y en qué se fue su tiempo")
+    @StackTrace(false)
+    static final class Archivo extends Event {
+        @Label("Archivo")
+        String ruta;
+
+        @Label("Apertura")
+        @Timespan
+        long apertura;
+
+        @Label("Lectura")
+        @Description("Tiempo esperando bytes del disco")
+        @Timespan
+        long lectura;
+
+        @Label("Inflado")
+        @Description("Tiempo descomprimiendo .gz/.zip, sin contar la lectura")
+        @Timespan
+        long inflado;
+
+        @Label("Bytes leídos")
+        @DataAmount
+        long bytesLeidos;
+
+        @Label("Bytes inflados")
+        @DataAmount
+        long bytesInflados;
+
+        @Label("Ocurrencias")
+        long ocurrencias;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("org.example.RecorridoCarpeta")
+    @Label("Recorrido de carpeta")
+    @Category("Búsqueda")
+    @Description("Listado de archivos candidatos (Files.walk y filtros)")
+    @StackTrace(false)
+    static final class Recorrido extends Event {
+        @Label("Carpeta")
+        String carpeta;
+
+        @Label("Archivos candidatos")
+        long archivos;
+    }
+}
@@ -0,0 +1,300 @@
+package org.example;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Descompresión de .gz en otro(s) hilo(s), para que el hilo que busca no tenga que inflar.
+ * <p>
+ * Un productor llena bloques de 1 MB (de un pool fijo) y los deja en una cola acotada; el
+ * {@link InputStream} que regresa {@link #abrir} los va entregando en orden. Si el buscador
+ * se atrasa, la cola se llena y el productor espera (contrapresión), así la memoria queda fija.
+ * <p>
+ * Si el archivo es BGZF (bgzip, htslib: cada miembro trae su tamaño en el campo extra "BC"),
+ * los miembros se agrupan y se inflan en paralelo con {@code hilosInflado} hilos.
+ * Un gzip común (incluidas rotaciones concatenadas) no dice dónde empieza cada miembro sin
+ * inflarlo, así que ahí se infla en un solo hilo, en paralelo con la búsqueda.
+ */
+final class GzPipeline {
+
+    static final int TAM_BLOQUE = 1 << 20;
+
+    private GzPipeline() {
+    }
+
+    /**
+     * @param hilosInflado hilos para inflar miembros BGZF en paralelo (<= 0: núcleos disponibles)
+     * @return el contenido descomprimido; hay que cerrarlo para liberar los hilos
+     */
+    static InputStream abrir(Path gzFile, int hilosInflado) throws IOException {
+        int hilos = EjecutorParalelo.normalizarHilos(hilosInflado);
+        boolean bgzf = esBgzf(gzFile);
+
+        // En vuelo: lo que cabe en la cola más lo que están inflando los hilos
+        int capacidad = bgzf ? Math.max(4, hilos * 2) : 4;
+        StreamDeBloques salida = new StreamDeBloques(capacidad);
+
+        if (bgzf) {
+            ExecutorService pool = Executors.newFixedThreadPool(hilos, r -> hiloDemonio(r, "gz-inflado"));
+            salida.pool = pool;
+            salida.productor = hiloDemonio(() -> producirBgzf(gzFile, pool, salida), "gz-lector");
+        } else {
+            salida.productor = hiloDemonio(() -> producirSecuencial(gzFile, salida), "gz-inflado");
+        }
+        salida.productor.start();
+        return salida;
+    }
+
+    private static Thread hiloDemonio(Runnable r, String nombre) {
+        Thread t = new Thread(r, nombre);
+        t.setDaemon(true);
+        return t;
+    }
+
+    // BGZF: primer miembro con FEXTRA y subcampo "BC"
+    static boolean esBgzf(Path gzFile) throws IOException {
+        try (InputStream in = Files.newInputStream(gzFile)) {
+            byte[] h = in.readNBytes(18);
+            return h.length == 18
+                    && (h[0] & 0xFF) == 0x1f && (h[1] & 0xFF) == 0x8b && h[2] == 8
+                    && (h[3] & 0x04) != 0
+                    && h[12] == 'B' && h[13] == 'C';
+        }
+    }
+
+    // ===========================
+    // Productores
+    // ===========================
+    private static void producirSecuencial(Path gzFile, StreamDeBloques salida) {
+        try (GZIPInputStream gis = new GZIPInputStream(Files.newInputStream(gzFile), 64 * 1024)) {
+            while (!salida.cerrado) {
+                byte[] buf = salida.libres.take();
+                int n = gis.readNBytes(buf, 0, buf.length);
+                if (n <= 0) {
+                    salida.libres.put(buf);
+                    break;
+                }
+                salida.cola.put(CompletableFuture.completedFuture(new Bloque(buf, n)));
+            }
+            salida.cola.put(CompletableFuture.completedFuture(Bloque.FIN));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            fallar(salida, ex);
+        }
+    }
+
+    private static void producirBgzf(Path gzFile, ExecutorService pool, StreamDeBloques salida) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(gzFile), 1 << 20))) {
+            List<byte[]> lote = new ArrayList<>();
+            long tamLote = 0;
+
+            byte[] miembro;
+            while (!salida.cerrado && (miembro = leerMiembroBgzf(in)) != null) {
+                int isize = leerIntLE(miembro, miembro.length - 4);
+                if (isize < 0 || isize > TAM_BLOQUE) {
+                    throw new ZipException("Miembro BGZF inválido (ISIZE " + isize + ")");
+                }
+                if (!lote.isEmpty() && tamLote + isize > TAM_BLOQUE) {
+                    enviarLote(lote, pool, salida);
+                    lote = new ArrayList<>();
+                    tamLote = 0;
+                }
+                lote.add(miembro);
+                tamLote += isize;
+            }
+            if (!lote.isEmpty()) {
+                enviarLote(lote, pool, salida);
+            }
+            salida.cola.put(CompletableFuture.completedFuture(Bloque.FIN));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            fallar(salida, ex);
+        }
+    }
+
+    // El error viaja por la misma cola, así el lector lo recibe en su lugar y no se queda esperando
+    private static void fallar(StreamDeBloques salida, Exception ex) {
+        try {
+            salida.cola.put(CompletableFuture.failedFuture(ex));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // El Future entra a la cola en orden de archivo; si la cola está llena, el lector espera
+    private static void enviarLote(List<byte[]> lote, ExecutorService pool, StreamDeBloques salida) throws InterruptedException {
+        Future<Bloque> f = pool.submit(() -> inflarLote(lote, salida.libres.take()));
+        salida.cola.put(f);
+    }
+
+    /**
+     * @return el miembro completo (cabecera + datos + CRC + ISIZE), o null al final del archivo
+     */
+    private static byte[] leerMiembroBgzf(DataInputStream in) throws IOException {
+        byte[] cabecera = new byte[12];
+        int n = in.readNBytes(cabecera, 0, 12);
+        if (n == 0) return null;
+        if (n < 12 || (cabecera[0] & 0xFF) != 0x1f || (cabecera[1] & 0xFF) != 0x8b || (cabecera[3] & 0x04) == 0) {
+            throw new ZipException("Miembro BGZF inválido");
+        }
+
+        int xlen = (cabecera[10] & 0xFF) | (cabecera[11] & 0xFF) << 8;
+        byte[] extra = in.readNBytes(xlen);
+        int bsize = -1;
+        for (int i = 0; i + 4 <= extra.length; ) {
+            int slen = (extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8;
+            if (i + 4 + slen > extra.length) break;
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && slen == 2) {
+                bsize = (extra[i + 4] & 0xFF) | (extra[i + 5] & 0xFF) << 8;
+            }
+            i += 4 + slen;
+        }
+        if (bsize < 0) {
+            throw new ZipException("Miembro sin campo BC: el archivo no es BGZF completo");
+        }
+
+        byte[] miembro = new byte[bsize + 1];
+        System.arraycopy(cabecera, 0, miembro, 0, 12);
+        System.arraycopy(extra, 0, miembro, 12, xlen);
+        in.readFully(miembro, 12 + xlen, miembro.length - 12 - xlen);
+        return miembro;
+    }
+
+    private static Bloque inflarLote(List<byte[]> lote, byte[] destino) throws IOException {
+        Inflater inflater = new Inflater(true);
+        CRC32 crc = new CRC32();
+        int usado = 0;
+        try {
+            for (byte[] m : lote) {
+                int xlen = (m[10] & 0xFF) | (m[11] & 0xFF) << 8;
+                int inicio = 12 + xlen;
+                int isize = leerIntLE(m, m.length - 4);
+
+                inflater.reset();
+                inflater.setInput(m, inicio, m.length - 8 - inicio);
+                int n = 0;
+                while (n < isize && !inflater.finished()) {
+                    int r = inflater.inflate(destino, usado + n, isize - n);
+                    if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    n += r;
+                }
+
+                crc.reset();
+                crc.update(destino, usado, n);
+                if (n != isize || (int) crc.getValue() != leerIntLE(m, m.length - 8)) {
+                    throw new ZipException("Miembro BGZF dañado (CRC o tamaño no coinciden)");
+                }
+                usado += n;
+            }
+        } catch (DataFormatException ex) {
+            throw new ZipException("Miembro BGZF dañado: " + ex.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return new Bloque(destino, usado);
+    }
+
+    private static int leerIntLE(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+
+    // ===========================
+    // Lado consumidor
+    // ===========================
+    private static final class Bloque {
+        static final Bloque FIN = new Bloque(null, -1);
+
+        final byte[] datos;
+        final int largo;
+
+        Bloque(byte[] datos, int largo) {
+            this.datos = datos;
+            this.largo = largo;
+        }
+    }
+
+    private static final class StreamDeBloques extends InputStream {
+        final BlockingQueue<Future<Bloque>> cola;
+        final BlockingQueue<byte[]> libres;
+        volatile boolean cerrado;
+        Thread productor;
+        ExecutorService pool;
+
+        private Bloque actual;
+        private int pos;
+        private boolean terminado;
+
+        StreamDeBloques(int capacidad) {
+            this.cola = new ArrayBlockingQueue<>(capacidad);
+            // Uno por lugar de la cola, uno para el lote que espera lugar y uno para el que se está leyendo
+            int buffers = capacidad + 2;
+            this.libres = new ArrayBlockingQueue<>(buffers);
+            for (int i = 0; i < buffers; i++) {
+                libres.add(new byte[TAM_BLOQUE]);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] uno = new byte[1];
+            return read(uno, 0, 1) < 0 ? -1 : uno[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!siguienteSiHaceFalta()) return -1;
+
+            int n = Math.min(len, actual.largo - pos);
+            System.arraycopy(actual.datos, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        private boolean siguienteSiHaceFalta() throws IOException {
+            while (actual == null || pos == actual.largo) {
+                if (terminado) return false;
+                if (actual != null) {
+                    libres.offer(actual.datos);
+                    actual = null;
+                }
+                try {
+                    Bloque b = cola.take().get();
+                    if (b == Bloque.FIN) {
+                        terminado = true;
+                        return false;
+                    }
+                    actual = b;
+                    pos = 0;
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Lectura de .gz interrumpida");
+                } catch (ExecutionException ex) {
+                    Throwable causa = ex.getCause();
+                    if (causa instanceof IOException io) throw io;
+                    throw new IOException(causa);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            cerrado = true;
+            if (productor != null) productor.interrupt();
+            if (pool != null) pool.shutdownNow();
+            cola.clear();
+        }
+    }
+}
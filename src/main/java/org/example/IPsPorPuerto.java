@@ -0,0 +1,160 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * IPs (IPv4) distintas por puerto, sin objetos por dato: un arreglo de 65536 lugares, uno por
+ * puerto, y en cada uno un conjunto de {@code int} con direccionamiento abierto.
+ * <p>
+ * Cada IP ocupa 4 bytes (más el espacio libre de la tabla, a lo más la mitad), contra los ~100
+ * de un {@code String} dentro de un {@code HashSet}. La IP 0.0.0.0 se guarda aparte porque el
+ * 0 marca lugar libre.
+ * <p>
+ * No es thread-safe: en paralelo, cada hilo llena el suyo y al final se juntan con {@link #unir}.
+ */
+public final class IPsPorPuerto implements DestinoIPPuerto {
+
+    static final int PUERTOS = 65536;
+    private static final int TAM_INICIAL = 8;
+
+    private final int[][] tablas = new int[PUERTOS][];
+    private final int[] tamanos = new int[PUERTOS];
+    private final long[] conCero = new long[PUERTOS / 64];
+
+    /**
+     * @param ip IPv4 como int, el primer octeto en el byte alto (ver {@link #ipComoTexto})
+     * @return true si la IP no estaba en ese puerto
+     */
+    @Override
+    public boolean agregar(int puerto, int ip) {
+        if (ip == 0) {
+            long bit = 1L << puerto;
+            if ((conCero[puerto >>> 6] & bit) != 0) return false;
+            conCero[puerto >>> 6] |= bit;
+            tamanos[puerto]++;
+            return true;
+        }
+
+        int[] tabla = tablas[puerto];
+        if (tabla == null) {
+            tabla = tablas[puerto] = new int[TAM_INICIAL];
+        }
+        int mascara = tabla.length - 1;
+        int i = mezclar(ip) & mascara;
+        while (tabla[i] != 0) {
+            if (tabla[i] == ip) return false;
+            i = (i + 1) & mascara;
+        }
+        tabla[i] = ip;
+        // Se crece al llenar la mitad: las búsquedas siguen siendo de uno o dos saltos
+        if (++tamanos[puerto] * 2 > tabla.length) {
+            tablas[puerto] = crecer(tabla);
+        }
+        return true;
+    }
+
+    public boolean contiene(int puerto, int ip) {
+        if (ip == 0) return (conCero[puerto >>> 6] & (1L << puerto)) != 0;
+        int[] tabla = tablas[puerto];
+        if (tabla == null) return false;
+        int mascara = tabla.length - 1;
+        int i = mezclar(ip) & mascara;
+        while (tabla[i] != 0) {
+            if (tabla[i] == ip) return true;
+            i = (i + 1) & mascara;
+        }
+        return false;
+    }
+
+    /**
+     * @return cantidad de IPs distintas en el puerto
+     */
+    public int cantidad(int puerto) {
+        return tamanos[puerto];
+    }
+
+    /**
+     * @return los puertos que tienen al menos una IP, de menor a mayor
+     */
+    public int[] puertos() {
+        int n = 0;
+        for (int t : tamanos) if (t > 0) n++;
+        int[] r = new int[n];
+        int k = 0;
+        for (int p = 0; p < PUERTOS; p++) {
+            if (tamanos[p] > 0) r[k++] = p;
+        }
+        return r;
+    }
+
+    /**
+     * @return las IPs del puerto, ordenadas como direcciones (0.0.0.0 ... 255.255.255.255)
+     */
+    public int[] ips(int puerto) {
+        int[] r = new int[tamanos[puerto]];
+        int k = 0;
+        if ((conCero[puerto >>> 6] & (1L << puerto)) != 0) r[k++] = 0;
+        int[] tabla = tablas[puerto];
+        if (tabla != null) {
+            for (int ip : tabla) {
+                if (ip != 0) r[k++] = ip;
+            }
+        }
+        // Sin signo: 200.x.x.x va después de 10.x.x.x
+        for (int i = 0; i < r.length; i++) r[i] ^= Integer.MIN_VALUE;
+        Arrays.sort(r);
+        for (int i = 0; i < r.length; i++) r[i] ^= Integer.MIN_VALUE;
+        return r;
+    }
+
+    /**
+     * Suma a este las IPs de {@code otro}.
+     */
+    public void unir(IPsPorPuerto otro) {
+        for (int p = 0; p < PUERTOS; p++) {
+            if (otro.tamanos[p] == 0) continue;
+            if ((otro.conCero[p >>> 6] & (1L << p)) != 0) agregar(p, 0);
+            int[] tabla = otro.tablas[p];
+            if (tabla == null) continue;
+            for (int ip : tabla) {
+                if (ip != 0) agregar(p, ip);
+            }
+        }
+    }
+
+    /**
+     * La forma de antes ({@code puerto -> IPs como texto}), para quien ya la usa.
+     * Ocupa mucha más memoria que este objeto.
+     */
+    public Map<Integer, Set<String>> aMapa() {
+        Map<Integer, Set<String>> r = new TreeMap<>();
+        for (int p : puertos()) {
+            Set<String> ips = new LinkedHashSet<>();
+            for (int ip : ips(p)) ips.add(ipComoTexto(ip));
+            r.put(p, ips);
+        }
+        return r;
+    }
+
+    public static String ipComoTexto(int ip) {
+        return (ip >>> 24) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+    }
+
+    private static int[] crecer(int[] tabla) {
+        int[] nueva = new int[tabla.length * 2];
+        int mascara = nueva.length - 1;
+        for (int ip : tabla) {
+            if (ip == 0) continue;
+            int i = mezclar(ip) & mascara;
+            while (nueva[i] != 0) i = (i + 1) & mascara;
+            nueva[i] = ip;
+        }
+        return nueva;
+    }
+
+    // Las IPs de una red comparten los bytes altos: se mezclan para que los bajos no choquen
+    private static int mezclar(int ip) {
+        int h = ip * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,265 @@
+package org.example;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Índice de trigramas en disco (al estilo de codesearch) para no releer todo en cada búsqueda.
+ * <p>
+ * Cada "documento" es lo que la búsqueda normal lee como texto: un archivo, el contenido de un .gz
+ * o una entrada de zip. Por documento se guardan los trigramas (3 bytes seguidos) que contiene.
+ * Una cadena solo puede estar en un documento que tenga todos sus trigramas, así que el índice
+ * nunca descarta un archivo que sí tenga la cadena; a lo mucho deja pasar alguno que no la tiene.
+ * <p>
+ * Se actualiza por archivo en disco usando tamaño y fecha de modificación: solo se reindexa
+ * lo nuevo o lo que cambió, y se borra lo que ya no existe.
+ */
+final class IndiceTrigramas {
+
+    private static final int MAGICO = 0x54524731; // "TRG1"
+
+    // Documentos con más trigramas distintos que esto (binarios, dumps) no se filtran: siempre son candidatos
+    static final int MAX_TRIGRAMAS = 1 << 20;
+
+    // Un bit por trigrama posible (2^24); se reutiliza por hilo y se limpia solo donde se usó
+    private static final ThreadLocal<long[]> VISTOS = ThreadLocal.withInitial(() -> new long[(1 << 24) / 64]);
+
+    // clave: ruta absoluta del archivo en disco
+    private final Map<String, ArchivoIndexado> archivos = new HashMap<>();
+
+    private IndiceTrigramas() {
+    }
+
+    /**
+     * Carga el índice; si el archivo no existe o no es válido, empieza vacío.
+     */
+    static IndiceTrigramas cargar(Path archivoIndice) {
+        IndiceTrigramas indice = new IndiceTrigramas();
+        if (archivoIndice == null || !Files.isRegularFile(archivoIndice)) {
+            return indice;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivoIndice), 1 << 16))) {
+            if (in.readInt() != MAGICO) {
+                throw new IOException("formato desconocido");
+            }
+            int nArchivos = in.readInt();
+            for (int a = 0; a < nArchivos; a++) {
+                String ruta = in.readUTF();
+                long tamano = in.readLong();
+                long modificado = in.readLong();
+                int nDocs = in.readInt();
+                List<Documento> docs = new ArrayList<>(nDocs);
+                for (int d = 0; d < nDocs; d++) {
+                    String clave = in.readUTF();
+                    int n = in.readInt();
+                    int[] trigramas = null;
+                    if (n >= 0) {
+                        trigramas = new int[n];
+                        int previo = 0;
+                        for (int i = 0; i < n; i++) {
+                            previo += leerVarInt(in);
+                            trigramas[i] = previo;
+                        }
+                    }
+                    docs.add(new Documento(clave, trigramas));
+                }
+                indice.archivos.put(ruta, new ArchivoIndexado(tamano, modificado, docs));
+            }
+        } catch (IOException ex) {
+            // Índice dañado o de otra versión: se reconstruye completo
+            System.err.println("Índice inválido, se reconstruye: " + archivoIndice + " -> " + ex.getMessage());
+            indice.archivos.clear();
+        }
+        return indice;
+    }
+
+    /**
+     * Escribe el índice completo en un temporal y luego lo mueve encima del anterior.
+     */
+    void guardar(Path archivoIndice) throws IOException {
+        Path carpeta = archivoIndice.toAbsolutePath().getParent();
+        if (carpeta != null) {
+            Files.createDirectories(carpeta);
+        }
+        Path temporal = archivoIndice.resolveSibling(archivoIndice.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 16))) {
+            out.writeInt(MAGICO);
+            out.writeInt(archivos.size());
+            for (Map.Entry<String, ArchivoIndexado> e : archivos.entrySet()) {
+                ArchivoIndexado a = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(a.tamano);
+                out.writeLong(a.modificado);
+                out.writeInt(a.documentos.size());
+                for (Documento d : a.documentos) {
+                    out.writeUTF(d.clave);
+                    if (d.trigramas == null) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    out.writeInt(d.trigramas.length);
+                    // Ordenados: se guardan las diferencias, casi siempre de 1 o 2 bytes
+                    int previo = 0;
+                    for (int t : d.trigramas) {
+                        escribirVarInt(out, t - previo);
+                        previo = t;
+                    }
+                }
+            }
+        }
+        Files.move(temporal, archivoIndice, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return true si el archivo ya está indexado con ese mismo tamaño y fecha
+     */
+    boolean vigente(String ruta, long tamano, long modificado) {
+        ArchivoIndexado a = archivos.get(ruta);
+        return a != null && a.tamano == tamano && a.modificado == modificado;
+    }
+
+    void reemplazar(String ruta, long tamano, long modificado, List<Documento> documentos) {
+        archivos.put(ruta, new ArchivoIndexado(tamano, modificado, documentos));
+    }
+
+    /**
+     * Quita del índice los archivos que ya no están en disco.
+     */
+    void conservarSolo(Set<String> rutasVivas) {
+        archivos.keySet().retainAll(rutasVivas);
+    }
+
+    /**
+     * @param cadena la cadena ya codificada en bytes
+     * @return por archivo en disco, las claves de sus documentos que pueden contener la cadena
+     * (los archivos sin ningún candidato no aparecen)
+     */
+    Map<String, Set<String>> candidatos(byte[] cadena) {
+        int[] buscados = trigramasDe(cadena);
+        Map<String, Set<String>> porArchivo = new HashMap<>();
+        for (Map.Entry<String, ArchivoIndexado> e : archivos.entrySet()) {
+            for (Documento d : e.getValue().documentos) {
+                if (d.puedeContener(buscados)) {
+                    porArchivo.computeIfAbsent(e.getKey(), k -> new HashSet<>()).add(d.clave);
+                }
+            }
+        }
+        return porArchivo;
+    }
+
+    /**
+     * Lee todo el stream y arma el documento. No cierra el stream.
+     */
+    static Documento indexar(String clave, InputStream is) throws IOException {
+        long[] vistos = VISTOS.get();
+        int[] lista = new int[1024];
+        int n = 0;
+        boolean demasiados = false;
+
+        byte[] buf = new byte[BuscadorBytes.TAM_BUFFER];
+        int t = 0;
+        long leidos = 0;
+        int r;
+        try {
+            while (!demasiados && (r = is.read(buf)) != -1) {
+                for (int i = 0; i < r; i++) {
+                    t = ((t << 8) | (buf[i] & 0xFF)) & 0xFFFFFF;
+                    if (++leidos < 3) continue;
+
+                    long bit = 1L << t;
+                    if ((vistos[t >>> 6] & bit) != 0) continue;
+
+                    if (n == lista.length) {
+                        if (n >= MAX_TRIGRAMAS) {
+                            demasiados = true;
+                            break;
+                        }
+                        lista = Arrays.copyOf(lista, n * 2);
+                    }
+                    vistos[t >>> 6] |= bit;
+                    lista[n++] = t;
+                }
+            }
+        } finally {
+            // Limpia solo lo que se marcó, para el siguiente documento de este hilo
+            for (int i = 0; i < n; i++) {
+                vistos[lista[i] >>> 6] = 0;
+            }
+        }
+
+        if (demasiados) {
+            return new Documento(clave, null);
+        }
+        int[] trigramas = Arrays.copyOf(lista, n);
+        Arrays.sort(trigramas);
+        return new Documento(clave, trigramas);
+    }
+
+    // Trigramas distintos de la cadena; vacío si mide menos de 3 bytes (no se puede filtrar)
+    private static int[] trigramasDe(byte[] cadena) {
+        if (cadena.length < 3) {
+            return new int[0];
+        }
+        int[] r = new int[cadena.length - 2];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = ((cadena[i] & 0xFF) << 16) | ((cadena[i + 1] & 0xFF) << 8) | (cadena[i + 2] & 0xFF);
+        }
+        return Arrays.stream(r).distinct().toArray();
+    }
+
+    private static void escribirVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int leerVarInt(DataInputStream in) throws IOException {
+        int v = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    // Un texto indexado: archivo, contenido de .gz o entrada de zip
+    static final class Documento {
+        final String clave;
+        final int[] trigramas; // ordenados; null = sin filtro
+
+        Documento(String clave, int[] trigramas) {
+            this.clave = clave;
+            this.trigramas = trigramas;
+        }
+
+        boolean puedeContener(int[] buscados) {
+            if (trigramas == null) return true;
+            for (int t : buscados) {
+                if (Arrays.binarySearch(trigramas, t) < 0) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class ArchivoIndexado {
+        final long tamano;
+        final long modificado;
+        final List<Documento> documentos;
+
+        ArchivoIndexado(long tamano, long modificado, List<Documento> documentos) {
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.documentos = documentos;
+        }
+    }
+}
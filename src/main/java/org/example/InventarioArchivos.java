@@ -0,0 +1,196 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Los archivos candidatos de una carpeta (texto, .gz y .zip), recorridos una sola vez y puestos
+ * al día con un {@link WatchService} mientras el servicio sigue vivo.
+ * <p>
+ * Cada cambio sube una generación global y la deja anotada en el archivo. Quien guardó
+ * resultados en la generación N solo tiene que volver a leer {@link #cambiadosDesde(long) los
+ * que cambiaron después} y olvidar los que ya no están.
+ * <p>
+ * Si el sistema pierde eventos (OVERFLOW), se vuelve a recorrer todo y todo cuenta como cambiado.
+ * <p>
+ * Subir la generación y anotarla en el archivo pasa con el lock del inventario, el mismo con el
+ * que se toman los {@link Cambios}: nunca se ve una generación sin el archivo que la lleva.
+ */
+final class InventarioArchivos implements Closeable {
+
+    private final Path raiz;
+    private final WatchService vigilante;
+    private final Map<WatchKey, Path> carpetas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, Long> generacionPorArchivo = new ConcurrentHashMap<>();
+    private final AtomicLong generacion = new AtomicLong();
+    private final Thread hilo;
+
+    private InventarioArchivos(Path raiz) throws IOException {
+        this.raiz = raiz.toAbsolutePath().normalize();
+        this.vigilante = this.raiz.getFileSystem().newWatchService();
+        this.hilo = new Thread(this::vigilar, "inventario-" + this.raiz.getFileName());
+        this.hilo.setDaemon(true);
+    }
+
+    /**
+     * Recorre {@code raiz}, registra todas sus carpetas y empieza a seguir los cambios.
+     */
+    static InventarioArchivos abrir(Path raiz) throws IOException {
+        if (raiz == null || !Files.isDirectory(raiz)) {
+            throw new IllegalArgumentException("La ruta no existe o no es carpeta: " + raiz);
+        }
+        InventarioArchivos inventario = new InventarioArchivos(raiz);
+        long inicio = System.nanoTime();
+        inventario.registrarArbol(inventario.raiz);
+        MetricasBusqueda.recorrido(inventario.raiz, System.nanoTime() - inicio, inventario.tamano());
+        inventario.hilo.start();
+        return inventario;
+    }
+
+    Path raiz() {
+        return raiz;
+    }
+
+    long generacion() {
+        return generacion.get();
+    }
+
+    int tamano() {
+        return generacionPorArchivo.size();
+    }
+
+    boolean contiene(Path archivo) {
+        return generacionPorArchivo.containsKey(archivo);
+    }
+
+    /**
+     * @return los archivos que aparecieron o cambiaron después de la generación {@code desde}
+     * (con -1, todos), junto con la generación hasta la que llegan
+     */
+    synchronized Cambios cambiadosDesde(long desde) {
+        List<Path> r = new ArrayList<>();
+        generacionPorArchivo.forEach((archivo, gen) -> {
+            if (gen > desde) r.add(archivo);
+        });
+        return new Cambios(generacion.get(), r);
+    }
+
+    @Override
+    public void close() throws IOException {
+        hilo.interrupt();
+        vigilante.close();
+    }
+
+    // ===========================
+    // Vigilancia
+    // ===========================
+    private void vigilar() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = vigilante.take();
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+
+            Path carpeta = carpetas.get(key);
+            for (WatchEvent<?> evento : key.pollEvents()) {
+                try {
+                    if (evento.kind() == OVERFLOW) {
+                        reescanear();
+                        continue;
+                    }
+                    if (carpeta == null) continue;
+
+                    Path hijo = carpeta.resolve((Path) evento.context());
+                    if (evento.kind() == ENTRY_DELETE) {
+                        quitar(hijo);
+                    } else if (Files.isDirectory(hijo, LinkOption.NOFOLLOW_LINKS)) {
+                        // Una carpeta nueva (o movida aquí) puede traer archivos que no generaron eventos
+                        if (evento.kind() == ENTRY_CREATE) registrarArbol(hijo);
+                    } else {
+                        actualizar(hijo);
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    System.err.println("No se pudo actualizar el inventario: " + carpeta + " -> " + ex.getMessage());
+                }
+            }
+
+            if (!key.reset()) {
+                carpetas.remove(key);
+            }
+        }
+    }
+
+    private void registrarArbol(Path inicio) throws IOException {
+        Files.walkFileTree(inicio, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(vigilante, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                carpetas.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) actualizar(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                System.err.println("No se pudo leer: " + file + " -> " + exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // Archivo nuevo o modificado: puede haber dejado de ser candidato (p. ej. ahora es binario)
+    private synchronized void actualizar(Path archivo) {
+        if (Files.isRegularFile(archivo) && BuscarCadenaEnCarpetaZip.esCandidato(archivo)) {
+            generacionPorArchivo.put(archivo, generacion.incrementAndGet());
+        } else if (generacionPorArchivo.remove(archivo) != null) {
+            generacion.incrementAndGet();
+        }
+    }
+
+    // Puede ser un archivo o una carpeta entera
+    private synchronized void quitar(Path ruta) {
+        boolean quitado = generacionPorArchivo.remove(ruta) != null;
+        quitado |= generacionPorArchivo.keySet().removeIf(p -> p.startsWith(ruta));
+        if (quitado) generacion.incrementAndGet();
+    }
+
+    private void reescanear() throws IOException {
+        Map<Path, Long> antes = new HashMap<>(generacionPorArchivo);
+        registrarArbol(raiz);
+        // Lo que ya no apareció en el recorrido se borró mientras no había eventos
+        for (Path p : antes.keySet()) {
+            if (!Files.isRegularFile(p)) quitar(p);
+        }
+    }
+
+    /**
+     * Lo que cambió hasta {@code generacion}, inclusive: quien guarde resultados de estos
+     * archivos queda al día en esa generación.
+     */
+    static final class Cambios {
+        final long generacion;
+        final List<Path> archivos;
+
+        Cambios(long generacion, List<Path> archivos) {
+            this.generacion = generacion;
+            this.archivos = archivos;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Lee líneas como {@link java.io.BufferedReader#readLine()} (\n, \r y \r\n terminan línea),
+ * pero sin armar nunca más de {@code maxCaracteres}: una línea más larga sale en varios
+ * segmentos con el mismo {@link #numero()}. Lo usa el modo de {@link MemoriaAcotada}.
+ * <p>
+ * Cada segmento de continuación empieza repitiendo los últimos {@code solape} caracteres del
+ * anterior, para que un texto de hasta {@code solape + 1} caracteres que cruza el corte se vea
+ * entero en alguno de los dos.
+ * <p>
+ * No cierra el Reader. No es thread-safe.
+ */
+final class LectorLineas {
+
+    private final Reader in;
+    private final int maxCaracteres;
+    private final int solape;
+    private final char[] buf = new char[8192];
+    private int pos;
+    private int fin;
+
+    private final StringBuilder segmento = new StringBuilder();
+    private String anterior;          // último segmento entregado, si la línea sigue
+    private int numero;
+    private int caracteresAntes;
+    private boolean saltarLF;         // venía un \r: un \n inmediato es el mismo salto
+
+    LectorLineas(Reader in, int maxCaracteres, int solape) {
+        this.in = in;
+        this.maxCaracteres = maxCaracteres;
+        this.solape = Math.max(0, Math.min(solape, maxCaracteres / 2));
+    }
+
+    /**
+     * @return el siguiente segmento (una línea entera si es corta), o null al final
+     */
+    String siguiente() throws IOException {
+        boolean continua = anterior != null;
+        segmento.setLength(0);
+        if (continua) {
+            int desde = anterior.length() - solape;
+            segmento.append(anterior, desde, anterior.length());
+            caracteresAntes += desde;
+        } else {
+            numero++;
+            caracteresAntes = 0;
+        }
+        anterior = null;
+        int nuevos = 0;
+
+        while (true) {
+            if (pos == fin) {
+                int n = in.read(buf, 0, buf.length);
+                if (n <= 0) {
+                    // Como readLine(): sin nada después del último salto no hay línea
+                    return nuevos > 0 ? segmento.toString() : null;
+                }
+                pos = 0;
+                fin = n;
+            }
+            if (saltarLF) {
+                saltarLF = false;
+                if (buf[pos] == '\n') {
+                    pos++;
+                    continue;
+                }
+            }
+
+            int limite = Math.min(fin, pos + (maxCaracteres - segmento.length()));
+            int i = pos;
+            while (i < limite && buf[i] != '\n' && buf[i] != '\r') i++;
+            segmento.append(buf, pos, i - pos);
+            nuevos += i - pos;
+            pos = i;
+
+            if (i < fin && (buf[i] == '\n' || buf[i] == '\r')) {
+                saltarLF = buf[i] == '\r';
+                pos++;
+                if (continua && nuevos == 0) {
+                    // La línea terminó justo en el corte anterior: ya se entregó toda
+                    continua = false;
+                    segmento.setLength(0);
+                    numero++;
+                    caracteresAntes = 0;
+                    continue;
+                }
+                return segmento.toString();
+            }
+            if (segmento.length() >= maxCaracteres) {
+                anterior = segmento.toString();
+                return anterior;
+            }
+        }
+    }
+
+    /**
+     * Número (desde 1) de la línea del último segmento.
+     */
+    int numero() {
+        return numero;
+    }
+
+    /**
+     * Caracteres de la línea que hay antes del último segmento (0 en el primero).
+     */
+    int caracteresAntes() {
+        return caracteresAntes;
+    }
+}
@@ -0,0 +1,285 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * IPs distintas por puerto en logs (firewall, proxies...): cada {@code IP:PUERTO} del texto,
+ * igual que la expresión {@code \b(\d{1,3}(?:\.\d{1,3}){3}):(\d{1,5})\b} de la versión anterior,
+ * pero leyendo bytes a mano, sin {@code Pattern}, sin Strings y sin Integer.
+ * <p>
+ * El texto se recorre buscando ':' y desde cada uno se leen el puerto hacia adelante y la IP
+ * hacia atrás. Las IPs se guardan como int en un {@link IPsPorPuerto} o, si solo importa
+ * cuántas hay y los logs son muchos, se cuentan en un {@link ConteoIPsPorPuerto} de memoria fija.
+ * <p>
+ * Diferencia con la expresión: un octeto mayor a 255 o un puerto mayor a 65535 no son una
+ * dirección y se ignoran (antes se guardaban tal cual, p. ej. "999.1.1.1" o el puerto 99999).
+ * <pre>
+ *   java -cp target/classes org.example.LogIPPorPuerto C:\logs\firewall 8
+ *   java -cp target/classes org.example.LogIPPorPuerto C:\logs\firewall 8 0.01   (conteo aproximado, ±1 %)
+ * </pre>
+ */
+public class LogIPPorPuerto {
+
+    // Lo más largo que puede ocupar una IP antes del ':' ("255.255.255.255") más el carácter anterior
+    private static final int ANTES = 16 + 1;
+    // Puerto de 5 dígitos, un dígito más para saber que se pasó y el carácter que lo cierra
+    private static final int DESPUES = 1 + 5 + 1 + 1;
+
+    // Caracteres de palabra para \b: letras y dígitos ASCII y '_'
+    private static final boolean[] PALABRA = new boolean[256];
+
+    static {
+        for (int c = '0'; c <= '9'; c++) PALABRA[c] = true;
+        for (int c = 'a'; c <= 'z'; c++) PALABRA[c] = true;
+        for (int c = 'A'; c <= 'Z'; c++) PALABRA[c] = true;
+        PALABRA['_'] = true;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Uso: LogIPPorPuerto <archivo o carpeta> [hilos] [error del conteo aproximado]");
+            System.exit(1);
+        }
+        Path ruta = Paths.get(args[0]);
+        int hilos = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        try {
+            if (args.length > 2) {
+                double error = Double.parseDouble(args[2]);
+                imprimirConteo(Files.isDirectory(ruta) ? contarCarpeta(ruta, hilos, error) : contarArchivo(ruta, error));
+            } else {
+                imprimirResultado(Files.isDirectory(ruta) ? agregarCarpeta(ruta, hilos) : agregarArchivo(ruta));
+            }
+        } catch (IOException e) {
+            System.err.println("Error leyendo el archivo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * La firma de antes; para archivos grandes conviene {@link #agregarArchivo}, que no crea
+     * un String por IP.
+     */
+    public static Map<Integer, Set<String>> obtenerIPsPorPuerto(Path archivo) throws IOException {
+        return agregarArchivo(archivo).aMapa();
+    }
+
+    /**
+     * Un archivo de texto, un .gz o un .zip (todas sus entradas de texto).
+     */
+    public static IPsPorPuerto agregarArchivo(Path archivo) throws IOException {
+        IPsPorPuerto resultado = new IPsPorPuerto();
+        BuscarCadenaEnCarpetaZip.leerContenido(archivo, (is, real, nombre) -> extraer(is, resultado));
+        return resultado;
+    }
+
+    /**
+     * Todos los archivos de texto, .gz y .zip de la carpeta (recursivo), repartidos entre hilos.
+     * Cada hilo junta en su propio {@link IPsPorPuerto} y al final se unen.
+     *
+     * @param hilos cantidad de workers; si es <= 0 usa uno por núcleo
+     */
+    public static IPsPorPuerto agregarCarpeta(Path carpetaRaiz, int hilos) throws IOException {
+        return juntarEnParalelo(carpetaRaiz, hilos, IPsPorPuerto::new, IPsPorPuerto::unir);
+    }
+
+    /**
+     * Solo la cantidad de IPs distintas por puerto, con memoria fija (ver {@link ConteoIPsPorPuerto}).
+     *
+     * @param errorRelativo error estándar aceptado, p. ej. 0.01
+     */
+    public static ConteoIPsPorPuerto contarArchivo(Path archivo, double errorRelativo) throws IOException {
+        ConteoIPsPorPuerto resultado = ConteoIPsPorPuerto.conError(errorRelativo);
+        BuscarCadenaEnCarpetaZip.leerContenido(archivo, (is, real, nombre) -> extraer(is, resultado));
+        return resultado;
+    }
+
+    /**
+     * Como {@link #agregarCarpeta}, pero solo la cantidad de IPs distintas por puerto, con memoria fija.
+     * El resultado se puede guardar y unir con el de otros días.
+     *
+     * @param errorRelativo error estándar aceptado, p. ej. 0.01
+     */
+    public static ConteoIPsPorPuerto contarCarpeta(Path carpetaRaiz, int hilos, double errorRelativo) throws IOException {
+        // Valida el error antes de recorrer
+        int precision = ConteoIPsPorPuerto.conError(errorRelativo).precision();
+        return juntarEnParalelo(carpetaRaiz, hilos, () -> ConteoIPsPorPuerto.conPrecision(precision), ConteoIPsPorPuerto::unir);
+    }
+
+    private static <T extends DestinoIPPuerto> T juntarEnParalelo(Path carpetaRaiz,
+                                                                 int hilos,
+                                                                 Supplier<T> nuevo,
+                                                                 BiConsumer<T, T> unir) throws IOException {
+        if (carpetaRaiz == null || !Files.isDirectory(carpetaRaiz)) {
+            throw new IllegalArgumentException("La ruta no existe o no es carpeta: " + carpetaRaiz);
+        }
+
+        List<Path> archivos;
+        long inicioRecorrido = System.nanoTime();
+        try (var stream = Files.walk(carpetaRaiz)) {
+            archivos = stream
+                    .filter(Files::isRegularFile)
+                    .filter(BuscarCadenaEnCarpetaZip::esCandidato)
+                    .toList();
+        }
+        MetricasBusqueda.recorrido(carpetaRaiz, System.nanoTime() - inicioRecorrido, archivos.size());
+
+        // Uno por hilo (también los que leen entradas de zip en paralelo): sin candados al agregar
+        ConcurrentLinkedQueue<T> parciales = new ConcurrentLinkedQueue<>();
+        ThreadLocal<T> porHilo = ThreadLocal.withInitial(() -> {
+            T p = nuevo.get();
+            parciales.add(p);
+            return p;
+        });
+
+        EjecutorParalelo.procesar(archivos, hilos, path -> {
+            try {
+                BuscarCadenaEnCarpetaZip.leerContenido(path, (is, real, nombre) -> extraer(is, porHilo.get()));
+            } catch (Exception ex) {
+                System.err.println("No se pudo procesar: " + path + " -> " + ex.getMessage());
+            }
+            return List.of();
+        });
+
+        T total = parciales.isEmpty() ? nuevo.get() : parciales.poll();
+        for (T p : parciales) {
+            unir.accept(total, p);
+        }
+        return total;
+    }
+
+    /**
+     * Agrega a {@code destino} cada IP:PUERTO del stream. No cierra el stream.
+     */
+    static void extraer(InputStream is, DestinoIPPuerto destino) throws IOException {
+        byte[] buf = new byte[BuscadorBytes.TAM_BUFFER];
+        int fin = 0;
+        int desde = 0;      // siguiente posición a revisar
+        int finUltimo = 0;  // donde terminó la última dirección: la siguiente no puede empezar antes
+        boolean eof = false;
+
+        while (!eof) {
+            int n = is.read(buf, fin, buf.length - fin);
+            if (n < 0) eof = true;
+            else fin += n;
+
+            // Un ':' se revisa cuando ya está en el buffer todo lo que puede seguirle
+            int limite = eof ? fin : fin - DESPUES;
+            int c = desde;
+            for (; c < limite; c++) {
+                if (buf[c] != ':') continue;
+                int finDireccion = leerDireccion(buf, c, fin, finUltimo, destino);
+                if (finDireccion > 0) {
+                    finUltimo = finDireccion;
+                    c = finDireccion - 1;
+                }
+            }
+            desde = Math.max(c, desde);
+
+            // Se conserva lo que falta revisar más lo que una IP necesita hacia atrás
+            int conservar = Math.max(0, Math.min(desde, fin) - ANTES);
+            if (conservar > 0 && fin - conservar < buf.length / 2) {
+                System.arraycopy(buf, conservar, buf, 0, fin - conservar);
+                fin -= conservar;
+                desde -= conservar;
+                finUltimo -= conservar;
+            }
+        }
+    }
+
+    /**
+     * @param c posición de un ':'
+     * @return dónde termina el puerto si en {@code c} hay algo con forma de dirección; si no, -1
+     */
+    private static int leerDireccion(byte[] b, int c, int fin, int finUltimo, DestinoIPPuerto destino) {
+        // Puerto: de 1 a 5 dígitos, y después algo que no sea de palabra
+        int k = c + 1;
+        int puerto = 0;
+        while (k < fin && k - c <= 6 && esDigito(b[k])) {
+            puerto = puerto * 10 + (b[k] - '0');
+            k++;
+        }
+        int digitos = k - c - 1;
+        if (digitos == 0 || digitos > 5) return -1;
+        if (k < fin && PALABRA[b[k] & 0xFF]) return -1;
+
+        // IP hacia atrás: cuatro grupos de 1 a 3 dígitos separados por '.'
+        int j = c - 1;
+        int ip = 0;
+        boolean enRango = puerto <= 65535;
+        for (int octeto = 0; octeto < 4; octeto++) {
+            int valor = 0;
+            int mult = 1;
+            int cuenta = 0;
+            while (j >= 0 && cuenta < 4 && esDigito(b[j])) {
+                valor += (b[j] - '0') * mult;
+                mult *= 10;
+                cuenta++;
+                j--;
+            }
+            if (cuenta == 0 || cuenta > 3) return -1;
+            enRango &= valor <= 255;
+            ip |= valor << (8 * octeto);
+
+            if (octeto < 3) {
+                if (j < 0 || b[j] != '.') return -1;
+                j--;
+            }
+        }
+        // \b antes del primer dígito, y sin pisar la dirección anterior
+        if (j >= 0 && PALABRA[b[j] & 0xFF]) return -1;
+        if (j + 1 < finUltimo) return -1;
+
+        // Fuera de rango no se guarda, pero el texto se consume igual que con la expresión
+        if (enRango) destino.agregar(puerto, ip);
+        return k;
+    }
+
+    private static boolean esDigito(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static void imprimirResultado(IPsPorPuerto data) {
+
+        int[] puertos = data.puertos();
+        if (puertos.length == 0) {
+            System.out.println("No se encontraron IPs con puerto.");
+            return;
+        }
+
+        System.out.println("IPs agrupadas por puerto:");
+        System.out.println("================================");
+
+        for (int puerto : puertos) {
+            System.out.println("Puerto " + puerto + ":");
+            for (int ip : data.ips(puerto)) {
+                System.out.println("  - " + IPsPorPuerto.ipComoTexto(ip));
+            }
+        }
+    }
+
+    private static void imprimirConteo(ConteoIPsPorPuerto data) {
+
+        int[] puertos = data.puertos();
+        if (puertos.length == 0) {
+            System.out.println("No se encontraron IPs con puerto.");
+            return;
+        }
+
+        System.out.printf("IPs distintas por puerto (error estándar %.1f %%):%n", data.errorEstandar() * 100);
+        System.out.println("================================");
+
+        for (int puerto : puertos) {
+            System.out.println("Puerto " + puerto + ": " + data.cantidad(puerto));
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Qué se extrajo de cada .zip/.gz en la carpeta de salida de
+ * {@link BuscarCadenaEnCarpetaZipDos#extraerComprimidosRecursivo}, para no volver a extraer lo
+ * que no cambió.
+ * <p>
+ * Por archivo comprimido se guarda tamaño, fecha de modificación, un hash del contenido (CRC32C),
+ * cuántos comprimidos van al mismo destino y los archivos que salieron de él. Si tamaño y fecha coinciden, no se lee nada; si solo cambió
+ * la fecha (copiado de nuevo, {@code touch}), se compara el hash. Las salidas que ya no son de
+ * ningún comprimido se pueden borrar.
+ * <p>
+ * No es thread-safe: se arma en un solo hilo con lo que devuelven los workers.
+ */
+final class ManifiestoExtraccion {
+
+    /**
+     * Nombre del manifiesto dentro de la carpeta de salida.
+     */
+    static final String NOMBRE = ".manifiesto-extraccion";
+
+    private static final int MAGICO = 0x4D455831; // "MEX1"
+
+    private final Map<String, Fuente> fuentes = new LinkedHashMap<>();
+
+    ManifiestoExtraccion() {
+    }
+
+    /**
+     * Carga un manifiesto guardado con {@link #guardar}; si no existe o no es válido, empieza
+     * vacío (se extrae todo de nuevo).
+     */
+    static ManifiestoExtraccion cargar(Path archivo) {
+        ManifiestoExtraccion m = new ManifiestoExtraccion();
+        if (!Files.isRegularFile(archivo)) {
+            return m;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), 1 << 16))) {
+            if (in.readInt() != MAGICO) {
+                throw new IOException("formato desconocido");
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String ruta = in.readUTF();
+                long tamano = in.readLong();
+                long modificado = in.readLong();
+                long huella = in.readLong();
+                int grupo = in.readInt();
+                int nSalidas = in.readInt();
+                List<Salida> salidas = new ArrayList<>(nSalidas);
+                for (int s = 0; s < nSalidas; s++) {
+                    salidas.add(new Salida(in.readUTF(), in.readLong()));
+                }
+                m.poner(new Fuente(ruta, tamano, modificado, huella, grupo, salidas));
+            }
+        } catch (IOException ex) {
+            System.err.println("Manifiesto de extracción inválido, se extrae todo: " + archivo + " -> " + ex.getMessage());
+            m.fuentes.clear();
+        }
+        return m;
+    }
+
+    /**
+     * Escribe en un temporal y luego lo mueve encima del anterior.
+     */
+    void guardar(Path archivo) throws IOException {
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 16))) {
+            out.writeInt(MAGICO);
+            out.writeInt(fuentes.size());
+            for (Fuente f : fuentes.values()) {
+                out.writeUTF(f.ruta);
+                out.writeLong(f.tamano);
+                out.writeLong(f.modificado);
+                out.writeLong(f.huella);
+                out.writeInt(f.grupo);
+                out.writeInt(f.salidas.size());
+                for (Salida s : f.salidas) {
+                    out.writeUTF(s.ruta);
+                    out.writeLong(s.tamano);
+                }
+            }
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    void poner(Fuente f) {
+        fuentes.put(f.ruta, f);
+    }
+
+    int cantidad() {
+        return fuentes.size();
+    }
+
+    /**
+     * @return todas las salidas registradas, relativas a la carpeta de salida
+     */
+    Set<String> salidas() {
+        Set<String> todas = new HashSet<>();
+        for (Fuente f : fuentes.values()) {
+            for (Salida s : f.salidas) {
+                todas.add(s.ruta);
+            }
+        }
+        return todas;
+    }
+
+    /**
+     * @return lo registrado para {@code fuente}, o null si no hay nada
+     */
+    Fuente obtener(Path fuente) {
+        return fuentes.get(clave(fuente));
+    }
+
+    /**
+     * @return la entrada de {@code fuente} (con la fecha al día) si no cambió desde la última
+     * extracción y sus salidas siguen en {@code carpetaSalida}; null si hay que extraerla
+     */
+    Fuente sinCambios(Path fuente, Path carpetaSalida) throws IOException {
+        Fuente f = obtener(fuente);
+        if (f == null || !f.salidasPresentes(carpetaSalida)) {
+            return null;
+        }
+
+        BasicFileAttributes attrs = Files.readAttributes(fuente, BasicFileAttributes.class);
+        long modificado = attrs.lastModifiedTime().toMillis();
+        if (attrs.size() != f.tamano) {
+            return null;
+        }
+        if (modificado == f.modificado) {
+            return f;
+        }
+        // Mismo tamaño, otra fecha: decide el contenido
+        return huella(fuente) == f.huella ? new Fuente(f.ruta, f.tamano, modificado, f.huella, f.grupo, f.salidas) : null;
+    }
+
+    static String clave(Path fuente) {
+        return fuente.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * CRC32C de todo el archivo.
+     */
+    static long huella(Path archivo) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel ch = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            while (ch.read(buf) >= 0) {
+                buf.flip();
+                crc.update(buf);
+                buf.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Un .zip o .gz y lo que salió de él.
+     */
+    static final class Fuente {
+        final String ruta;
+        final long tamano;       // -1: la última extracción falló, hay que repetirla
+        final long modificado;
+        final long huella;
+        final int grupo;         // comprimidos con el mismo destino, contando este
+        final List<Salida> salidas;
+
+        Fuente(String ruta, long tamano, long modificado, long huella, int grupo, List<Salida> salidas) {
+            this.ruta = ruta;
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.huella = huella;
+            this.grupo = grupo;
+            this.salidas = List.copyOf(salidas);
+        }
+
+        /**
+         * Para una extracción que falló a medias: conserva las salidas (las de antes y las que
+         * alcanzaron a escribirse) para que no se borren ni queden huérfanas, y fuerza a extraer
+         * de nuevo la próxima vez.
+         */
+        static Fuente fallida(Path fuente, Fuente anterior, Collection<Salida> escritas) {
+            Map<String, Salida> salidas = new LinkedHashMap<>();
+            if (anterior != null) {
+                for (Salida s : anterior.salidas) salidas.put(s.ruta, s);
+            }
+            for (Salida s : escritas) salidas.put(s.ruta, s);
+            return new Fuente(clave(fuente), -1, -1, 0, 1, new ArrayList<>(salidas.values()));
+        }
+
+        /**
+         * @return la misma entrada dentro de un grupo de {@code grupo} comprimidos con el mismo
+         * destino, sin las salidas que otro del grupo sobrescribió
+         */
+        Fuente enGrupo(int grupo, Set<String> sobrescritas) {
+            List<Salida> quedan = new ArrayList<>();
+            for (Salida s : salidas) {
+                if (!sobrescritas.contains(s.ruta)) quedan.add(s);
+            }
+            return new Fuente(ruta, tamano, modificado, huella, grupo, quedan);
+        }
+
+        boolean salidasPresentes(Path carpetaSalida) {
+            for (Salida s : salidas) {
+                Path p = carpetaSalida.resolve(s.ruta);
+                try {
+                    if (Files.size(p) != s.tamano) return false;
+                } catch (IOException ex) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Un archivo extraído, con su ruta relativa a la carpeta de salida.
+     */
+    static final class Salida {
+        final String ruta;
+        final long tamano;
+
+        Salida(String ruta, long tamano) {
+            this.ruta = ruta;
+            this.tamano = tamano;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.example;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Medición de un archivo en disco mientras se busca en él. Las fases salen de envolver los streams:
+ * lo que tarda el {@code read} del archivo es lectura; lo que tarda el del descompresor, menos la
+ * lectura que hace por dentro, es inflado; el resto del tiempo es la búsqueda en sí.
+ * <p>
+ * Los contadores son atómicos porque las entradas de un zip se pueden leer en paralelo.
+ * En ese caso la lectura/inflado suman el tiempo de varios hilos y la fase de búsqueda
+ * (que se calcula por diferencia) queda subestimada.
+ */
+class MedicionArchivo {
+
+    // Para cuando las métricas están apagadas: no envuelve ni registra nada
+    static final MedicionArchivo NINGUNA = new MedicionArchivo(null) {
+        @Override
+        InputStream lectura(InputStream is) {
+            return is;
+        }
+
+        @Override
+        InputStream inflado(InputStream is) {
+            return is;
+        }
+
+        @Override
+        void abierto() {
+        }
+
+        @Override
+        void leidosSinMedir(long bytes) {
+        }
+
+        @Override
+        void terminar(long ocurrencias) {
+        }
+
+        @Override
+        void fallo(Throwable error) {
+        }
+    };
+
+    private final String ruta;
+    private final long inicio = System.nanoTime();
+    private final EventosBusqueda.Archivo evento;
+    private volatile long apertura = -1;
+    private final AtomicLong nanosLectura = new AtomicLong();
+    private final AtomicLong nanosInflado = new AtomicLong();
+    private final AtomicLong bytesLeidos = new AtomicLong();
+    private final AtomicLong bytesInflados = new AtomicLong();
+
+    MedicionArchivo(String ruta) {
+        this.ruta = ruta;
+        this.evento = ruta != null ? new EventosBusqueda.Archivo() : null;
+        if (evento != null) {
+            evento.begin();
+        }
+    }
+
+    /**
+     * Envuelve el stream del archivo en disco.
+     */
+    InputStream lectura(InputStream is) {
+        return new Cronometrado(is, nanosLectura, bytesLeidos);
+    }
+
+    /**
+     * Envuelve la salida de un descompresor (GZIPInputStream, entrada de ZipFile...).
+     */
+    InputStream inflado(InputStream is) {
+        return new Cronometrado(is, nanosInflado, bytesInflados);
+    }
+
+    /**
+     * Marca el fin de la apertura (la primera vez que se llama).
+     */
+    void abierto() {
+        if (apertura < 0) {
+            apertura = System.nanoTime() - inicio;
+        }
+    }
+
+    /**
+     * Bytes del disco que se leyeron sin pasar por {@link #lectura} (p. ej. dentro de ZipFile).
+     */
+    void leidosSinMedir(long bytes) {
+        bytesLeidos.addAndGet(bytes);
+    }
+
+    void terminar(long ocurrencias) {
+        registrar(ocurrencias, null);
+    }
+
+    void fallo(Throwable error) {
+        registrar(0, error);
+    }
+
+    private void registrar(long ocurrencias, Throwable error) {
+        long total = System.nanoTime() - inicio;
+        long abrir = Math.max(0, apertura);
+        long lectura = nanosLectura.get();
+        // El read del descompresor incluye la lectura que hace por dentro
+        long inflado = Math.max(0, nanosInflado.get() - lectura);
+
+        MetricasBusqueda.instancia().archivoTerminado(ruta, total, abrir, lectura, inflado,
+                bytesLeidos.get(), bytesInflados.get(), error);
+
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.ruta = ruta;
+            evento.apertura = abrir;
+            evento.lectura = lectura;
+            evento.inflado = inflado;
+            evento.bytesLeidos = bytesLeidos.get();
+            evento.bytesInflados = bytesInflados.get();
+            evento.ocurrencias = ocurrencias;
+            evento.error = error != null ? error.getClass().getSimpleName() + ": " + error.getMessage() : null;
+            evento.commit();
+        }
+    }
+
+    // Suma el tiempo y los bytes de cada read; un nanoTime por bloque, no por byte
+    private static final class Cronometrado extends FilterInputStream {
+        private final AtomicLong nanos;
+        private final AtomicLong bytes;
+
+        Cronometrado(InputStream in, AtomicLong nanos, AtomicLong bytes) {
+            super(in);
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long t = System.nanoTime();
+            int b = super.read();
+            nanos.addAndGet(System.nanoTime() - t);
+            if (b >= 0) bytes.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long t = System.nanoTime();
+            int n = super.read(b, off, len);
+            nanos.addAndGet(System.nanoTime() - t);
+            if (n > 0) bytes.addAndGet(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long t = System.nanoTime();
+            long s = super.skip(n);
+            nanos.addAndGet(System.nanoTime() - t);
+            bytes.addAndGet(s);
+            return s;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.example;
+
+import java.io.InterruptedIOException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Modo de memoria acotada, para buscar en cualquier carpeta con un heap fijo (p. ej. {@code -Xmx256m}).
+ * <p>
+ * Sin este modo cada pasada crea su buffer y, si una línea no entra, lo agranda hasta que entre:
+ * un JSON minificado o un log sin saltos de varios GB termina en un OutOfMemoryError. Con el modo:
+ * <ul>
+ *   <li>Los buffers de lectura salen de un pool compartido y se reutilizan entre archivos y workers.</li>
+ *   <li>Hay un tope global de bytes en vuelo: si todos los buffers están en uso, el siguiente
+ *       worker espera a que se libere uno (contrapresión) en vez de pedir más memoria.</li>
+ *   <li>Una línea más larga que {@link #maxLinea} no se arma entera: se sigue buscando por tramos
+ *       y del detalle solo se guardan sus primeros {@code maxLinea} bytes.</li>
+ * </ul>
+ * Las ocurrencias por bytes ({@link BuscadorBytes}) siguen siendo exactas. Con expresiones
+ * regulares las líneas largas se evalúan por segmentos de {@code maxLinea} caracteres, así que
+ * una coincidencia que cruce de un segmento a otro no se ve.
+ * <p>
+ * Los buffers son arreglos del heap (la búsqueda trabaja sobre byte[]): el tope se descuenta del
+ * {@code -Xmx}. Cada pasada tiene a lo sumo un buffer y no espera otra cosa mientras lo tiene,
+ * así que la espera no puede trabarse.
+ * <p>
+ * Se activa con {@code -Dbusqueda.memoria=64m} (y opcionalmente {@code -Dbusqueda.memoria.maxLinea=1m})
+ * o con {@link #activar}. Vale para todas las búsquedas del proceso, como las métricas.
+ */
+public final class MemoriaAcotada {
+
+    public static final int MAX_LINEA_DEFAULT = 64 * 1024;
+
+    private static volatile MemoriaAcotada activa = desdePropiedades();
+
+    final int maxLinea;
+    final int tamBuffer;
+    private final long maxBytesEnVuelo;
+    // Un permiso por buffer: los que no están en "libres" los tiene alguien
+    private final Semaphore permisos;
+    private final ConcurrentLinkedQueue<byte[]> libres = new ConcurrentLinkedQueue<>();
+    private final LongAdder esperas = new LongAdder();
+
+    private MemoriaAcotada(long maxBytesEnVuelo, int maxLinea) {
+        if (maxLinea < 1024 || maxLinea > 1 << 30) {
+            throw new IllegalArgumentException("El largo máximo de línea debe estar entre 1 KB y 1 GB.");
+        }
+        // La línea entera más lugar para seguir leyendo
+        this.tamBuffer = maxLinea + BuscadorBytes.TAM_BUFFER;
+        if (maxBytesEnVuelo < tamBuffer) {
+            throw new IllegalArgumentException("El tope de memoria debe alcanzar para al menos un buffer de "
+                    + tamBuffer + " bytes.");
+        }
+        this.maxLinea = maxLinea;
+        this.maxBytesEnVuelo = maxBytesEnVuelo;
+        this.permisos = new Semaphore((int) Math.min(Integer.MAX_VALUE, maxBytesEnVuelo / tamBuffer), true);
+    }
+
+    /**
+     * Activa el modo para las búsquedas que empiecen desde ahora.
+     *
+     * @param maxBytesEnVuelo tope de bytes en buffers de lectura, sumando todos los workers
+     * @param maxLinea        bytes de una línea que se guardan como máximo; el resto se busca sin guardarse
+     */
+    public static void activar(long maxBytesEnVuelo, int maxLinea) {
+        activa = new MemoriaAcotada(maxBytesEnVuelo, maxLinea);
+    }
+
+    /**
+     * Vuelve a los buffers propios de cada pasada. Los que están en uso terminan con el modo anterior.
+     */
+    public static void desactivar() {
+        activa = null;
+    }
+
+    /**
+     * @return el modo activo, o null si está apagado
+     */
+    static MemoriaAcotada activa() {
+        return activa;
+    }
+
+    /**
+     * Un buffer de {@link #tamBuffer} bytes; espera si ya se llegó al tope.
+     */
+    byte[] tomar() throws InterruptedIOException {
+        reservar();
+        byte[] b = libres.poll();
+        return b != null ? b : new byte[tamBuffer];
+    }
+
+    void devolver(byte[] b) {
+        libres.offer(b);
+        liberar();
+    }
+
+    /**
+     * Cuenta un buffer en vuelo sin pedir el arreglo, para quien lee con su propia memoria
+     * acotada (la lectura por segmentos de {@link BuscadorRegex}). Se devuelve con {@link #liberar}.
+     */
+    void reservar() throws InterruptedIOException {
+        if (permisos.tryAcquire()) return;
+        esperas.increment();
+        try {
+            permisos.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Búsqueda interrumpida esperando memoria");
+        }
+    }
+
+    void liberar() {
+        permisos.release();
+    }
+
+    public long maxBytesEnVuelo() {
+        return maxBytesEnVuelo;
+    }
+
+    public int maxLinea() {
+        return maxLinea;
+    }
+
+    /**
+     * Bytes en buffers que alguna búsqueda tiene tomados ahora.
+     */
+    public long bytesEnVuelo() {
+        return (maxBytesEnVuelo / tamBuffer - permisos.availablePermits()) * (long) tamBuffer;
+    }
+
+    /**
+     * Veces que un worker tuvo que esperar un buffer.
+     */
+    public long esperas() {
+        return esperas.sum();
+    }
+
+    private static MemoriaAcotada desdePropiedades() {
+        String tope = System.getProperty("busqueda.memoria");
+        if (tope == null || tope.isBlank()) return null;
+        try {
+            String linea = System.getProperty("busqueda.memoria.maxLinea");
+            int maxLinea = linea == null ? MAX_LINEA_DEFAULT : (int) Math.min(Integer.MAX_VALUE, tamano(linea));
+            return new MemoriaAcotada(tamano(tope), maxLinea);
+        } catch (IllegalArgumentException ex) {
+            System.err.println("busqueda.memoria inválido, sigue sin tope: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // "64m", "512k", "1g" o bytes
+    static long tamano(String texto) {
+        String t = texto.trim().toLowerCase(Locale.ROOT);
+        long factor = 1;
+        if (t.endsWith("k")) factor = 1L << 10;
+        else if (t.endsWith("m")) factor = 1L << 20;
+        else if (t.endsWith("g")) factor = 1L << 30;
+        if (factor > 1) t = t.substring(0, t.length() - 1);
+        try {
+            return Long.parseLong(t) * factor;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Tamaño inválido: " + texto);
+        }
+    }
+}
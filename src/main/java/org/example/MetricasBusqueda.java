@@ -0,0 +1,256 @@
+package org.example;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas acumuladas de todas las búsquedas del proceso: tiempo por fase, bytes leídos/inflados/
+ * decodificados, histograma de latencia por archivo, omitidos y fallidos por motivo y los
+ * archivos más lentos. Se publican por JMX ({@link MetricasBusquedaMXBean}) y, por archivo,
+ * como eventos JFR ({@link EventosBusqueda}).
+ * <p>
+ * El costo es un par de {@code nanoTime} por cada lectura de bloque (64 KB) y unos contadores
+ * {@link LongAdder} por archivo. Se apagan con {@code -Dbusqueda.metricas=false}.
+ */
+public final class MetricasBusqueda implements MetricasBusquedaMXBean {
+
+    static final boolean ACTIVAS = !"false".equalsIgnoreCase(System.getProperty("busqueda.metricas"));
+
+    static final int MAS_LENTOS = 20;
+    private static final int RANGOS = 40;
+
+    private static final MetricasBusqueda INSTANCIA = new MetricasBusqueda();
+
+    static {
+        if (ACTIVAS) {
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(INSTANCIA, new ObjectName("org.example:type=MetricasBusqueda"));
+            } catch (Exception ex) {
+                System.err.println("No se pudieron publicar las métricas por JMX -> " + ex.getMessage());
+            }
+        }
+    }
+
+    enum Fase { RECORRIDO, APERTURA, LECTURA, INFLADO, BUSQUEDA }
+
+    private final LongAdder[] nanosPorFase = nuevos(Fase.values().length);
+    private final LongAdder procesados = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+    private final LongAdder omitidos = new LongAdder();
+    private final LongAdder bytesLeidos = new LongAdder();
+    private final LongAdder bytesInflados = new LongAdder();
+    private final LongAdder bytesDecodificados = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> omitidosPorMotivo = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> fallidosPorMotivo = new ConcurrentHashMap<>();
+
+    // Rango i: [2^(i-1), 2^i) microsegundos; el 0 es "menos de 1 µs"
+    private final LongAdder[] latencia = nuevos(RANGOS);
+
+    // Montículo de mínimos: arriba el menos lento de los guardados, así se reemplaza rápido
+    private final PriorityQueue<Lento> lentos = new PriorityQueue<>(Comparator.comparingLong(l -> l.nanos));
+    private volatile long umbralLentos;
+
+    private MetricasBusqueda() {
+    }
+
+    public static MetricasBusqueda instancia() {
+        return INSTANCIA;
+    }
+
+    // ===========================
+    // Registro (lo llaman las búsquedas)
+    // ===========================
+
+    /**
+     * @return la medición del archivo; si las métricas están apagadas, una que no hace nada
+     */
+    static MedicionArchivo iniciar(Path archivo) {
+        return ACTIVAS ? new MedicionArchivo(archivo.toAbsolutePath().toString()) : MedicionArchivo.NINGUNA;
+    }
+
+    static void recorrido(Path carpeta, long nanos, long archivos) {
+        if (!ACTIVAS) return;
+        INSTANCIA.nanosPorFase[Fase.RECORRIDO.ordinal()].add(nanos);
+
+        EventosBusqueda.Recorrido e = new EventosBusqueda.Recorrido();
+        if (e.shouldCommit()) {
+            e.carpeta = carpeta.toAbsolutePath().toString();
+            e.archivos = archivos;
+            e.commit();
+        }
+    }
+
+    static void omitido(String motivo) {
+        if (!ACTIVAS) return;
+        INSTANCIA.omitidos.increment();
+        INSTANCIA.omitidosPorMotivo.computeIfAbsent(motivo, k -> new LongAdder()).increment();
+    }
+
+    static void decodificados(long bytes) {
+        if (ACTIVAS) INSTANCIA.bytesDecodificados.add(bytes);
+    }
+
+    void archivoTerminado(String ruta, long total, long apertura, long lectura, long inflado,
+                          long leidos, long inflados, Throwable error) {
+        procesados.increment();
+        nanosPorFase[Fase.APERTURA.ordinal()].add(apertura);
+        nanosPorFase[Fase.LECTURA.ordinal()].add(lectura);
+        nanosPorFase[Fase.INFLADO.ordinal()].add(inflado);
+        nanosPorFase[Fase.BUSQUEDA.ordinal()].add(Math.max(0, total - apertura - lectura - inflado));
+        bytesLeidos.add(leidos);
+        bytesInflados.add(inflados);
+
+        long micros = total / 1000;
+        latencia[Math.min(RANGOS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+
+        if (error != null) {
+            fallidos.increment();
+            fallidosPorMotivo.computeIfAbsent(error.getClass().getSimpleName(), k -> new LongAdder()).increment();
+        }
+
+        // Casi todos los archivos quedan debajo del umbral y no tocan el candado
+        if (total > umbralLentos) {
+            synchronized (lentos) {
+                lentos.add(new Lento(total, ruta));
+                if (lentos.size() > MAS_LENTOS) {
+                    lentos.poll();
+                }
+                if (lentos.size() == MAS_LENTOS) {
+                    umbralLentos = lentos.peek().nanos;
+                }
+            }
+        }
+    }
+
+    // ===========================
+    // JMX
+    // ===========================
+    @Override
+    public long getArchivosProcesados() {
+        return procesados.sum();
+    }
+
+    @Override
+    public long getArchivosFallidos() {
+        return fallidos.sum();
+    }
+
+    @Override
+    public long getArchivosOmitidos() {
+        return omitidos.sum();
+    }
+
+    @Override
+    public Map<String, Long> getMilisPorFase() {
+        Map<String, Long> r = new LinkedHashMap<>();
+        for (Fase f : Fase.values()) {
+            r.put(f.name(), nanosPorFase[f.ordinal()].sum() / 1_000_000);
+        }
+        return r;
+    }
+
+    @Override
+    public long getBytesLeidos() {
+        return bytesLeidos.sum();
+    }
+
+    @Override
+    public long getBytesInflados() {
+        return bytesInflados.sum();
+    }
+
+    @Override
+    public long getBytesDecodificados() {
+        return bytesDecodificados.sum();
+    }
+
+    @Override
+    public Map<String, Long> getOmitidosPorMotivo() {
+        return sumas(omitidosPorMotivo);
+    }
+
+    @Override
+    public Map<String, Long> getFallidosPorMotivo() {
+        return sumas(fallidosPorMotivo);
+    }
+
+    @Override
+    public List<String> getHistogramaLatencia() {
+        List<String> r = new ArrayList<>();
+        for (int i = 0; i < RANGOS; i++) {
+            long n = latencia[i].sum();
+            if (n == 0) continue;
+            String desde = i == 0 ? "0" : duracion(1L << (i - 1));
+            String hasta = i == RANGOS - 1 ? "..." : duracion(1L << i);
+            r.add(desde + "-" + hasta + ": " + n);
+        }
+        return r;
+    }
+
+    @Override
+    public List<String> getMasLentos() {
+        List<Lento> copia;
+        synchronized (lentos) {
+            copia = new ArrayList<>(lentos);
+        }
+        copia.sort(Comparator.comparingLong((Lento l) -> l.nanos).reversed());
+
+        List<String> r = new ArrayList<>();
+        for (Lento l : copia) {
+            r.add(String.format(Locale.ROOT, "%.1f ms  %s", l.nanos / 1e6, l.ruta));
+        }
+        return r;
+    }
+
+    @Override
+    public void reiniciar() {
+        for (LongAdder a : nanosPorFase) a.reset();
+        for (LongAdder a : latencia) a.reset();
+        procesados.reset();
+        fallidos.reset();
+        omitidos.reset();
+        bytesLeidos.reset();
+        bytesInflados.reset();
+        bytesDecodificados.reset();
+        omitidosPorMotivo.clear();
+        fallidosPorMotivo.clear();
+        synchronized (lentos) {
+            lentos.clear();
+            umbralLentos = 0;
+        }
+    }
+
+    private static LongAdder[] nuevos(int n) {
+        LongAdder[] r = new LongAdder[n];
+        for (int i = 0; i < n; i++) r[i] = new LongAdder();
+        return r;
+    }
+
+    private static Map<String, Long> sumas(Map<String, LongAdder> m) {
+        Map<String, Long> r = new TreeMap<>();
+        m.forEach((k, v) -> r.put(k, v.sum()));
+        return r;
+    }
+
+    // Microsegundos en la unidad más legible: 512 µs, 2 ms, 4 s
+    private static String duracion(long micros) {
+        if (micros < 1000) return micros + " µs";
+        if (micros < 1_000_000) return (micros / 1000) + " ms";
+        return (micros / 1_000_000) + " s";
+    }
+
+    private static final class Lento {
+        final long nanos;
+        final String ruta;
+
+        Lento(long nanos, String ruta) {
+            this.nanos = nanos;
+            this.ruta = ruta;
+        }
+    }
+}
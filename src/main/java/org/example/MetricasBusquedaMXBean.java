@@ -0,0 +1,44 @@
+package org.example;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lo que {@link MetricasBusqueda} publica por JMX (jconsole, VisualVM...), bajo
+ * {@code org.example:type=MetricasBusqueda}. Todo es acumulado desde el arranque o el último reinicio.
+ */
+public interface MetricasBusquedaMXBean {
+
+    long getArchivosProcesados();
+
+    long getArchivosFallidos();
+
+    long getArchivosOmitidos();
+
+    /**
+     * Milisegundos por fase: RECORRIDO, APERTURA, LECTURA, INFLADO, BUSQUEDA.
+     */
+    Map<String, Long> getMilisPorFase();
+
+    long getBytesLeidos();
+
+    long getBytesInflados();
+
+    long getBytesDecodificados();
+
+    Map<String, Long> getOmitidosPorMotivo();
+
+    Map<String, Long> getFallidosPorMotivo();
+
+    /**
+     * Latencia por archivo en rangos de potencias de 2, p. ej. "1-2 ms: 340".
+     */
+    List<String> getHistogramaLatencia();
+
+    /**
+     * Los archivos más lentos, del más lento al menos lento: "123.4 ms  ruta".
+     */
+    List<String> getMasLentos();
+
+    void reiniciar();
+}
@@ -0,0 +1,50 @@
+package org.example;
+
+import java.nio.charset.Charset;
+
+/**
+ * Cómo se compara la cadena buscada con cada línea.
+ * En todos los modos se cuentan coincidencias sin traslape, de izquierda a derecha, dentro de cada línea.
+ */
+public enum ModoBusqueda {
+
+    /**
+     * Tal cual, distinguiendo mayúsculas.
+     */
+    EXACTA,
+
+    /**
+     * Sin distinguir mayúsculas. Si la cadena es ASCII se compara sobre los bytes plegando solo
+     * letras ASCII; si tiene otros caracteres, se compara por línea con las reglas de Unicode.
+     */
+    IGNORAR_MAYUSCULAS,
+
+    /**
+     * La cadena es una expresión regular de {@link java.util.regex.Pattern}, aplicada a cada línea.
+     */
+    REGEX;
+
+    /**
+     * @return el buscador para este modo; en EXACTA puede ser null (el llamador lee por líneas),
+     * salvo con {@link MemoriaAcotada} activa.
+     * Con {@link CharsetPorArchivo} nunca es null: detecta la codificación de cada stream
+     * @throws IllegalArgumentException si en REGEX la expresión no es válida
+     */
+    Buscador crearBuscador(String cadena, Charset charset) {
+        if (charset instanceof CharsetPorArchivo) {
+            return BuscadorPorCodificacion.crear(this, cadena);
+        }
+        return switch (this) {
+            case EXACTA -> {
+                BuscadorBytes porBytes = BuscadorBytes.paraCadena(cadena, charset);
+                // Con memoria acotada no se lee con readLine(): una línea enorme no debe armarse entera
+                yield porBytes != null || MemoriaAcotada.activa() == null ? porBytes : BuscadorRegex.literal(cadena, charset);
+            }
+            case IGNORAR_MAYUSCULAS -> {
+                BuscadorBytes porBytes = BuscadorBytes.paraCadenaSinMayusculas(cadena, charset);
+                yield porBytes != null ? porBytes : BuscadorRegex.sinMayusculas(cadena, charset);
+            }
+            case REGEX -> BuscadorRegex.compilar(cadena, charset);
+        };
+    }
+}
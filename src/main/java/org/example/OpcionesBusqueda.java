@@ -0,0 +1,115 @@
+package org.example;
+
+/**
+ * Cómo se recorre una carpeta: modo de búsqueda, detalle por archivo, hilos, cache y rango de
+ * horas. Se arma a partir de {@link #DEFAULT} con los {@code con...}:
+ * <pre>{@code
+ * OpcionesBusqueda.DEFAULT.conHilos(0).conModo(ModoBusqueda.IGNORAR_MAYUSCULAS).conCache(cache)
+ * }</pre>
+ * Con {@link #DEFAULT} (un hilo, sin cache ni ventana) la búsqueda es la secuencial de siempre.
+ */
+public final class OpcionesBusqueda {
+
+    public static final OpcionesBusqueda DEFAULT =
+            new OpcionesBusqueda(ModoBusqueda.EXACTA, OpcionesDetalle.DEFAULT, 1, null, null);
+
+    final ModoBusqueda modo;
+    final OpcionesDetalle detalle;
+    final int hilos;
+    final CacheResultados cache;
+    final VentanaTiempo ventana;
+
+    private OpcionesBusqueda(ModoBusqueda modo,
+                             OpcionesDetalle detalle,
+                             int hilos,
+                             CacheResultados cache,
+                             VentanaTiempo ventana) {
+        if (modo == null || detalle == null) {
+            throw new IllegalArgumentException("El modo y el detalle no pueden ser null.");
+        }
+        this.modo = modo;
+        this.detalle = detalle;
+        this.hilos = hilos;
+        this.cache = cache;
+        this.ventana = ventana;
+    }
+
+    /**
+     * La forma de antes: {@link #DEFAULT} con o sin líneas de detalle.
+     */
+    static OpcionesBusqueda de(boolean incluirDetalleLineas) {
+        return incluirDetalleLineas ? DEFAULT : DEFAULT.conDetalle(OpcionesDetalle.SIN_LINEAS);
+    }
+
+    /**
+     * @param modo exacta, sin distinguir mayúsculas o expresión regular
+     */
+    public OpcionesBusqueda conModo(ModoBusqueda modo) {
+        return new OpcionesBusqueda(modo, detalle, hilos, cache, ventana);
+    }
+
+    /**
+     * @param detalle cuántas líneas guardar por archivo y con cuánto contexto (como {@code grep -C})
+     */
+    public OpcionesBusqueda conDetalle(OpcionesDetalle detalle) {
+        return new OpcionesBusqueda(modo, detalle, hilos, cache, ventana);
+    }
+
+    /**
+     * @param hilos cantidad de workers; si es <= 0 usa uno por núcleo
+     */
+    public OpcionesBusqueda conHilos(int hilos) {
+        return new OpcionesBusqueda(modo, detalle, hilos, cache, ventana);
+    }
+
+    /**
+     * Los archivos que no cambiaron desde una búsqueda igual se toman del cache sin leerlos.
+     *
+     * @param cache puede ser null (sin cache)
+     */
+    public OpcionesBusqueda conCache(CacheResultados cache) {
+        return new OpcionesBusqueda(modo, detalle, hilos, cache, ventana);
+    }
+
+    /**
+     * Solo en las líneas de un rango de horas (ver {@link VentanaTiempo}).
+     *
+     * @param ventana puede ser null (todo el archivo)
+     */
+    public OpcionesBusqueda conVentana(VentanaTiempo ventana) {
+        return new OpcionesBusqueda(modo, detalle, hilos, cache, ventana);
+    }
+
+    public ModoBusqueda modo() {
+        return modo;
+    }
+
+    public OpcionesDetalle detalle() {
+        return detalle;
+    }
+
+    public int hilos() {
+        return hilos;
+    }
+
+    public CacheResultados cache() {
+        return cache;
+    }
+
+    public VentanaTiempo ventana() {
+        return ventana;
+    }
+
+    /**
+     * Un solo hilo y sin cache: se recorre y se lee en el hilo que llama.
+     */
+    boolean secuencial() {
+        return hilos == 1 && cache == null;
+    }
+
+    @Override
+    public String toString() {
+        return "OpcionesBusqueda[modo=" + modo + ", detalle=" + detalle + ", hilos=" + hilos
+                + ", cache=" + (cache != null) + ", ventana=" + (ventana != null ? ventana.clave() : "no") + "]";
+    }
+}
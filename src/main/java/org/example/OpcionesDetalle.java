@@ -0,0 +1,106 @@
+package org.example;
+
+/**
+ * Qué se guarda de cada archivo además del conteo: cuántas líneas con coincidencia como máximo
+ * y, como {@code grep -B/-A/-C}, cuántas líneas de contexto antes y después de cada una.
+ * <p>
+ * Las líneas de contexto van como {@code "L<n>- texto"} (las que coinciden siguen siendo
+ * {@code "L<n>: texto"}) y entre grupos no contiguos se agrega {@code "--"}. El máximo cuenta
+ * solo las líneas con coincidencia.
+ * <p>
+ * Con {@link #SIN_LINEAS} la búsqueda solo cuenta: no crea nada por coincidencia.
+ */
+public final class OpcionesDetalle {
+
+    public static final int MAX_LINEAS_DEFAULT = 20;
+
+    public static final OpcionesDetalle SIN_LINEAS = new OpcionesDetalle(0, 0, 0);
+    public static final OpcionesDetalle DEFAULT = new OpcionesDetalle(MAX_LINEAS_DEFAULT, 0, 0);
+
+    final int maxLineas;
+    final int antes;
+    final int despues;
+
+    private OpcionesDetalle(int maxLineas, int antes, int despues) {
+        if (maxLineas < 0 || antes < 0 || despues < 0) {
+            throw new IllegalArgumentException("Las líneas de detalle y de contexto no pueden ser negativas.");
+        }
+        this.maxLineas = maxLineas;
+        this.antes = antes;
+        this.despues = despues;
+    }
+
+    /**
+     * @param maxLineas líneas con coincidencia que se guardan por archivo; 0 = solo contar
+     */
+    public static OpcionesDetalle lineas(int maxLineas) {
+        return maxLineas == MAX_LINEAS_DEFAULT ? DEFAULT : new OpcionesDetalle(maxLineas, 0, 0);
+    }
+
+    /**
+     * La forma de antes: {@link #DEFAULT} o {@link #SIN_LINEAS}.
+     */
+    static OpcionesDetalle de(boolean incluirDetalleLineas) {
+        return incluirDetalleLineas ? DEFAULT : SIN_LINEAS;
+    }
+
+    /**
+     * Como {@code grep -C n}.
+     */
+    public OpcionesDetalle conContexto(int lineas) {
+        return conContexto(lineas, lineas);
+    }
+
+    /**
+     * Como {@code grep -B antes -A despues}.
+     */
+    public OpcionesDetalle conContexto(int antes, int despues) {
+        return new OpcionesDetalle(maxLineas, antes, despues);
+    }
+
+    public int maxLineas() {
+        return maxLineas;
+    }
+
+    public int antes() {
+        return antes;
+    }
+
+    public int despues() {
+        return despues;
+    }
+
+    boolean incluyeLineas() {
+        return maxLineas > 0;
+    }
+
+    boolean tieneContexto() {
+        return maxLineas > 0 && (antes > 0 || despues > 0);
+    }
+
+    /**
+     * Para claves de cache: las dos formas de antes conservan su texto ("detalle" y "conteo").
+     */
+    String clave() {
+        if (maxLineas == 0) return "conteo";
+        if (maxLineas == MAX_LINEAS_DEFAULT && !tieneContexto()) return "detalle";
+        return "detalle:" + maxLineas + ":" + antes + ":" + despues;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OpcionesDetalle d)) return false;
+        return maxLineas == d.maxLineas && antes == d.antes && despues == d.despues;
+    }
+
+    @Override
+    public int hashCode() {
+        return (maxLineas * 31 + antes) * 31 + despues;
+    }
+
+    @Override
+    public String toString() {
+        return "OpcionesDetalle[lineas=" + maxLineas + ", antes=" + antes + ", despues=" + despues + "]";
+    }
+}
@@ -0,0 +1,208 @@
+package org.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Hasta dónde se leyó cada archivo en una búsqueda, para que la siguiente lea solo lo que se
+ * agregó al final (logs que crecen durante el día).
+ * <p>
+ * Por archivo y consulta se guarda la identidad del archivo (inodo o equivalente), el byte donde
+ * termina la última línea completa, cuántas líneas había hasta ahí, las ocurrencias acumuladas y
+ * las líneas del detalle. Si el archivo es otro (rotado), se achicó (truncado) o sus primeros
+ * bytes ya no son los mismos (copiado y truncado, y vuelto a crecer), se lee desde el principio.
+ * <p>
+ * Se {@link #guardar guarda} en disco para que el ahorro siga después de reiniciar. Thread-safe.
+ */
+public final class PuntosDeControl {
+
+    private static final int MAGICO = 0x50444331; // "PDC1"
+
+    // Bytes del principio que se comparan para saber si el archivo sigue siendo el mismo
+    private static final int TAM_HUELLA = 4096;
+
+    private final Map<Clave, Punto> puntos = new HashMap<>();
+
+    private PuntosDeControl() {
+    }
+
+    public static PuntosDeControl enMemoria() {
+        return new PuntosDeControl();
+    }
+
+    /**
+     * Carga los puntos guardados con {@link #guardar}; si no existe o no es válido, empieza vacío
+     * (la próxima búsqueda lee todo).
+     */
+    public static PuntosDeControl cargar(Path archivo) {
+        PuntosDeControl pc = new PuntosDeControl();
+        if (archivo == null || !Files.isRegularFile(archivo)) {
+            return pc;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), 1 << 16))) {
+            if (in.readInt() != MAGICO) {
+                throw new IOException("formato desconocido");
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Clave clave = new Clave(in.readUTF(), in.readUTF());
+                String identidad = in.readUTF();
+                long offset = in.readLong();
+                long huella = in.readLong();
+                long lineas = in.readLong();
+                int ocurrencias = in.readInt();
+                int nDetalle = in.readInt();
+                List<String> detalle = new ArrayList<>(nDetalle);
+                for (int l = 0; l < nDetalle; l++) {
+                    detalle.add(in.readUTF());
+                }
+                pc.puntos.put(clave, new Punto(identidad, offset, huella, lineas, ocurrencias, detalle));
+            }
+        } catch (IOException ex) {
+            System.err.println("Puntos de control inválidos, se empieza de cero: " + archivo + " -> " + ex.getMessage());
+            pc.puntos.clear();
+        }
+        return pc;
+    }
+
+    /**
+     * Escribe en un temporal y luego lo mueve encima del anterior.
+     */
+    public synchronized void guardar(Path archivo) throws IOException {
+        Path carpeta = archivo.toAbsolutePath().getParent();
+        if (carpeta != null) {
+            Files.createDirectories(carpeta);
+        }
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 16))) {
+            out.writeInt(MAGICO);
+            out.writeInt(puntos.size());
+            for (Map.Entry<Clave, Punto> e : puntos.entrySet()) {
+                Punto p = e.getValue();
+                out.writeUTF(e.getKey().ruta);
+                out.writeUTF(e.getKey().consulta);
+                out.writeUTF(p.identidad);
+                out.writeLong(p.offset);
+                out.writeLong(p.huella);
+                out.writeLong(p.lineas);
+                out.writeInt(p.ocurrencias);
+                out.writeInt(p.detalle.size());
+                for (String linea : p.detalle) {
+                    // writeUTF no acepta más de 64 KB codificados
+                    out.writeUTF(linea.length() > 16 * 1024 ? linea.substring(0, 16 * 1024) : linea);
+                }
+            }
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public synchronized int cantidad() {
+        return puntos.size();
+    }
+
+    public synchronized void limpiar() {
+        puntos.clear();
+    }
+
+    /**
+     * @param consulta lo que cambia el resultado: cadena, charset, modo y detalle
+     * @return el punto guardado, o null si el archivo no se leyó con esta consulta
+     */
+    synchronized Punto obtener(Path archivo, String consulta) {
+        return puntos.get(new Clave(archivo.toAbsolutePath().toString(), consulta));
+    }
+
+    synchronized void poner(Path archivo, String consulta, Punto punto) {
+        puntos.put(new Clave(archivo.toAbsolutePath().toString(), consulta), punto);
+    }
+
+    /**
+     * Olvida los archivos de {@code carpeta} que no están en {@code vigentes} (borrados o que
+     * dejaron de ser candidatos), de todas las consultas.
+     */
+    synchronized void retener(Path carpeta, Collection<Path> vigentes) {
+        Path raiz = carpeta.toAbsolutePath();
+        Set<String> rutas = new HashSet<>();
+        for (Path p : vigentes) rutas.add(p.toAbsolutePath().toString());
+        puntos.keySet().removeIf(c -> !rutas.contains(c.ruta) && Paths.get(c.ruta).startsWith(raiz));
+    }
+
+    /**
+     * El inodo (o lo que el sistema de archivos use para identificar al archivo); si no hay,
+     * la fecha de creación, que tampoco sobrevive a una rotación por renombre.
+     */
+    static String identidad(BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        return key != null ? key.toString() : "creado:" + attrs.creationTime().toMillis();
+    }
+
+    /**
+     * CRC32 de los primeros bytes (hasta {@code TAM_HUELLA}, sin pasar de {@code hasta}).
+     */
+    static long huella(FileChannel ch, long hasta) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate((int) Math.min(hasta, TAM_HUELLA));
+        while (bb.hasRemaining()) {
+            if (ch.read(bb, bb.position()) < 0) break;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bb.flip());
+        return crc.getValue();
+    }
+
+    /**
+     * Hasta dónde se leyó un archivo. Inmutable.
+     */
+    static final class Punto {
+        final String identidad;
+        final long offset;       // justo después del último salto de línea leído
+        final long huella;       // de los primeros bytes, hasta offset
+        final long lineas;       // líneas completas antes de offset
+        final int ocurrencias;
+        final List<String> detalle;
+
+        Punto(String identidad, long offset, long huella, long lineas, int ocurrencias, List<String> detalle) {
+            this.identidad = identidad;
+            this.offset = offset;
+            this.huella = huella;
+            this.lineas = lineas;
+            this.ocurrencias = ocurrencias;
+            this.detalle = List.copyOf(detalle);
+        }
+
+        static Punto inicial(String identidad) {
+            return new Punto(identidad, 0, new CRC32().getValue(), 0, 0, List.of());
+        }
+    }
+
+    private static final class Clave {
+        final String ruta;
+        final String consulta;
+
+        Clave(String ruta, String consulta) {
+            this.ruta = ruta;
+            this.consulta = consulta;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Clave c)) return false;
+            return ruta.equals(c.ruta) && consulta.equals(c.consulta);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ruta, consulta);
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Escribe los resultados en un hilo aparte, con buffer y opcionalmente comprimidos, para que
+ * imprimir no frene la búsqueda. Con cientos de miles de coincidencias, un
+ * {@code System.out.println} por campo (sincronizado y con flush por línea) tarda más que buscar.
+ * <p>
+ * Formatos:
+ * <ul>
+ *   <li>{@link Formato#TEXTO}: el de siempre ("Archivo: ...", "Líneas:").</li>
+ *   <li>{@link Formato#JSONL}: un objeto JSON por línea, fácil de procesar con jq o cualquier lenguaje.</li>
+ *   <li>{@link Formato#BINARIO}: registros con su largo adelante; se leen con {@link #leerBinario}.</li>
+ * </ul>
+ * {@link #escribir} solo encola: el formato (y la decodificación de las líneas del detalle, que es
+ * perezosa) corre en el hilo de salida. La cola es acotada: si la salida no da abasto, los
+ * workers esperan en vez de juntar resultados sin límite. Se puede pasar como consumidor de
+ * las búsquedas al vuelo:
+ * <pre>
+ *   try (SalidaResultados salida = SalidaResultados.abrir(Path.of("r.jsonl.gz"), Formato.JSONL, true)) {
+ *       BuscarCadenaEnCarpeta.buscarEnCarpetaAlVuelo(carpeta, "ERROR", UTF_8, true, 0, null, salida::escribir);
+ *   }
+ * </pre>
+ * Los mensajes ({@link #mensaje}) van en la salida solo en TEXTO; en los otros formatos van a
+ * System.err para no ensuciar lo que se procesa.
+ */
+public final class SalidaResultados implements Closeable {
+
+    public enum Formato {
+        TEXTO, JSONL, BINARIO;
+
+        /**
+         * "texto", "jsonl" (o "json") o "binario".
+         */
+        public static Formato de(String nombre) {
+            String n = nombre.trim().toUpperCase(Locale.ROOT);
+            return "JSON".equals(n) ? JSONL : valueOf(n);
+        }
+    }
+
+    private static final int MAGICO = 0x52455331; // "RES1"
+    private static final int TAM_COLA = 8192;
+    private static final Object FIN = new Object();
+
+    private final Formato formato;
+    private final Charset charsetTexto;       // TEXTO en consola va en el charset de la consola; lo demás en UTF-8
+    private final OutputStream destino;
+    private final boolean cerrarDestino;
+    private final GZIPOutputStream gzip;      // null: sin comprimir
+    private final OutputStream out;
+    private final BlockingQueue<Object> cola = new ArrayBlockingQueue<>(TAM_COLA);
+    private final Thread hilo;
+    private volatile IOException error;
+    private volatile long escritos;           // solo lo escribe el hilo de salida
+    private boolean cerrada;
+
+    // Solo del hilo de salida
+    private final StringBuilder texto = new StringBuilder(1024);
+    private final ByteArrayOutputStream registro = new ByteArrayOutputStream(1024);
+    private final DataOutputStream datos = new DataOutputStream(registro);
+
+    private SalidaResultados(OutputStream destino, boolean cerrarDestino, Formato formato, boolean comprimir,
+                             Charset charsetTexto) throws IOException {
+        this.formato = formato;
+        this.charsetTexto = formato == Formato.TEXTO ? charsetTexto : StandardCharsets.UTF_8;
+        this.destino = destino;
+        this.cerrarDestino = cerrarDestino;
+        this.gzip = comprimir ? new GZIPOutputStream(destino, 1 << 16) : null;
+        this.out = new BufferedOutputStream(comprimir ? gzip : destino, 1 << 16);
+        if (formato == Formato.BINARIO) {
+            new DataOutputStream(out).writeInt(MAGICO);
+        }
+        this.hilo = new Thread(this::escribirCola, "salida-resultados");
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+    }
+
+    /**
+     * Escribe en {@code archivo} (lo crea o lo reemplaza) y lo cierra al terminar.
+     */
+    public static SalidaResultados abrir(Path archivo, Formato formato, boolean comprimir) throws IOException {
+        return new SalidaResultados(Files.newOutputStream(archivo), true, formato, comprimir, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Escribe en {@code destino}; al cerrar se vacía pero no se cierra (p. ej. System.out).
+     */
+    public static SalidaResultados sobre(OutputStream destino, Formato formato, boolean comprimir) throws IOException {
+        return new SalidaResultados(destino, false, formato, comprimir, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Salida estándar, con el formato de {@code -Dbusqueda.salida=texto|jsonl|binario} (texto si
+     * no se indica) y comprimida con {@code -Dbusqueda.salida.gzip=true}.
+     */
+    public static SalidaResultados consola() throws IOException {
+        Formato formato;
+        try {
+            formato = Formato.de(System.getProperty("busqueda.salida", "texto"));
+        } catch (IllegalArgumentException ex) {
+            System.err.println("busqueda.salida desconocida, se usa texto: " + System.getProperty("busqueda.salida"));
+            formato = Formato.TEXTO;
+        }
+        boolean comprimir = Boolean.getBoolean("busqueda.salida.gzip");
+        // Directo al descriptor: System.out sincroniza y vacía en cada println
+        return new SalidaResultados(new FileOutputStream(FileDescriptor.out), false, formato, comprimir,
+                comprimir ? StandardCharsets.UTF_8 : System.out.charset());
+    }
+
+    public void escribir(BuscarCadenaEnCarpeta.Resultado r) {
+        encolar(new Registro(r.rutaCompleta, r.carpeta, r.nombreArchivo, r.ocurrencias, r.lineasCoinciden, Map.of(), Map.of()));
+    }
+
+    public void escribir(BuscarCadenaEnCarpetaZip.Resultado r) {
+        encolar(new Registro(r.rutaCompleta, r.carpeta, r.nombreArchivo, r.ocurrencias, r.lineasCoinciden,
+                r.ocurrenciasPorCadena, r.lineasPorCadena));
+    }
+
+    public void escribir(BuscarCadenaEnCarpetaZipDos.Resultado r) {
+        encolar(new Registro(r.rutaCompleta, r.carpeta, r.nombreArchivo, r.ocurrencias, r.lineasCoinciden, Map.of(), Map.of()));
+    }
+
+    /**
+     * Una línea de texto para quien lee (encabezados, "No se encontró...").
+     */
+    public void mensaje(String linea) {
+        encolar(linea);
+    }
+
+    // No lanza IOException para poder usarse como Consumer; si la salida ya falló, avisa aquí
+    private void encolar(Object o) {
+        IOException ex = error;
+        if (ex != null) {
+            throw new UncheckedIOException("No se pudo escribir la salida", ex);
+        }
+        try {
+            cola.put(o);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrumpido esperando la salida"));
+        }
+    }
+
+    /**
+     * Espera a que se escriba todo lo encolado, termina la compresión y vacía el destino.
+     *
+     * @throws IOException si alguna escritura falló
+     */
+    @Override
+    public void close() throws IOException {
+        if (cerrada) return;
+        cerrada = true;
+        try {
+            cola.put(FIN);
+            hilo.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido cerrando la salida");
+        }
+
+        try {
+            if (error == null) {
+                out.flush();
+                if (gzip != null) gzip.finish();
+                destino.flush();
+            }
+        } finally {
+            if (cerrarDestino) destino.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // ===========================
+    // Hilo de salida
+    // ===========================
+    private void escribirCola() {
+        try {
+            while (true) {
+                Object o = cola.poll();
+                if (o == null) {
+                    // Sin nada pendiente: se vacía lo juntado y se espera el siguiente
+                    vaciar();
+                    o = cola.take();
+                }
+                if (o == FIN) return;
+                if (error != null) continue;    // se sigue sacando para que nadie quede esperando
+                try {
+                    if (o instanceof Registro r) {
+                        escribirRegistro(r);
+                        escritos++;
+                    } else if (formato == Formato.TEXTO) {
+                        escribirTexto(o + "\n");
+                    } else {
+                        System.err.println(o);
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    error = ex instanceof IOException io ? io : new IOException(ex);
+                }
+            }
+        } catch (InterruptedException ie) {
+            error = new InterruptedIOException("Salida interrumpida");
+        }
+    }
+
+    private void vaciar() {
+        if (error != null) return;
+        try {
+            out.flush();
+        } catch (IOException ex) {
+            error = ex;
+        }
+    }
+
+    private void escribirRegistro(Registro r) throws IOException {
+        switch (formato) {
+            case TEXTO -> escribirTexto(comoTexto(r));
+            case JSONL -> escribirTexto(comoJson(r));
+            case BINARIO -> escribirBinario(r);
+        }
+    }
+
+    private void escribirTexto(String s) throws IOException {
+        out.write(s.getBytes(charsetTexto));
+    }
+
+    private String comoTexto(Registro r) {
+        StringBuilder sb = texto;
+        sb.setLength(0);
+        sb.append("--------------------------------------------------\n");
+        sb.append("Archivo: ").append(r.ruta).append('\n');
+        sb.append("Carpeta: ").append(r.carpeta).append('\n');
+        sb.append("Nombre : ").append(r.nombre).append('\n');
+        sb.append("Ocurrencias: ").append(r.ocurrencias).append('\n');
+        for (Map.Entry<String, Integer> e : r.porCadena.entrySet()) {
+            sb.append("  \"").append(e.getKey()).append("\": ").append(e.getValue()).append('\n');
+        }
+        if (!r.lineas.isEmpty()) {
+            sb.append("Líneas:\n");
+            for (String linea : r.lineas) {
+                sb.append("  ").append(linea).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private String comoJson(Registro r) {
+        StringBuilder sb = texto;
+        sb.setLength(0);
+        sb.append("{\"ruta\":");
+        json(sb, r.ruta);
+        sb.append(",\"carpeta\":");
+        json(sb, r.carpeta);
+        sb.append(",\"nombre\":");
+        json(sb, r.nombre);
+        sb.append(",\"ocurrencias\":").append(r.ocurrencias);
+        sb.append(",\"lineas\":");
+        json(sb, r.lineas);
+        if (!r.porCadena.isEmpty()) {
+            sb.append(",\"porCadena\":{");
+            boolean primera = true;
+            for (Map.Entry<String, Integer> e : r.porCadena.entrySet()) {
+                if (!primera) sb.append(',');
+                primera = false;
+                json(sb, e.getKey());
+                sb.append(':').append(e.getValue());
+            }
+            sb.append("},\"lineasPorCadena\":{");
+            primera = true;
+            for (Map.Entry<String, List<String>> e : r.lineasPorCadena.entrySet()) {
+                if (!primera) sb.append(',');
+                primera = false;
+                json(sb, e.getKey());
+                sb.append(':');
+                json(sb, e.getValue());
+            }
+            sb.append('}');
+        }
+        return sb.append("}\n").toString();
+    }
+
+    private static void json(StringBuilder sb, List<String> lista) {
+        sb.append('[');
+        for (int i = 0; i < lista.size(); i++) {
+            if (i > 0) sb.append(',');
+            json(sb, lista.get(i));
+        }
+        sb.append(']');
+    }
+
+    private static void json(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    // [largo][ruta][carpeta][nombre][ocurrencias][líneas][cadenas: texto, ocurrencias, líneas]
+    private void escribirBinario(Registro r) throws IOException {
+        registro.reset();
+        escribirCuerpo(datos, r);
+
+        int largo = registro.size();
+        out.write(largo >>> 24);
+        out.write(largo >>> 16);
+        out.write(largo >>> 8);
+        out.write(largo);
+        registro.writeTo(out);
+    }
+
+    /**
+     * Un resultado con el cuerpo del formato binario (sin el largo adelante), para quien ya sabe
+     * dónde termina cada registro, como el protocolo de {@link CoordinadorBusqueda}.
+     */
+    static void escribirResultado(DataOutputStream d, BuscarCadenaEnCarpetaZip.Resultado r) throws IOException {
+        escribirCuerpo(d, new Registro(r.rutaCompleta, r.carpeta, r.nombreArchivo, r.ocurrencias, r.lineasCoinciden,
+                r.ocurrenciasPorCadena, r.lineasPorCadena));
+    }
+
+    private static void escribirCuerpo(DataOutputStream d, Registro r) throws IOException {
+        cadena(d, r.ruta);
+        cadena(d, r.carpeta);
+        cadena(d, r.nombre);
+        d.writeInt(r.ocurrencias);
+        cadenas(d, r.lineas);
+        d.writeInt(r.porCadena.size());
+        for (Map.Entry<String, Integer> e : r.porCadena.entrySet()) {
+            cadena(d, e.getKey());
+            d.writeInt(e.getValue());
+            cadenas(d, r.lineasPorCadena.getOrDefault(e.getKey(), List.of()));
+        }
+    }
+
+    // Largo en bytes y UTF-8 (writeUTF no sirve: corta en 64 KB)
+    static void cadena(DataOutputStream d, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        d.writeInt(b.length);
+        d.write(b);
+    }
+
+    private static void cadenas(DataOutputStream d, List<String> lista) throws IOException {
+        d.writeInt(lista.size());
+        for (String s : lista) cadena(d, s);
+    }
+
+    /**
+     * Lee lo escrito en {@link Formato#BINARIO} (sin comprimir: si se escribió con gzip, pasar un
+     * GZIPInputStream). Los resultados de una sola cadena llegan con los mapas vacíos.
+     *
+     * @throws IOException si el stream no es de este formato o está cortado
+     */
+    public static void leerBinario(InputStream in, Consumer<BuscarCadenaEnCarpetaZip.Resultado> destino) throws IOException {
+        DataInputStream entrada = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (entrada.readInt() != MAGICO) {
+            throw new IOException("No es una salida binaria de resultados");
+        }
+        while (true) {
+            int b0 = entrada.read();
+            if (b0 < 0) return;
+            int largo = b0 << 24 | entrada.readUnsignedByte() << 16 | entrada.readUnsignedByte() << 8 | entrada.readUnsignedByte();
+            if (largo < 0) throw new IOException("Registro inválido");
+            byte[] cuerpo = entrada.readNBytes(largo);
+            if (cuerpo.length < largo) throw new EOFException("Registro cortado");
+
+            destino.accept(leerResultado(new DataInputStream(new ByteArrayInputStream(cuerpo))));
+        }
+    }
+
+    /**
+     * Lo inverso de {@link #escribirResultado}.
+     */
+    static BuscarCadenaEnCarpetaZip.Resultado leerResultado(DataInputStream d) throws IOException {
+        String ruta = leerCadena(d);
+        String carpeta = leerCadena(d);
+        String nombre = leerCadena(d);
+        int ocurrencias = d.readInt();
+        List<String> lineas = leerCadenas(d);
+        int nCadenas = d.readInt();
+        if (nCadenas < 0) throw new IOException("Registro inválido");
+        Map<String, Integer> porCadena = new LinkedHashMap<>();
+        Map<String, List<String>> lineasPorCadena = new LinkedHashMap<>();
+        for (int k = 0; k < nCadenas; k++) {
+            String cadena = leerCadena(d);
+            porCadena.put(cadena, d.readInt());
+            lineasPorCadena.put(cadena, leerCadenas(d));
+        }
+        return new BuscarCadenaEnCarpetaZip.Resultado(ruta, carpeta, nombre, ocurrencias, lineas,
+                porCadena, lineasPorCadena);
+    }
+
+    static String leerCadena(DataInputStream d) throws IOException {
+        int n = d.readInt();
+        if (n < 0) throw new IOException("Registro inválido");
+        byte[] b = d.readNBytes(n);
+        if (b.length < n) throw new EOFException();
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> leerCadenas(DataInputStream d) throws IOException {
+        int n = d.readInt();
+        if (n < 0) throw new IOException("Registro inválido");
+        List<String> r = new ArrayList<>(Math.min(n, 1024));
+        for (int i = 0; i < n; i++) r.add(leerCadena(d));
+        return r;
+    }
+
+    /**
+     * @return resultados ya escritos (sin contar los que esperan en la cola)
+     */
+    public long escritos() {
+        return escritos;
+    }
+
+    // Lo que se copia de un Resultado al encolarlo
+    private static final class Registro {
+        final String ruta;
+        final String carpeta;
+        final String nombre;
+        final int ocurrencias;
+        final List<String> lineas;
+        final Map<String, Integer> porCadena;
+        final Map<String, List<String>> lineasPorCadena;
+
+        Registro(String ruta, String carpeta, String nombre, int ocurrencias, List<String> lineas,
+                 Map<String, Integer> porCadena, Map<String, List<String>> lineasPorCadena) {
+            this.ruta = ruta;
+            this.carpeta = carpeta;
+            this.nombre = nombre;
+            this.ocurrencias = ocurrencias;
+            this.lineas = lineas;
+            this.porCadena = porCadena;
+            this.lineasPorCadena = lineasPorCadena;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.BuscarCadenaEnCarpetaZip.Resultado;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executors;
+
+/**
+ * Servicio de búsqueda que se queda corriendo: la JVM ya está caliente, el inventario de archivos
+ * está en memoria ({@link InventarioArchivos}) y los resultados de cada consulta se guardan por
+ * archivo. Repetir una consulta solo vuelve a leer los archivos que cambiaron desde la vez
+ * anterior; si no cambió nada, responde sin tocar el disco.
+ * <p>
+ * Los resultados son los de {@link BuscarCadenaEnCarpetaZip#buscarEnCarpeta} (texto, .gz y .zip),
+ * ordenados por ruta.
+ * <pre>
+ *   java -cp target/classes org.example.ServidorBusqueda C:\logs 7781
+ *   curl "http://localhost:7781/buscar?cadena=ERROR-7781"
+ *   curl "http://localhost:7781/buscar?cadena=error&amp;modo=ignorar_mayusculas&amp;detalle=false"
+ *   curl "http://localhost:7781/buscar?cadena=ERROR-7781&amp;lineas=5&amp;contexto=2"
+ *   curl "http://localhost:7781/buscar?cadena=ERROR-7781&amp;formato=jsonl&amp;gzip=true" --compressed
+ *   curl "http://localhost:7781/estado"
+ * </pre>
+ * Solo escucha en la interfaz local (127.0.0.1).
+ */
+public class ServidorBusqueda implements AutoCloseable {
+
+    public static final int PUERTO_DEFAULT = 7781;
+
+    // Consultas distintas que se recuerdan; la menos usada se olvida primero
+    private static final int MAX_CONSULTAS = 64;
+
+    private final InventarioArchivos inventario;
+    private final int hilos;
+    private final LinkedHashMap<String, Consulta> consultas = new LinkedHashMap<>(16, 0.75f, true);
+    private HttpServer http;
+
+    private ServidorBusqueda(InventarioArchivos inventario, int hilos) {
+        this.inventario = inventario;
+        this.hilos = hilos;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Uso: ServidorBusqueda <carpeta> [puerto] [hilos]");
+            System.exit(1);
+        }
+        Path carpeta = Paths.get(args[0]);
+        int puerto = args.length > 1 ? Integer.parseInt(args[1]) : PUERTO_DEFAULT;
+        int hilos = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+        try {
+            long inicio = System.nanoTime();
+            ServidorBusqueda servidor = iniciar(carpeta, puerto, hilos);
+            System.out.printf("Inventario de %s: %d archivos (%.1f s). Escuchando en http://localhost:%d/buscar%n",
+                    carpeta.toAbsolutePath(), servidor.inventario.tamano(), (System.nanoTime() - inicio) / 1e9, puerto);
+        } catch (IOException e) {
+            System.err.println("No se pudo iniciar el servicio: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Recorre la carpeta, empieza a seguir sus cambios y abre el endpoint HTTP.
+     *
+     * @param puerto 0 para que el sistema elija uno libre (ver {@link #puerto()})
+     * @param hilos  workers para leer archivos; si es <= 0 usa uno por núcleo
+     */
+    public static ServidorBusqueda iniciar(Path carpeta, int puerto, int hilos) throws IOException {
+        ServidorBusqueda servidor = new ServidorBusqueda(InventarioArchivos.abrir(carpeta), hilos);
+        try {
+            servidor.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), 0);
+        } catch (IOException ex) {
+            servidor.inventario.close();
+            throw ex;
+        }
+        servidor.http.createContext("/buscar", servidor::atenderBusqueda);
+        servidor.http.createContext("/estado", servidor::atenderEstado);
+        // Varias consultas a la vez; cada una reparte su lectura en su propio pool
+        servidor.http.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "servidor-busqueda");
+            t.setDaemon(true);
+            return t;
+        }));
+        servidor.http.start();
+        return servidor;
+    }
+
+    public int puerto() {
+        return http.getAddress().getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        http.stop(0);
+        inventario.close();
+    }
+
+    /**
+     * La búsqueda del servicio, también para usarla sin HTTP.
+     *
+     * @throws IllegalArgumentException si la cadena va vacía o la expresión regular no es válida
+     */
+    public List<Resultado> buscar(String cadena, Charset charset, boolean incluirDetalleLineas, ModoBusqueda modo) {
+        return buscar(cadena, charset, OpcionesDetalle.de(incluirDetalleLineas), modo);
+    }
+
+    /**
+     * @param detalle cuántas líneas guardar por archivo y con cuánto contexto (como {@code grep -C})
+     * @throws IllegalArgumentException si la cadena va vacía o la expresión regular no es válida
+     */
+    public List<Resultado> buscar(String cadena, Charset charset, OpcionesDetalle detalle, ModoBusqueda modo) {
+        if (cadena == null || cadena.isBlank()) {
+            throw new IllegalArgumentException("La cadena a buscar no puede ir vacía.");
+        }
+        // Compila antes de guardar la consulta: una regex inválida no ocupa lugar
+        modo.crearBuscador(cadena, charset);
+
+        String clave = modo + "|" + detalle.clave() + "|" + charset.name() + "|" + cadena;
+        Consulta consulta;
+        synchronized (consultas) {
+            consulta = consultas.computeIfAbsent(clave, k -> new Consulta());
+            if (consultas.size() > MAX_CONSULTAS) {
+                Iterator<String> it = consultas.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+
+        // Dos pedidos iguales a la vez: el segundo espera y aprovecha lo que leyó el primero
+        synchronized (consulta) {
+            if (inventario.generacion() != consulta.generacion) {
+                // La lista y su generación salen juntas: un cambio a medio anotar queda para la próxima
+                InventarioArchivos.Cambios cambios = inventario.cambiadosDesde(consulta.generacion);
+                List<Path> cambiados = cambios.archivos;
+                consulta.porArchivo.keySet().removeIf(p -> !inventario.contiene(p));
+
+                List<List<Resultado>> nuevos = BuscarCadenaEnCarpetaZip.buscarPorArchivo(
+                        cambiados, cadena, charset, detalle, hilos, modo);
+                for (int i = 0; i < cambiados.size(); i++) {
+                    if (nuevos.get(i).isEmpty()) consulta.porArchivo.remove(cambiados.get(i));
+                    else consulta.porArchivo.put(cambiados.get(i), nuevos.get(i));
+                }
+                // Lo que cambie mientras se leía tiene una generación mayor: entra en la próxima
+                consulta.generacion = cambios.generacion;
+            }
+
+            List<Resultado> r = new ArrayList<>();
+            for (List<Resultado> rs : consulta.porArchivo.values()) r.addAll(rs);
+            return r;
+        }
+    }
+
+    // ===========================
+    // HTTP
+    // ===========================
+    private void atenderBusqueda(HttpExchange ex) throws IOException {
+        try (ex) {
+            Map<String, String> params = parametros(ex.getRequestURI().getRawQuery());
+            String cadena = params.get("cadena");
+            List<Resultado> resultados;
+            SalidaResultados.Formato formato;
+            try {
+                formato = SalidaResultados.Formato.de(params.getOrDefault("formato", "texto"));
+                ModoBusqueda modo = ModoBusqueda.valueOf(params.getOrDefault("modo", "exacta").toUpperCase(Locale.ROOT));
+                Charset charset = CharsetPorArchivo.forName(params.getOrDefault("charset", "UTF-8"));
+                resultados = buscar(cadena, charset, opcionesDetalle(params), modo);
+            } catch (IllegalArgumentException e) {
+                // Incluye modo o charset desconocidos y números mal escritos
+                responder(ex, 400, e.getMessage() + "\n");
+                return;
+            }
+            if (formato != SalidaResultados.Formato.TEXTO) {
+                responderResultados(ex, resultados, formato, "true".equalsIgnoreCase(params.get("gzip")));
+                return;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            if (resultados.isEmpty()) {
+                sb.append("No se encontró la cadena: \"").append(cadena).append("\"\n");
+            } else {
+                sb.append("Encontrado en ").append(resultados.size()).append(" archivo(s):\n");
+                for (Resultado r : resultados) {
+                    sb.append("--------------------------------------------------\n");
+                    sb.append("Archivo: ").append(r.rutaCompleta).append('\n');
+                    sb.append("Carpeta: ").append(r.carpeta).append('\n');
+                    sb.append("Nombre : ").append(r.nombreArchivo).append('\n');
+                    sb.append("Ocurrencias: ").append(r.ocurrencias).append('\n');
+                    if (!r.lineasCoinciden.isEmpty()) {
+                        sb.append("Líneas:\n");
+                        for (String linea : r.lineasCoinciden) {
+                            sb.append("  ").append(linea).append('\n');
+                        }
+                    }
+                }
+            }
+            responder(ex, 200, sb.toString());
+        }
+    }
+
+    private void atenderEstado(HttpExchange ex) throws IOException {
+        try (ex) {
+            int guardadas;
+            synchronized (consultas) {
+                guardadas = consultas.size();
+            }
+            responder(ex, 200, "Carpeta: " + inventario.raiz() + "\n"
+                    + "Archivos: " + inventario.tamano() + "\n"
+                    + "Generación: " + inventario.generacion() + "\n"
+                    + "Consultas guardadas: " + guardadas + "\n");
+        }
+    }
+
+    private static void responder(HttpExchange ex, int estado, String texto) throws IOException {
+        byte[] cuerpo = texto.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        ex.sendResponseHeaders(estado, cuerpo.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(cuerpo);
+        }
+    }
+
+    // JSON Lines o binario, escrito a medida que se arma (sin Content-Length: va por partes)
+    private static void responderResultados(HttpExchange ex, List<Resultado> resultados,
+                                            SalidaResultados.Formato formato, boolean comprimir) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", formato == SalidaResultados.Formato.JSONL
+                ? "application/x-ndjson; charset=UTF-8" : "application/octet-stream");
+        if (comprimir) {
+            ex.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        ex.sendResponseHeaders(200, 0);
+        try (OutputStream os = ex.getResponseBody();
+             SalidaResultados salida = SalidaResultados.sobre(os, formato, comprimir)) {
+            for (Resultado r : resultados) {
+                salida.escribir(r);
+            }
+        }
+    }
+
+    // detalle=false, lineas=N, contexto=N (o antes=N / despues=N, como grep -B / -A)
+    private static OpcionesDetalle opcionesDetalle(Map<String, String> params) {
+        if ("false".equalsIgnoreCase(params.get("detalle"))) {
+            return OpcionesDetalle.SIN_LINEAS;
+        }
+        OpcionesDetalle detalle = params.containsKey("lineas")
+                ? OpcionesDetalle.lineas(Integer.parseInt(params.get("lineas")))
+                : OpcionesDetalle.DEFAULT;
+        int contexto = Integer.parseInt(params.getOrDefault("contexto", "0"));
+        int antes = Integer.parseInt(params.getOrDefault("antes", String.valueOf(contexto)));
+        int despues = Integer.parseInt(params.getOrDefault("despues", String.valueOf(contexto)));
+        return antes > 0 || despues > 0 ? detalle.conContexto(antes, despues) : detalle;
+    }
+
+    private static Map<String, String> parametros(String query) {
+        Map<String, String> r = new HashMap<>();
+        if (query == null) return r;
+        for (String par : query.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual <= 0) continue;
+            r.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                    URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+        }
+        return r;
+    }
+
+    // Resultados de una consulta por archivo (ordenados por ruta), al día hasta "generacion"
+    private static final class Consulta {
+        long generacion = -1;
+        final TreeMap<Path, List<Resultado>> porArchivo = new TreeMap<>();
+    }
+}
@@ -0,0 +1,252 @@
+package org.example;
+
+import org.example.BuscarCadenaEnCarpetaZip.Resultado;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Proceso trabajador de {@link CoordinadorBusqueda}: se conecta al coordinador por un socket
+ * local, recibe la consulta y después shards (listas de archivos) de a uno, y devuelve los
+ * resultados de cada archivo apenas termina de leerlo.
+ * <p>
+ * El coordinador lo lanza solo, pero también se puede arrancar a mano (p. ej. con otro
+ * {@code -Xmx} o en otra terminal) si el coordinador escucha en un puerto conocido:
+ * <pre>
+ *   java -cp target/classes org.example.TrabajadorBusqueda 7790 4
+ * </pre>
+ * Si el coordinador corta el shard (porque se lo dio en parte a otro trabajador más libre),
+ * se deja de tomar archivos desde el corte; los que ya se estaban leyendo se terminan igual.
+ */
+public final class TrabajadorBusqueda {
+
+    private static final Asignacion TERMINAR = new Asignacion(-1, new int[0], new Path[0]);
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final int hilos;
+    private final Map<Integer, Asignacion> activas = new ConcurrentHashMap<>();
+    private final BlockingQueue<Asignacion> pendientes = new LinkedBlockingQueue<>();
+    private volatile Function<Path, List<Resultado>> busqueda;
+    private volatile IOException error;
+    private volatile boolean fin;
+
+    private TrabajadorBusqueda(Socket socket, int hilos) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        this.hilos = EjecutorParalelo.normalizarHilos(hilos);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Uso: TrabajadorBusqueda <puerto del coordinador> [hilos]");
+            System.exit(1);
+        }
+        int puerto = Integer.parseInt(args[0]);
+        int hilos = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        try {
+            trabajar(puerto, hilos);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Trabajador " + ProcessHandle.current().pid() + ": se deja de atender al coordinador: "
+                    + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Atiende al coordinador hasta que avisa que terminó o se cierra la conexión.
+     *
+     * @param hilos archivos que se leen a la vez; si es <= 0 usa uno por núcleo
+     */
+    public static void trabajar(int puerto, int hilos) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), puerto)) {
+            socket.setTcpNoDelay(true);
+            new TrabajadorBusqueda(socket, hilos).atender();
+        }
+    }
+
+    private void atender() throws IOException {
+        out.writeInt(CoordinadorBusqueda.MAGICO);
+        out.writeLong(ProcessHandle.current().pid());
+        out.flush();
+
+        Thread lector = new Thread(this::procesarAsignaciones, "trabajador-busqueda");
+        lector.start();
+        try {
+            leerComandos();
+        } finally {
+            pendientes.add(TERMINAR);
+            try {
+                lector.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (error != null && !fin) {
+            throw error;
+        }
+    }
+
+    // Hilo del socket: los cortes tienen que llegar mientras se procesa
+    private void leerComandos() throws IOException {
+        while (true) {
+            int comando;
+            try {
+                comando = in.readByte();
+            } catch (EOFException ex) {
+                terminar();    // el coordinador se fue; lo que quedaba lo reparte él
+                return;
+            }
+            switch (comando) {
+                case CoordinadorBusqueda.CONSULTA -> {
+                    String cadena = SalidaResultados.leerCadena(in);
+                    String nombreCharset = SalidaResultados.leerCadena(in);
+                    String nombreModo = SalidaResultados.leerCadena(in);
+                    OpcionesDetalle detalle = OpcionesDetalle.lineas(in.readInt()).conContexto(in.readInt(), in.readInt());
+                    try {
+                        // Como en ServidorBusqueda: "x-por-archivo" no es un charset registrado
+                        Charset charset = CharsetPorArchivo.forName(nombreCharset);
+                        busqueda = BuscarCadenaEnCarpetaZip.busquedaPorArchivo(cadena, charset, detalle,
+                                ModoBusqueda.valueOf(nombreModo));
+                    } catch (RuntimeException ex) {
+                        // Charset o modo desconocidos, regex inválida: sin consulta no hay nada que hacer
+                        throw new IOException("No se pudo preparar la consulta (charset " + nombreCharset
+                                + ", modo " + nombreModo + "): " + ex.getMessage(), ex);
+                    }
+                }
+                case CoordinadorBusqueda.ASIGNACION -> {
+                    int id = in.readInt();
+                    int n = in.readInt();
+                    int[] indices = new int[n];
+                    Path[] rutas = new Path[n];
+                    for (int i = 0; i < n; i++) {
+                        indices[i] = in.readInt();
+                        rutas[i] = Path.of(SalidaResultados.leerCadena(in));
+                    }
+                    Asignacion a = new Asignacion(id, indices, rutas);
+                    activas.put(id, a);
+                    pendientes.add(a);
+                }
+                case CoordinadorBusqueda.CORTE -> {
+                    Asignacion a = activas.get(in.readInt());
+                    int hasta = in.readInt();
+                    if (a != null && hasta < a.hasta) {
+                        a.hasta = hasta;
+                    }
+                }
+                case CoordinadorBusqueda.FIN -> {
+                    terminar();
+                    return;
+                }
+                default -> throw new IOException("Comando desconocido del coordinador: " + comando);
+            }
+        }
+    }
+
+    // No se toman más archivos; los que se estaban leyendo ya no hace falta informarlos
+    private void terminar() {
+        fin = true;
+        for (Asignacion a : activas.values()) {
+            a.hasta = 0;
+        }
+    }
+
+    private void procesarAsignaciones() {
+        ForkJoinPool pool = new ForkJoinPool(hilos);
+        try {
+            while (true) {
+                Asignacion a = pendientes.take();
+                if (a == TERMINAR || error != null || fin) return;
+
+                List<Callable<Void>> tareas = new ArrayList<>(hilos);
+                for (int h = 0; h < hilos; h++) {
+                    tareas.add(() -> {
+                        procesar(a);
+                        return null;
+                    });
+                }
+                // En el pool, los .zip reparten sus entradas entre los mismos hilos
+                for (Future<Void> f : pool.invokeAll(tareas)) {
+                    f.get();
+                }
+                activas.remove(a.id);
+                enviarHecho(a.id);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException | UncheckedIOException ex) {
+            Throwable causa = ex instanceof ExecutionException ? ex.getCause() : ex;
+            error = causa instanceof UncheckedIOException u ? u.getCause()
+                    : causa instanceof IOException io ? io : new IOException(causa);
+            // Sin poder responder no tiene sentido seguir: el coordinador reasigna el shard
+            cerrar();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void procesar(Asignacion a) throws IOException {
+        while (error == null && !fin) {
+            int i = a.siguiente.getAndIncrement();
+            if (i >= a.hasta) return;
+            enviarResultados(a.id, a.indices[i], busqueda.apply(a.rutas[i]));
+        }
+    }
+
+    // Todos los archivos se informan, también sin coincidencias: así el coordinador sabe qué falta
+    private void enviarResultados(int id, int indice, List<Resultado> rs) throws IOException {
+        synchronized (out) {
+            out.writeByte(CoordinadorBusqueda.RESULTADO);
+            out.writeInt(id);
+            out.writeInt(indice);
+            out.writeInt(rs.size());
+            for (Resultado r : rs) {
+                SalidaResultados.escribirResultado(out, r);
+            }
+            out.flush();
+        }
+    }
+
+    private void enviarHecho(int id) throws IOException {
+        synchronized (out) {
+            out.writeByte(CoordinadorBusqueda.HECHO);
+            out.writeInt(id);
+            out.flush();
+        }
+    }
+
+    private void cerrar() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // ya está cerrado
+        }
+    }
+
+    private static final class Asignacion {
+        final int id;
+        final int[] indices;      // índice de cada archivo en la lista del coordinador
+        final Path[] rutas;
+        final AtomicInteger siguiente = new AtomicInteger();
+        volatile int hasta;       // los de [hasta, n) ya no son de este trabajador
+
+        Asignacion(int id, int[] indices, Path[] rutas) {
+            this.id = id;
+            this.indices = indices;
+            this.rutas = rutas;
+            this.hasta = rutas.length;
+        }
+    }
+}
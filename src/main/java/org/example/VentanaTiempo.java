@@ -0,0 +1,556 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Búsqueda acotada a un rango de horas ("ERROR entre las 14:00 y las 14:30"), para no leer
+ * cada log de punta a punta.
+ * <p>
+ * La hora de cada línea es la marca con la que empieza (se saltean espacios y un '[' inicial),
+ * en alguno de los formatos configurados; las líneas sin marca (p. ej. un stack trace) son de
+ * la última marca anterior. Entran las líneas con {@code desde <= marca < hasta}.
+ * <ul>
+ *   <li>Archivo de texto: se mira la primera y la última marca; si el rango no se toca, el
+ *       archivo no se lee. Si no, el principio y el fin del tramo se ubican con búsqueda binaria
+ *       sobre offsets alineados a línea y solo se lee ese tramo.</li>
+ *   <li>.gz y entradas de .zip: no se puede saltar, pero las líneas de antes se descartan sin
+ *       buscar y la lectura se corta en la primera marca que pasa el fin del rango.</li>
+ * </ul>
+ * Supone que las marcas de cada archivo están en orden (como en cualquier log que solo crece);
+ * una línea fuera de orden cerca de los bordes puede quedar de un lado o del otro. Un archivo de
+ * texto sin ninguna marca reconocible al principio o al final queda afuera.
+ * <p>
+ * Los números de línea del detalle cuentan desde el principio del tramo leído, no del archivo
+ * (contar las líneas de antes obligaría a leerlas), y por eso salen como {@code +<n>} en vez de
+ * {@code L<n>} (ver {@link #numerosRelativos}).
+ * <p>
+ * Solo para charsets fijos compatibles con ASCII (UTF-8, ISO-8859-1, windows-1252...; no
+ * {@link CharsetPorArchivo}): las marcas y los saltos se buscan sobre los bytes.
+ */
+public final class VentanaTiempo {
+
+    /**
+     * "2024-05-01 14:03:07", "2024-05-01T14:03:07.123", "01/May/2024:14:03:07" (Apache),
+     * "May  1 14:03:07" (syslog, del año de {@code desde}).
+     */
+    public static final List<String> FORMATOS_DEFAULT = List.of(
+            "yyyy-MM-dd HH:mm:ss[.SSS][,SSS]",
+            "yyyy-MM-dd'T'HH:mm:ss[.SSS]",
+            "dd/MMM/yyyy:HH:mm:ss",
+            "MMM ppd HH:mm:ss");
+
+    // Las marcas se leen de los primeros bytes de la línea
+    private static final int LARGO_MARCA = 64;
+    // Cuando el tramo de la búsqueda binaria queda en esto, se sigue línea por línea
+    private static final int BLOQUE = 64 * 1024;
+    // Hasta dónde se busca la primera (o la última) marca de un archivo antes de darlo por "sin marcas"
+    private static final long LIMITE_SONDEO = 1024 * 1024;
+
+    final LocalDateTime desde;
+    final LocalDateTime hasta;
+    private final List<String> patrones;
+    private final DateTimeFormatter[] formatos;
+
+    private VentanaTiempo(LocalDateTime desde, LocalDateTime hasta, List<String> patrones) {
+        if (desde == null || hasta == null || !desde.isBefore(hasta)) {
+            throw new IllegalArgumentException("El rango de tiempo debe tener 'desde' antes que 'hasta'.");
+        }
+        if (patrones.isEmpty()) {
+            throw new IllegalArgumentException("Hay que indicar al menos un formato de marca de tiempo.");
+        }
+        this.desde = desde;
+        this.hasta = hasta;
+        this.patrones = List.copyOf(patrones);
+        this.formatos = new DateTimeFormatter[patrones.size()];
+        for (int i = 0; i < formatos.length; i++) {
+            try {
+                formatos[i] = new DateTimeFormatterBuilder()
+                        .parseCaseInsensitive()
+                        .appendPattern(patrones.get(i))
+                        // Formatos sin año (syslog) o sin segundos
+                        .parseDefaulting(ChronoField.YEAR_OF_ERA, desde.getYear())
+                        .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+                        .toFormatter(Locale.ENGLISH);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Formato de marca de tiempo inválido: " + patrones.get(i), ex);
+            }
+        }
+    }
+
+    /**
+     * Las líneas con marca desde {@code desde} (incluida) hasta {@code hasta} (excluida), con
+     * los {@link #FORMATOS_DEFAULT}.
+     */
+    public static VentanaTiempo entre(LocalDateTime desde, LocalDateTime hasta) {
+        return new VentanaTiempo(desde, hasta, FORMATOS_DEFAULT);
+    }
+
+    /**
+     * La misma ventana con otros formatos de marca (patrones de {@link DateTimeFormatter}, en el
+     * orden en que se prueban), p. ej. {@code "dd.MM.yyyy HH:mm:ss"}.
+     */
+    public VentanaTiempo conFormatos(String... patrones) {
+        return new VentanaTiempo(desde, hasta, Arrays.asList(patrones));
+    }
+
+    public LocalDateTime desde() {
+        return desde;
+    }
+
+    public LocalDateTime hasta() {
+        return hasta;
+    }
+
+    /**
+     * Las líneas del detalle con el número marcado como relativo al tramo: {@code "L12: texto"}
+     * pasa a {@code "+12: texto"} (y {@code "L13- "} de contexto a {@code "+13- "}).
+     */
+    static List<String> numerosRelativos(List<String> lineas) {
+        List<String> r = new ArrayList<>(lineas.size());
+        for (String linea : lineas) {
+            boolean numerada = linea.length() > 1 && linea.charAt(0) == 'L' && Character.isDigit(linea.charAt(1));
+            r.add(numerada ? "+" + linea.substring(1) : linea);
+        }
+        return r;
+    }
+
+    /**
+     * Para las claves del cache: otra ventana u otros formatos son otra consulta.
+     */
+    String clave() {
+        return "t:" + desde + "/" + hasta + "/" + String.join("|", patrones);
+    }
+
+    /**
+     * @throws IllegalArgumentException si las marcas y los saltos no se pueden buscar sobre los bytes
+     */
+    static void validarCharset(Charset charset) {
+        // "auto" codifica como UTF-8, pero los archivos que detecta como UTF-16 no tendrían marcas
+        // reconocibles y quedarían afuera sin aviso
+        if (charset instanceof CharsetPorArchivo) {
+            throw new IllegalArgumentException("La búsqueda por rango de tiempo necesita un charset fijo compatible con ASCII, no "
+                    + charset.name());
+        }
+        boolean compatible;
+        try {
+            String ascii = "\n\r 0123456789:-/.,[T";
+            compatible = charset.canEncode()
+                    && Arrays.equals(ascii.getBytes(charset), ascii.getBytes(StandardCharsets.US_ASCII));
+        } catch (UnsupportedOperationException ex) {
+            compatible = false;
+        }
+        if (!compatible) {
+            throw new IllegalArgumentException("La búsqueda por rango de tiempo necesita un charset compatible con ASCII: "
+                    + charset.name());
+        }
+    }
+
+    // ===========================
+    // Marcas
+    // ===========================
+
+    /**
+     * La marca con la que empieza la línea en {@code b[desde, hasta)}, o null si no tiene.
+     */
+    LocalDateTime marca(byte[] b, int desde, int hasta) {
+        int i = desde;
+        int fin = Math.min(hasta, desde + LARGO_MARCA);
+        while (i < fin && (b[i] == ' ' || b[i] == '\t' || b[i] == '[')) i++;
+        // Toda marca empieza con un dígito o con el mes
+        if (i == fin || !Character.isLetterOrDigit(b[i])) return null;
+        String texto = new String(b, i, fin - i, StandardCharsets.ISO_8859_1);
+        for (DateTimeFormatter f : formatos) {
+            try {
+                return LocalDateTime.from(f.parse(texto, new ParsePosition(0)));
+            } catch (DateTimeException ex) {
+                // se prueba el siguiente
+            }
+        }
+        return null;
+    }
+
+    private boolean antes(LocalDateTime t) {
+        return t.isBefore(desde);
+    }
+
+    private boolean despues(LocalDateTime t) {
+        return !t.isBefore(hasta);
+    }
+
+    // ===========================
+    // Archivos de texto: búsqueda binaria
+    // ===========================
+
+    /**
+     * Abre solo el tramo de {@code archivo} que cae en la ventana.
+     *
+     * @return el tramo (cierra el archivo al cerrarse), o null si el archivo no tiene nada del rango
+     */
+    InputStream abrir(Path archivo) throws IOException {
+        FileChannel ch = FileChannel.open(archivo, StandardOpenOption.READ);
+        try {
+            long[] tramo = tramo(new Sonda(ch));
+            if (tramo == null) {
+                ch.close();
+                return null;
+            }
+            return new LecturaTramo(ch, tramo[0], tramo[1]);
+        } catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+
+    // [inicio, fin) alineados a línea, o null si el archivo queda afuera
+    private long[] tramo(Sonda s) throws IOException {
+        long tamano = s.tamano;
+        if (tamano == 0) return null;
+
+        Marca primera = s.siguienteMarca(0, Math.min(tamano, LIMITE_SONDEO));
+        Marca ultima = s.ultimaMarca(Math.max(0, tamano - LIMITE_SONDEO));
+        if (primera == null || ultima == null || despues(primera.hora) || antes(ultima.hora)) {
+            return null;
+        }
+
+        long inicio = antes(primera.hora) ? primeraLineaDesde(s, 0, tamano, desde) : primera.offset;
+        long fin = despues(ultima.hora) ? primeraLineaDesde(s, inicio, tamano, hasta) : tamano;
+        return inicio < fin ? new long[]{inicio, fin} : null;
+    }
+
+    /**
+     * Offset de la primera línea con marca >= {@code objetivo}, sabiendo que la primera marca
+     * desde {@code lo} es anterior. Se parte a la mitad hasta quedar en un bloque y se sigue
+     * línea por línea.
+     */
+    private long primeraLineaDesde(Sonda s, long lo, long hi, LocalDateTime objetivo) throws IOException {
+        while (hi - lo > BLOQUE) {
+            long medio = (lo + hi) >>> 1;
+            Marca m = s.siguienteMarca(medio, hi);
+            if (m != null && m.hora.isBefore(objetivo)) {
+                lo = m.offset;
+            } else {
+                // Sin marca entre medio y hi: las líneas de ahí son de la última marca anterior
+                hi = medio;
+            }
+        }
+        long pos = s.inicioDeLinea(lo);
+        while (pos < s.tamano) {
+            Marca m = s.siguienteMarca(pos, s.tamano);
+            if (m == null) return s.tamano;
+            if (!m.hora.isBefore(objetivo)) return m.offset;
+            pos = s.siguienteLinea(m.offset);
+        }
+        return s.tamano;
+    }
+
+    private static final class Marca {
+        final long offset;
+        final LocalDateTime hora;
+
+        Marca(long offset, LocalDateTime hora) {
+            this.offset = offset;
+            this.hora = hora;
+        }
+    }
+
+    // Lecturas sueltas de un archivo con un bloque de cache; sirve para avanzar y retroceder
+    private final class Sonda {
+        final FileChannel ch;
+        final long tamano;
+        final byte[] bloque = new byte[BLOQUE];
+        long inicioBloque = -1;
+        int largoBloque;
+
+        Sonda(FileChannel ch) throws IOException {
+            this.ch = ch;
+            this.tamano = ch.size();
+        }
+
+        int byteEn(long pos) throws IOException {
+            if (pos < inicioBloque || pos >= inicioBloque + largoBloque) {
+                cargar(pos - pos % BLOQUE);
+            }
+            return bloque[(int) (pos - inicioBloque)];
+        }
+
+        private void cargar(long desde) throws IOException {
+            ByteBuffer bb = ByteBuffer.wrap(bloque);
+            long p = desde;
+            while (bb.hasRemaining()) {
+                int n = ch.read(bb, p);
+                if (n < 0) break;
+                p += n;
+            }
+            inicioBloque = desde;
+            largoBloque = bb.position();
+        }
+
+        // La primera línea que empieza en pos o después
+        long inicioDeLinea(long pos) throws IOException {
+            return pos == 0 ? 0 : siguienteLinea(pos - 1);
+        }
+
+        // Después del primer '\n' desde pos (o el tamaño si no hay)
+        long siguienteLinea(long pos) throws IOException {
+            for (long p = pos; p < tamano; p++) {
+                if (byteEn(p) == '\n') return p + 1;
+            }
+            return tamano;
+        }
+
+        LocalDateTime marcaEn(long inicio) throws IOException {
+            byte[] b = new byte[LARGO_MARCA];
+            int n = 0;
+            while (n < LARGO_MARCA && inicio + n < tamano) {
+                int c = byteEn(inicio + n);
+                if (c == '\n' || c == '\r') break;
+                b[n++] = (byte) c;
+            }
+            return marca(b, 0, n);
+        }
+
+        // La primera línea con marca que empieza en [pos, limite)
+        Marca siguienteMarca(long pos, long limite) throws IOException {
+            long linea = inicioDeLinea(pos);
+            while (linea < limite) {
+                LocalDateTime t = marcaEn(linea);
+                if (t != null) return new Marca(linea, t);
+                linea = siguienteLinea(linea);
+            }
+            return null;
+        }
+
+        // La última línea con marca que empieza en [limite, tamano), de atrás para adelante
+        Marca ultimaMarca(long limite) throws IOException {
+            long fin = tamano;
+            // El último salto no abre otra línea
+            if (fin > 0 && byteEn(fin - 1) == '\n') fin--;
+            while (fin > limite) {
+                long inicio = fin - 1;
+                while (inicio > 0 && byteEn(inicio - 1) != '\n') inicio--;
+                if (inicio < limite) return null;
+                LocalDateTime t = marcaEn(inicio);
+                if (t != null) return new Marca(inicio, t);
+                fin = inicio - 1;
+            }
+            return null;
+        }
+    }
+
+    // [inicio, fin) de un archivo, con lecturas posicionales
+    private static final class LecturaTramo extends InputStream {
+        private final FileChannel ch;
+        private long pos;
+        private final long fin;
+
+        LecturaTramo(FileChannel ch, long inicio, long fin) {
+            this.ch = ch;
+            this.pos = inicio;
+            this.fin = fin;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (pos >= fin) return -1;
+            int n = ch.read(ByteBuffer.wrap(b, off, (int) Math.min(len, fin - pos)), pos);
+            if (n < 0) return -1;
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+
+    // ===========================
+    // Streams (.gz, entradas de zip): filtro por líneas
+    // ===========================
+
+    /**
+     * Deja pasar solo las líneas de la ventana y termina en la primera marca que la pasa (el
+     * resto de {@code in} ni se lee). No cierra {@code in}.
+     * <p>
+     * No se lee la marca de cada línea: con las marcas en orden, si la última línea del buffer
+     * queda del mismo lado que la actual, todo lo del medio también, y se descarta (o se deja
+     * pasar) de una vez. Línea por línea solo se va en los bordes de la ventana.
+     */
+    InputStream recortar(InputStream in) {
+        return new Recorte(in);
+    }
+
+    private final class Recorte extends InputStream {
+        // Cuántas líneas desde el final del buffer se prueban buscando una con marca
+        private static final int CANDIDATAS = 16;
+
+        private final InputStream in;
+        private final byte[] buf = new byte[BLOQUE];
+        private int pos;
+        private int lim;
+        private boolean finEntrada;
+        private boolean terminado;
+        private boolean enInicioDeLinea = true;
+        private boolean emitir;            // lo que sigue es de la ventana
+        private int finBloque = -1;        // fin (inicio de línea) de un tramo que se trata entero
+        private int sinBloqueHasta;        // antes de esto no hubo marca útil al final del buffer
+        private LocalDateTime actual;      // última marca vista
+
+        Recorte(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (!terminado) {
+                if (enInicioDeLinea) {
+                    if (!empezarLinea()) break;
+                    continue;
+                }
+                if (pos == lim && !llenar()) break;
+
+                int hastaAca;
+                boolean cierraLinea;
+                if (finBloque >= 0) {
+                    hastaAca = finBloque;
+                    cierraLinea = true;
+                } else {
+                    int i = pos;
+                    while (i < lim && buf[i] != '\n') i++;
+                    cierraLinea = i < lim;
+                    hastaAca = cierraLinea ? i + 1 : lim;
+                }
+                int largo = hastaAca - pos;
+
+                if (emitir) {
+                    int n = Math.min(largo, len);
+                    System.arraycopy(buf, pos, b, off, n);
+                    pos += n;
+                    if (cierraLinea && n == largo) siguienteLinea();
+                    return n;
+                }
+                pos += largo;
+                if (cierraLinea) siguienteLinea();
+            }
+            return -1;
+        }
+
+        private void siguienteLinea() {
+            enInicioDeLinea = true;
+            finBloque = -1;
+        }
+
+        // Decide qué hacer desde pos: un tramo entero hasta otra línea del buffer, o esta línea sola
+        private boolean empezarLinea() throws IOException {
+            while (lim - pos < BLOQUE / 2 && llenar()) {
+                // se junta medio buffer para que los tramos valgan la pena
+            }
+            if (pos == lim) {
+                terminado = true;
+                return false;
+            }
+
+            if (pos >= sinBloqueHasta) {
+                int ultima = ultimaConMarca();
+                if (ultima > pos) {
+                    LocalDateTime t = marca(buf, ultima, finLinea(ultima));
+                    boolean antesAhora = actual == null || antes(actual);
+                    boolean dentroAhora = !antesAhora && !despues(actual);
+                    if ((antes(t) && antesAhora) || (dentroAhora && !antes(t) && !despues(t))) {
+                        emitir = !antesAhora;
+                        actual = t;
+                        finBloque = ultima;
+                        enInicioDeLinea = false;
+                        return true;
+                    }
+                    sinBloqueHasta = ultima;
+                } else {
+                    sinBloqueHasta = lim;
+                }
+            }
+
+            LocalDateTime t = marca(buf, pos, finLinea(pos));
+            if (t != null) actual = t;
+            if (actual != null && despues(actual)) {
+                terminado = true;
+                return false;
+            }
+            emitir = actual != null && !antes(actual);
+            enInicioDeLinea = false;
+            return true;
+        }
+
+        // Inicio de una de las últimas líneas del buffer que tenga marca (y entera), o -1
+        private int ultimaConMarca() {
+            int probadas = 0;
+            int finSiguiente = finEntrada ? lim : -1;    // la última línea sin salto no está entera
+            for (int j = lim - 1; j >= pos && probadas < CANDIDATAS; j--) {
+                if (buf[j] != '\n') continue;
+                int inicio = j + 1;
+                if (inicio < lim && (finSiguiente >= 0 || lim - inicio >= LARGO_MARCA)) {
+                    probadas++;
+                    if (marca(buf, inicio, finLinea(inicio)) != null) return inicio;
+                }
+                finSiguiente = j;
+            }
+            return -1;
+        }
+
+        private int finLinea(int desde) {
+            int i = desde;
+            int tope = Math.min(lim, desde + LARGO_MARCA);
+            while (i < tope && buf[i] != '\n' && buf[i] != '\r') i++;
+            return i;
+        }
+
+        // Corre lo pendiente al principio y agrega lo que haya; false al final de la entrada
+        private boolean llenar() throws IOException {
+            if (finEntrada) return false;
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, lim - pos);
+                lim -= pos;
+                sinBloqueHasta = Math.max(0, sinBloqueHasta - pos);
+                pos = 0;
+            }
+            if (lim == buf.length) return true;
+            int n = in.read(buf, lim, buf.length - lim);
+            if (n < 0) {
+                finEntrada = true;
+                return false;
+            }
+            lim += n;
+            return true;
+        }
+    }
+}
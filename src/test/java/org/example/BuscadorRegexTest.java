@@ -0,0 +1,64 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BuscadorRegexTest {
+
+    // Líneas que tienen lo que dicen los escapes pero no el texto de sus argumentos, y al revés
+    private static final String[] LINEAS = {
+            "Abc", "xAbc", "41bc", "A bcd", "Abcd", "0041bcd", "\u0001xyz", "Axyz",
+            "555-1234", "3}-", "12:30 ERROR disco", "2} ERROR", "ñabc", "L}abc", "labc",
+            "]abc", "x]abc", "aa ab", "timeout after 5 ms", "tiempo 120 ms", "qqw", "q{2}w",
+            "ab1aa", "\t ERROR", "Ωabc"
+    };
+
+    private static final String[] PATRONES = {
+            "\\x41bc", "\\x{41}bc", "\\u0041bcd", "\\0101bc", "\\cAxyz",
+            "\\d{3}-\\d{4}", "\\d{2}:\\d{2} ERROR", "\\p{L}abc", "\\pLabc", "\\P{L}abc",
+            "\\p{IsGreek}abc", "\\N{LATIN SMALL LETTER A}ab", "\\b{g}abc", "[\\x{5D}]abc",
+            "(a)\\1 ab", "(?<n>a)\\k<n> ab", "\\d+ ms", "timeout after \\d+ ms", "q{2}w",
+            "\\w{2}1aa", "\\s*ERROR", "\\s{1,3}ERROR"
+    };
+
+    @Test
+    void elPrefiltroNoCambiaLasCoincidencias() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String linea : LINEAS) {
+            sb.append(linea).append('\n');
+        }
+        byte[] datos = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (String regex : PATRONES) {
+            Pattern patron = Pattern.compile(regex);
+            int esperadas = 0;
+            for (String linea : LINEAS) {
+                Matcher m = patron.matcher(linea);
+                while (m.find()) esperadas++;
+            }
+
+            BuscadorRegex buscador = BuscadorRegex.compilar(regex, StandardCharsets.UTF_8);
+            int encontradas = buscador.buscar(new ByteArrayInputStream(datos), OpcionesDetalle.SIN_LINEAS).ocurrencias;
+            assertEquals(esperadas, encontradas,
+                    regex + " (texto fijo \"" + BuscadorRegex.literalObligatorio(regex) + "\")");
+        }
+    }
+
+    @Test
+    void losArgumentosDeUnEscapeNoSonTextoFijo() {
+        assertEquals("bc", BuscadorRegex.literalObligatorio("\\x41bc"));
+        assertEquals("bcd", BuscadorRegex.literalObligatorio("\\u0041bcd"));
+        assertEquals("xyz", BuscadorRegex.literalObligatorio("\\cAxyz"));
+        assertEquals("-", BuscadorRegex.literalObligatorio("\\d{3}-\\d{4}"));
+        assertEquals(" ERROR", BuscadorRegex.literalObligatorio("\\d{2}:\\d{2} ERROR"));
+        assertEquals("abc", BuscadorRegex.literalObligatorio("\\p{L}abc"));
+        assertEquals("", BuscadorRegex.literalObligatorio("\\k<n>"));
+    }
+}
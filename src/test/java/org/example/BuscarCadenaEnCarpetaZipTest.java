@@ -0,0 +1,154 @@
+package org.example;
+
+import org.example.BuscarCadenaEnCarpetaZip.Resultado;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuscarCadenaEnCarpetaZipTest {
+
+    @Test
+    void unArchivoLeidoAMediasNoQuedaVigenteEnElIndice() throws IOException {
+        Path carpeta = Files.createTempDirectory("indice");
+        try {
+            Path bueno = carpeta.resolve("bueno.log");
+            Files.writeString(bueno, "inicio\nun ERROR aquí\nfin\n");
+
+            // .gz cortado a la mitad: GZIPInputStream falla al llegar al final
+            byte[] gz = gzip(texto(20_000));
+            Path roto = carpeta.resolve("roto.log.gz");
+            Files.write(roto, Arrays.copyOf(gz, gz.length / 2));
+
+            // .zip sano por fuera, con la segunda entrada corrupta
+            Path zip = carpeta.resolve("datos.zip");
+            Files.write(zip, zipConSegundaEntradaRota());
+
+            Path archivoIndice = carpeta.resolveSibling(carpeta.getFileName() + ".trg");
+            try {
+                List<Resultado> conIndice = BuscarCadenaEnCarpetaZip.buscarConIndice(
+                        carpeta, "ERROR", StandardCharsets.UTF_8, archivoIndice, sinLineas(2));
+
+                IndiceTrigramas indice = IndiceTrigramas.cargar(archivoIndice);
+                assertTrue(vigente(indice, bueno), "bueno.log tiene que quedar indexado");
+                assertFalse(vigente(indice, roto), "un .gz truncado no se puede dar por indexado");
+                assertFalse(vigente(indice, zip), "un zip con una entrada rota no se puede dar por indexado");
+
+                // Lo que no se pudo indexar se lee igual que sin índice
+                List<Resultado> sinIndice = BuscarCadenaEnCarpetaZip.buscarEnCarpeta(
+                        carpeta, "ERROR", StandardCharsets.UTF_8, false);
+                assertEquals(resumen(sinIndice), resumen(conIndice));
+            } finally {
+                Files.deleteIfExists(archivoIndice);
+            }
+        } finally {
+            try (Stream<Path> s = Files.walk(carpeta)) {
+                for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    void conUtf16ElIndiceNoDescartaArchivosConLaCadena() throws IOException {
+        Path carpeta = Files.createTempDirectory("indice-utf16");
+        Path archivoIndice = carpeta.resolveSibling(carpeta.getFileName() + ".trg");
+        try {
+            // UTF_16 escribe BOM y big endian; la cadena codificada igual llevaría el BOM delante
+            Files.writeString(carpeta.resolve("be.log"), "inicio\nun ERROR aquí\n", StandardCharsets.UTF_16);
+            Files.write(carpeta.resolve("le.log"), concatenar(new byte[]{(byte) 0xFF, (byte) 0xFE},
+                    "otro ERROR\nfin\n".getBytes(StandardCharsets.UTF_16LE)));
+
+            List<Resultado> conIndice = BuscarCadenaEnCarpetaZip.buscarConIndice(
+                    carpeta, "ERROR", StandardCharsets.UTF_16, archivoIndice, sinLineas(2));
+            List<Resultado> sinIndice = BuscarCadenaEnCarpetaZip.buscarEnCarpeta(
+                    carpeta, "ERROR", StandardCharsets.UTF_16, false);
+
+            assertEquals(2, sinIndice.size());
+            assertEquals(resumen(sinIndice), resumen(conIndice));
+        } finally {
+            Files.deleteIfExists(archivoIndice);
+            try (Stream<Path> s = Files.walk(carpeta)) {
+                for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+            }
+        }
+    }
+
+    private static OpcionesBusqueda sinLineas(int hilos) {
+        return OpcionesBusqueda.DEFAULT.conDetalle(OpcionesDetalle.SIN_LINEAS).conHilos(hilos);
+    }
+
+    private static byte[] concatenar(byte[] a, byte[] b) {
+        byte[] r = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        return r;
+    }
+
+    private static boolean vigente(IndiceTrigramas indice, Path archivo) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(archivo, BasicFileAttributes.class);
+        return indice.vigente(archivo.toAbsolutePath().toString(), attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    private static List<String> resumen(List<Resultado> resultados) {
+        return resultados.stream().map(r -> r.rutaCompleta + "=" + r.ocurrencias).sorted().toList();
+    }
+
+    private static byte[] texto(int lineas) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lineas; i++) {
+            sb.append("linea ").append(i).append(i % 100 == 0 ? " ERROR" : " ok").append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] datos) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(datos);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] zipConSegundaEntradaRota() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bytes)) {
+            zos.putNextEntry(new ZipEntry("a.log"));
+            zos.write("un ERROR en a\n".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("b.log"));
+            zos.write(texto(1_000));
+            zos.closeEntry();
+        }
+        byte[] zip = bytes.toByteArray();
+
+        // Primer byte comprimido de b.log: un bloque deflate de tipo inválido
+        ByteBuffer b = ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN);
+        int cabecera = -1;
+        for (int i = 4; i < zip.length - 4; i++) {
+            if (b.getInt(i) == 0x04034b50) {
+                cabecera = i;
+                break;
+            }
+        }
+        int datos = cabecera + 30 + b.getShort(cabecera + 26) + b.getShort(cabecera + 28);
+        zip[datos] = (byte) 0xFF;
+        return zip;
+    }
+}
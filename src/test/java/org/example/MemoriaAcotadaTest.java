@@ -0,0 +1,78 @@
+package org.example;
+
+import org.example.BuscarCadenaEnCarpetaZip.Resultado;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoriaAcotadaTest {
+
+    private static final int MEGAS = 300;
+
+    /**
+     * Un log de 300 MB en una sola línea, con 8 MB de buffers y 64 KB por línea, tiene que
+     * entrar en un heap de 64 MB con los dos recorredores: el de una cadena y el de varias.
+     * Se corre en otra JVM para poder fijarle el -Xmx.
+     */
+    @Test
+    void unaLineaEnormeNoHaceCrecerElBuffer() throws Exception {
+        Path carpeta = Files.createTempDirectory("memoria-acotada");
+        Path log = carpeta.resolve("una-linea.log");
+        try {
+            escribirUnaLinea(log);
+
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            Process p = new ProcessBuilder(java, "-Xmx64m", "-cp", System.getProperty("java.class.path"),
+                    MemoriaAcotadaTest.class.getName(), carpeta.toString())
+                    .redirectErrorStream(true)
+                    .start();
+            String salida = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(p.waitFor(5, TimeUnit.MINUTES), "la búsqueda no terminó");
+            assertEquals(0, p.exitValue(), salida);
+            assertEquals("una=" + MEGAS + " varias=" + 2 * MEGAS, salida.strip());
+        } finally {
+            Files.deleteIfExists(log);
+            Files.deleteIfExists(carpeta);
+        }
+    }
+
+    // Cada mega tiene un ERROR y un WARN, sin ningún salto de línea
+    private static void escribirUnaLinea(Path log) throws IOException {
+        byte[] mega = new byte[1 << 20];
+        Arrays.fill(mega, (byte) 'x');
+        System.arraycopy("ERROR".getBytes(StandardCharsets.US_ASCII), 0, mega, 1000, 5);
+        System.arraycopy("WARN".getBytes(StandardCharsets.US_ASCII), 0, mega, 600_000, 4);
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < MEGAS; i++) {
+                ch.write(ByteBuffer.wrap(mega));
+            }
+        }
+    }
+
+    // En la JVM hija: un OutOfMemoryError sale con código distinto de 0
+    public static void main(String[] args) throws IOException {
+        MemoriaAcotada.activar(8L << 20, 64 << 10);
+        Path carpeta = Path.of(args[0]);
+
+        List<Resultado> una = BuscarCadenaEnCarpetaZip.buscarEnCarpeta(carpeta, "ERROR", StandardCharsets.UTF_8, true);
+        List<Resultado> varias = BuscarCadenaEnCarpetaZip.buscarVariasEnCarpeta(carpeta, List.of("ERROR", "WARN"),
+                StandardCharsets.UTF_8, true);
+        System.out.println("una=" + total(una) + " varias=" + total(varias));
+    }
+
+    private static int total(List<Resultado> resultados) {
+        return resultados.stream().mapToInt(r -> r.ocurrencias).sum();
+    }
+}
@@ -0,0 +1,68 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VentanaTiempoTest {
+
+    @Test
+    void rechazaCharsetsQueNoSonAsciiPorBytes() {
+        VentanaTiempo.validarCharset(StandardCharsets.UTF_8);
+        VentanaTiempo.validarCharset(StandardCharsets.ISO_8859_1);
+        assertThrows(IllegalArgumentException.class, () -> VentanaTiempo.validarCharset(StandardCharsets.UTF_16LE));
+        // Codifica como UTF-8, pero puede tocarle un archivo UTF-16
+        assertThrows(IllegalArgumentException.class, () -> VentanaTiempo.validarCharset(CharsetPorArchivo.forName("auto")));
+    }
+
+    @Test
+    void conVentanaLosNumerosDeLineaSalenRelativos() throws IOException {
+        Path carpeta = Files.createTempDirectory("ventana");
+        try {
+            // Una línea por minuto desde las 10:00; el ERROR va en cada línea múltiplo de 10
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 600; i++) {
+                LocalDateTime t = LocalDateTime.of(2024, 5, 1, 10, 0).plusMinutes(i);
+                sb.append(t.toLocalDate()).append(' ').append(t.toLocalTime()).append(":00 ")
+                        .append(i % 10 == 0 ? "ERROR " : "INFO ").append(i).append('\n');
+            }
+            byte[] log = sb.toString().getBytes(StandardCharsets.UTF_8);
+            Files.write(carpeta.resolve("app.log"), log);
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(carpeta.resolve("viejo.log.gz")))) {
+                out.write(log);
+            }
+
+            VentanaTiempo ventana = VentanaTiempo.entre(LocalDateTime.of(2024, 5, 1, 14, 0), LocalDateTime.of(2024, 5, 1, 14, 30));
+            OpcionesBusqueda opciones = OpcionesBusqueda.DEFAULT.conVentana(ventana);
+            List<String> lineas = Stream.concat(
+                    BuscarCadenaEnCarpeta.buscarEnCarpeta(carpeta, "ERROR", StandardCharsets.UTF_8, opciones)
+                            .stream().flatMap(r -> r.lineasCoinciden.stream()),
+                    BuscarCadenaEnCarpetaZip.buscarEnCarpeta(carpeta, "ERROR", StandardCharsets.UTF_8, opciones)
+                            .stream().flatMap(r -> r.lineasCoinciden.stream()))
+                    .toList();
+
+            // 3 ERROR por archivo en media hora: el .log en las dos búsquedas y el .gz en la de zip
+            assertEquals(9, lineas.size());
+            for (String linea : lineas) {
+                assertTrue(linea.startsWith("+"), "el número no puede parecer del archivo: " + linea);
+            }
+        } finally {
+            try (Stream<Path> s = Files.walk(carpeta)) {
+                for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+            }
+        }
+    }
+}